@@ -0,0 +1,107 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * The one place where headings are brought back into range.
+ *
+ * The odometer keeps its heading in [0, 2 pi) radians, counter-clockwise from the x-axis. The
+ * difference between two headings, e.g. the angle by which to turn, is in (-pi, pi] so that the
+ * robot always makes the smallest turn.
+ *
+ * @author Joshua Inscoe
+ */
+public class Angles {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // A full turn (in radians)
+  public static final double TWO_PI = 2.0 * Math.PI;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  private Angles() {
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Bring a heading into [0, 2 pi).
+   *
+   * @param angle the heading (in radians)
+   * @return the same heading in [0, 2 pi)
+   */
+  public static double normalize(double angle) {
+
+    angle %= Angles.TWO_PI;
+
+    if (angle < 0.0) {
+      angle += Angles.TWO_PI;
+    }
+
+    // Adding 2 pi to a tiny negative angle rounds to 2 pi.
+    return (angle < Angles.TWO_PI) ? angle : 0.0;
+  }
+
+  /**
+   * Bring an angle into (-pi, pi], e.g. to turn by the smallest angle.
+   *
+   * @param angle the angle (in radians)
+   * @return the same angle in (-pi, pi]
+   */
+  public static double normalizeSigned(double angle) {
+
+    angle = Angles.normalize(angle);
+
+    return (angle > Math.PI) ? angle - Angles.TWO_PI : angle;
+  }
+
+  /**
+   * Bring a heading into [0, 360).
+   *
+   * @param angle the heading (in degrees)
+   * @return the same heading in [0, 360)
+   */
+  public static double normalizeDegrees(double angle) {
+
+    angle %= 360.0;
+
+    if (angle < 0.0) {
+      angle += 360.0;
+    }
+
+    return (angle < 360.0) ? angle : 0.0;
+  }
+
+  /**
+   * Bring an angle into (-180, 180], e.g. to turn by the smallest angle.
+   *
+   * @param angle the angle (in degrees)
+   * @return the same angle in (-180, 180]
+   */
+  public static double normalizeSignedDegrees(double angle) {
+
+    angle = Angles.normalizeDegrees(angle);
+
+    return (angle > 180.0) ? angle - 360.0 : angle;
+  }
+
+  /**
+   * Get the heading halfway along a clockwise turn from one heading to another, whichever way the
+   * turn crosses 0.
+   *
+   * @param from the heading at which the turn starts (in radians)
+   * @param to the heading at which the turn ends (in radians)
+   * @return the heading halfway (in radians), in [0, 2 pi)
+   */
+  public static double bisectClockwise(double from, double to) {
+
+    return Angles.normalize(from - Angles.normalize(from - to) / 2.0);
+  }
+}
@@ -0,0 +1,331 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A log of fixed-width binary records, written to a file by a low-priority thread.
+ *
+ * Records are packed into a preallocated ring buffer by a single producer thread, which never
+ * blocks and never allocates: when the ring is full, the record is dropped and counted. The writer
+ * thread wakes up periodically and writes everything that was committed in one or two large
+ * sequential writes, so that logging does not cost the control loop any I/O.
+ *
+ * The file starts with a header (magic, version, record size, name), followed by the records,
+ * all in big-endian order (as read by DataInputStream).
+ *
+ * @author Joshua Inscoe
+ */
+public class BinaryLog extends Thread {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // Magic number at the start of every log file ("DPML")
+  public static final int MAGIC = 0x44504D4C;
+
+  // Version of the file layout
+  public static final int VERSION = 1;
+
+  // Interval (in milliseconds) between two flushes of the ring to the file
+  private static final long FLUSH_INTERVAL = 250;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The ring buffer, `capacity` records of `recordSize` bytes
+  private final byte[] ring;
+  private final int recordSize;
+  private final int capacity;
+
+  // The number of records committed by the producer, and written by the writer thread
+  private volatile long head;
+  private volatile long tail;
+
+  // The offset at which the producer writes the next field of the current record
+  private int cursor;
+  private boolean reserved;
+
+  // The number of records which were dropped because the ring was full
+  private volatile long dropped;
+
+  // The file, and the header to write at its start
+  private final OutputStream out;
+  private volatile boolean closed;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, creates the file and writes its header.
+   *
+   * Call `start()` to start writing the records.
+   *
+   * @param path the path of the file
+   * @param name the name of the log, stored in the header for the decoders
+   * @param recordSize the size (in bytes) of every record
+   * @param capacity the number of records held by the ring, should cover a few flush intervals
+   * @throws IOException if the file cannot be created
+   */
+  public BinaryLog(String path, String name, int recordSize, int capacity) throws IOException {
+
+    this.ring = new byte[recordSize * capacity];
+    this.recordSize = recordSize;
+    this.capacity = capacity;
+
+    this.head = 0;
+    this.tail = 0;
+
+    this.cursor = 0;
+    this.reserved = false;
+
+    this.dropped = 0;
+
+    this.out = new FileOutputStream(path);
+    this.closed = false;
+
+    DataOutputStream header = new DataOutputStream(this.out);
+    header.writeInt(BinaryLog.MAGIC);
+    header.writeInt(BinaryLog.VERSION);
+    header.writeInt(recordSize);
+    header.writeUTF(name);
+    header.flush();
+
+    this.setDaemon(true);
+    this.setPriority(Thread.MIN_PRIORITY);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods (producer)
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Reserve the next record. The fields are then written with the `put` methods, in order, and
+   * the record is published with `commit()`.
+   *
+   * @return false if the ring is full (the record is dropped, and the `put` methods do nothing)
+   */
+  public boolean begin() {
+
+    if (this.closed || this.head - this.tail >= this.capacity) {
+      ++this.dropped;
+      this.reserved = false;
+      return false;
+    }
+
+    this.cursor = (int) (this.head % this.capacity) * this.recordSize;
+    this.reserved = true;
+
+    return true;
+  }
+
+  /**
+   * Write the next field of the reserved record (the same goes for the other `put` methods).
+   */
+  public void putByte(int v) {
+
+    if (this.reserved) {
+      this.ring[this.cursor++] = (byte) v;
+    }
+
+    return;
+  }
+
+  public void putShort(int v) {
+
+    if (this.reserved) {
+      this.ring[this.cursor++] = (byte) (v >>> 8);
+      this.ring[this.cursor++] = (byte) v;
+    }
+
+    return;
+  }
+
+  public void putInt(int v) {
+
+    if (this.reserved) {
+      this.ring[this.cursor++] = (byte) (v >>> 24);
+      this.ring[this.cursor++] = (byte) (v >>> 16);
+      this.ring[this.cursor++] = (byte) (v >>> 8);
+      this.ring[this.cursor++] = (byte) v;
+    }
+
+    return;
+  }
+
+  public void putLong(long v) {
+
+    this.putInt((int) (v >>> 32));
+    this.putInt((int) v);
+
+    return;
+  }
+
+  public void putFloat(float v) {
+
+    this.putInt(Float.floatToIntBits(v));
+
+    return;
+  }
+
+  /**
+   * Publish the record reserved by `begin()`. The fields which were not written are zero.
+   */
+  public void commit() {
+
+    if (!this.reserved) {
+      return;
+    }
+
+    int end = (int) (this.head % this.capacity + 1) * this.recordSize;
+    while (this.cursor < end) {
+      this.ring[this.cursor++] = 0;
+    }
+
+    this.reserved = false;
+
+    // The volatile write publishes the record to the writer thread.
+    this.head = this.head + 1;
+
+    return;
+  }
+
+  /**
+   * Get the number of records which were dropped because the ring was full.
+   *
+   * @return the number of dropped records
+   */
+  public long getDropped() {
+
+    return this.dropped;
+  }
+
+  /**
+   * Get the number of records waiting to be written.
+   *
+   * @return the number of pending records
+   */
+  public int getPending() {
+
+    return (int) (this.head - this.tail);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods (writer)
+  // --------------------------------------------------------------------------------
+
+  /**
+   * run() method, writes the committed records every FLUSH_INTERVAL.
+   */
+  public void run() {
+
+    while (!this.closed) {
+      try {
+        Thread.sleep(BinaryLog.FLUSH_INTERVAL);
+      } catch (Exception e) {
+        // ...
+      }
+
+      this.flush();
+    }
+
+    return;
+  }
+
+  /**
+   * Write the records that were committed so far, and close the file.
+   *
+   * Records committed after this is called are dropped.
+   */
+  public synchronized void close() {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    this.flush();
+
+    try {
+      this.out.close();
+    } catch (IOException e) {
+      // ...
+    }
+
+    return;
+  }
+
+  /**
+   * Read the header of a log file, leaving the stream at the first record.
+   *
+   * @param in the stream of the file
+   * @param name the expected name of the log
+   * @return the size (in bytes) of the records
+   * @throws IOException if the file is not a log with this name and version
+   */
+  public static int readHeader(DataInputStream in, String name) throws IOException {
+
+    if (in.readInt() != BinaryLog.MAGIC) {
+      throw new IOException("not a log file");
+    }
+    if (in.readInt() != BinaryLog.VERSION) {
+      throw new IOException("unsupported log version");
+    }
+
+    int recordSize = in.readInt();
+    String logName = in.readUTF();
+
+    if (!logName.equals(name)) {
+      throw new IOException("expected a " + name + " log, found " + logName);
+    }
+
+    return recordSize;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Write the committed records in (at most) two sequential writes.
+   */
+  private synchronized void flush() {
+
+    long head = this.head;
+    long tail = this.tail;
+
+    if (head == tail) {
+      return;
+    }
+
+    int from = (int) (tail % this.capacity);
+    int to = (int) (head % this.capacity);
+
+    try {
+      if (from < to) {
+        this.out.write(this.ring, from * this.recordSize, (to - from) * this.recordSize);
+      } else {
+        this.out.write(this.ring, from * this.recordSize, (this.capacity - from) * this.recordSize);
+        this.out.write(this.ring, 0, to * this.recordSize);
+      }
+    } catch (IOException e) {
+      // The records are lost, but logging must never take down the robot.
+    }
+
+    // The volatile write hands the slots back to the producer.
+    this.tail = head;
+
+    return;
+  }
+}
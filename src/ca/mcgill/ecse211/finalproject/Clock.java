@@ -0,0 +1,59 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * The time seen by the state machines.
+ *
+ * On the robot this is the system time. When a capture is replayed (see Replayer), the time is
+ * the time at which the replayed samples were captured, so that the timeouts of the state
+ * machines behave as they did on the robot even though the replay runs faster than real time.
+ *
+ * @author Joshua Inscoe
+ */
+public class Clock {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The replayed time (in milliseconds), negative when not replaying
+  private static volatile long replayTime = -1;
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Get the current time. Only differences between two times are meaningful.
+   *
+   * @return the current time (in milliseconds)
+   */
+  public static long millis() {
+
+    long time = Clock.replayTime;
+
+    return (time >= 0) ? time : System.currentTimeMillis();
+  }
+
+  /**
+   * Set the replayed time, until `clearReplayTime()` is called.
+   *
+   * @param time the replayed time (in milliseconds, non-negative)
+   */
+  static void setReplayTime(long time) {
+
+    Clock.replayTime = time;
+
+    return;
+  }
+
+  /**
+   * Go back to the system time.
+   */
+  static void clearReplayTime() {
+
+    Clock.replayTime = -1;
+
+    return;
+  }
+}
@@ -0,0 +1,354 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Classifies the color of a block from the RGB samples of the front light sensor.
+ *
+ * The samples are reduced to their chromaticity (the share of red and green in the total
+ * intensity), which barely changes with the distance to the block, unlike the raw values. Each
+ * color is modeled by a Gaussian over these features, trained incrementally from a calibration
+ * capture. A classification accumulates the log-likelihood of every sample it is given, so that a
+ * handful of samples is enough to be confident.
+ *
+ * There is no built-in model: it is trained by ColorCalibration on the real blocks and loaded
+ * with `load()`. Until every color has been trained, `hasModel()` is false and nothing is
+ * classified.
+ *
+ * @author Joshua Inscoe
+ */
+public class ColorClassifier {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of features extracted from each sample
+  private static final int FEATURES = 2;
+
+  // The flag colors, indexed by class (values() copies the array at every call)
+  private static final Searcher.FlagColor[] COLORS = Searcher.FlagColor.values();
+
+  // The number of classes (one per flag color, NONE is not a class)
+  private static final int CLASSES = ColorClassifier.COLORS.length;
+
+  // Samples with a lower total intensity are not looking at anything
+  private static final float MIN_INTENSITY = 0.02f;
+
+  // Lower bound on the variance of the features, so that a tight calibration is not overconfident
+  private static final double MIN_VARIANCE = 0.0004;
+
+  // The number of training samples each color needs for the model to be usable
+  private static final int MIN_TRAINING_SAMPLES = 2;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Incremental statistics of each class (Welford's algorithm)
+  private final int[] count;
+  private final double[][] mean;
+  private final double[][] m2;
+
+  // Log-likelihood of each class given the samples of the current classification
+  private final double[] logLikelihood;
+
+  // The number of samples in the current classification, and of those that saw nothing
+  private int samples;
+  private int emptySamples;
+
+  // Scratch space for the features of one sample
+  private final double[] features;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, starts without a model.
+   */
+  public ColorClassifier() {
+
+    this.count = new int[ColorClassifier.CLASSES];
+    this.mean = new double[ColorClassifier.CLASSES][ColorClassifier.FEATURES];
+    this.m2 = new double[ColorClassifier.CLASSES][ColorClassifier.FEATURES];
+
+    this.logLikelihood = new double[ColorClassifier.CLASSES];
+
+    this.features = new double[ColorClassifier.FEATURES];
+
+    this.resetModel();
+    this.reset();
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Forget all training samples.
+   */
+  public void resetModel() {
+
+    for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+      this.count[c] = 0;
+
+      for (int f = 0; f < ColorClassifier.FEATURES; ++f) {
+        this.mean[c][f] = 0.0;
+        this.m2[c][f] = 0.0;
+      }
+    }
+
+    return;
+  }
+
+  /**
+   * Check whether every color has been trained.
+   *
+   * @return true if the classifier can tell the colors apart
+   */
+  public boolean hasModel() {
+
+    for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+      if (this.count[c] < ColorClassifier.MIN_TRAINING_SAMPLES) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Add a calibration sample of a known color to the model.
+   *
+   * @param color the color of the block the sensor is looking at
+   * @param r the red component of the sample
+   * @param g the green component of the sample
+   * @param b the blue component of the sample
+   */
+  public void train(Searcher.FlagColor color, float r, float g, float b) {
+
+    int c = color.ordinal();
+
+    if (c == 0 || !this.extractFeatures(r, g, b)) {
+      return;
+    }
+
+    int n = ++this.count[c];
+
+    for (int f = 0; f < ColorClassifier.FEATURES; ++f) {
+      double delta = this.features[f] - this.mean[c][f];
+
+      this.mean[c][f] += delta / n;
+      this.m2[c][f] += delta * (this.features[f] - this.mean[c][f]);
+    }
+
+    return;
+  }
+
+  /**
+   * Start a new classification.
+   */
+  public void reset() {
+
+    for (int c = 0; c < ColorClassifier.CLASSES; ++c) {
+      this.logLikelihood[c] = 0.0;
+    }
+
+    this.samples = 0;
+    this.emptySamples = 0;
+
+    return;
+  }
+
+  /**
+   * Add a sample to the current classification.
+   *
+   * @param r the red component of the sample
+   * @param g the green component of the sample
+   * @param b the blue component of the sample
+   */
+  public void addSample(float r, float g, float b) {
+
+    ++this.samples;
+
+    if (!this.extractFeatures(r, g, b)) {
+      ++this.emptySamples;
+      return;
+    }
+
+    for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+      double sum = 0.0;
+
+      for (int f = 0; f < ColorClassifier.FEATURES; ++f) {
+        double variance = Math.max(this.m2[c][f] / Math.max(this.count[c] - 1, 1),
+            ColorClassifier.MIN_VARIANCE);
+        double delta = this.features[f] - this.mean[c][f];
+
+        sum -= 0.5 * (delta * delta / variance + Math.log(variance));
+      }
+
+      this.logLikelihood[c] += sum;
+    }
+
+    return;
+  }
+
+  /**
+   * Get the most likely color given the samples of the current classification.
+   *
+   * @return the most likely color, or NONE if most samples did not see anything or there is no
+   *         model
+   */
+  public Searcher.FlagColor getColor() {
+
+    if (!this.hasModel() || this.samples == 0 || this.emptySamples * 2 >= this.samples) {
+      return Searcher.FlagColor.NONE;
+    }
+
+    return ColorClassifier.COLORS[this.getBest()];
+  }
+
+  /**
+   * Get the probability of the most likely color given the samples of the current classification,
+   * assuming that the block is one of the known colors.
+   *
+   * @return the confidence in the result of `getColor()`, from 0 to 1
+   */
+  public double getConfidence() {
+
+    if (this.getColor() == Searcher.FlagColor.NONE) {
+      return 0.0;
+    }
+
+    int best = this.getBest();
+    double sum = 0.0;
+
+    // Softmax, relative to the best class to avoid underflows.
+    for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+      sum += Math.exp(this.logLikelihood[c] - this.logLikelihood[best]);
+    }
+
+    return 1.0 / sum;
+  }
+
+  /**
+   * Get the number of samples in the current classification.
+   *
+   * @return the number of samples
+   */
+  public int getSampleCount() {
+
+    return this.samples;
+  }
+
+  /**
+   * Save the model to a file.
+   *
+   * @param path the path of the file
+   * @throws IOException if the file cannot be written
+   */
+  public void save(String path) throws IOException {
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(path));
+
+    try {
+      for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+        out.writeInt(this.count[c]);
+
+        for (int f = 0; f < ColorClassifier.FEATURES; ++f) {
+          out.writeDouble(this.mean[c][f]);
+          out.writeDouble(this.m2[c][f]);
+        }
+      }
+    } finally {
+      out.close();
+    }
+
+    return;
+  }
+
+  /**
+   * Load a model from a file, if it exists.
+   *
+   * @param path the path of the file
+   * @return the classifier, or null if there is no such file
+   * @throws IOException if the file cannot be read, or does not train every color
+   */
+  public static ColorClassifier load(String path) throws IOException {
+
+    if (!new File(path).exists()) {
+      return null;
+    }
+
+    ColorClassifier classifier = new ColorClassifier();
+    DataInputStream in = new DataInputStream(new FileInputStream(path));
+
+    try {
+      for (int c = 1; c < ColorClassifier.CLASSES; ++c) {
+        classifier.count[c] = in.readInt();
+
+        for (int f = 0; f < ColorClassifier.FEATURES; ++f) {
+          classifier.mean[c][f] = in.readDouble();
+          classifier.m2[c][f] = in.readDouble();
+        }
+      }
+    } finally {
+      in.close();
+    }
+
+    if (!classifier.hasModel()) {
+      throw new IOException("not every color is trained in " + path);
+    }
+
+    return classifier;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Compute the features of a sample into `features`.
+   *
+   * @return false if the sample is too dark to be looking at anything
+   */
+  private boolean extractFeatures(float r, float g, float b) {
+
+    float intensity = r + g + b;
+
+    if (intensity < ColorClassifier.MIN_INTENSITY) {
+      return false;
+    }
+
+    this.features[0] = r / intensity;
+    this.features[1] = g / intensity;
+
+    return true;
+  }
+
+  /**
+   * Get the class with the highest log-likelihood.
+   */
+  private int getBest() {
+
+    int best = 1;
+
+    for (int c = 2; c < ColorClassifier.CLASSES; ++c) {
+      if (this.logLikelihood[c] > this.logLikelihood[best]) {
+        best = c;
+      }
+    }
+
+    return best;
+  }
+}
@@ -1,10 +1,17 @@
 package ca.mcgill.ecse211.finalproject;
 
+import java.io.PrintStream;
 import lejos.hardware.lcd.TextLCD;
 
 /**
  * Handles displaying information on the EV3's lcd panel
  *
+ * Every period, the lines are formatted into preallocated character buffers from lock-free
+ * snapshots of the odometer, the sensor data and the controller, and only the characters which
+ * changed since the last period are drawn. Nothing is allocated and no lock is taken, so the
+ * display never holds up the control threads; it runs at the lowest priority and the time spent
+ * rendering is measured against RENDER_BUDGET.
+ *
  * @author Josh Inscoe
  */
 public class Display extends Thread {
@@ -13,16 +20,28 @@ public class Display extends Thread {
 	// Constants
 	// --------------------------------------------------------------------------------
 	private static final long DISPLAY_PERIOD = 250;
+	private static final long RENDER_BUDGET = 2000; // microseconds per render
+	private static final int WIDTH = 18; // characters per line of the lcd
+	private static final int HEIGHT = 8; // lines of the lcd
 	private Odometer odo;
 	private SensorData sd;
 	private SensorPoller sp;
 	private MainController mc;
 	private TextLCD t;
-	
-	
+
+
 	// --------------------------------------------------------------------------------
 	// Variables
 	// --------------------------------------------------------------------------------
+	private final char[][] shown = new char[HEIGHT][WIDTH]; // what is on the lcd
+	private final char[][] next = new char[HEIGHT][WIDTH]; // what the current render formats
+	private final char[] digits = new char[20]; // scratch space to format numbers
+	private final double[] position = new double[3];
+	private int row; // where the current render writes
+	private int col;
+
+	private final LatencyHistogram renderTime = new LatencyHistogram(); // microseconds
+	private volatile int overBudget = 0; // renders longer than RENDER_BUDGET
 
 	/**
 	 * Constructor
@@ -42,6 +61,8 @@ public class Display extends Thread {
 		this.mc = mc;
 		this.sd = sd;
 		this.sp = sp;
+
+		setPriority(Thread.MIN_PRIORITY);
 	}
 
 	/**
@@ -49,35 +70,27 @@ public class Display extends Thread {
 	 */
 	public void run() {
 		long displayStart, displayEnd;
-		double[] position = new double[3];
 
 		// clear the display once
 		t.clear();
+		for (int i = 0; i < HEIGHT; i++) {
+			for (int j = 0; j < WIDTH; j++) {
+				shown[i][j] = ' ';
+			}
+		}
 
 		while (true) {
 			displayStart = System.currentTimeMillis();
 
-			// clear the lines for displaying odometry information
-			t.drawString("X:              ", 0, 0);
-			t.drawString("Y:              ", 0, 1);
-			t.drawString("T:              ", 0, 2);
-
-			// get the odometry information
-			odo.getPosition(position, new boolean[] { true, true, true });
-
-			// display odometry information
-			for (int i = 0; i < 3; i++) {
-				t.drawString(formattedDoubleToString(position[i], 2), 3, i);
+			long renderStart = System.nanoTime();
+			render();
+			long renderUs = (System.nanoTime() - renderStart) / 1000;
+			synchronized (renderTime) {
+				renderTime.record(renderUs);
+			}
+			if (renderUs > RENDER_BUDGET) {
+				overBudget++;
 			}
-
-			t.drawString("dist: " + sd.getUSDataLatest(), 0, 4);
-			t.drawString("ll: " + sd.getLLDataLatest(1), 0, 5);
-			t.drawString("lr: " + sd.getLLDataLatest(2), 0, 6);
-			t.drawString("State: " + mc.getCurState(), 0, 7);
-//			t.drawString("distance: " + ul.getDist(), 0, 4);
-//			t.drawString("Light Level: " + cp.lightl, 0, 5);
-//			t.drawString("State: " + cont.getCurrentState(), 0, 6); // Display the current state of the controller
-//			t.drawString("Sub: " + cont.getCurSubState(), 0, 7); // Display the substate.
 
 			// throttle the OdometryDisplay
 			displayEnd = System.currentTimeMillis();
@@ -94,52 +107,108 @@ public class Display extends Thread {
 	}
 
 	/**
-	 * Format a double to a String.
-	 * 
-	 * @param x
-	 *            - double to be converted
-	 * @param places
-	 *            - number of decimal places
-	 * @return double in form of String
+	 * Prints the time spent rendering.
+	 *
+	 * @param out
+	 *            where to print
 	 */
-	private static String formattedDoubleToString(double x, int places) {
-		String result = "";
-		String stack = "";
-		long t;
-
-		// put in a minus sign as needed
-		if (x < 0.0)
-			result += "-";
-
-		// put in a leading 0
-		if (-1.0 < x && x < 1.0)
-			result += "0";
-		else {
-			t = (long) x;
-			if (t < 0)
-				t = -t;
-
-			while (t > 0) {
-				stack = Long.toString(t % 10) + stack;
-				t /= 10;
+	public void dumpRenderTime(PrintStream out) {
+		synchronized (renderTime) {
+			renderTime.print(out, "[display] render", "us");
+		}
+		out.println("[display] " + overBudget + " renders over " + RENDER_BUDGET + " us");
+	}
+
+	/**
+	 * Formats every line into the `next` buffer, then draws the characters which changed.
+	 */
+	private void render() {
+		// get the odometry information
+		odo.getPositionSnapshot(position);
+
+		line(0, "X: ");
+		fixed(position[0], 2);
+		line(1, "Y: ");
+		fixed(position[1], 2);
+		line(2, "T: ");
+		fixed(position[2], 2);
+		line(3, "");
+		text(mc.getStatus());
+
+		line(4, "dist: ");
+		fixed(sd.getUSDataLatest(), 1);
+		line(5, "ll: ");
+		fixed(sd.lightLeft.getLatest(), 3);
+		line(6, "lr: ");
+		fixed(sd.lightRight.getLatest(), 3);
+		line(7, "State: ");
+		text(mc.getControllerState().name());
+
+		for (int i = 0; i < HEIGHT; i++) {
+			for (int j = 0; j < WIDTH; j++) {
+				if (next[i][j] != shown[i][j]) {
+					t.drawChar(next[i][j], j, i);
+					shown[i][j] = next[i][j];
+				}
 			}
+		}
+	}
+
+	/**
+	 * Starts formatting a line: blanks it and writes its label.
+	 */
+	private void line(int y, String label) {
+		row = y;
+		col = 0;
+		for (int j = 0; j < WIDTH; j++) {
+			next[row][j] = ' ';
+		}
+		text(label);
+	}
 
-			result += stack;
+	/**
+	 * Appends a string to the current line, cut at the edge of the lcd.
+	 */
+	private void text(String s) {
+		for (int i = 0; i < s.length() && col < WIDTH; i++) {
+			next[row][col++] = s.charAt(i);
 		}
+	}
 
-		// put the decimal, if needed
+	/**
+	 * Appends a number with a fixed number of decimal places to the current line.
+	 */
+	private void fixed(double x, int places) {
+		if (Double.isNaN(x) || Double.isInfinite(x)) {
+			text("--");
+			return;
+		}
+
+		long scale = 1;
+		for (int i = 0; i < places; i++) {
+			scale *= 10;
+		}
+		long v = Math.round(Math.abs(x) * scale);
+
+		// the digits are produced backwards, from the last decimal
+		int n = 0;
+		for (int i = 0; i < places; i++) {
+			digits[n++] = (char) ('0' + v % 10);
+			v /= 10;
+		}
 		if (places > 0) {
-			result += ".";
-
-			// put the appropriate number of decimals
-			for (int i = 0; i < places; i++) {
-				x = Math.abs(x);
-				x = x - Math.floor(x);
-				x *= 10.0;
-				result += Long.toString((long) x);
-			}
+			digits[n++] = '.';
+		}
+		do {
+			digits[n++] = (char) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0 && n < digits.length - 1);
+		if (x < 0.0 && Math.round(Math.abs(x) * scale) != 0) {
+			digits[n++] = '-';
 		}
 
-		return result;
+		while (n > 0 && col < WIDTH) {
+			next[row][col++] = digits[--n];
+		}
 	}
 }
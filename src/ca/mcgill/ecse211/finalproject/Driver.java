@@ -18,6 +18,19 @@ public class Driver {
   private EV3LargeRegulatedMotor rightMotor;
   private EV3LargeRegulatedMotor topMotor; // motor for the zip line
   private EV3MediumRegulatedMotor frontMotor; // motor for the sensors
+  private EV3LargeRegulatedMotor[] sync_motors; // motors synchronized with the left one, allocated once
+
+  // Last commands sent to the wheels, for telemetry: speed (deg/s) and direction (-1, 0 or 1).
+  private volatile float speed_left = 0.f;
+  private volatile float speed_right = 0.f;
+  private volatile int dir_left = 0;
+  private volatile int dir_right = 0;
+
+  // Geometry used to convert distances and angles to wheel rotations, may be refined by an
+  // OdometryCalibration.
+  private volatile double wheel_radius = FinalProject.WHEEL_RADIUS;
+  private volatile double wheel_base = FinalProject.WHEEL_BASE;
+  private volatile float right_mult = FinalProject.RIGHT_WHEEL_MULT;
 
   /**
    * Constructor
@@ -32,6 +45,7 @@ public class Driver {
     this.rightMotor = rightMotor;
     this.topMotor = topMotor;
     this.frontMotor = frontMotor;
+    this.sync_motors = new EV3LargeRegulatedMotor[] {rightMotor};
   }
 
   /**
@@ -40,16 +54,18 @@ public class Driver {
    * @param speed desired speed of the motor.
    */
   public void setSpeedLeftMotor(float speed) {
+    speed_left = speed;
     leftMotor.setSpeed(speed);
   }
 
   /**
-   * Set the speed of the right wheel motor
+   * Set the speed of the right wheel motor, the right wheel multiplier is applied here.
    *
    * @param speed desired speed of the motor.
    */
   public void setSpeedRightMotor(float speed) {
-    rightMotor.setSpeed(speed * FinalProject.RIGHT_WHEEL_MULT);
+    speed_right = speed;
+    rightMotor.setSpeed(rightSpeed(speed));
   }
 
   /**
@@ -61,10 +77,14 @@ public class Driver {
   public void rotate(double angle_deg, boolean inst_ret) {
     setSpeedLeftMotor(FinalProject.SPEED_ROT);
     setSpeedRightMotor(FinalProject.SPEED_ROT);
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setDirection((int) -Math.signum(angle_deg), (int) Math.signum(angle_deg));
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.rotate(-convertAngle(angle_deg), true);
-    rightMotor.rotate(convertAngle(angle_deg), inst_ret);
+    rightMotor.rotate(convertRightAngle(angle_deg), inst_ret);
     leftMotor.endSynchronization();
+    if (!inst_ret) {
+      setDirection(0, 0);
+    }
   }
 
   /**
@@ -75,18 +95,23 @@ public class Driver {
    */
   public void moveForward(double dist, boolean inst_ret) {
     setSpeedLeftMotor(FinalProject.SPEED_FWD);
-    setSpeedRightMotor(FinalProject.SPEED_FWD * FinalProject.RIGHT_WHEEL_MULT);
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setSpeedRightMotor(FinalProject.SPEED_FWD);
+    setDirection((int) Math.signum(dist), (int) Math.signum(dist));
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.rotate(convertDistance(dist), true);
-    rightMotor.rotate(convertDistance(dist), inst_ret);
+    rightMotor.rotate(convertRightDistance(dist), inst_ret);
     leftMotor.endSynchronization();
+    if (!inst_ret) {
+      setDirection(0, 0);
+    }
   }
 
   /**
    * Makes the robot move forward indefinitely,
    */
   public void endlessMoveForward() {
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setDirection(1, 1);
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.forward();
     rightMotor.forward();
     leftMotor.endSynchronization();
@@ -100,18 +125,23 @@ public class Driver {
    */
   public void moveBackward(double dist, boolean inst_ret) {
     setSpeedLeftMotor(FinalProject.SPEED_FWD);
-    setSpeedRightMotor(FinalProject.SPEED_FWD * FinalProject.RIGHT_WHEEL_MULT);
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setSpeedRightMotor(FinalProject.SPEED_FWD);
+    setDirection((int) -Math.signum(dist), (int) -Math.signum(dist));
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.rotate(-convertDistance(dist), true);
-    rightMotor.rotate(-convertDistance(dist), inst_ret);
+    rightMotor.rotate(-convertRightDistance(dist), inst_ret);
     leftMotor.endSynchronization();
+    if (!inst_ret) {
+      setDirection(0, 0);
+    }
   }
 
   /**
    * Makes the robot move backwards indefinitely,
    */
   public void endlessMoveBackward() {
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setDirection(-1, -1);
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.backward();
     rightMotor.backward();
     leftMotor.endSynchronization();
@@ -121,7 +151,8 @@ public class Driver {
    * Stops both motors.
    */
   public void stopBoth() {
-    leftMotor.synchronizeWith(new EV3LargeRegulatedMotor[] {rightMotor});
+    setDirection(0, 0);
+    leftMotor.synchronizeWith(sync_motors);
     leftMotor.stop(true);
     rightMotor.stop(true);
     leftMotor.endSynchronization();
@@ -131,6 +162,7 @@ public class Driver {
    * Stops the left wheel.
    */
   public void stopLeftWheel() {
+    dir_left = 0;
     leftMotor.stop();
   }
   
@@ -138,6 +170,7 @@ public class Driver {
    * Stops the right wheel.
    */
   public void stopRightWheel() {
+    dir_right = 0;
     rightMotor.stop();
   }
   
@@ -145,6 +178,7 @@ public class Driver {
    * Makes the left wheel go forward at half the regular speed.
    */
   public void leftMotorForward() {
+    dir_left = 1;
     leftMotor.forward();
   }
   
@@ -152,6 +186,7 @@ public class Driver {
    * Makes the right wheel go forward at half the regular speed.
    */
   public void rightMotorForward() {
+    dir_right = 1;
     rightMotor.forward();
   }
   
@@ -159,6 +194,7 @@ public class Driver {
    * Makes the left wheel go backward at half the regular speed.
    */
   public void leftMotorBackward() {
+    dir_left = -1;
     leftMotor.backward();
   }
   
@@ -166,6 +202,7 @@ public class Driver {
    * Makes the right wheel go backward at half the regular speed.
    */
   public void rightMotorBackward() {
+    dir_right = -1;
     rightMotor.backward();
   }
   
@@ -189,27 +226,142 @@ public class Driver {
    * @param angle The desired rotation angle, in degrees
    */
   public void rotateFrontMotor(int angle) {
+    rotateFrontMotor(angle, true);
+  }
+
+  /**
+   * Rotates the front motor by a certain amount.
+   *
+   * @param angle The desired rotation angle, in degrees
+   * @param inst_ret boolean, true the immediately return from the method.
+   */
+  public void rotateFrontMotor(int angle, boolean inst_ret) {
+    if (frontMotor == null) {
+      return;
+    }
     frontMotor.setSpeed(75);
-    frontMotor.rotate(angle, true);
+    frontMotor.rotate(angle, inst_ret);
+  }
+
+  /**
+   * Tells whether or not a motor is available to pan the sensors.
+   *
+   * @return true if the front motor is available.
+   */
+  public boolean hasFrontMotor() {
+    return frontMotor != null;
   }
 
   /**
-   * Avoid the obstacle in front of the robot.
+   * Tells whether or not a movement started with inst_ret set to true is still going on.
+   *
+   * @return true if one of the wheels or the front motor is moving.
+   */
+  public boolean isMoving() {
+    return leftMotor.isMoving() || rightMotor.isMoving()
+        || (frontMotor != null && frontMotor.isMoving());
+  }
+
+  /**
+   * Avoid the obstacle next to the robot. This is a P-controller wall follower: the sensor is
+   * expected to be panned to the left, towards the obstacle, and the robot keeps moving forward
+   * while steering to stay at FinalProject.AVOID_BAND_CENTER from it.
    *
    * @param dist the distance read by the ultrasonic sensor.
    */
   public void avoidObstacle(float dist) {
-    // TODO
+    // Clip the reading, no echo comes back as a very large value.
+    float error = Math.min(dist, FinalProject.AVOID_MAX_DISTANCE) - FinalProject.AVOID_BAND_CENTER;
+    float correction = 0.f;
+
+    if (Math.abs(error) > FinalProject.AVOID_BAND_WIDTH) {
+      correction = Math.min(FinalProject.AVOID_P_GAIN * Math.abs(error),
+          FinalProject.AVOID_MAX_CORRECTION);
+    }
+
+    if (error > 0) {
+      // Too far from the obstacle, steer left towards it.
+      steer(correction);
+    } else {
+      // Too close to the obstacle, steer right away from it.
+      steer(-correction);
+    }
+  }
+
+  /**
+   * Keeps moving forward while turning, by running the wheels at different speeds.
+   *
+   * @param correction the speed (deg/s) added to the right wheel and taken from the left one,
+   *        positive to turn left.
+   */
+  public void steer(float correction) {
+    setSpeedLeftMotor(FinalProject.SPEED_FWD - correction);
+    setSpeedRightMotor(FinalProject.SPEED_FWD + correction);
+    setDirection(1, 1);
+    leftMotor.forward();
+    rightMotor.forward();
+  }
+
+  /**
+   * Gets the last speed commanded to the left wheel.
+   *
+   * @return the speed, in deg/s, negative when going backward and 0 when stopped.
+   */
+  public float getLeftCommand() {
+    return speed_left * dir_left;
+  }
+
+  /**
+   * Gets the last speed commanded to the right wheel.
+   *
+   * @return the speed, in deg/s, negative when going backward and 0 when stopped.
+   */
+  public float getRightCommand() {
+    return speed_right * dir_right;
+  }
+
+  /**
+   * Set the geometry used to convert distances and angles to wheel rotations.
+   *
+   * @param wheel_radius the wheel radius, in cm
+   * @param wheel_base the wheel base, in cm
+   * @param right_mult the right wheel multiplier (see FinalProject.RIGHT_WHEEL_MULT)
+   */
+  public void setGeometry(double wheel_radius, double wheel_base, double right_mult) {
+    this.wheel_radius = wheel_radius;
+    this.wheel_base = wheel_base;
+    this.right_mult = (float) right_mult;
   }
 
   /**
    * Helper methods
    */
-  private static int convertDistance(double distance) {
-    return (int) ((180.0 * distance) / (Math.PI * FinalProject.WHEEL_RADIUS));
+  private void setDirection(int left, int right) {
+    dir_left = left;
+    dir_right = right;
+  }
+
+  int convertDistance(double distance) {
+    return (int) ((180.0 * distance) / (Math.PI * wheel_radius));
+  }
+
+  int convertAngle(double angle) {
+    return convertDistance(Math.PI * wheel_base * angle / 360.0);
+  }
+
+  /**
+   * The right wheel turns right_mult times as much as the left one to travel the same distance
+   * (the odometer divides its rotation by right_mult), at right_mult times the speed.
+   */
+  int convertRightDistance(double distance) {
+    return (int) ((180.0 * distance * right_mult) / (Math.PI * wheel_radius));
+  }
+
+  int convertRightAngle(double angle) {
+    return convertRightDistance(Math.PI * wheel_base * angle / 360.0);
   }
 
-  private static int convertAngle(double angle) {
-    return convertDistance(Math.PI * FinalProject.WHEEL_BASE * angle / 360.0);
+  float rightSpeed(float speed) {
+    return speed * right_mult;
   }
 }
\ No newline at end of file
@@ -0,0 +1,428 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * An occupancy grid over the search zone, built from ultrasonic returns.
+ *
+ * Every return adds evidence: the cell in which the echo landed is likely occupied, and the cells
+ * that the ray went through before it are likely free. Occupied cells are then clustered into
+ * block candidates, which can be ordered so that visiting all of them is as short as possible.
+ *
+ * All the storage is allocated once, so that rays can be added from the control loop.
+ *
+ * @author Joshua Inscoe
+ */
+public class EvidenceGrid {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of cells along each side of a tile
+  private static final int CELLS_PER_TILE = 3;
+
+  // The size (in centimeters) of a cell
+  private static final double CELL_SIZE = FinalProject.BOARD_TILE_LENGTH / CELLS_PER_TILE;
+
+  // The largest zone (in tiles) that the grid can cover
+  private static final int MAX_TILES = 12;
+
+  // The maximum number of cells in the grid
+  private static final int MAX_CELLS = (MAX_TILES * CELLS_PER_TILE) * (MAX_TILES * CELLS_PER_TILE);
+
+  // The number of misses that cancel out one hit
+  private static final int MISSES_PER_HIT = 3;
+
+  // The number of hits (after subtracting misses) for a cell to be considered occupied
+  private static final int OCCUPIED_THRESHOLD = 2;
+
+  // The maximum number of candidates that can be extracted
+  public static final int MAX_CANDIDATES = 16;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The lower-left corner (in centimeters) of the grid
+  private double originX;
+  private double originY;
+
+  // The number of columns and rows of the grid
+  private int columns;
+  private int rows;
+
+  // The number of hits and misses of each cell (row-major)
+  private int[] hits;
+  private int[] misses;
+
+  // The cluster to which each cell belongs (0 if none), and a stack for flood-filling them
+  private int[] labels;
+  private int[] stack;
+
+  // The extracted candidates (in tiles), their weight, and the order in which to visit them
+  private double[] candidateX;
+  private double[] candidateY;
+  private int[] candidateWeight;
+  private int[] order;
+  private int candidateCount;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   */
+  public EvidenceGrid() {
+
+    this.hits = new int[EvidenceGrid.MAX_CELLS];
+    this.misses = new int[EvidenceGrid.MAX_CELLS];
+
+    this.labels = new int[EvidenceGrid.MAX_CELLS];
+    this.stack = new int[EvidenceGrid.MAX_CELLS];
+
+    this.candidateX = new double[EvidenceGrid.MAX_CANDIDATES];
+    this.candidateY = new double[EvidenceGrid.MAX_CANDIDATES];
+    this.candidateWeight = new int[EvidenceGrid.MAX_CANDIDATES];
+    this.order = new int[EvidenceGrid.MAX_CANDIDATES];
+
+    this.reset(new Waypoint(0.0, 0.0), new Waypoint(0.0, 0.0));
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Clear the grid and make it cover the given zone.
+   *
+   * @param lowerLeft the lower-left corner (in tiles) of the zone
+   * @param upperRight the upper-right corner (in tiles) of the zone
+   */
+  public void reset(Waypoint lowerLeft, Waypoint upperRight) {
+
+    this.originX = lowerLeft.x * FinalProject.BOARD_TILE_LENGTH;
+    this.originY = lowerLeft.y * FinalProject.BOARD_TILE_LENGTH;
+
+    int maxSide = EvidenceGrid.MAX_TILES * EvidenceGrid.CELLS_PER_TILE;
+
+    this.columns = Math.min(maxSide,
+        (int)Math.round((upperRight.x - lowerLeft.x) * EvidenceGrid.CELLS_PER_TILE));
+    this.rows = Math.min(maxSide,
+        (int)Math.round((upperRight.y - lowerLeft.y) * EvidenceGrid.CELLS_PER_TILE));
+
+    this.columns = Math.max(this.columns, 0);
+    this.rows = Math.max(this.rows, 0);
+
+    for (int i = 0, n = this.columns * this.rows; i < n; ++i) {
+      this.hits[i] = 0;
+      this.misses[i] = 0;
+    }
+
+    this.candidateCount = 0;
+
+    return;
+  }
+
+  /**
+   * Add the evidence of one ultrasonic return. The ray is walked from the sensor to the echo,
+   * half a cell at a time.
+   *
+   * @param x the x-coordinate (in centimeters) of the sensor
+   * @param y the y-coordinate (in centimeters) of the sensor
+   * @param heading the direction (in radians) in which the sensor is pointing
+   * @param range the distance (in centimeters) to the echo
+   * @param maxRange returns at or beyond this distance (in centimeters) are considered to have
+   *        no echo, only the misses are recorded for them
+   */
+  public void addRay(double x, double y, double heading, double range, double maxRange) {
+
+    boolean echo = range < maxRange;
+
+    double length = echo ? range : maxRange;
+    double step = EvidenceGrid.CELL_SIZE / 2.0;
+
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+
+    int hitCell = echo ? this.cellAt(x + range * cos, y + range * sin) : -1;
+    int lastCell = -1;
+
+    // Every cell crossed before the echo is free.
+    for (double d = 0.0; d < length; d += step) {
+      int cell = this.cellAt(x + d * cos, y + d * sin);
+
+      if (cell >= 0 && cell != lastCell && cell != hitCell) {
+        ++this.misses[cell];
+      }
+
+      lastCell = cell;
+    }
+
+    if (hitCell >= 0) {
+      ++this.hits[hitCell];
+    }
+
+    return;
+  }
+
+  /**
+   * Cluster the occupied cells into block candidates. Neighbouring occupied cells (including
+   * diagonals) belong to the same block, whose position is the hit-weighted centroid of its
+   * cells.
+   *
+   * @return the number of candidates
+   */
+  public int extractCandidates() {
+
+    int n = this.columns * this.rows;
+
+    int label = 0;
+
+    this.candidateCount = 0;
+
+    for (int i = 0; i < n; ++i) {
+      this.labels[i] = 0;
+    }
+
+    for (int i = 0; i < n && this.candidateCount < EvidenceGrid.MAX_CANDIDATES; ++i) {
+      if (this.labels[i] != 0 || !this.isOccupied(i)) {
+        continue;
+      }
+
+      ++label;
+
+      double sumX = 0.0;
+      double sumY = 0.0;
+      int weight = 0;
+
+      // Flood fill the cluster.
+      int top = 0;
+      this.stack[top++] = i;
+      this.labels[i] = label;
+
+      while (top > 0) {
+        int cell = this.stack[--top];
+        int column = cell % this.columns;
+        int row = cell / this.columns;
+
+        sumX += (column + 0.5) * this.hits[cell];
+        sumY += (row + 0.5) * this.hits[cell];
+        weight += this.hits[cell];
+
+        for (int dr = -1; dr <= 1; ++dr) {
+          for (int dc = -1; dc <= 1; ++dc) {
+            int r = row + dr;
+            int c = column + dc;
+
+            if (r < 0 || r >= this.rows || c < 0 || c >= this.columns) {
+              continue;
+            }
+
+            int neighbour = r * this.columns + c;
+
+            if (this.labels[neighbour] == 0 && this.isOccupied(neighbour)) {
+              this.labels[neighbour] = label;
+              this.stack[top++] = neighbour;
+            }
+          }
+        }
+      }
+
+      int k = this.candidateCount++;
+
+      this.candidateX[k] = (this.originX + (sumX / weight) * EvidenceGrid.CELL_SIZE)
+          / FinalProject.BOARD_TILE_LENGTH;
+      this.candidateY[k] = (this.originY + (sumY / weight) * EvidenceGrid.CELL_SIZE)
+          / FinalProject.BOARD_TILE_LENGTH;
+      this.candidateWeight[k] = weight;
+      this.order[k] = k;
+    }
+
+    return this.candidateCount;
+  }
+
+  /**
+   * Order the candidates so that visiting all of them, starting from the given location, is as
+   * short as possible. The tour is built by always going to the nearest candidate, and is then
+   * improved by reversing segments of it (2-opt) as long as this makes it shorter.
+   *
+   * This should be called after calling the `extractCandidates()` method.
+   *
+   * @param x the x-coordinate (in tiles) of the starting location
+   * @param y the y-coordinate (in tiles) of the starting location
+   */
+  public void orderByDistance(double x, double y) {
+
+    int n = this.candidateCount;
+
+    // Nearest neighbour.
+    double fromX = x;
+    double fromY = y;
+
+    for (int i = 0; i < n; ++i) {
+      int best = i;
+      double bestDistance = Double.MAX_VALUE;
+
+      for (int j = i; j < n; ++j) {
+        double distance = EvidenceGrid.distance(fromX, fromY,
+            this.candidateX[this.order[j]], this.candidateY[this.order[j]]);
+
+        if (distance < bestDistance) {
+          bestDistance = distance;
+          best = j;
+        }
+      }
+
+      int swap = this.order[i];
+      this.order[i] = this.order[best];
+      this.order[best] = swap;
+
+      fromX = this.candidateX[this.order[i]];
+      fromY = this.candidateY[this.order[i]];
+    }
+
+    // 2-opt, the tour is open: it starts at (x, y) and ends at the last candidate.
+    boolean improved = true;
+
+    while (improved) {
+      improved = false;
+
+      for (int i = 0; i < n - 1; ++i) {
+        for (int j = i + 1; j < n; ++j) {
+          double ax = (i == 0) ? x : this.candidateX[this.order[i - 1]];
+          double ay = (i == 0) ? y : this.candidateY[this.order[i - 1]];
+          double bx = this.candidateX[this.order[i]];
+          double by = this.candidateY[this.order[i]];
+          double cx = this.candidateX[this.order[j]];
+          double cy = this.candidateY[this.order[j]];
+
+          double before = EvidenceGrid.distance(ax, ay, bx, by);
+          double after = EvidenceGrid.distance(ax, ay, cx, cy);
+
+          if (j < n - 1) {
+            double dx = this.candidateX[this.order[j + 1]];
+            double dy = this.candidateY[this.order[j + 1]];
+
+            before += EvidenceGrid.distance(cx, cy, dx, dy);
+            after += EvidenceGrid.distance(bx, by, dx, dy);
+          }
+
+          if (after < before - 1e-9) {
+            this.reverse(i, j);
+            improved = true;
+          }
+        }
+      }
+    }
+
+    return;
+  }
+
+  /**
+   * Get the number of candidates.
+   *
+   * @return the number of candidates extracted by the last call to `extractCandidates()`
+   */
+  public int getCandidateCount() {
+
+    return this.candidateCount;
+  }
+
+  /**
+   * Get the x-coordinate (in tiles) of the i-th candidate to visit.
+   *
+   * @param i the position of the candidate in the visiting order
+   *
+   * @return the x-coordinate of the candidate
+   */
+  public double getCandidateX(int i) {
+
+    return this.candidateX[this.order[i]];
+  }
+
+  /**
+   * Get the y-coordinate (in tiles) of the i-th candidate to visit.
+   *
+   * @param i the position of the candidate in the visiting order
+   *
+   * @return the y-coordinate of the candidate
+   */
+  public double getCandidateY(int i) {
+
+    return this.candidateY[this.order[i]];
+  }
+
+  /**
+   * Get the weight (number of hits) of the i-th candidate to visit.
+   *
+   * @param i the position of the candidate in the visiting order
+   *
+   * @return the weight of the candidate
+   */
+  public int getCandidateWeight(int i) {
+
+    return this.candidateWeight[this.order[i]];
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Get the index of the cell containing the given point.
+   *
+   * @return the index of the cell, or -1 if the point is outside of the grid
+   */
+  private int cellAt(double x, double y) {
+
+    int column = (int)Math.floor((x - this.originX) / EvidenceGrid.CELL_SIZE);
+    int row = (int)Math.floor((y - this.originY) / EvidenceGrid.CELL_SIZE);
+
+    if (column < 0 || column >= this.columns || row < 0 || row >= this.rows) {
+      return -1;
+    }
+
+    return row * this.columns + column;
+  }
+
+  /**
+   * Check whether or not there is enough evidence that a cell is occupied.
+   */
+  private boolean isOccupied(int cell) {
+
+    return this.hits[cell] * EvidenceGrid.MISSES_PER_HIT - this.misses[cell]
+        >= EvidenceGrid.OCCUPIED_THRESHOLD * EvidenceGrid.MISSES_PER_HIT;
+  }
+
+  /**
+   * Reverse the visiting order between positions `i` and `j` [inclusive].
+   */
+  private void reverse(int i, int j) {
+
+    while (i < j) {
+      int swap = this.order[i];
+      this.order[i] = this.order[j];
+      this.order[j] = swap;
+
+      ++i;
+      --j;
+    }
+
+    return;
+  }
+
+  /**
+   * Compute the distance between two points.
+   */
+  private static double distance(double ax, double ay, double bx, double by) {
+
+    double dx = bx - ax;
+    double dy = by - ay;
+
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+}
@@ -0,0 +1,222 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.PrintStream;
+
+/**
+ * The filters run, in order, on every sample of one sensor (see SampleFilter), and the time each
+ * of them takes.
+ *
+ * A chain is configured at startup from a string such as "outlier(40,3) median(3)", the stages
+ * separated by spaces (see `parse()`). The empty string is the chain that does nothing, for the
+ * sensors whose raw samples are used as they are.
+ *
+ * @author Joshua Inscoe
+ */
+public class FilterChain {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The name of the sensor, for the timing dump
+  private final String name;
+
+  // The stages, in order
+  private final SampleFilter[] stages;
+
+  // The total time (in nanoseconds) spent in each stage, and the number of samples filtered
+  private final long[] stageTime;
+  private long samples;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param name the name of the sensor
+   * @param stages the filters, in the order in which they run
+   */
+  public FilterChain(String name, SampleFilter... stages) {
+
+    this.name = name;
+    this.stages = stages;
+
+    this.stageTime = new long[stages.length];
+    this.samples = 0;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Build a chain from its description, a list of stages separated by spaces (and no spaces
+   * within a stage):
+   *
+   * - `median(n)`: median of the last n samples
+   * - `mean(n)`: mean of the last n samples
+   * - `ema(a)`: exponential moving average, with weight a for the new sample
+   * - `outlier(t,n)`: reject a sample further than t from the last one kept, at most n in a row
+   * - `hysteresis(b)`: only follow the samples once they are more than b away
+   *
+   * @param name the name of the sensor
+   * @param spec the description of the chain
+   * @param components the number of values in a sample of the sensor
+   * @return the chain
+   * @throws IllegalArgumentException if the description cannot be parsed
+   */
+  public static FilterChain parse(String name, String spec, int components) {
+
+    String trimmed = spec.trim();
+    String[] tokens = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+    SampleFilter[] stages = new SampleFilter[tokens.length];
+
+    for (int i = 0; i < tokens.length; ++i) {
+      stages[i] = FilterChain.parseStage(tokens[i], components);
+    }
+
+    return new FilterChain(name, stages);
+  }
+
+  /**
+   * Filter a sample in place, through every stage.
+   *
+   * @param sample the values of the sample, replaced by the filtered values
+   * @param count the number of values in the sample
+   */
+  public void filter(float[] sample, int count) {
+
+    if (this.stages.length == 0) {
+      return;
+    }
+
+    long before = System.nanoTime();
+
+    for (int i = 0; i < this.stages.length; ++i) {
+      this.stages[i].filter(sample, count);
+
+      long after = System.nanoTime();
+      this.stageTime[i] += after - before;
+      before = after;
+    }
+
+    ++this.samples;
+
+    return;
+  }
+
+  /**
+   * Forget every sample filtered so far, e.g. when the sensor was not polled for a while.
+   */
+  public void reset() {
+
+    for (int i = 0; i < this.stages.length; ++i) {
+      this.stages[i].reset();
+    }
+
+    return;
+  }
+
+  /**
+   * Get the number of stages.
+   *
+   * @return the number of stages
+   */
+  public int size() {
+
+    return this.stages.length;
+  }
+
+  /**
+   * Get the average time a stage takes per sample.
+   *
+   * @param i the index of the stage
+   * @return the average time (in nanoseconds), 0 if nothing was filtered yet
+   */
+  public long getAverageTime(int i) {
+
+    return (this.samples > 0) ? this.stageTime[i] / this.samples : 0;
+  }
+
+  /**
+   * Print the average cost of each stage.
+   *
+   * @param out where to print
+   */
+  public void dump(PrintStream out) {
+
+    out.println("[filter] " + this.name + ": " + this.samples + " samples");
+
+    for (int i = 0; i < this.stages.length; ++i) {
+      out.println("  " + this.stages[i] + ": " + this.getAverageTime(i) + " ns/sample");
+    }
+
+    return;
+  }
+
+  public String toString() {
+
+    StringBuilder builder = new StringBuilder();
+
+    for (int i = 0; i < this.stages.length; ++i) {
+      builder.append((i == 0) ? "" : " ").append(this.stages[i]);
+    }
+
+    return builder.toString();
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static SampleFilter parseStage(String token, int components) {
+
+    int open = token.indexOf('(');
+
+    if (open <= 0 || !token.endsWith(")")) {
+      throw new IllegalArgumentException("bad filter stage: " + token);
+    }
+
+    String kind = token.substring(0, open);
+    String[] args = token.substring(open + 1, token.length() - 1).split(",");
+
+    try {
+      if (kind.equals("median") && args.length == 1) {
+        return new SampleFilter.Median(components, FilterChain.window(args[0], token));
+      } else if (kind.equals("mean") && args.length == 1) {
+        return new SampleFilter.Mean(components, FilterChain.window(args[0], token));
+      } else if (kind.equals("ema") && args.length == 1) {
+        float alpha = Float.parseFloat(args[0].trim());
+        if (!(alpha > 0.0f && alpha <= 1.0f)) {
+          throw new IllegalArgumentException("bad filter stage: " + token);
+        }
+        return new SampleFilter.Exponential(components, alpha);
+      } else if (kind.equals("outlier") && args.length == 2) {
+        return new SampleFilter.Outlier(components, Float.parseFloat(args[0].trim()),
+            Integer.parseInt(args[1].trim()));
+      } else if (kind.equals("hysteresis") && args.length == 1) {
+        return new SampleFilter.Hysteresis(components, Float.parseFloat(args[0].trim()));
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("bad filter stage: " + token);
+    }
+
+    throw new IllegalArgumentException("unknown filter stage: " + token);
+  }
+
+  private static int window(String arg, String token) {
+
+    int window = Integer.parseInt(arg.trim());
+
+    if (window < 1) {
+      throw new IllegalArgumentException("bad filter stage: " + token);
+    }
+
+    return window;
+  }
+}
@@ -1,15 +1,21 @@
 package ca.mcgill.ecse211.finalproject;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import ca.mcgill.ecse211.WiFiClient.WifiConnection;
 import lejos.hardware.Button;
+import lejos.hardware.Sound;
 import lejos.hardware.ev3.LocalEV3;
 import lejos.hardware.lcd.TextLCD;
 import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import lejos.hardware.motor.EV3MediumRegulatedMotor;
 import lejos.hardware.port.Port;
 import lejos.hardware.sensor.EV3ColorSensor;
 import lejos.hardware.sensor.EV3UltrasonicSensor;
 import lejos.hardware.sensor.SensorModes;
 import lejos.robotics.SampleProvider;
-import lejos.robotics.filter.MeanFilter;
 
 /**
  * Main class, contains the constants, motors, sensors and the main() method.
@@ -25,14 +31,19 @@ public class FinalProject {
   // Wifi constants.
   public static final String SERVER_IP = "192.168.2.3"; // CHANGE THIS TO YOUR COMPUTER'S IP
   public static final int TEAM_NB = 6;
+  public static final String GAME_DATA_FILE = "game.dat"; // last game data, to resume after a reboot
+  public static final long MATCH_DURATION = 300000; // ms, saved game data older than this is stale
   public static final boolean ENABLE_WIFI_DEBUG = false;
   
   // Board-related constants
   public static final double BOARD_TILE_LENGTH = 30.48;
+  public static final int BOARD_SIZE = 12; // tiles per side
 
   // Odometry-related constants
   public static final double WHEEL_RADIUS = 2.1;
   public static final double WHEEL_BASE = 15.225;
+  public static final boolean FIXED_POINT_ODOMETRY = false; // integrate in Q16.16, see FixedPoint (not yet measured on the brick)
+  public static final String CALIBRATION_FILE = "calibration.bin"; // refined geometry, see OdometryCalibration
 
   // Driver-related constants
   public static final int SPEED_FWD = 175;
@@ -44,6 +55,7 @@ public class FinalProject {
   public static final int FALLING_EDGE_THRESHOLD = 50;
   public static final float LIGHT_LEVEL_THRESHOLD = 0.3f;
   public static final double LIGHT_SENSOR_OFFSET = 2.23;
+  public static final double LIGHT_SENSOR_MAX_SPREAD = WHEEL_BASE / 2; // the left and right light sensors are inside the wheels, their spread is measured while navigating (see LinePredictor)
   public static final long MOVE_TIME_THRESHOLD = 4000; // milliseconds
   public static final Waypoint DEBUG_REF_POS = new Waypoint(1, 6);
   public static final Waypoint DEBUG_START_POS = new Waypoint(1, 1);
@@ -52,6 +64,11 @@ public class FinalProject {
   
   // Poller-related constants
   public static final long SLEEP_TIME = 20;
+  public static final long MIN_SLEEP_TIME = 2; // shortest poll period (ms), when driving fast
+  public static final double LINE_SAMPLE_SPACING = 0.2; // most cm driven between two light samples
+  public static final String FILTER_LIGHT = ""; // filters of each sensor, see FilterChain.parse()
+  public static final String FILTER_COLOR = "mean(3)";
+  public static final String FILTER_ULTRASONIC = "median(3)";
   
   // Zipline-related constants
   public static final double ZIPLINE_ORIENTATION = 0.0;						// TODO this will be determined by values inputted over WiFi
@@ -60,10 +77,38 @@ public class FinalProject {
   public static final float ZIPLINE_TRAVERSAL_SPEED = 150.f;
   public static final double FLOOR_LIGHT_READING = 0.1;		// TODO: calibrate this
   public static final double FLOOR_READING_FILTER = 20;
+
+  // Search-related constants
+  public static final String COLOR_CALIBRATION_FILE = "colors.dat"; // written by ColorCalibration
   
   // Navigation-related constants
   public static final double ANGLE_THRESHOLD = Math.toRadians(1);
   public static final double DISTANCE_THRESHOLD = 1;
+  public static final boolean FIXED_POINT_NAVIGATION = false; // target distance and angle in Q16.16 (not yet measured on the brick)
+
+  // Obstacle avoidance-related constants
+  public static final float OBSTACLE_DISTANCE_THRESHOLD = 12.f; // distance (cm) at which we start avoiding
+  public static final int AVOID_SENSOR_ANGLE = 90; // angle (degrees) the sensor is panned towards the obstacle
+  public static final float AVOID_BAND_CENTER = 15.f; // distance (cm) to keep from the obstacle
+  public static final float AVOID_BAND_WIDTH = 2.f; // acceptable error (cm) around the band center
+  public static final float AVOID_P_GAIN = 6.f; // proportional gain of the wall follower
+  public static final float AVOID_MAX_CORRECTION = 100.f; // maximum speed correction (deg/s)
+  public static final float AVOID_MAX_DISTANCE = 50.f; // readings are clipped to this value (cm)
+  public static final double AVOID_MIN_PROGRESS = 5.0; // progress (cm) needed before rejoining the path
+  public static final long AVOID_TIMEOUT = 15000; // milliseconds
+  public static final float REJOIN_GAIN = 3.f; // speed correction (deg/s) per degree off the target when rejoining the path
+  public static final double REJOIN_MAX_ANGLE = 90.0; // degrees, a target further to the side is turned to in place
+
+  // Telemetry-related constants
+  public static final boolean TELEMETRY = false; // record every tick of the main controller
+  public static final String TELEMETRY_FILE = "telemetry.bin"; // decoded by TelemetryDecoder
+  public static final boolean CAPTURE = false; // log the raw sensor and tacho streams for replay
+  public static final String CAPTURE_SENSOR_FILE = "sensors.bin";
+  public static final String CAPTURE_TACHO_FILE = "tacho.bin";
+  public static final String TIMING_FILE = "timing.txt"; // state timers, dumped at the end of a run
+  public static final boolean PUBLISH = false; // stream live telemetry to TelemetryDashboard
+  public static final String DASHBOARD_IP = SERVER_IP; // the dashboard usually runs on the server
+  public static final int DASHBOARD_PORT = 5555;
 
 
   // --------------------------------------------------------------------------------
@@ -80,6 +125,10 @@ public class FinalProject {
   public static final EV3LargeRegulatedMotor zipMotor =
       new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
 
+  // Sensor motor, the ultrasonic sensor is mounted on it
+  public static final EV3MediumRegulatedMotor sensorMotor =
+      new EV3MediumRegulatedMotor(LocalEV3.get().getPort("C"));
+
   // Sensor ports
   public static final Port usPort = LocalEV3.get().getPort("S4");
   public static final Port lsPortl = LocalEV3.get().getPort("S1");
@@ -106,13 +155,22 @@ public class FinalProject {
     SampleProvider usSampleProvider = usSensor.getMode("Distance");
     SensorModes lsSensorl = new EV3ColorSensor(FinalProject.lsPortl);
     SampleProvider lsSampleProviderl = lsSensorl.getMode("Red");
-    SampleProvider lsMedianl = new MeanFilter(lsSampleProviderl, lsSampleProviderl.sampleSize());
     SensorModes lsSensorr = new EV3ColorSensor(FinalProject.lsPortr);
     SampleProvider lsSampleProviderr = lsSensorr.getMode("Red");
-    SampleProvider lsMedianr = new MeanFilter(lsSampleProviderr, lsSampleProviderr.sampleSize());
+    // The flag's color is classified from RGB samples with the model captured by ColorCalibration,
+    // without one it is checked against the "Red" mode readings in Searcher.COLORS.
+    ColorClassifier colors = null;
+    try {
+      colors = ColorClassifier.load(COLOR_CALIBRATION_FILE);
+    } catch (IOException e) {
+      System.out.println("[COLOR] Could not read " + COLOR_CALIBRATION_FILE + ": " + e.getMessage());
+    }
+    if (colors == null) {
+      System.out.println("[COLOR] No color model, run ColorCalibration. Using the Red mode table");
+      Sound.buzz();
+    }
     SensorModes lsSensorm = new EV3ColorSensor(FinalProject.lsPortm);
-    SampleProvider lsSampleProviderm = lsSensorm.getMode("Red");
-    SampleProvider lsMedianm = new MeanFilter(lsSampleProviderm, lsSampleProviderm.sampleSize());
+    SampleProvider lsSampleProviderm = lsSensorm.getMode((colors != null) ? "RGB" : "Red");
 
 
     // Create SensorData object.
@@ -121,6 +179,10 @@ public class FinalProject {
     // Create sensorPoller object
     SensorPoller sensorPoller = new SensorPoller(lsSampleProviderl, 
     		lsSampleProviderr, lsSampleProviderm, usSampleProvider, sd);
+    // Filter the samples in the poller thread, as configured by the FILTER_* constants.
+    for (int channel = 0; channel < Replayer.CHANNEL_COUNT; ++channel) {
+      sensorPoller.setFilter(channel, SensorPoller.configuredFilter(channel));
+    }
 
 
     // Create Odometer object.
@@ -128,16 +190,86 @@ public class FinalProject {
         FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
 
     Driver dr =
-        new Driver(FinalProject.leftMotor, FinalProject.rightMotor, FinalProject.zipMotor, null);
+        new Driver(FinalProject.leftMotor, FinalProject.rightMotor, FinalProject.zipMotor,
+            FinalProject.sensorMotor);
+    sensorPoller.setDriver(dr);
     UltrasonicLocalizer ul = new UltrasonicLocalizer(dr, odometer, sd);
     LightLocalizer ll = new LightLocalizer(dr, odometer, sd);
     Localizer loc = new Localizer(ul, ll, dr);   
     Navigator nav = new Navigator(dr, odometer, sd);
+    // Check the lines crossed while navigating against the odometer, measuring how far apart the
+    // left and right light sensors are from the lines they both cross.
+    LinePredictor lines = new LinePredictor(odometer, dr,
+        new double[] { LIGHT_SENSOR_OFFSET, LIGHT_SENSOR_OFFSET }, new double[] { 0.0, 0.0 });
+    lines.measureSpread(LIGHT_SENSOR_MAX_SPREAD);
+    sensorPoller.setLinePredictor(lines);
+    nav.setLinePredictor(lines);
+    // Refine the geometry from the heading fixes and the lines, starting from the previous runs.
+    OdometryCalibration calibration = null;
+    try {
+      calibration = OdometryCalibration.load(CALIBRATION_FILE, WHEEL_RADIUS, WHEEL_BASE,
+          RIGHT_WHEEL_MULT);
+    } catch (IOException e) {
+      System.out.println("[CALIBRATION] Could not read " + CALIBRATION_FILE);
+    }
+    if (calibration == null) {
+      calibration = new OdometryCalibration(WHEEL_RADIUS, WHEEL_BASE, RIGHT_WHEEL_MULT);
+    }
+    calibration.attach(odometer, dr);
+    odometer.setCalibration(calibration);
+    lines.setCalibration(calibration);
     Searcher srch = new Searcher(nav, dr, odometer, sd);
+    srch.setColorClassifier(colors);
     ZipLine zip = new ZipLine(zipMotor,odometer, dr, sd);
 
+    // Create the game data loader, it is started by the MainController.
+    GameDataLoader loader = new GameDataLoader(new GameDataSource() {
+      @SuppressWarnings("rawtypes")
+      public Map getData() throws Exception {
+        return new WifiConnection(SERVER_IP, TEAM_NB, ENABLE_WIFI_DEBUG).getData();
+      }
+    }, GAME_DATA_FILE);
+
     // Create MainController object.
-    MainController cont = new MainController(loc, ul, ll, nav, zip, srch);
+    MainController cont = new MainController(loc, ul, ll, nav, zip, srch, loader);
+
+    // Create the capture logs, the robot still runs if the files cannot be created.
+    BinaryLog sensorCapture = null;
+    BinaryLog tachoCapture = null;
+    if (CAPTURE) {
+      try {
+        sensorCapture = new BinaryLog(CAPTURE_SENSOR_FILE, Replayer.SENSOR_LOG,
+            Replayer.SENSOR_RECORD_SIZE, Replayer.CAPTURE_CAPACITY);
+        tachoCapture = new BinaryLog(CAPTURE_TACHO_FILE, Replayer.TACHO_LOG,
+            Replayer.TACHO_RECORD_SIZE, Replayer.CAPTURE_CAPACITY);
+        sensorPoller.setCapture(sensorCapture);
+        odometer.setCapture(tachoCapture);
+      } catch (IOException e) {
+        System.out.println("[CAPTURE] Could not create the capture files");
+      }
+    }
+
+    // Create the telemetry recorder, the robot still runs if the file cannot be created.
+    TelemetryRecorder recorder = null;
+    if (TELEMETRY) {
+      try {
+        recorder = new TelemetryRecorder(TELEMETRY_FILE, odometer, sd, dr);
+        cont.setRecorder(recorder);
+      } catch (IOException e) {
+        System.out.println("[TELEMETRY] Could not create " + TELEMETRY_FILE);
+      }
+    }
+    // Create the live telemetry publisher, the robot still runs without it.
+    TelemetryPublisher publisher = null;
+    if (PUBLISH) {
+      try {
+        publisher = new TelemetryPublisher(DASHBOARD_IP, DASHBOARD_PORT, odometer, sd, dr);
+        publisher.setController(cont);
+        publisher.setLogs(recorder, sensorCapture, tachoCapture);
+      } catch (IOException e) {
+        System.out.println("[PUBLISH] Could not open the socket");
+      }
+    }
     // TODO: remove display during demo/competition
     Display disp = new Display(LocalEV3.get().getTextLCD(), odometer, cont, sd, sensorPoller);
 
@@ -148,12 +280,49 @@ public class FinalProject {
     sensorPoller.start();
     odometer.start();
     disp.start();
+    if (recorder != null) {
+      recorder.start();
+    }
+    if (sensorCapture != null && tachoCapture != null) {
+      sensorCapture.start();
+      tachoCapture.start();
+    }
+    if (publisher != null) {
+      publisher.start();
+    }
 
     cont.start();
     
     // Wheel base test
     //dr.rotate(90, false);
     while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+    if (publisher != null) {
+      publisher.close();
+    }
+    if (recorder != null) {
+      recorder.close();
+    }
+    if (sensorCapture != null && tachoCapture != null) {
+      sensorCapture.close();
+      tachoCapture.close();
+    }
+    try {
+      calibration.save(CALIBRATION_FILE);
+    } catch (IOException e) {
+      System.out.println("[CALIBRATION] Could not save " + CALIBRATION_FILE);
+    }
+    try {
+      PrintStream timing = new PrintStream(new FileOutputStream(TIMING_FILE));
+      cont.dumpTimers(timing);
+      disp.dumpRenderTime(timing);
+      sensorPoller.dumpFilters(timing);
+      sensorPoller.dumpSampling(timing);
+      lines.dump(timing);
+      calibration.dump(timing);
+      timing.close();
+    } catch (IOException e) {
+      System.out.println("[TIMING] Could not create " + TIMING_FILE);
+    }
     System.exit(0);
   }
 }
@@ -0,0 +1,295 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * Fixed-point (Q16.16) arithmetic and geometry, for the code that runs at every tick on the EV3.
+ *
+ * The processor of the brick has no floating point unit, so every operation on a double is done
+ * in software, and `Math.sin()`, `Math.atan2()` and `Math.sqrt()` cost hundreds of them. A Q16.16
+ * value is an int holding the number multiplied by 2^16: lengths up to 32767 cm with a resolution
+ * of 0.15 um, and angles in radians. The trigonometric functions interpolate in tables computed
+ * once, and the square root is an integer one.
+ *
+ * The errors are below 5e-5 for `sin()` and `cos()` and below 1e-4 rad for `atan2()`, about as
+ * much as the rounding of their arguments to Q16.16, and below two units of the last place for
+ * `sqrt()` and `hypot()` (see FixedPointTest).
+ *
+ * @author Joshua Inscoe
+ */
+public class FixedPoint {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of fractional bits
+  public static final int FRACTION_BITS = 16;
+
+  // 1.0, pi, 2 pi and pi / 2 in Q16.16
+  public static final int ONE = 1 << FixedPoint.FRACTION_BITS;
+  public static final int PI = 205887;
+  public static final int TWO_PI = 411775;
+  public static final int HALF_PI = 102944;
+
+  // The number of intervals of the sine table over a full turn
+  private static final int SIN_STEPS = 1024;
+
+  // The number of intervals of the arc tangent table over [0, 1], and its number of bits
+  private static final int ATAN_BITS = 8;
+  private static final int ATAN_STEPS = 1 << FixedPoint.ATAN_BITS;
+
+  // Converts an angle in [0, 2 pi) (Q16.16) into a position in the sine table (Q16.16)
+  private static final long SIN_SCALE = Math.round(FixedPoint.SIN_STEPS / (2.0 * Math.PI)
+      * FixedPoint.ONE);
+
+  // sin() at every step of a full turn, plus one to interpolate the last step (Q16.16)
+  private static final int[] SIN_TABLE = new int[FixedPoint.SIN_STEPS + 1];
+
+  // atan() at every step of [0, 1], plus one to interpolate the last step (Q16.16)
+  private static final int[] ATAN_TABLE = new int[FixedPoint.ATAN_STEPS + 1];
+
+  static {
+    for (int i = 0; i <= FixedPoint.SIN_STEPS; ++i) {
+      FixedPoint.SIN_TABLE[i] = FixedPoint.fromDouble(Math.sin(2.0 * Math.PI * i
+          / FixedPoint.SIN_STEPS));
+    }
+
+    for (int i = 0; i <= FixedPoint.ATAN_STEPS; ++i) {
+      FixedPoint.ATAN_TABLE[i] = FixedPoint.fromDouble(Math.atan((double) i
+          / FixedPoint.ATAN_STEPS));
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  private FixedPoint() {
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Convert a double to Q16.16, rounding to the nearest value.
+   *
+   * @param value the value to convert
+   * @return the value in Q16.16
+   */
+  public static int fromDouble(double value) {
+
+    return (int) Math.round(value * FixedPoint.ONE);
+  }
+
+  /**
+   * Convert a Q16.16 value to a double.
+   *
+   * @param value the value in Q16.16
+   * @return the value
+   */
+  public static double toDouble(int value) {
+
+    return value * (1.0 / FixedPoint.ONE);
+  }
+
+  /**
+   * Multiply two Q16.16 values, rounding to the nearest value so that sums of products do not
+   * drift.
+   *
+   * @return a * b in Q16.16
+   */
+  public static int mul(int a, int b) {
+
+    return (int) (((long) a * b + (FixedPoint.ONE >> 1)) >> FixedPoint.FRACTION_BITS);
+  }
+
+  /**
+   * Divide two Q16.16 values.
+   *
+   * @return a / b in Q16.16
+   */
+  public static int div(int a, int b) {
+
+    return (int) (((long) a << FixedPoint.FRACTION_BITS) / b);
+  }
+
+  /**
+   * Bring an angle into [0, 2 pi).
+   *
+   * @param angle the angle (in radians, Q16.16)
+   * @return the same angle in [0, 2 pi)
+   */
+  public static int wrapAngle(int angle) {
+
+    angle %= FixedPoint.TWO_PI;
+
+    return (angle < 0) ? angle + FixedPoint.TWO_PI : angle;
+  }
+
+  /**
+   * Bring an angle into (-pi, pi], e.g. to turn by the smallest angle.
+   *
+   * @param angle the angle (in radians, Q16.16)
+   * @return the same angle in (-pi, pi]
+   */
+  public static int wrapAngleSigned(int angle) {
+
+    angle = FixedPoint.wrapAngle(angle);
+
+    return (angle > FixedPoint.PI) ? angle - FixedPoint.TWO_PI : angle;
+  }
+
+  /**
+   * Compute the sine of an angle.
+   *
+   * @param angle the angle (in radians, Q16.16)
+   * @return the sine (Q16.16)
+   */
+  public static int sin(int angle) {
+
+    long position = (FixedPoint.wrapAngle(angle) * FixedPoint.SIN_SCALE)
+        >> FixedPoint.FRACTION_BITS;
+
+    int i = (int) (position >> FixedPoint.FRACTION_BITS);
+    int fraction = (int) (position & (FixedPoint.ONE - 1));
+
+    if (i >= FixedPoint.SIN_STEPS) {
+      // Rounding got us to the end of the turn.
+      i = FixedPoint.SIN_STEPS - 1;
+      fraction = FixedPoint.ONE;
+    }
+
+    int a = FixedPoint.SIN_TABLE[i];
+    int b = FixedPoint.SIN_TABLE[i + 1];
+
+    return a + (int) (((long) (b - a) * fraction) >> FixedPoint.FRACTION_BITS);
+  }
+
+  /**
+   * Compute the cosine of an angle.
+   *
+   * @param angle the angle (in radians, Q16.16)
+   * @return the cosine (Q16.16)
+   */
+  public static int cos(int angle) {
+
+    return FixedPoint.sin(angle + FixedPoint.HALF_PI);
+  }
+
+  /**
+   * Compute the angle of the vector (x, y), like `Math.atan2()`.
+   *
+   * @param y the y-coordinate of the vector (in any unit, the same as x)
+   * @param x the x-coordinate of the vector
+   * @return the angle (in radians, Q16.16), in (-pi, pi], 0 for the null vector
+   */
+  public static int atan2(int y, int x) {
+
+    long ax = Math.abs((long) x);
+    long ay = Math.abs((long) y);
+
+    if (ax == 0 && ay == 0) {
+      return 0;
+    }
+
+    // Only compute the angle in the first octant, then bring it back where it belongs.
+    int angle;
+
+    if (ay <= ax) {
+      angle = FixedPoint.atanUnit((int) ((ay << FixedPoint.FRACTION_BITS) / ax));
+    } else {
+      angle = FixedPoint.HALF_PI
+          - FixedPoint.atanUnit((int) ((ax << FixedPoint.FRACTION_BITS) / ay));
+    }
+
+    if (x < 0) {
+      angle = FixedPoint.PI - angle;
+    }
+
+    return (y < 0) ? -angle : angle;
+  }
+
+  /**
+   * Compute the square root of a Q16.16 value.
+   *
+   * @param value the value (Q16.16, non-negative)
+   * @return the square root (Q16.16)
+   */
+  public static int sqrt(int value) {
+
+    return (int) FixedPoint.isqrt((long) value << FixedPoint.FRACTION_BITS);
+  }
+
+  /**
+   * Compute the length of the vector (x, y), the squares do not overflow.
+   *
+   * @param x the x-coordinate of the vector (in any fixed-point unit)
+   * @param y the y-coordinate of the vector (in the same unit)
+   * @return the length of the vector (in the same unit)
+   */
+  public static int hypot(int x, int y) {
+
+    return (int) FixedPoint.isqrt((long) x * x + (long) y * y);
+  }
+
+  /**
+   * Compute the integer square root, rounded down.
+   *
+   * @param value the value (non-negative)
+   * @return the largest integer whose square is at most `value`
+   */
+  public static long isqrt(long value) {
+
+    if (value <= 0) {
+      return 0;
+    }
+
+    long result = 0;
+
+    // The highest power of four not above the value.
+    long bit = 1L << ((63 - Long.numberOfLeadingZeros(value)) & ~1);
+
+    // One bit of the result at a time, from the most significant one.
+    while (bit != 0) {
+      if (value >= result + bit) {
+        value -= result + bit;
+        result = (result >> 1) + bit;
+      } else {
+        result >>= 1;
+      }
+      bit >>= 2;
+    }
+
+    return result;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Compute the arc tangent of a value in [0, 1].
+   *
+   * @param t the value (Q16.16)
+   * @return the arc tangent (in radians, Q16.16)
+   */
+  private static int atanUnit(int t) {
+
+    int shift = FixedPoint.FRACTION_BITS - FixedPoint.ATAN_BITS;
+
+    int i = t >> shift;
+    int fraction = t & ((1 << shift) - 1);
+
+    if (i >= FixedPoint.ATAN_STEPS) {
+      return FixedPoint.ATAN_TABLE[FixedPoint.ATAN_STEPS];
+    }
+
+    int a = FixedPoint.ATAN_TABLE[i];
+    int b = FixedPoint.ATAN_TABLE[i + 1];
+
+    return a + (((b - a) * fraction) >> shift);
+  }
+}
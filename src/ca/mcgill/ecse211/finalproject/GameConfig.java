@@ -0,0 +1,255 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The parameters of a game, as sent by the server, parsed once into typed fields.
+ *
+ * A configuration is immutable. It is parsed from the map returned by the server (`fromMap()`),
+ * and can be saved to a file and loaded back, so that a robot rebooted during a match can resume
+ * without the server (see GameDataLoader).
+ *
+ * @author Joshua Inscoe
+ */
+public class GameConfig {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The keys sent by the server, in the order in which they are stored
+  private static final String[] KEYS = {
+      "RedTeam", "GreenTeam", "RedCorner", "GreenCorner", "OG", "OR",
+      "Red_LL_x", "Red_LL_y", "Red_UR_x", "Red_UR_y",
+      "Green_LL_x", "Green_LL_y", "Green_UR_x", "Green_UR_y",
+      "ZC_R_x", "ZC_R_y", "ZO_R_x", "ZO_R_y", "ZC_G_x", "ZC_G_y", "ZO_G_x", "ZO_G_y",
+      "SH_LL_x", "SH_LL_y", "SH_UR_x", "SH_UR_y", "SV_LL_x", "SV_LL_y", "SV_UR_x", "SV_UR_y",
+      "SG_LL_x", "SG_LL_y", "SG_UR_x", "SG_UR_y", "SR_LL_x", "SR_LL_y", "SR_UR_x", "SR_UR_y"
+  };
+
+  // Magic number at the start of a saved configuration ("DPMG")
+  private static final int MAGIC = 0x44504D47;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The values of the keys, in the order of KEYS
+  private final int[] values;
+
+  // The time at which the configuration was received from the server (ms, wall clock)
+  private final long receivedAt;
+
+  // The team numbers, starting corners and flag colors
+  public final int redTeam;
+  public final int greenTeam;
+  public final int redCorner;
+  public final int greenCorner;
+  public final int og;
+  public final int or;
+
+  // The zones, zip line and river (in tiles)
+  public final Waypoint redLL;
+  public final Waypoint redUR;
+  public final Waypoint greenLL;
+  public final Waypoint greenUR;
+  public final Waypoint zcR;
+  public final Waypoint zoR;
+  public final Waypoint zcG;
+  public final Waypoint zoG;
+  public final Waypoint shLL;
+  public final Waypoint shUR;
+  public final Waypoint svLL;
+  public final Waypoint svUR;
+  public final Waypoint sgLL;
+  public final Waypoint sgUR;
+  public final Waypoint srLL;
+  public final Waypoint srUR;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param values the values of the keys, in the order of KEYS
+   * @param receivedAt the time at which the configuration was received
+   */
+  private GameConfig(int[] values, long receivedAt) {
+
+    this.values = values;
+    this.receivedAt = receivedAt;
+
+    this.redTeam = values[0];
+    this.greenTeam = values[1];
+    this.redCorner = values[2];
+    this.greenCorner = values[3];
+    this.og = values[4];
+    this.or = values[5];
+
+    this.redLL = this.waypoint(6);
+    this.redUR = this.waypoint(8);
+    this.greenLL = this.waypoint(10);
+    this.greenUR = this.waypoint(12);
+    this.zcR = this.waypoint(14);
+    this.zoR = this.waypoint(16);
+    this.zcG = this.waypoint(18);
+    this.zoG = this.waypoint(20);
+    this.shLL = this.waypoint(22);
+    this.shUR = this.waypoint(24);
+    this.svLL = this.waypoint(26);
+    this.svUR = this.waypoint(28);
+    this.sgLL = this.waypoint(30);
+    this.sgUR = this.waypoint(32);
+    this.srLL = this.waypoint(34);
+    this.srUR = this.waypoint(36);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Parse the map sent by the server.
+   *
+   * @param data the map, whose values are numbers
+   * @return the configuration
+   * @throws IllegalArgumentException if a key is missing or is not a number
+   */
+  @SuppressWarnings("rawtypes")
+  public static GameConfig fromMap(Map data) {
+
+    if (data == null) {
+      throw new IllegalArgumentException("no game data");
+    }
+
+    int[] values = new int[GameConfig.KEYS.length];
+
+    for (int i = 0; i < GameConfig.KEYS.length; ++i) {
+      Object value = data.get(GameConfig.KEYS[i]);
+
+      if (!(value instanceof Number)) {
+        throw new IllegalArgumentException("bad game data: " + GameConfig.KEYS[i] + "=" + value);
+      }
+
+      values[i] = ((Number) value).intValue();
+    }
+
+    return new GameConfig(values, System.currentTimeMillis());
+  }
+
+  /**
+   * Save the configuration to a file.
+   *
+   * @param path the path of the file
+   * @throws IOException if the file cannot be written
+   */
+  public void save(String path) throws IOException {
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(path));
+
+    try {
+      out.writeInt(GameConfig.MAGIC);
+      out.writeLong(this.receivedAt);
+      out.writeInt(this.values.length);
+
+      for (int i = 0; i < this.values.length; ++i) {
+        out.writeInt(this.values[i]);
+      }
+    } finally {
+      out.close();
+    }
+
+    return;
+  }
+
+  /**
+   * Load a configuration from a file, if it exists.
+   *
+   * @param path the path of the file
+   * @return the configuration, or null if there is no such file
+   * @throws IOException if the file cannot be read or is not a configuration
+   */
+  public static GameConfig load(String path) throws IOException {
+
+    if (!new File(path).exists()) {
+      return null;
+    }
+
+    DataInputStream in = new DataInputStream(new FileInputStream(path));
+
+    try {
+      if (in.readInt() != GameConfig.MAGIC) {
+        throw new IOException("not a game configuration: " + path);
+      }
+
+      long receivedAt = in.readLong();
+
+      if (in.readInt() != GameConfig.KEYS.length) {
+        throw new IOException("unexpected number of keys in " + path);
+      }
+
+      int[] values = new int[GameConfig.KEYS.length];
+
+      for (int i = 0; i < values.length; ++i) {
+        values[i] = in.readInt();
+      }
+
+      return new GameConfig(values, receivedAt);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Get the time at which the configuration was received from the server.
+   *
+   * @return the time (in milliseconds, System.currentTimeMillis())
+   */
+  public long getReceivedAt() {
+
+    return this.receivedAt;
+  }
+
+  /**
+   * Check whether we play on the red team.
+   *
+   * @param team our team number
+   * @return true if we are on the red team, false otherwise
+   */
+  public boolean isRed(int team) {
+
+    return this.redTeam == team;
+  }
+
+  /**
+   * Get the starting corner of our team.
+   *
+   * @param team our team number
+   * @return the starting corner (0 to 3)
+   */
+  public int getCorner(int team) {
+
+    return this.isRed(team) ? this.redCorner : this.greenCorner;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private Waypoint waypoint(int index) {
+
+    return new Waypoint(this.values[index], this.values[index + 1]);
+  }
+}
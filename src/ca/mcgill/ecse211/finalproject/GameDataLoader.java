@@ -0,0 +1,209 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads the game data in the background, so that the robot can start localizing while the server
+ * has not sent it yet.
+ *
+ * The loader asks its source for the data until it gets a valid configuration, waiting
+ * RETRY_DELAY between two failed attempts. The configuration is saved to a file as soon as it is
+ * received, so that a robot rebooted during the match can resume from it (see `loadSaved()`).
+ *
+ * @author Joshua Inscoe
+ */
+public class GameDataLoader extends Thread {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of failed attempts after which the source is considered unreachable
+  public static final int ATTEMPTS = 5;
+
+  // The interval (in milliseconds) between two attempts
+  private static final long RETRY_DELAY = 1000;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Where the data comes from, and where the configuration is saved
+  private final GameDataSource source;
+  private final String path;
+
+  // The configuration, once received
+  private volatile GameConfig config;
+
+  // The number of failed attempts so far
+  private volatile int failures;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * Call `start()` to start loading.
+   *
+   * @param source where the game data comes from
+   * @param path the path of the file in which the configuration is saved, or null
+   */
+  public GameDataLoader(GameDataSource source, String path) {
+
+    this.source = source;
+    this.path = path;
+
+    this.config = null;
+    this.failures = 0;
+
+    this.setDaemon(true);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * run() method, asks the source for the data until it gets a valid configuration.
+   */
+  public void run() {
+
+    while (this.config == null) {
+      GameConfig received = null;
+
+      try {
+        received = GameConfig.fromMap(this.source.getData());
+      } catch (Exception e) {
+        ++this.failures;
+        System.out.println("[GAMEDATA] Attempt " + this.failures + " failed: " + e.getMessage());
+      }
+
+      if (received != null) {
+        this.save(received);
+
+        synchronized (this) {
+          this.config = received;
+          this.notifyAll();
+        }
+      } else {
+        try {
+          Thread.sleep(GameDataLoader.RETRY_DELAY);
+        } catch (InterruptedException e) {
+          // ...
+        }
+      }
+    }
+
+    return;
+  }
+
+  /**
+   * Wait for the configuration.
+   *
+   * @param timeout the maximum time to wait (in milliseconds)
+   * @return the configuration, or null if it was not received in time
+   */
+  public synchronized GameConfig await(long timeout) {
+
+    long deadline = System.currentTimeMillis() + timeout;
+
+    while (this.config == null) {
+      long remaining = deadline - System.currentTimeMillis();
+
+      if (remaining <= 0) {
+        break;
+      }
+
+      try {
+        this.wait(remaining);
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+
+    return this.config;
+  }
+
+  /**
+   * Get the configuration, without waiting.
+   *
+   * @return the configuration, or null if it was not received yet
+   */
+  public GameConfig getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * Get the number of failed attempts so far.
+   *
+   * @return the number of failures
+   */
+  public int getFailures() {
+
+    return this.failures;
+  }
+
+  /**
+   * Load the configuration saved by a previous run, if there is one.
+   *
+   * @return the saved configuration, or null if there is none (or it cannot be read)
+   */
+  public GameConfig loadSaved() {
+
+    if (this.path == null) {
+      return null;
+    }
+
+    try {
+      return GameConfig.load(this.path);
+    } catch (IOException e) {
+      System.out.println("[GAMEDATA] Could not read " + this.path + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+
+  /**
+   * Delete the saved configuration, once the match it was for is over.
+   */
+  public void clearSaved() {
+
+    if (this.path == null) {
+      return;
+    }
+
+    if (new File(this.path).exists() && !new File(this.path).delete()) {
+      System.out.println("[GAMEDATA] Could not delete " + this.path);
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private void save(GameConfig received) {
+
+    if (this.path == null) {
+      return;
+    }
+
+    try {
+      received.save(this.path);
+    } catch (IOException e) {
+      // The robot can play without it, it only cannot resume after a reboot.
+      System.out.println("[GAMEDATA] Could not save " + this.path);
+    }
+
+    return;
+  }
+}
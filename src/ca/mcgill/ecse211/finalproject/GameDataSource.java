@@ -0,0 +1,20 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.util.Map;
+
+/**
+ * Where the game data comes from: the server on the robot, a stand-in in the tests.
+ *
+ * @author Joshua Inscoe
+ */
+public interface GameDataSource {
+
+  /**
+   * Get the game data, blocking until it is available.
+   *
+   * @return the map of the game parameters, whose values are numbers
+   * @throws Exception if the data cannot be received
+   */
+  @SuppressWarnings("rawtypes")
+  Map getData() throws Exception;
+}
@@ -0,0 +1,215 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.PrintStream;
+
+/**
+ * A histogram of durations with a fixed memory footprint.
+ *
+ * Like HdrHistogram, the buckets are log-linear: every power of two is split into SUB_BUCKETS
+ * linear buckets, so that any value is recorded with a relative error below 1 / SUB_BUCKETS,
+ * from a microsecond to hours, in a few kilobytes. Recording a value is a handful of integer
+ * operations and never allocates.
+ *
+ * A histogram is meant to be written by a single thread. Reading it from another thread while it
+ * is being written gives approximate results, which is good enough for a display.
+ *
+ * @author Joshua Inscoe
+ */
+public class LatencyHistogram {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of linear buckets per power of two (a power of two itself)
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  // The number of powers of two covered above SUB_BUCKETS, larger values are clamped
+  private static final int MAGNITUDES = 40;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  private final long[] counts;
+
+  private long count;
+  private long sum;
+  private long min;
+  private long max;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   */
+  public LatencyHistogram() {
+
+    this.counts = new long[(LatencyHistogram.MAGNITUDES + 2) * LatencyHistogram.SUB_BUCKETS];
+
+    this.reset();
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Record a value.
+   *
+   * @param value the value (e.g. a duration in microseconds), negative values count as zero
+   */
+  public void record(long value) {
+
+    if (value < 0) {
+      value = 0;
+    }
+
+    ++this.counts[LatencyHistogram.indexOf(value)];
+
+    ++this.count;
+    this.sum += value;
+
+    if (value < this.min) {
+      this.min = value;
+    }
+    if (value > this.max) {
+      this.max = value;
+    }
+
+    return;
+  }
+
+  /**
+   * Forget all the recorded values.
+   */
+  public void reset() {
+
+    for (int i = 0; i < this.counts.length; ++i) {
+      this.counts[i] = 0;
+    }
+
+    this.count = 0;
+    this.sum = 0;
+    this.min = Long.MAX_VALUE;
+    this.max = 0;
+
+    return;
+  }
+
+  public long getCount() {
+
+    return this.count;
+  }
+
+  public long getMin() {
+
+    return (this.count > 0) ? this.min : 0;
+  }
+
+  public long getMax() {
+
+    return this.max;
+  }
+
+  public long getTotal() {
+
+    return this.sum;
+  }
+
+  public double getMean() {
+
+    return (this.count > 0) ? (double) this.sum / this.count : 0.0;
+  }
+
+  /**
+   * Get the value below which a given percentage of the recorded values fall.
+   *
+   * @param percentile the percentage, from 0 to 100
+   * @return the value (the upper bound of its bucket, never more than the maximum)
+   */
+  public long getValueAtPercentile(double percentile) {
+
+    long rank = (long) Math.ceil(percentile / 100.0 * this.count);
+    if (rank < 1) {
+      rank = 1;
+    }
+
+    long seen = 0;
+
+    for (int i = 0; i < this.counts.length; ++i) {
+      seen += this.counts[i];
+      if (seen >= rank) {
+        return Math.min(LatencyHistogram.upperBoundOf(i), this.max);
+      }
+    }
+
+    return this.max;
+  }
+
+  /**
+   * Print a one-line summary of the histogram.
+   *
+   * @param out where to print
+   * @param name the name of the histogram
+   * @param unit the unit of the values
+   */
+  public void print(PrintStream out, String name, String unit) {
+
+    out.println(name + ": n=" + this.count + " min=" + this.getMin() + " p50="
+        + this.getValueAtPercentile(50) + " p90=" + this.getValueAtPercentile(90) + " p99="
+        + this.getValueAtPercentile(99) + " max=" + this.max + " total=" + this.sum + " " + unit);
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Get the index of the bucket of a (non-negative) value.
+   *
+   * Values below SUB_BUCKETS have a bucket of their own. Above, a value whose highest bit is at
+   * position SUB_BUCKET_BITS + shift falls in the linear bucket given by its SUB_BUCKET_BITS + 1
+   * highest bits.
+   */
+  private static int indexOf(long value) {
+
+    if (value < LatencyHistogram.SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - LatencyHistogram.SUB_BUCKET_BITS;
+
+    if (shift > LatencyHistogram.MAGNITUDES) {
+      return (LatencyHistogram.MAGNITUDES + 2) * LatencyHistogram.SUB_BUCKETS - 1;
+    }
+
+    int sub = (int) (value >>> shift) - LatencyHistogram.SUB_BUCKETS;
+
+    return (shift + 1) * LatencyHistogram.SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Get the largest value which falls in a bucket.
+   */
+  private static long upperBoundOf(int index) {
+
+    if (index < LatencyHistogram.SUB_BUCKETS) {
+      return index;
+    }
+
+    int shift = index / LatencyHistogram.SUB_BUCKETS - 1;
+    int sub = index % LatencyHistogram.SUB_BUCKETS;
+
+    return ((long) (LatencyHistogram.SUB_BUCKETS + sub + 1) << shift) - 1;
+  }
+}
@@ -65,10 +65,7 @@ public class LightLocalizer {
         : MainController.greenTeamStart)) {
       start_corner = 0;
       
-      double ang = Math.toRadians(45) - odo.getTheta();
-      if (ang < -Math.toRadians(180)) {
-        ang = Math.toRadians(360) + ang;
-      }
+      double ang = Angles.normalizeSigned(Math.toRadians(45) - odo.getTheta());
       dr.rotate(Math.toDegrees(ang), false); // align to 45
       dr.moveBackward(10, false);
     } else {
@@ -93,24 +90,22 @@ public class LightLocalizer {
     } else {
       align_ang = start_corner * Math.toRadians(90) - odo.getTheta();
     }
-    if (align_ang < -Math.toRadians(180)) {
-      align_ang = Math.toRadians(360) + align_ang;
-    }
+    align_ang = Angles.normalizeSigned(align_ang);
     dr.rotate(Math.toDegrees(align_ang), false); // align to 0
 
     dr.setSpeedLeftMotor(FinalProject.SPEED_FWD / 1.5f);
     dr.setSpeedRightMotor(FinalProject.SPEED_FWD / 1.5f);
     dr.endlessMoveForward();
-    started_moving_t = System.currentTimeMillis();
+    started_moving_t = Clock.millis();
     while (!(found_y && found_x)) {
       if (start_corner == 0 || start_corner == 2) {
         if (!found_y) {
-          if (sd.getLLDataLatest(1) < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
+          if (sd.lightLeft.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
             // Left sensor hit the line.
             dr.stopLeftWheel();
             left_stopped = true;
           }
-          if (sd.getLLDataLatest(2) < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
+          if (sd.lightRight.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
             // Right sensor hit the line.
             dr.stopRightWheel();
             right_stopped = true;
@@ -121,7 +116,7 @@ public class LightLocalizer {
             left_stopped = false;
             right_stopped = false;
             odo.setX(ref_pos.x * FinalProject.BOARD_TILE_LENGTH - x_pos_mult * FinalProject.LIGHT_SENSOR_OFFSET);
-            odo.setTheta(0 + start_corner * Math.toRadians(90));
+            odo.fixHeading(0 + start_corner * Math.toRadians(90));
           }
         } else if (found_y && !found_x) {
           if (!turned) {
@@ -131,15 +126,15 @@ public class LightLocalizer {
             dr.setSpeedLeftMotor(FinalProject.SPEED_FWD / 1.5f);
             dr.setSpeedRightMotor(FinalProject.SPEED_FWD / 1.5f);
             dr.endlessMoveForward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = true;
           }
-          if (sd.getLLDataLatest(1) < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
+          if (sd.lightLeft.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
             // Left sensor hit the line.
             dr.stopLeftWheel();
             left_stopped = true;
           }
-          if (sd.getLLDataLatest(2) < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
+          if (sd.lightRight.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
             dr.stopRightWheel();
             right_stopped = true;
           }
@@ -149,18 +144,18 @@ public class LightLocalizer {
             left_stopped = false;
             right_stopped = false;
             odo.setY(ref_pos.y * FinalProject.BOARD_TILE_LENGTH - y_pos_mult * FinalProject.LIGHT_SENSOR_OFFSET);
-            odo.setTheta(Math.toRadians(90 + start_corner * 90));
+            odo.fixHeading(Math.toRadians(90 + start_corner * 90));
           }
         }
       } else if (start_corner == 1 || start_corner == 3) {
         // Reverse order, hard coded crap but it works
         if (!found_x) {
-          if (sd.getLLDataLatest(1) < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
+          if (sd.lightLeft.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
             // Left sensor hit the line.
             dr.stopLeftWheel();
             left_stopped = true;
           }
-          if (sd.getLLDataLatest(2) < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
+          if (sd.lightRight.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
             // Right sensor hit the line.
             dr.stopRightWheel();
             right_stopped = true;
@@ -171,7 +166,7 @@ public class LightLocalizer {
             left_stopped = false;
             right_stopped = false;
             odo.setY(ref_pos.y * FinalProject.BOARD_TILE_LENGTH - y_pos_mult * FinalProject.LIGHT_SENSOR_OFFSET);
-            odo.setTheta(0 + start_corner * Math.toRadians(90));
+            odo.fixHeading(0 + start_corner * Math.toRadians(90));
           }
         } else if (found_x && !found_y) {
           if (!turned) {
@@ -181,15 +176,15 @@ public class LightLocalizer {
             dr.setSpeedLeftMotor(FinalProject.SPEED_FWD / 1.5f);
             dr.setSpeedRightMotor(FinalProject.SPEED_FWD / 1.5f);
             dr.endlessMoveForward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = true;
           }
-          if (sd.getLLDataLatest(1) < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
+          if (sd.lightLeft.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !left_stopped) {
             // Left sensor hit the line.
             dr.stopLeftWheel();
             left_stopped = true;
           }
-          if (sd.getLLDataLatest(2) < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
+          if (sd.lightRight.getLatest() < FinalProject.LIGHT_LEVEL_THRESHOLD && !right_stopped) {
             dr.stopRightWheel();
             right_stopped = true;
           }
@@ -199,7 +194,7 @@ public class LightLocalizer {
             left_stopped = false;
             right_stopped = false;
             odo.setX(ref_pos.x * FinalProject.BOARD_TILE_LENGTH - x_pos_mult * FinalProject.LIGHT_SENSOR_OFFSET);
-            odo.setTheta(Math.toRadians(90 + start_corner * 90));
+            odo.fixHeading(Math.toRadians(90 + start_corner * 90));
           }
         }
       }
@@ -213,17 +208,17 @@ public class LightLocalizer {
        * The speed gradually increases as the robot changes direction to deal with the case where it is stuck between two lines.
        */
       if ((!found_y || !found_x)
-          && System.currentTimeMillis() - started_moving_t > FinalProject.MOVE_TIME_THRESHOLD) {
+          && Clock.millis() - started_moving_t > FinalProject.MOVE_TIME_THRESHOLD) {
         if (left_stopped && !right_stopped) {
           if (forward) {
             dr.setSpeedRightMotor(175);
             dr.rightMotorBackward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = false;
           } else {
             dr.setSpeedRightMotor(175);
             dr.rightMotorForward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = true;
           }
         }
@@ -232,12 +227,12 @@ public class LightLocalizer {
           if (forward) {
             dr.setSpeedLeftMotor(175);
             dr.leftMotorBackward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = false;
           } else {
             dr.setSpeedLeftMotor(175);
             dr.leftMotorForward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = true;
           }
         }
@@ -247,13 +242,13 @@ public class LightLocalizer {
             dr.setSpeedLeftMotor(150 + 25 * error_counter++);
             dr.setSpeedRightMotor(150 + 25 * error_counter++);
             dr.endlessMoveBackward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = false;
           } else {
             dr.setSpeedLeftMotor(150 + 25 * error_counter++);
             dr.setSpeedRightMotor(150 + 25 * error_counter++);
             dr.endlessMoveForward();
-            started_moving_t = System.currentTimeMillis();
+            started_moving_t = Clock.millis();
             forward = true;
           }
         }
@@ -284,20 +279,14 @@ public class LightLocalizer {
   private double getReferenceAngle() {
     double error = 8.0;
     double theta = Math.toDegrees(odo.getTheta());
-    if (theta + error >= 0 && theta - error <= 0) {
-      return 0;
-    } else if (theta + error >= 360 && theta - error <= 360) {
-      return 0;
-    } else if (theta + error >= 90 && theta - error <= 90) {
-      return 90;
-    } else if (theta + error >= 180 && theta - error <= 180) {
-      return 180;
-    } else if (theta + error >= 270 && theta - error <= 270) {
-      return 270;
-    } else {
-      // Make the robot align to 0.
-      dr.rotate(-theta, false);
-      return 0;
+    for (int reference = 0; reference < 360; reference += 90) {
+      if (Math.abs(Angles.normalizeSignedDegrees(theta - reference)) <= error) {
+        return reference;
+      }
     }
+
+    // Make the robot align to 0.
+    dr.rotate(-Angles.normalizeSignedDegrees(theta), false);
+    return 0;
   }
 }
@@ -0,0 +1,678 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.PrintStream;
+
+/**
+ * Predicts where the light sensors cross the lines of the board while the robot drives straight,
+ * so that they are only polled around the expected crossings, and a line that is missed or seen
+ * where none was expected is flagged right away.
+ *
+ * The lines are at every multiple of BOARD_TILE_LENGTH in x and in y. From the pose given by the
+ * odometer and the direction in which the robot drives, each sensor is given the first line ahead
+ * of it as a target, with a window around it: WINDOW_MARGIN, plus WINDOW_GROWTH of the distance
+ * driven since that sensor last saw a line, for the drift of the odometry. A line seen inside the window
+ * is a hit, and its distance to the target is the error of the odometry across that line. Driving
+ * past the window without seeing the line is a miss, and a line seen outside of any window is
+ * spurious. The lines which are nearly parallel to the direction of the robot are not predicted,
+ * a sensor could drive along them.
+ *
+ * The SensorPoller calls `update()` at every iteration and polls the light sensors while it
+ * returns true, then hands the samples to `check()`. The predictor only runs while enabled (see
+ * `setEnabled()`, the Navigator enables it for the duration of a path), and stays idle while the
+ * robot turns.
+ *
+ * Two lines hit by the same sensor in a straight run are a known distance apart, which is given to
+ * the OdometryCalibration, if any, with the wheel rotations between them.
+ *
+ * The lateral offsets of two sensors can be measured rather than given (see `measureSpread()`):
+ * when both hit the same line at an angle, how far apart the robot was at the two hits tells how
+ * far apart the sensors are. Until then, the windows are widened by how far off the offsets can be
+ * across the target lines, which is nothing when the robot drives square to them.
+ *
+ * @author Joshua Inscoe
+ */
+public class LinePredictor {
+
+  // --------------------------------------------------------------------------------
+  // Enums
+  // --------------------------------------------------------------------------------
+
+  /**
+   * What a light sample or an update tells about the expected lines.
+   */
+  public enum Event {
+    NONE, HIT, MISSED, SPURIOUS
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // Half-width (in cm) of the window around an expected line, right after a line was seen
+  static final double WINDOW_MARGIN = 2.0;
+
+  // Growth of the half-width of the windows, per cm driven since a line was last seen
+  static final double WINDOW_GROWTH = 0.05;
+
+  // Lines are not predicted when the robot drives at less than about 12 degrees from them (the
+  // sine of that angle)
+  private static final double PARALLEL_LIMIT = 0.2;
+
+  // Largest relative difference between the wheel commands for which the robot drives straight
+  private static final float STRAIGHT_TOLERANCE = 0.02f;
+
+  // The distance between two lines is only given to the calibration when the robot crosses them at
+  // less than about 25 degrees from square (the cosine of that angle), as it depends on the heading
+  private static final double SQUARE_LIMIT = 0.9;
+
+  // The spread of the sensors is only measured on lines crossed at more than about 15 degrees from
+  // square (the sine of that angle), closer to square the measurement is too sensitive to noise
+  private static final double SPREAD_ANGLE_LIMIT = 0.25;
+
+  // The number of measurements of the spread before the offsets given to `measureSpread()` are
+  // replaced
+  static final int SPREAD_SAMPLES = 3;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Where the pose and the direction of the robot come from (may be null when testing)
+  private final Odometer odometer;
+  private final Driver driver;
+
+  // The position of each sensor relative to the center of the robot (in cm): ahead of it, and to
+  // its left
+  private final double[] forward;
+  private final double[] lateral;
+
+  // Whether each sensor has a target line, whether it is the line x = line * BOARD_TILE_LENGTH (or
+  // y = ...), and the direction (1 or -1) in which the coordinate of the sensor goes towards it
+  private final boolean[] tracking;
+  private final boolean[] vertical;
+  private final int[] line;
+  private final int[] sign;
+
+  // Distance (in cm) left to the target line of each sensor, negative once past it
+  private final double[] remaining;
+
+  // Whether each sensor was over a line at its latest sample
+  private final boolean[] dark;
+
+  // The pose of the robot, filled at every update
+  private final Pose pose;
+
+  // Where the robot was when each sensor last saw a line (in cm)
+  private final double[] originX;
+  private final double[] originY;
+
+  // The current half-width of the window of each sensor (in cm)
+  private final double[] window;
+
+  // The direction in which the robot drives: 1 forward, -1 backward, 0 turning or stopped
+  private int direction;
+
+  // Whether the predictor runs, and whether it was just enabled
+  private volatile boolean enabled;
+  private volatile boolean restart;
+
+  // What happened so far
+  private volatile int hits;
+  private volatile int misses;
+  private volatile int spurious;
+  private volatile double lastError;
+  private volatile Event lastEvent;
+  private double errorSum;
+
+  // Where the distances between lines go (may be null)
+  private volatile OdometryCalibration calibration;
+
+  // Largest error (in cm) of the lateral offsets, 0 once they are known
+  private double lateralError;
+
+  // Whether the spread of the sensors is measured, the largest spread it can be (in cm), and the
+  // sum and number of the measurements of the distance between the two sensors
+  private boolean measuring;
+  private double spreadBound;
+  private double spreadSum;
+  private int spreadCount;
+
+  // Whether each sensor hit a line in the current straight run, which one, and the tacho counts
+  // of the wheels then
+  private final boolean[] seen;
+  private final boolean[] seenVertical;
+  private final int[] seenLine;
+  private final int[] seenTachoLeft;
+  private final int[] seenTachoRight;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param odometer the odometer of the robot
+   * @param driver the driver of the robot, gives the direction in which it drives
+   * @param forward the distance of each sensor ahead of the center of the robot (in cm)
+   * @param lateral the distance of each sensor to the left of the center of the robot (in cm)
+   */
+  public LinePredictor(Odometer odometer, Driver driver, double[] forward, double[] lateral) {
+
+    if (forward.length != lateral.length) {
+      throw new IllegalArgumentException("One forward and one lateral offset per sensor");
+    }
+
+    int n = forward.length;
+
+    this.odometer = odometer;
+    this.driver = driver;
+    this.forward = forward.clone();
+    this.lateral = lateral.clone();
+
+    this.tracking = new boolean[n];
+    this.vertical = new boolean[n];
+    this.line = new int[n];
+    this.sign = new int[n];
+    this.remaining = new double[n];
+    this.dark = new boolean[n];
+    this.originX = new double[n];
+    this.originY = new double[n];
+    this.window = new double[n];
+
+    this.lateralError = 0.0;
+    this.measuring = false;
+
+    this.seen = new boolean[n];
+    this.seenVertical = new boolean[n];
+    this.seenLine = new int[n];
+    this.seenTachoLeft = new int[n];
+    this.seenTachoRight = new int[n];
+
+    this.pose = new Pose();
+    this.direction = 0;
+    this.enabled = false;
+    this.restart = false;
+
+    this.lastEvent = Event.NONE;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Start or stop predicting. The predictions start over from the current pose.
+   *
+   * @param enabled true to predict the lines
+   */
+  public void setEnabled(boolean enabled) {
+
+    this.restart = enabled;
+    this.enabled = enabled;
+
+    return;
+  }
+
+  public boolean isEnabled() {
+
+    return this.enabled;
+  }
+
+  /**
+   * Measure the lateral offsets of the two sensors instead of relying on the ones given to the
+   * constructor: they are taken to be symmetric about the middle of the robot, at most `bound`
+   * from it. Until SPREAD_SAMPLES measurements are made, the sensors are predicted at the offsets
+   * given to the constructor, with windows widened by how far off they can be.
+   *
+   * @param bound the largest distance (in cm) of a sensor from the middle of the robot
+   */
+  public void measureSpread(double bound) {
+
+    if (this.forward.length != 2) {
+      throw new IllegalArgumentException("The spread is measured between two sensors");
+    }
+
+    this.measuring = true;
+    this.spreadBound = bound;
+    this.spreadSum = 0.0;
+    this.spreadCount = 0;
+    this.lateralError = bound + Math.max(Math.abs(this.lateral[0]), Math.abs(this.lateral[1]));
+
+    return;
+  }
+
+  /**
+   * Get the distance between the two sensors, as measured so far.
+   *
+   * @return the distance (in cm) from the right sensor to the left one, NaN if not measured
+   */
+  public double getSpread() {
+
+    return (this.spreadCount > 0) ? this.spreadSum / this.spreadCount : Double.NaN;
+  }
+
+  /**
+   * Give the distances between the lines hit to a calibration.
+   *
+   * @param calibration the calibration, or null
+   */
+  public void setCalibration(OdometryCalibration calibration) {
+
+    this.calibration = calibration;
+
+    return;
+  }
+
+  /**
+   * Update the predictions with the pose from the odometer and the wheel commands from the driver.
+   *
+   * @return true if a sensor is inside its window, i.e. the light sensors should be polled
+   */
+  public boolean update() {
+
+    if (!this.enabled) {
+      this.direction = 0;
+      return false;
+    }
+
+    return this.update(this.odometer.getPose(this.pose), this.motionDirection());
+  }
+
+  /**
+   * Update the predictions.
+   *
+   * @param current the pose of the robot
+   * @param direction 1 if the robot drives forward, -1 backward, 0 if it turns or is stopped
+   * @return true if a sensor is inside its window
+   */
+  boolean update(Pose current, int direction) {
+
+    if (this.restart) {
+      this.restart = false;
+      for (int i = 0; i < this.forward.length; ++i) {
+        this.originX[i] = current.x;
+        this.originY[i] = current.y;
+      }
+    }
+
+    if (direction != this.direction) {
+      // The targets are only valid for one straight run.
+      this.clearTargets();
+      this.direction = direction;
+    }
+
+    if (direction == 0) {
+      return false;
+    }
+
+    this.pose.set(current.x, current.y, current.theta);
+
+    boolean open = false;
+
+    for (int i = 0; i < this.forward.length; ++i) {
+      this.window[i] = LinePredictor.WINDOW_MARGIN + LinePredictor.WINDOW_GROWTH
+          * Math.hypot(current.x - this.originX[i], current.y - this.originY[i]);
+
+      if (!this.tracking[i]) {
+        this.target(i);
+      }
+
+      if (!this.tracking[i]) {
+        continue;
+      }
+
+      this.window[i] += this.lateralSlack(i);
+      this.remaining[i] = this.distanceToTarget(i);
+
+      if (this.remaining[i] < -this.window[i]) {
+        // Past the window, and the line was not seen.
+        this.misses++;
+        this.report(i, Event.MISSED);
+        this.target(i);
+        if (!this.tracking[i]) {
+          continue;
+        }
+        this.remaining[i] = this.distanceToTarget(i);
+      }
+
+      if (Math.abs(this.remaining[i]) <= this.window[i]) {
+        open = true;
+      }
+    }
+
+    return open;
+  }
+
+  /**
+   * Check a light sample of a sensor against its prediction. Only the moment the sensor gets over
+   * a line counts, not the samples while it stays over it.
+   *
+   * @param sensor the index of the sensor, as given to the constructor
+   * @param level the light level of the sample
+   * @return HIT if a line was seen inside the window, SPURIOUS outside of it, NONE otherwise
+   */
+  public Event check(int sensor, float level) {
+
+    boolean line = level < FinalProject.LIGHT_LEVEL_THRESHOLD;
+    boolean edge = line && !this.dark[sensor];
+
+    this.dark[sensor] = line;
+
+    if (!edge || this.direction == 0) {
+      return Event.NONE;
+    }
+
+    if (this.tracking[sensor] && Math.abs(this.remaining[sensor]) <= this.window[sensor]) {
+      this.hits++;
+      this.lastError = this.remaining[sensor];
+      this.errorSum += Math.abs(this.remaining[sensor]);
+      this.report(sensor, Event.HIT);
+      this.observeSpread(sensor);
+      this.measure(sensor);
+
+      // The drift starts over, and the next target is past this line.
+      this.originX[sensor] = this.pose.x;
+      this.originY[sensor] = this.pose.y;
+      this.window[sensor] = LinePredictor.WINDOW_MARGIN;
+      this.target(sensor);
+
+      return Event.HIT;
+    }
+
+    this.spurious++;
+    this.report(sensor, Event.SPURIOUS);
+
+    return Event.SPURIOUS;
+  }
+
+  /**
+   * Get the distance between the latest line seen and its prediction, i.e. how far off the
+   * odometry is across that line.
+   *
+   * @return the distance (in cm), positive if the line was seen before it was expected
+   */
+  public double getLastError() {
+
+    return this.lastError;
+  }
+
+  public Event getLastEvent() {
+
+    return this.lastEvent;
+  }
+
+  public int getHits() {
+
+    return this.hits;
+  }
+
+  public int getMisses() {
+
+    return this.misses;
+  }
+
+  public int getSpurious() {
+
+    return this.spurious;
+  }
+
+  /**
+   * Print what the predictor saw so far.
+   *
+   * @param out where to print
+   */
+  public void dump(PrintStream out) {
+
+    double meanError = (this.hits > 0) ? this.errorSum / this.hits : 0.0;
+
+    out.println("Lines: " + this.hits + " hits (mean error " + meanError + " cm), " + this.misses
+        + " missed, " + this.spurious + " spurious");
+
+    if (this.measuring) {
+      out.println("  sensor spread: " + this.getSpread() + " cm over " + this.spreadCount
+          + " measurements");
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Tell in which direction the robot drives from the commands of the driver.
+   */
+  private int motionDirection() {
+
+    if (this.driver == null) {
+      return 0;
+    }
+
+    float left = this.driver.getLeftCommand();
+    float right = this.driver.getRightCommand();
+    float limit = LinePredictor.STRAIGHT_TOLERANCE * Math.max(Math.abs(left), Math.abs(right));
+
+    if (left == 0.0f || Math.abs(left - right) > limit) {
+      return 0;
+    }
+
+    return (left > 0.0f) ? 1 : -1;
+  }
+
+  /**
+   * Give a sensor the first line ahead of it farther than the window, and past its previous target,
+   * so that the line it is on (or just saw) is not its target again.
+   */
+  private void target(int i) {
+
+    boolean had = this.tracking[i];
+    boolean wasVertical = this.vertical[i];
+    int previous = this.line[i];
+
+    double cos = Math.cos(this.pose.theta);
+    double sin = Math.sin(this.pose.theta);
+
+    // The position of the sensor, and the direction in which it moves.
+    double sx = this.pose.x + this.forward[i] * cos - this.lateral[i] * sin;
+    double sy = this.pose.y + this.forward[i] * sin + this.lateral[i] * cos;
+    double mx = this.direction * cos;
+    double my = this.direction * sin;
+
+    double tile = FinalProject.BOARD_TILE_LENGTH;
+    double best = Double.POSITIVE_INFINITY;
+
+    this.tracking[i] = false;
+
+    if (Math.abs(mx) > LinePredictor.PARALLEL_LIMIT) {
+      int s = (mx > 0.0) ? 1 : -1;
+      int k = LinePredictor.nextLine(sx, this.window[i], s, had && wasVertical, previous);
+      double along = (k * tile - sx) / mx;
+
+      if (along < best) {
+        best = along;
+        this.tracking[i] = true;
+        this.vertical[i] = true;
+        this.line[i] = k;
+        this.sign[i] = s;
+      }
+    }
+
+    if (Math.abs(my) > LinePredictor.PARALLEL_LIMIT) {
+      int s = (my > 0.0) ? 1 : -1;
+      int k = LinePredictor.nextLine(sy, this.window[i], s, had && !wasVertical, previous);
+      double along = (k * tile - sy) / my;
+
+      if (along < best) {
+        this.tracking[i] = true;
+        this.vertical[i] = false;
+        this.line[i] = k;
+        this.sign[i] = s;
+      }
+    }
+
+    return;
+  }
+
+  /**
+   * Find the first line farther than `window` from a coordinate, in the direction `s`, and past
+   * the line `previous` if `skip` is set.
+   *
+   * @return the index of the line (its coordinate over BOARD_TILE_LENGTH)
+   */
+  private static int nextLine(double position, double window, int s, boolean skip, int previous) {
+
+    double tile = FinalProject.BOARD_TILE_LENGTH;
+
+    if (s > 0) {
+      int k = (int) Math.floor((position + window) / tile) + 1;
+      return skip ? Math.max(k, previous + 1) : k;
+    }
+
+    int k = (int) Math.ceil((position - window) / tile) - 1;
+    return skip ? Math.min(k, previous - 1) : k;
+  }
+
+  /**
+   * Compute how far a sensor still is from its target line, across the line.
+   */
+  private double distanceToTarget(int i) {
+
+    double cos = Math.cos(this.pose.theta);
+    double sin = Math.sin(this.pose.theta);
+
+    if (this.vertical[i]) {
+      double sx = this.pose.x + this.forward[i] * cos - this.lateral[i] * sin;
+      return (this.line[i] * FinalProject.BOARD_TILE_LENGTH - sx) * this.sign[i];
+    }
+
+    double sy = this.pose.y + this.forward[i] * sin + this.lateral[i] * cos;
+    return (this.line[i] * FinalProject.BOARD_TILE_LENGTH - sy) * this.sign[i];
+  }
+
+  private void clearTargets() {
+
+    for (int i = 0; i < this.tracking.length; ++i) {
+      this.tracking[i] = false;
+      this.seen[i] = false;
+    }
+
+    return;
+  }
+
+  /**
+   * Give the distance from the previous line hit by a sensor to the one it just hit, if both are
+   * in the same straight run and parallel, to the calibration, and remember the line.
+   */
+  private void measure(int i) {
+
+    OdometryCalibration calibration = this.calibration;
+    boolean tachos = this.odometer != null;
+
+    int tachoLeft = tachos ? this.odometer.getLeftMotorTachoCount() : 0;
+    int tachoRight = tachos ? this.odometer.getRightMotorTachoCount() : 0;
+
+    double across = this.vertical[i] ? Math.cos(this.pose.theta) : Math.sin(this.pose.theta);
+
+    if (calibration != null && tachos && this.seen[i] && this.seenVertical[i] == this.vertical[i]
+        && this.seenLine[i] != this.line[i] && Math.abs(across) >= LinePredictor.SQUARE_LIMIT) {
+      double travelled = this.direction * Math.abs(this.line[i] - this.seenLine[i])
+          * FinalProject.BOARD_TILE_LENGTH / Math.abs(across);
+
+      calibration.observeDistance(tachoLeft - this.seenTachoLeft[i],
+          tachoRight - this.seenTachoRight[i], travelled);
+    }
+
+    this.seen[i] = true;
+    this.seenVertical[i] = this.vertical[i];
+    this.seenLine[i] = this.line[i];
+    this.seenTachoLeft[i] = tachoLeft;
+    this.seenTachoRight[i] = tachoRight;
+
+    return;
+  }
+
+  /**
+   * Measure the spread of the sensors, if the other sensor hit the same line in this straight run.
+   * Both were on the line at their hit: across the line, the robot moved by as much as the lateral
+   * offsets of the sensors differ along the line.
+   */
+  private void observeSpread(int i) {
+
+    int j = 1 - i;
+
+    if (!this.measuring || !this.seen[j] || this.seenVertical[j] != this.vertical[i]
+        || this.seenLine[j] != this.line[i]) {
+      return;
+    }
+
+    // Across the line: the moves of the robot since the other hit, and of the lateral axis of the
+    // robot (from the right sensor towards the left one).
+    double moved;
+    double lateral;
+
+    if (this.vertical[i]) {
+      moved = this.pose.x - this.originX[j];
+      lateral = -Math.sin(this.pose.theta);
+    } else {
+      moved = this.pose.y - this.originY[j];
+      lateral = Math.cos(this.pose.theta);
+    }
+
+    if (Math.abs(lateral) < LinePredictor.SPREAD_ANGLE_LIMIT) {
+      return;
+    }
+
+    // lateral[i] - lateral[j], then from the right sensor (1) to the left one (0).
+    double spread = -moved / lateral * ((i == 0) ? 1.0 : -1.0);
+
+    if (spread <= 0.0 || spread > 2.0 * this.spreadBound) {
+      return;
+    }
+
+    this.spreadSum += spread;
+    this.spreadCount++;
+
+    if (this.spreadCount >= LinePredictor.SPREAD_SAMPLES) {
+      double mean = this.spreadSum / this.spreadCount;
+      this.lateral[0] = mean / 2.0;
+      this.lateral[1] = -mean / 2.0;
+      this.lateralError = 0.0;
+    }
+
+    return;
+  }
+
+  /**
+   * Compute how far the position of a sensor across its target line can be off, from the error of
+   * its lateral offset.
+   */
+  private double lateralSlack(int i) {
+
+    if (this.lateralError == 0.0) {
+      return 0.0;
+    }
+
+    double across = this.vertical[i] ? Math.sin(this.pose.theta) : Math.cos(this.pose.theta);
+
+    return this.lateralError * Math.abs(across);
+  }
+
+  private void report(int sensor, Event event) {
+
+    this.lastEvent = event;
+
+    if (FinalProject.DEBUG) {
+      System.out.println("[LINES] " + event + " sensor " + sensor + " at (" + this.pose.x + ", "
+          + this.pose.y + ")");
+    }
+
+    return;
+  }
+}
@@ -30,6 +30,8 @@ public class Localizer {
   }
 
   private Loc_State cur_state = Loc_State.IDLE;
+  // Times every state (dwell time and processing time of each tick).
+  private StateTimer<Loc_State> timer = new StateTimer<Loc_State>("localizer", Loc_State.class);
 
   /**
    * Constructor
@@ -53,6 +55,8 @@ public class Localizer {
    * @return current state, as a string.
    */
    String process() {
+      long tick_start = System.nanoTime();
+      Loc_State prev_state = cur_state;
       switch (cur_state) {
         case IDLE:
           cur_state = process_idle();
@@ -77,6 +81,7 @@ public class Localizer {
        * Space reserved for special cases, shouldn't be needed here.
        */
       
+      timer.tick(prev_state, cur_state, tick_start, System.nanoTime());
       return cur_state.toString(); // return the current Loc_State as a string (controller sub-state)
   }
 
@@ -165,4 +170,22 @@ public class Localizer {
   public boolean isDone() {
     return done;
   }
-}
\ No newline at end of file
+
+  /**
+   * Gets the current state of the localizer.
+   *
+   * @return the current state.
+   */
+  Loc_State getState() {
+    return cur_state;
+  }
+
+  /**
+   * Gets the timer of the states of the localizer.
+   *
+   * @return the state timer.
+   */
+  StateTimer<Loc_State> getTimer() {
+    return timer;
+  }
+}
@@ -1,8 +1,6 @@
 package ca.mcgill.ecse211.finalproject;
 
-import java.util.Map;
-import ca.mcgill.ecse211.WiFiClient.WifiConnection;
-import lejos.hardware.Button;
+import java.io.PrintStream;
 import lejos.hardware.Sound;
 
 /**
@@ -20,6 +18,12 @@ public class MainController extends Thread {
     IDLE, LOCALIZING, NAVIGATING, ZIPLINING, SEARCHING
   }
 
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  static final long TICK_PERIOD = 40; // Period of the controller, in milliseconds.
+
   // --------------------------------------------------------------------------------
   // Game data
   // --------------------------------------------------------------------------------
@@ -52,8 +56,8 @@ public class MainController extends Thread {
   static Waypoint SG_LL; // lower left corner of green search zone.
   static Waypoint SG_UR; // upper right corner of green search zone.
 
-  static Waypoint[] riverPath; // Path from the red zone to the green zone through the river.
-  static Waypoint[] zipPath; // Path from the green starting corner to the zip line.
+  static PathBuffer riverPath; // Path from the red zone to the green zone through the river.
+  static PathBuffer zipPath; // Path to the zip line.
 
   // --------------------------------------------------------------------------------
   // Variables
@@ -65,17 +69,24 @@ public class MainController extends Thread {
   private Navigator nav;
   private ZipLine zip;
   private Searcher srch;
+  private GameDataLoader loader;
+  private MissionPlan plan = null; // Compiled from the game data.
+  private int step = 0; // Index of the step of the plan being executed.
+  private long match_end = Long.MAX_VALUE; // Time at which the match ends (ms, see Clock).
 
-  private State cur_state = State.IDLE; // Current state of the controller
+  private volatile State cur_state = State.IDLE; // Current state of the controller
+  private volatile String status = ""; // What the controller waits for, shown on the display.
   private String sub_state = null; // D_State of the currently executing subsystem
 
+  private TelemetryRecorder recorder = null; // Records every tick, if set.
+  private volatile int last_tick_us = 0; // Duration of the last tick (us), for the live telemetry.
+  private volatile int overruns = 0; // Number of ticks which took longer than TICK_PERIOD.
+  private StateTimer<State> timer = new StateTimer<State>("controller", State.class); // Times each state.
+
   // --------------------------------------------------------------------------------
   // Flags
   // --------------------------------------------------------------------------------
 
-  private boolean initial_loc_done = false;
-  private boolean zipline_loc_done = false;
-  private boolean traversed_zipline = false;
   private boolean finished_demo = false;
 
   /**
@@ -88,15 +99,17 @@ public class MainController extends Thread {
    *        avoiding obstacles.
    * @param zip Zipline controller, handles crossing the zip line.
    * @param srch Searcher object, works with the navigator to look for the 'flag'.
+   * @param loader GameDataLoader object, loads the game data from the server (not started yet).
    */
   public MainController(Localizer loc, UltrasonicLocalizer ul, LightLocalizer ll, Navigator nav,
-      ZipLine zip, Searcher srch) {
+      ZipLine zip, Searcher srch, GameDataLoader loader) {
     this.loc = loc;
     this.ul = ul;
     this.ll = ll;
     this.nav = nav;
     this.zip = zip;
     this.srch = srch;
+    this.loader = loader;
   }
 
 
@@ -105,20 +118,38 @@ public class MainController extends Thread {
    */
   public void run() {
     /*
-     * Get the game data from the server before doing anything.
+     * Get the game data from the server before doing anything else than measuring the heading.
      */
-    getGameData();
+    setGameData(getGameData());
 
     while (true) {
+      long tick_start = System.nanoTime();
       process();
+      int tick_us = (int) ((System.nanoTime() - tick_start) / 1000);
+      last_tick_us = tick_us;
+      if (tick_us > TICK_PERIOD * 1000) {
+        overruns++;
+      }
+      if (recorder != null) {
+        recorder.record(cur_state, getSubStateOrdinal(), tick_us);
+      }
       try {
-        Thread.sleep(40);
+        Thread.sleep(TICK_PERIOD);
       } catch (Exception e) {
         // ...
       }
     }
   }
 
+  /**
+   * Sets the recorder to which every tick of the controller is logged.
+   *
+   * @param recorder TelemetryRecorder, or null to stop recording.
+   */
+  public void setRecorder(TelemetryRecorder recorder) {
+    this.recorder = recorder;
+  }
+
   /**
    * Root of the robot's state machine. The current state of the robot is processed at every
    * iteration of the run() loop. Depending on the current state, the process method of the
@@ -128,6 +159,8 @@ public class MainController extends Thread {
    * everything is essentially done is the same thread.
    */
   private void process() {
+    long tick_start = System.nanoTime();
+    State prev_state = cur_state;
     switch (cur_state) {
       case IDLE:
         cur_state = process_idle();
@@ -147,6 +180,7 @@ public class MainController extends Thread {
       default:
         break;
     }
+    timer.tick(prev_state, cur_state, tick_start, System.nanoTime());
   }
 
   /**
@@ -155,11 +189,10 @@ public class MainController extends Thread {
    * @return new state, or same one if no goal.
    */
   private State process_idle() {
-    loc.setRefPos(is_red ? redTeamStart : greenTeamStart); // initial localization.
-    if (finished_demo) {
+    if (finished_demo || plan == null || !plan.isValid()) {
       return State.IDLE;
     }
-    return State.LOCALIZING;
+    return beginStep();
   }
 
   /**
@@ -172,55 +205,9 @@ public class MainController extends Thread {
                                // localizers.
 
     if (loc.isDone()) {
-      if (!initial_loc_done) {
-        initial_loc_done = true;
-        // Set a path depending on our current team.
-        if (is_red) {
-          nav.setPath(riverPath);
-        } else {
-          nav.setPath(zipPath);
-        }
-        return State.NAVIGATING;
-      }
-
-      if (initial_loc_done && !zipline_loc_done && !is_red) {
-        zipline_loc_done = true;
-        nav.setPath(new Waypoint[] {ZO_G});
-        return State.NAVIGATING;
-      }
-
-      if (traversed_zipline) {
-        if (is_red) {
-          // That means we are basically done.
-          nav.setPath(new Waypoint[] {new Waypoint(ZO_R.x, redTeamStart.y), redTeamStart}); // probably
-                                                                                            // needs
-                                                                                            // more
-                                                                                            // waypoints
-                                                                                            // (or
-                                                                                            // different.
-        } else {
-          if (ZO_R.x == ZO_G.x) {
-            if (SR_UR.y < ZO_R.y) {
-              // avoid hitting the base of the zip line.
-              nav.setPath(new Waypoint[] {
-                  new Waypoint(ZO_R.x + (ZO_R.x < SR_UR.x ? 1 : -1), ZO_R.y), new Waypoint(SR_UR.x - 0.5, SR_UR.y - 0.5)});
-            } else {
-              nav.setPath(new Waypoint[] {new Waypoint(ZO_R.x, SR_UR.y), new Waypoint(SR_UR.x - 0.5, SR_UR.y - 0.5)});
-            }
-          } else {
-            // This case already takes care of that.
-            nav.setPath(new Waypoint[] {new Waypoint(ZO_R.x, SR_UR.y), new Waypoint(SR_UR.x - 0.5, SR_UR.y - 0.5)});
-          }
-        }
-        return State.NAVIGATING;
-      }
-    } else {
-      // Not done yet.
-      return State.LOCALIZING;
+      return nextStep();
     }
-
-    // This is going to be a fallthrough.
-    return State.IDLE;
+    return State.LOCALIZING;
   }
 
   /**
@@ -232,33 +219,9 @@ public class MainController extends Thread {
     sub_state = nav.process();
 
     if (nav.isDone()) {
-      if (is_red) {
-        if (initial_loc_done) {
-          // The river was crossed, move to searching
-          return State.SEARCHING;
-        }
-      } else {
-        if (initial_loc_done && !zipline_loc_done) {
-          loc.setRefPos(ZO_G);
-          return State.LOCALIZING;
-        }
-        if (initial_loc_done && zipline_loc_done && !traversed_zipline) {
-          return State.ZIPLINING;
-        }
-        if (initial_loc_done && zipline_loc_done && traversed_zipline) {
-          Sound.beepSequenceUp();
-          Button.waitForAnyPress();
-          finished_demo = true;
-          return State.IDLE;
-        }
-      }
-    } else {
-      return State.NAVIGATING;
+      return nextStep();
     }
-
-    // fallthrough
-    System.out.println("[MAINCONTROLLER] NAVIGATION state fallthrough.");
-    return State.IDLE;
+    return State.NAVIGATING;
   }
 
   /**
@@ -270,12 +233,9 @@ public class MainController extends Thread {
     sub_state = zip.process();
 
     if (zip.isDone()) {
-      traversed_zipline = true;
-      loc.setRefPos(ZO_R); // Set the reference position to after the zip line, in the red zone.
-      return State.LOCALIZING;
-    } else {
-      return State.ZIPLINING;
+      return nextStep();
     }
+    return State.ZIPLINING;
   }
 
   /**
@@ -285,150 +245,255 @@ public class MainController extends Thread {
    * @return new state, or same one if not done.
    */
   private State process_searching() {
-    // TODO: Implement the Searcher class.
-//    sub_state = srch.process();
+    sub_state = srch.process(); // the searcher drives the navigator itself.
+
+    if (srch.isDone()) {
+      if (!srch.isFound()) {
+        System.out.println("[SEARCH] Flag not found, moving on.");
+      }
+      return nextStep();
+    }
+    return State.SEARCHING;
+  }
 
-//    if (srch.isDone()) {
-//      // Check for various conditions
-//    } else {
-//      return State.SEARCHING;
-//    }
+  /**
+   * Ends the current step of the plan and starts the next one.
+   *
+   * @return the state which executes the next step.
+   */
+  private State nextStep() {
+    plan.end(step, Clock.millis());
+    step++;
+    return beginStep();
+  }
 
-    // This is going to be a fallthrough.
-    return State.IDLE;
+  /**
+   * Starts the current step of the plan: hands its parameters to the subsystem which executes it.
+   * Everything was computed when the plan was compiled, nothing is allocated here (the plan of the
+   * search path is cached by the searcher).
+   *
+   * @return the state which executes the step.
+   */
+  private State beginStep() {
+    MissionStep s = plan.getStep(step);
+    plan.begin(step, Clock.millis());
+
+    switch (s.type) {
+      case LOCALIZE:
+        loc.setRefPos(s.reference);
+        return State.LOCALIZING;
+      case NAVIGATE:
+        nav.setPath(s.path);
+        return State.NAVIGATING;
+      case ZIPLINE:
+        return State.ZIPLINING;
+      case SEARCH:
+        srch.setEnemyZone(s.enemyLL, s.enemyUR);
+        srch.setSearchZone(s.zoneLL, s.zoneUR);
+        srch.setLocation(s.reference);
+        srch.setFlagColor(s.color);
+        srch.computeSearchPath();
+        // Give up in time to do the rest of the plan before the end of the match.
+        srch.setDeadline(match_end - plan.getEstimateAfter(step));
+        return State.SEARCHING;
+      default:
+        // DONE
+        plan.end(step, Clock.millis());
+        // The saved game data is only for resuming this match, not for the next round.
+        loader.clearSaved();
+        Sound.beepSequenceUp();
+        finished_demo = true;
+        return State.IDLE;
+    }
   }
 
   /**
-   * Establishes the connection with the server and updates the game variables in order to get the
-   * state machine going.
+   * Gets the game data. A configuration saved before a reboot during this match is used right
+   * away. Otherwise the loader is started and the heading of the robot is measured while the data
+   * is loading, as the measurement does not depend on it. The display shows how many attempts
+   * failed while waiting.
+   *
+   * @return the game configuration.
    */
-  private void getGameData() {
-    WifiConnection conn = new WifiConnection(FinalProject.SERVER_IP, FinalProject.TEAM_NB,
-        FinalProject.ENABLE_WIFI_DEBUG);
-    try {
-      @SuppressWarnings("rawtypes")
-      Map data = conn.getData();
-      assert (data != null);
-
-      RedTeam = ((Long) data.get("RedTeam")).intValue();
-      GreenTeam = ((Long) data.get("GreenTeam")).intValue();
-      RedCorner = ((Long) data.get("RedCorner")).intValue();
-      GreenCorner = ((Long) data.get("GreenCorner")).intValue();
-      OG = ((Long) data.get("OG")).intValue();
-      OR = ((Long) data.get("OR")).intValue();
-      Red_LL = new Waypoint(((Long) data.get("Red_LL_x")).intValue(),
-          ((Long) data.get("Red_LL_y")).intValue());
-      Red_UR = new Waypoint(((Long) data.get("Red_UR_x")).intValue(),
-          ((Long) data.get("Red_UR_y")).intValue());
-      Green_LL = new Waypoint(((Long) data.get("Green_LL_x")).intValue(),
-          ((Long) data.get("Green_LL_y")).intValue());
-      Green_UR = new Waypoint(((Long) data.get("Green_UR_x")).intValue(),
-          ((Long) data.get("Green_UR_y")).intValue());
-      ZC_R = new Waypoint(((Long) data.get("ZC_R_x")).intValue(),
-          ((Long) data.get("ZC_R_y")).intValue());
-      ZO_R = new Waypoint(((Long) data.get("ZO_R_x")).intValue(),
-          ((Long) data.get("ZO_R_y")).intValue());
-      ZC_G = new Waypoint(((Long) data.get("ZC_G_x")).intValue(),
-          ((Long) data.get("ZC_G_y")).intValue());
-      ZO_G = new Waypoint(((Long) data.get("ZO_G_x")).intValue(),
-          ((Long) data.get("ZO_G_y")).intValue());
-      SH_LL = new Waypoint(((Long) data.get("SH_LL_x")).intValue(),
-          ((Long) data.get("SH_LL_y")).intValue());
-      SH_UR = new Waypoint(((Long) data.get("SH_UR_x")).intValue(),
-          ((Long) data.get("SH_UR_y")).intValue());
-      SV_LL = new Waypoint(((Long) data.get("SV_LL_x")).intValue(),
-          ((Long) data.get("SV_LL_y")).intValue());
-      SV_UR = new Waypoint(((Long) data.get("SV_UR_x")).intValue(),
-          ((Long) data.get("SV_UR_y")).intValue());
-      SG_LL = new Waypoint(((Long) data.get("SG_LL_x")).intValue(),
-          ((Long) data.get("SG_LL_y")).intValue());
-      SG_UR = new Waypoint(((Long) data.get("SG_UR_x")).intValue(),
-          ((Long) data.get("SG_UR_y")).intValue());
-      SR_LL = new Waypoint(((Long) data.get("SR_LL_x")).intValue(),
-          ((Long) data.get("SR_LL_y")).intValue());
-      SR_UR = new Waypoint(((Long) data.get("SR_UR_x")).intValue(),
-          ((Long) data.get("SR_UR_y")).intValue());
-
-      if (RedTeam == FinalProject.TEAM_NB) {
-        is_red = true;
-      } else if (GreenTeam == FinalProject.TEAM_NB) {
-        is_red = false;
-      }
+  private GameConfig getGameData() {
+    GameConfig saved = loader.loadSaved();
+    if (saved != null && isCurrentMatch(saved, System.currentTimeMillis())) {
+      System.out.println("[GAMEDATA] Resuming with the saved game data.");
+      return saved;
+    }
 
-      /*
-       * Generate the river path. - TODO: ADD MORE OPTIONS IN CASE YOU HAVE TO GO UP OR DOWN. Might
-       * need to account for search zone potentially in the way. (or avoid it)
-       */
-      if (SH_LL.x == Red_UR.x) {
-        // River starts with the horizontal segment and is to the right of the red zone
-        if (SV_LL.y == SH_LL.y) {
-          riverPath = new Waypoint[] {new Waypoint(SH_LL.x, SH_LL.y + 0.5),
-              new Waypoint(SH_UR.x - 0.5, SH_UR.y - 0.5), new Waypoint(SV_UR.x - 0.5, SV_UR.y)};
-        } else {
-          riverPath = new Waypoint[] {new Waypoint(SH_LL.x, SH_LL.y + 0.5),
-              new Waypoint(SH_UR.x - 0.5, SH_UR.y - 0.5), new Waypoint(SV_LL.x - 0.5, SV_LL.y)};
-        }
-      } else if (SV_UR.y == Red_LL.y) {
-        // River starts with the vertical segment and is under the red zone
-        if (SV_LL.x == SH_LL.x) {
-          riverPath = new Waypoint[] {new Waypoint(SV_UR.x - 0.5, SV_UR.y),
-              new Waypoint(SV_LL.x + 0.5, SV_LL.y + 0.5), new Waypoint(SH_UR.x, SH_UR.y - 0.5)};
-        } else {
-          riverPath = new Waypoint[] {new Waypoint(SV_UR.x - 0.5, SV_UR.y),
-              new Waypoint(SV_LL.x + 0.5, SV_LL.y + 0.5), new Waypoint(SH_LL.x, SH_LL.y + 0.5)};
-        }
-      }
+    status = "Waiting for data";
+    loader.start();
+    ul.measure();
 
-      switch (RedCorner) {
-        case 0:
-          redTeamStart = new Waypoint(1, 1);
-          break;
-        case 1:
-          redTeamStart = new Waypoint(7, 1);
-          break;
-        case 2:
-          redTeamStart = new Waypoint(7, 7);
-          break;
-        case 3:
-          redTeamStart = new Waypoint(1, 7);
-          break;
+    int failures = 0;
+    while (true) {
+      GameConfig config = loader.await(TICK_PERIOD);
+      if (config != null) {
+        status = "";
+        return config;
       }
-
-      switch (GreenCorner) {
-        case 0:
-          greenTeamStart = new Waypoint(1, 1);
-          break;
-        case 1:
-          greenTeamStart = new Waypoint(7, 1);
-          break;
-        case 2:
-          greenTeamStart = new Waypoint(7, 7);
-          break;
-        case 3:
-          greenTeamStart = new Waypoint(1, 7);
-          break;
+      if (loader.getFailures() != failures) {
+        failures = loader.getFailures();
+        status = "Data: " + failures + " failed";
       }
-
-      /*
-       * Generate path to get to zip line. TODO: test this. Might need to account for search zone
-       * potentially in the way. (or avoid it)
-       */
-      if (ZO_G.x == ZO_R.x) {
-        zipPath = new Waypoint[] {
-            new Waypoint(greenTeamStart.x > ZO_G.x ? ZO_G.x + 1 : ZO_G.x - 1, ZO_G.y), ZO_G};
-      } else if (ZO_G.y == ZO_R.y || (ZO_G.x != ZO_R.x && ZO_G.y != ZO_R.y)) {
-        zipPath = new Waypoint[] {
-            new Waypoint(ZO_G.x, greenTeamStart.y > ZO_G.y ? ZO_G.y + 1 : ZO_G.y - 1), ZO_G};
+      // Only fall back on an older configuration if the server can't be reached at all, as it
+      // only sends the data once the match starts. It may be from an earlier match.
+      if (saved != null && failures >= GameDataLoader.ATTEMPTS) {
+        System.out.println("[GAMEDATA] Server unreachable, using the saved game data from "
+            + (System.currentTimeMillis() - saved.getReceivedAt()) / 1000 + " s ago.");
+        status = "";
+        return saved;
       }
+    }
+  }
 
-    } catch (Exception e) {
-      System.err.println("Error: " + e.getMessage());
-      e.printStackTrace();
-      System.exit(1);
+  /**
+   * Tells whether saved game data was received during the current match: less than
+   * MATCH_DURATION ago, and not in the future, which happens when the clock of the brick was reset
+   * by a reboot (the data could then be from any match).
+   *
+   * @param saved the saved game configuration.
+   * @param now the current time (ms, see System.currentTimeMillis()).
+   * @return true if the saved data can be resumed from.
+   */
+  static boolean isCurrentMatch(GameConfig saved, long now) {
+    long age = now - saved.getReceivedAt();
+    return age >= 0 && age < FinalProject.MATCH_DURATION;
+  }
+
+  /**
+   * Updates the game variables from the game configuration and compiles the mission plan in order
+   * to get the state machine going.
+   *
+   * @param config the game configuration.
+   */
+  private void setGameData(GameConfig config) {
+    RedTeam = config.redTeam;
+    GreenTeam = config.greenTeam;
+    RedCorner = config.redCorner;
+    GreenCorner = config.greenCorner;
+    OG = config.og;
+    OR = config.or;
+    Red_LL = config.redLL;
+    Red_UR = config.redUR;
+    Green_LL = config.greenLL;
+    Green_UR = config.greenUR;
+    ZC_R = config.zcR;
+    ZO_R = config.zoR;
+    ZC_G = config.zcG;
+    ZO_G = config.zoG;
+    SH_LL = config.shLL;
+    SH_UR = config.shUR;
+    SV_LL = config.svLL;
+    SV_UR = config.svUR;
+    SG_LL = config.sgLL;
+    SG_UR = config.sgUR;
+    SR_LL = config.srLL;
+    SR_UR = config.srUR;
+
+    if (RedTeam == FinalProject.TEAM_NB) {
+      is_red = true;
+    } else if (GreenTeam == FinalProject.TEAM_NB) {
+      is_red = false;
     }
+
+    match_end = config.getReceivedAt() + FinalProject.MATCH_DURATION;
+
+    plan = MissionPlan.compile(config, FinalProject.TEAM_NB);
+    redTeamStart = plan.getRedStart();
+    greenTeamStart = plan.getGreenStart();
+    riverPath = plan.getRiverPath();
+    zipPath = plan.getZipPath();
+
+    if (!plan.isValid() || FinalProject.DEBUG) {
+      plan.print(System.out);
+    }
+  }
+
+  /**
+   * Gets what the controller is waiting for, if anything.
+   *
+   * @return the status, empty when there is nothing to report.
+   */
+  String getStatus() {
+    return status;
   }
 
   public String getCurState() {
     return cur_state.toString();
   }
+
+  /**
+   * Gets the current state of the controller.
+   *
+   * @return the current state.
+   */
+  State getControllerState() {
+    return cur_state;
+  }
+
+  /**
+   * Gets the duration of the last tick of the controller.
+   *
+   * @return the duration of the last tick, in microseconds.
+   */
+  int getLastTickMicros() {
+    return last_tick_us;
+  }
+
+  /**
+   * Gets the number of ticks which took longer than the period of the controller.
+   *
+   * @return the number of overruns.
+   */
+  int getOverruns() {
+    return overruns;
+  }
+
+  /**
+   * Gets the timer of the states of the controller.
+   *
+   * @return the state timer.
+   */
+  StateTimer<State> getTimer() {
+    return timer;
+  }
+
+  /**
+   * Prints the timing of the states of the controller and of its subsystems, and the predicted and
+   * actual durations of the steps of the plan, at the end of a run.
+   *
+   * @param out where to print.
+   */
+  public void dumpTimers(PrintStream out) {
+    timer.dump(out);
+    loc.getTimer().dump(out);
+    nav.getTimer().dump(out);
+    zip.getTimer().dump(out);
+    srch.getTimer().dump(out);
+    if (plan != null) {
+      plan.print(out);
+    }
+  }
+
+  /**
+   * Gets the state of the subsystem the controller currently delegates to, for telemetry.
+   *
+   * @return the ordinal of the subsystem's state, 0 if there is none.
+   */
+  int getSubStateOrdinal() {
+    switch (cur_state) {
+      case LOCALIZING:
+        return loc.getState().ordinal();
+      case NAVIGATING:
+        return nav.getState().ordinal();
+      case SEARCHING:
+        return srch.getState().ordinal();
+      case ZIPLINING:
+        return zip.getState().ordinal();
+      default:
+        return 0;
+    }
+  }
 }
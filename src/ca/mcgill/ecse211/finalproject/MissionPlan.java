@@ -0,0 +1,539 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The whole mission of the robot, compiled from the game data before the match starts.
+ *
+ * `compile()` lays out every step (localize, navigate, zip line or river, search, return), checks
+ * that the routes exist and stay on the board, and estimates how long each step takes from the
+ * speeds of the robot. The main controller then only walks through the steps, and records when
+ * each one starts and ends so that the predicted and actual progress can be compared (`print()`).
+ *
+ * @author Joshua Inscoe
+ */
+public class MissionPlan {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The expected duration (in milliseconds) of the steps which are not estimated from a path
+  private static final long ULTRASONIC_ESTIMATE = 20000;
+  private static final long LIGHT_ESTIMATE = 15000;
+  private static final long ZIPLINE_ESTIMATE = 25000;
+
+  // The speed of the robot when moving forward (cm/s) and rotating in place (rad/s)
+  private static final double LINEAR_SPEED =
+      Math.toRadians(FinalProject.SPEED_FWD) * FinalProject.WHEEL_RADIUS;
+  private static final double ANGULAR_SPEED =
+      2.0 * Math.toRadians(FinalProject.SPEED_ROT) * FinalProject.WHEEL_RADIUS
+          / FinalProject.WHEEL_BASE;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The steps of the mission
+  private final MissionStep[] steps;
+
+  // The starting corners of both teams, and the routes which are shared with the controller
+  private final Waypoint redStart;
+  private final Waypoint greenStart;
+  private final PathBuffer riverPath;
+  private final PathBuffer zipPath;
+
+  // The reasons why the plan cannot be executed (empty if it can)
+  private final List<String> errors;
+
+  // The times (ms, see Clock) at which each step started and ended, -1 if it did not (yet)
+  private final long[] started;
+  private final long[] ended;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  private MissionPlan(MissionStep[] steps, Waypoint redStart, Waypoint greenStart,
+      PathBuffer riverPath, PathBuffer zipPath, List<String> errors) {
+
+    this.steps = steps;
+    this.redStart = redStart;
+    this.greenStart = greenStart;
+    this.riverPath = riverPath;
+    this.zipPath = zipPath;
+    this.errors = errors;
+
+    this.started = new long[steps.length];
+    this.ended = new long[steps.length];
+
+    for (int i = 0; i < steps.length; ++i) {
+      this.started[i] = -1;
+      this.ended[i] = -1;
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Compile the mission of a team.
+   *
+   * The red team crosses the river, searches the green search zone, and comes back by the zip
+   * line. The green team takes the zip line, searches the red search zone, and comes back by the
+   * river.
+   *
+   * @param config the game configuration
+   * @param team our team number
+   * @return the plan, check `isValid()` before executing it
+   */
+  public static MissionPlan compile(GameConfig config, int team) {
+
+    List<String> errors = new ArrayList<String>();
+
+    boolean red = config.isRed(team);
+    if (!red && config.greenTeam != team) {
+      errors.add("team " + team + " is not playing");
+    }
+
+    Waypoint redStart = MissionPlan.startOf(config.redCorner, errors);
+    Waypoint greenStart = MissionPlan.startOf(config.greenCorner, errors);
+    PathBuffer riverPath = MissionPlan.riverPath(config);
+    PathBuffer zipPath = MissionPlan.zipApproach(config, red ? config.sgUR : greenStart);
+
+    if (riverPath == null) {
+      errors.add("no route through the river");
+    }
+
+    List<MissionStep> steps = new ArrayList<MissionStep>();
+    Estimator estimator = new Estimator(red ? redStart : greenStart);
+
+    if (red) {
+      steps.add(MissionStep.localize(redStart, MissionPlan.ULTRASONIC_ESTIMATE
+          + MissionPlan.LIGHT_ESTIMATE));
+      steps.add(MissionPlan.navigate(riverPath, estimator));
+      steps.add(MissionStep.search(MissionPlan.endOf(riverPath, redStart), config.sgLL,
+          config.sgUR, config.greenLL, config.greenUR, config.og, Searcher.TIMEOUT));
+      estimator.moveTo(config.sgUR);
+      MissionPlan.addZipLine(steps, estimator, config, zipPath);
+      PathBuffer home = new PathBuffer(2).append(config.zoR.x, redStart.y).append(redStart);
+      steps.add(MissionPlan.navigate(home, estimator));
+    } else {
+      steps.add(MissionStep.localize(greenStart, MissionPlan.ULTRASONIC_ESTIMATE
+          + MissionPlan.LIGHT_ESTIMATE));
+      MissionPlan.addZipLine(steps, estimator, config, zipPath);
+      PathBuffer toSearch = MissionPlan.searchApproach(config);
+      steps.add(MissionPlan.navigate(toSearch, estimator));
+      steps.add(MissionStep.search(MissionPlan.endOf(toSearch, greenStart), config.srLL,
+          config.srUR, config.redLL, config.redUR, config.or, Searcher.TIMEOUT));
+      estimator.moveTo(config.srUR);
+      if (riverPath != null) {
+        PathBuffer home = new PathBuffer(riverPath.size() + 1).append(riverPath).append(greenStart);
+        steps.add(MissionPlan.navigate(home, estimator));
+      }
+    }
+
+    steps.add(MissionStep.done());
+
+    MissionPlan.validate(steps, config, errors);
+
+    return new MissionPlan(steps.toArray(new MissionStep[steps.size()]), redStart, greenStart,
+        riverPath, zipPath, errors);
+  }
+
+  /**
+   * Check whether the plan can be executed.
+   *
+   * @return true if the plan is valid
+   */
+  public boolean isValid() {
+
+    return this.errors.isEmpty();
+  }
+
+  public List<String> getErrors() {
+
+    return this.errors;
+  }
+
+  public int getStepCount() {
+
+    return this.steps.length;
+  }
+
+  public MissionStep getStep(int i) {
+
+    return this.steps[i];
+  }
+
+  public Waypoint getRedStart() {
+
+    return this.redStart;
+  }
+
+  public Waypoint getGreenStart() {
+
+    return this.greenStart;
+  }
+
+  public PathBuffer getRiverPath() {
+
+    return this.riverPath;
+  }
+
+  public PathBuffer getZipPath() {
+
+    return this.zipPath;
+  }
+
+  /**
+   * Get the expected duration of the whole mission.
+   *
+   * @return the sum of the estimates of the steps (in milliseconds)
+   */
+  public long getEstimate() {
+
+    long total = 0;
+
+    for (int i = 0; i < this.steps.length; ++i) {
+      total += this.steps[i].estimate;
+    }
+
+    return total;
+  }
+
+  /**
+   * Get the expected duration of the steps after a given step, e.g. to know when to give up on a
+   * step so that the rest of the mission still fits in the match.
+   *
+   * @param i the index of the step
+   * @return the sum of the estimates of the steps after step i (in milliseconds)
+   */
+  public long getEstimateAfter(int i) {
+
+    long total = 0;
+
+    for (int j = i + 1; j < this.steps.length; ++j) {
+      total += this.steps[j].estimate;
+    }
+
+    return total;
+  }
+
+  /**
+   * Record the start of a step.
+   *
+   * @param i the index of the step
+   * @param time the time (in milliseconds, see Clock)
+   */
+  public void begin(int i, long time) {
+
+    this.started[i] = time;
+
+    return;
+  }
+
+  /**
+   * Record the end of a step.
+   *
+   * @param i the index of the step
+   * @param time the time (in milliseconds, see Clock)
+   */
+  public void end(int i, long time) {
+
+    this.ended[i] = time;
+
+    return;
+  }
+
+  /**
+   * Print the plan, with the predicted and actual durations of the steps that ran.
+   *
+   * @param out where to print
+   */
+  public void print(PrintStream out) {
+
+    long estimate = this.getEstimate();
+
+    out.println("[plan] " + this.steps.length + " steps, " + estimate + " ms expected"
+        + ((estimate > FinalProject.MATCH_DURATION) ? " (longer than a match)" : ""));
+
+    for (String error : this.errors) {
+      out.println("  error: " + error);
+    }
+
+    long predicted = 0;
+
+    for (int i = 0; i < this.steps.length; ++i) {
+      predicted += this.steps[i].estimate;
+
+      StringBuilder line = new StringBuilder();
+      line.append("  ").append(i).append(": ").append(this.steps[i]);
+      line.append(", predicted ").append(this.steps[i].estimate).append(" ms (at ");
+      line.append(predicted).append(" ms)");
+
+      if (this.started[i] >= 0 && this.ended[i] >= 0) {
+        line.append(", actual ").append(this.ended[i] - this.started[i]).append(" ms (at ");
+        line.append(this.ended[i] - this.started[0]).append(" ms)");
+      } else if (this.started[i] >= 0) {
+        line.append(", running");
+      }
+
+      out.println(line);
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Make a step to drive a path, once its straight runs are merged so that the navigator drives
+   * each of them in one motion. No corner is cut, the routes run along the river.
+   */
+  private static MissionStep navigate(PathBuffer path, Estimator estimator) {
+
+    if (path != null) {
+      PathSmoother.smooth(path, PathSmoother.COLLINEAR);
+    }
+
+    return MissionStep.navigate(path, estimator.path(path));
+  }
+
+  /**
+   * Add the steps to cross the zip line, from wherever the robot is.
+   */
+  private static void addZipLine(List<MissionStep> steps, Estimator estimator, GameConfig config,
+      PathBuffer zipPath) {
+
+    steps.add(MissionPlan.navigate(zipPath, estimator));
+    steps.add(MissionStep.localize(config.zoG, MissionPlan.LIGHT_ESTIMATE));
+
+    PathBuffer toStart = new PathBuffer(1).append(config.zoG);
+    steps.add(MissionPlan.navigate(toStart, estimator));
+
+    steps.add(MissionStep.zipline(MissionPlan.ZIPLINE_ESTIMATE));
+    estimator.moveTo(config.zoR);
+
+    steps.add(MissionStep.localize(config.zoR, MissionPlan.LIGHT_ESTIMATE));
+
+    return;
+  }
+
+  /**
+   * Get the starting position of a corner.
+   */
+  private static Waypoint startOf(int corner, List<String> errors) {
+
+    switch (corner) {
+      case 0:
+        return new Waypoint(1, 1);
+      case 1:
+        return new Waypoint(7, 1);
+      case 2:
+        return new Waypoint(7, 7);
+      case 3:
+        return new Waypoint(1, 7);
+      default:
+        errors.add("bad starting corner " + corner);
+        return new Waypoint(1, 1);
+    }
+  }
+
+  /**
+   * Get the route through the river, from the red side to the green side.
+   *
+   * TODO: ADD MORE OPTIONS IN CASE YOU HAVE TO GO UP OR DOWN. Might need to account for search
+   * zone potentially in the way. (or avoid it)
+   *
+   * @return the route, or null if the layout of the river is not supported
+   */
+  private static PathBuffer riverPath(GameConfig c) {
+
+    if (c.shLL.x == c.redUR.x) {
+      // River starts with the horizontal segment and is to the right of the red zone
+      PathBuffer path = new PathBuffer(3).append(c.shLL.x, c.shLL.y + 0.5)
+          .append(c.shUR.x - 0.5, c.shUR.y - 0.5);
+      if (c.svLL.y == c.shLL.y) {
+        return path.append(c.svUR.x - 0.5, c.svUR.y);
+      } else {
+        return path.append(c.svLL.x - 0.5, c.svLL.y);
+      }
+    } else if (c.svUR.y == c.redLL.y) {
+      // River starts with the vertical segment and is under the red zone
+      PathBuffer path = new PathBuffer(3).append(c.svUR.x - 0.5, c.svUR.y)
+          .append(c.svLL.x + 0.5, c.svLL.y + 0.5);
+      if (c.svLL.x == c.shLL.x) {
+        return path.append(c.shUR.x, c.shUR.y - 0.5);
+      } else {
+        return path.append(c.shLL.x, c.shLL.y + 0.5);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the route to the start of the zip line, approached from the side of `from`.
+   *
+   * TODO: test this. Might need to account for search zone potentially in the way. (or avoid it)
+   */
+  private static PathBuffer zipApproach(GameConfig c, Waypoint from) {
+
+    if (c.zoG.x == c.zoR.x) {
+      return new PathBuffer(2).append(from.x > c.zoG.x ? c.zoG.x + 1 : c.zoG.x - 1, c.zoG.y)
+          .append(c.zoG);
+    } else {
+      return new PathBuffer(2).append(c.zoG.x, from.y > c.zoG.y ? c.zoG.y + 1 : c.zoG.y - 1)
+          .append(c.zoG);
+    }
+  }
+
+  /**
+   * Get the last waypoint of a route, or `otherwise` if there is no route.
+   */
+  private static Waypoint endOf(PathBuffer path, Waypoint otherwise) {
+
+    return (path != null && !path.isEmpty()) ? path.get(path.size() - 1) : otherwise;
+  }
+
+  /**
+   * Get the route from the end of the zip line to the red search zone.
+   */
+  private static PathBuffer searchApproach(GameConfig c) {
+
+    PathBuffer path = new PathBuffer(2);
+
+    if (c.zoR.x == c.zoG.x && c.srUR.y < c.zoR.y) {
+      // avoid hitting the base of the zip line.
+      path.append(c.zoR.x + (c.zoR.x < c.srUR.x ? 1 : -1), c.zoR.y);
+    } else {
+      path.append(c.zoR.x, c.srUR.y);
+    }
+
+    return path.append(c.srUR.x - 0.5, c.srUR.y - 0.5);
+  }
+
+  /**
+   * Check that the routes exist and stay on the board, and that the search zones are not empty.
+   */
+  private static void validate(List<MissionStep> steps, GameConfig config, List<String> errors) {
+
+    for (int i = 0; i < steps.size(); ++i) {
+      MissionStep step = steps.get(i);
+
+      switch (step.type) {
+        case LOCALIZE:
+          MissionPlan.checkOnBoard(step.reference.x, step.reference.y, i, errors);
+          break;
+        case NAVIGATE:
+          if (step.path == null || step.path.isEmpty()) {
+            errors.add("step " + i + ": no path");
+            break;
+          }
+          for (int j = 0; j < step.path.size(); ++j) {
+            MissionPlan.checkOnBoard(step.path.getX(j), step.path.getY(j), i, errors);
+          }
+          break;
+        case SEARCH:
+          if (step.zoneLL.x >= step.zoneUR.x || step.zoneLL.y >= step.zoneUR.y) {
+            errors.add("step " + i + ": empty search zone");
+          }
+          if (step.color == Searcher.FlagColor.NONE) {
+            errors.add("step " + i + ": unknown flag color " + step.flag);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    return;
+  }
+
+  private static void checkOnBoard(double x, double y, int step, List<String> errors) {
+
+    if (x < 0 || x > FinalProject.BOARD_SIZE || y < 0 || y > FinalProject.BOARD_SIZE) {
+      errors.add("step " + step + ": (" + x + ", " + y + ") is off the board");
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Classes
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Follows the position and heading of the robot through the plan, to estimate how long it takes
+   * to drive each path: a rotation in place towards each waypoint, then a straight line.
+   */
+  private static class Estimator {
+
+    // The position (in tiles) and heading (in radians) of the robot
+    private double x;
+    private double y;
+    private double theta;
+
+    Estimator(Waypoint start) {
+
+      this.x = start.x;
+      this.y = start.y;
+      this.theta = Math.PI / 2; // as left by the localization
+    }
+
+    /**
+     * Estimate the time it takes to drive a path, and move to its end.
+     *
+     * @return the estimate (in milliseconds), 0 if there is no path
+     */
+    long path(PathBuffer path) {
+
+      if (path == null) {
+        return 0;
+      }
+
+      double seconds = 0.0;
+
+      for (int i = 0; i < path.size(); ++i) {
+        double dx = path.getX(i) - this.x;
+        double dy = path.getY(i) - this.y;
+        double distance = Math.sqrt(dx * dx + dy * dy) * FinalProject.BOARD_TILE_LENGTH;
+
+        if (distance > 0.0) {
+          double heading = Math.atan2(dy, dx);
+          double turn = Math.abs(Math.IEEEremainder(heading - this.theta, 2 * Math.PI));
+
+          seconds += turn / MissionPlan.ANGULAR_SPEED + distance / MissionPlan.LINEAR_SPEED;
+          this.theta = heading;
+        }
+
+        this.x = path.getX(i);
+        this.y = path.getY(i);
+      }
+
+      return (long) (seconds * 1000);
+    }
+
+    /**
+     * Move without driving (the zip line, the search).
+     */
+    void moveTo(Waypoint waypoint) {
+
+      this.x = waypoint.x;
+      this.y = waypoint.y;
+
+      return;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * One step of a MissionPlan: what the main controller does, with which parameters, and how long
+ * it is expected to take.
+ *
+ * @author Joshua Inscoe
+ */
+public class MissionStep {
+
+  // --------------------------------------------------------------------------------
+  // Enums
+  // --------------------------------------------------------------------------------
+
+  /**
+   * What a step does.
+   */
+  public enum Type {
+    LOCALIZE, NAVIGATE, ZIPLINE, SEARCH, DONE
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The flag colors, indexed by their number in the game data (values() copies the array)
+  private static final Searcher.FlagColor[] COLORS = Searcher.FlagColor.values();
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // What the step does
+  public final Type type;
+
+  // LOCALIZE: the reference position, SEARCH: where the search starts (in tiles)
+  public final Waypoint reference;
+
+  // NAVIGATE: the waypoints to go through (in tiles)
+  public final PathBuffer path;
+
+  // SEARCH: the corners of the search zone and of the enemy zone (in tiles), and the color of the
+  // flag, as a number from the game data and resolved when the step is built (NONE if unknown)
+  public final Waypoint zoneLL;
+  public final Waypoint zoneUR;
+  public final Waypoint enemyLL;
+  public final Waypoint enemyUR;
+  public final int flag;
+  public final Searcher.FlagColor color;
+
+  // The expected duration of the step (in milliseconds)
+  public final long estimate;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  private MissionStep(Type type, Waypoint reference, PathBuffer path, Waypoint zoneLL,
+      Waypoint zoneUR, Waypoint enemyLL, Waypoint enemyUR, int flag, long estimate) {
+
+    this.type = type;
+    this.reference = reference;
+    this.path = path;
+    this.zoneLL = zoneLL;
+    this.zoneUR = zoneUR;
+    this.enemyLL = enemyLL;
+    this.enemyUR = enemyUR;
+    this.flag = flag;
+    this.color = (flag > 0 && flag < MissionStep.COLORS.length) ? MissionStep.COLORS[flag]
+        : Searcher.FlagColor.NONE;
+    this.estimate = estimate;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  public static MissionStep localize(Waypoint reference, long estimate) {
+
+    return new MissionStep(Type.LOCALIZE, reference, null, null, null, null, null, 0, estimate);
+  }
+
+  public static MissionStep navigate(PathBuffer path, long estimate) {
+
+    return new MissionStep(Type.NAVIGATE, null, path, null, null, null, null, 0, estimate);
+  }
+
+  public static MissionStep zipline(long estimate) {
+
+    return new MissionStep(Type.ZIPLINE, null, null, null, null, null, null, 0, estimate);
+  }
+
+  public static MissionStep search(Waypoint from, Waypoint zoneLL, Waypoint zoneUR,
+      Waypoint enemyLL, Waypoint enemyUR, int flag, long estimate) {
+
+    return new MissionStep(Type.SEARCH, from, null, zoneLL, zoneUR, enemyLL, enemyUR, flag,
+        estimate);
+  }
+
+  public static MissionStep done() {
+
+    return new MissionStep(Type.DONE, null, null, null, null, null, null, 0, 0);
+  }
+
+  public String toString() {
+
+    switch (this.type) {
+      case LOCALIZE:
+        return "LOCALIZE at (" + this.reference.x + ", " + this.reference.y + ")";
+      case NAVIGATE:
+        if (this.path == null || this.path.isEmpty()) {
+          return "NAVIGATE (no path)";
+        }
+        int last = this.path.size() - 1;
+        return "NAVIGATE to (" + this.path.getX(last) + ", " + this.path.getY(last) + ") via "
+            + this.path.size() + " waypoints";
+      case SEARCH:
+        return "SEARCH (" + this.zoneLL.x + ", " + this.zoneLL.y + ")-(" + this.zoneUR.x + ", "
+            + this.zoneUR.y + ") for flag " + this.flag;
+      default:
+        return this.type.toString();
+    }
+  }
+}
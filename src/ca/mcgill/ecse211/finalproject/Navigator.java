@@ -1,16 +1,15 @@
 package ca.mcgill.ecse211.finalproject;
 
-import com.sun.swing.internal.plaf.synth.resources.synth;
-
 /**
  * Handles navigating through sets of waypoints as well as avoiding obstacles when they are encountered.
  */
 public class Navigator {
 
   /**
-   * Enum describing the state of the navigator.
+   * Enum describing the state of the navigator. AVOID_TURNING and REJOINING are last so that the
+   * telemetry recorded before they were added still decodes.
    */
-  public enum Nav_State { IDLE, ROTATING, MOVING, AVOIDING, REACHED_WAYPOINT, DONE }
+  public enum Nav_State { IDLE, ROTATING, MOVING, AVOIDING, REACHED_WAYPOINT, DONE, AVOID_TURNING, REJOINING }
 
   // --------------------------------------------------------------------------------
   // Constants
@@ -29,23 +28,43 @@ public class Navigator {
    * Navigation variables
    */
   private Nav_State cur_state = Nav_State.IDLE;
-  private Waypoint[] path; // The set of waypoints the robot will have to travel, initialized by the setPath() method.
-  private Waypoint target_pos = null; // Target waypoint
-  private Waypoint last_target_pos = null;
-  private int waypoint_progress = -1; // A counter to keep track of our progress (indexing the path array)
+  // Times every state (dwell time and processing time of each tick).
+  private StateTimer<Nav_State> timer = new StateTimer<Nav_State>("navigator", Nav_State.class);
+  private PathBuffer path = new PathBuffer(); // The set of waypoints the robot will have to travel, copied by setPath().
+  private Waypoint target_pos = null; // Target waypoint, points to target or is null.
+  private Waypoint last_target_pos = null; // Previous target waypoint, points to last_target or is null.
+  private Waypoint target = new Waypoint(0.0, 0.0); // Filled from the path, so that no waypoint is allocated.
+  private Waypoint last_target = new Waypoint(0.0, 0.0);
+  private int waypoint_progress = -1; // A counter to keep track of our progress (indexing the path)
   private double angle_to_target_pos; // Angle between the robot's direction and the target waypoint.
   private double dist_to_target_pos; // Distance to target waypoint.
-  private double orientation_vect[] = {0.0, 1.0}; // we initially start with a theta of 90 degrees.
+  private Vector2 orientation_vect = new Vector2(0.0, 1.0); // we initially start with a theta of 90 degrees.
+  private Vector2 vect_to_target = new Vector2(); // Reused at every tick, so that navigating allocates nothing.
+  private Pose pose = new Pose(); // Position of the robot, reused at every tick.
   private double min_dist; // Used while moving, we constantly record the new lowest distance to the target
   // point, when it starts going back up, we know we went past the waypoint.
   private boolean done = false; // This will be set to true when we reach the last waypoint, making to
   // program end the navigation thread.
+  private boolean fixed_point = FinalProject.FIXED_POINT_NAVIGATION; // Target info in Q16.16.
+  private int position_q[] = new int[3]; // Position of the robot in Q16.16 (cm, cm, rad).
+  private boolean cruising = false; // True while the wheels run without a distance target, to drive through the target.
 
   /*
    * Obstacle avoidance variables
    */
   private boolean obstacle_detected = false;
   private boolean obstacle_avoided = true;
+  private boolean avoidance_enabled = true; // Can be turned off by classes that use the sensor for something else.
+  private boolean us_ref_held = false; // True while we hold a reference on the ultrasonic data.
+  private double avoid_start_x; // Position at which we started avoiding the obstacle.
+  private double avoid_start_y;
+  private double avoid_start_dist; // Distance to the target when we started avoiding the obstacle.
+  private long avoid_start_t; // Time at which we started avoiding the obstacle.
+
+  /*
+   * Line prediction
+   */
+  private LinePredictor line_predictor = null; // Checks the grid lines we cross against the odometer, if set.
 
   /**
    * Constructor
@@ -67,7 +86,11 @@ public class Navigator {
    * @return The new state of the navigator, as a string.
    */
   String process() {
-    updateOrientation();
+    long tick_start = System.nanoTime();
+    Nav_State prev_state = cur_state;
+    if (!fixed_point) {
+      updateOrientation();
+    }
     switch (cur_state) {
       case IDLE:
         cur_state = process_idle();
@@ -78,9 +101,15 @@ public class Navigator {
       case MOVING:
         cur_state = process_moving();
         break;
+      case AVOID_TURNING:
+        cur_state = process_avoid_turning();
+        break;
       case AVOIDING:
         cur_state = process_avoiding();
         break;
+      case REJOINING:
+        cur_state = process_rejoining();
+        break;
       case REACHED_WAYPOINT:
         cur_state = process_reached();
         break;
@@ -89,6 +118,7 @@ public class Navigator {
         break;
       default: break;
     }
+    timer.tick(prev_state, cur_state, tick_start, System.nanoTime());
     return cur_state.toString();
   }
 
@@ -104,6 +134,8 @@ public class Navigator {
     if (target_pos != null) { // Compute the distance and angle to the target position, if rotation is needed, set state to
       // rotating, if not: move.
       done = false;
+      acquireUltrasonic();
+      setPredicting(true);
       updateTargetInfo();
       if (Math.abs(angle_to_target_pos) > 0) {
         return Nav_State.ROTATING;
@@ -127,6 +159,7 @@ public class Navigator {
     updateTargetInfo();
     if (Math.abs(angle_to_target_pos) > FinalProject.ANGLE_THRESHOLD) {
       // As long as the angle to the target position is bigger than the threshold, keep rotating.
+      cruising = false;
       driver.rotate(Math.toDegrees(angle_to_target_pos), true);
       return Nav_State.ROTATING;
     } else {
@@ -149,18 +182,36 @@ public class Navigator {
    */
   private Nav_State process_moving() {
     updateTargetInfo();
+    if (checkForObstacle()) {
+      startAvoiding();
+      return Nav_State.AVOID_TURNING;
+    }
     if (Math.abs(angle_to_target_pos) > FinalProject.ANGLE_THRESHOLD) {
       return Nav_State.ROTATING; // We are a bit off, adjust.
     } else if (dist_to_target_pos < min_dist) {
       min_dist = dist_to_target_pos; // min_dist is continuously updated as long as the distance
                                      // gets smaller.
       if (dist_to_target_pos > FinalProject.DISTANCE_THRESHOLD) {
-        driver.moveForward(dist_to_target_pos, true);
+        if (drivesThrough()) {
+          // No distance target, so that the motors don't slow down at the waypoint.
+          if (!cruising) {
+            driver.setSpeedLeftMotor(FinalProject.SPEED_FWD);
+            driver.setSpeedRightMotor(FinalProject.SPEED_FWD);
+            driver.endlessMoveForward();
+            cruising = true;
+          }
+        } else {
+          cruising = false;
+          driver.moveForward(dist_to_target_pos, true);
+        }
         return Nav_State.MOVING;
       } else {
         // if angle AND distance are both small enough, we reached the point
         return Nav_State.REACHED_WAYPOINT;
       }
+    } else if (cruising) {
+      // We went past the waypoint without stopping, as close as we got to it.
+      return Nav_State.REACHED_WAYPOINT;
     } else {
       // We missed the point (dist_to_target_pos > min_dist), turn around and get there!
       if (dist_to_target_pos < 5) {
@@ -170,31 +221,90 @@ public class Navigator {
     }
   }
 
+  /**
+   * Processes the AVOID_TURNING state of the navigator: the robot turns away from the obstacle
+   * while the sensor pans towards it, without blocking the ticks.
+   *
+   * @return new state, AVOIDING once the turn is done.
+   */
+  private Nav_State process_avoid_turning() {
+    if (driver.isMoving()
+        && Clock.millis() - avoid_start_t <= FinalProject.AVOID_TIMEOUT) {
+      return Nav_State.AVOID_TURNING;
+    }
+    return process_avoiding();
+  }
+
   /**
    * Processes the AVOIDING state of the navigator.
    *
    * @return new state, or same if not done avoiding the obstacle.
    */
   private Nav_State process_avoiding() {
-    // TODO: Integrate P-Controller for obstacle avoidance (or whatever works)
-    return Nav_State.IDLE;
+    updateTargetInfo();
+    if (hasRejoinedPath()
+        || Clock.millis() - avoid_start_t > FinalProject.AVOID_TIMEOUT) {
+      // Back on the line we were following (or giving up), look forward again and steer back
+      // towards the target while moving.
+      driver.rotateFrontMotor(-FinalProject.AVOID_SENSOR_ANGLE);
+      setObstacleDetected(false);
+      obstacle_avoided = true;
+      return process_rejoining();
+    }
+    driver.avoidObstacle(sd.getUSDataLatest());
+    return Nav_State.AVOIDING;
+  }
+
+  /**
+   * Processes the REJOINING state of the navigator: the robot blends its heading back towards the
+   * target while it keeps moving, MOVING takes over once it faces the target. Only a target
+   * further than FinalProject.REJOIN_MAX_ANGLE to the side needs a turn in place.
+   *
+   * @return new state, or same while still turning towards the target.
+   */
+  private Nav_State process_rejoining() {
+    updateTargetInfo();
+    if (dist_to_target_pos < FinalProject.DISTANCE_THRESHOLD) {
+      return Nav_State.REACHED_WAYPOINT;
+    }
+    if (Math.abs(angle_to_target_pos) <= FinalProject.ANGLE_THRESHOLD) {
+      min_dist = Double.MAX_VALUE; // reset
+      return Nav_State.MOVING;
+    }
+    double angle = Math.toDegrees(angle_to_target_pos);
+    if (Math.abs(angle) > FinalProject.REJOIN_MAX_ANGLE) {
+      return Nav_State.ROTATING;
+    }
+    // Positive angles are to the left, speed up the right wheel to turn that way.
+    float correction = (float) Math.min(FinalProject.REJOIN_GAIN * Math.abs(angle),
+        FinalProject.AVOID_MAX_CORRECTION);
+    driver.steer(angle > 0 ? correction : -correction);
+    return Nav_State.REJOINING;
   }
 
   /**
    * Processes the REACHED_POINT state of the navigator. Gets the next waypoint and restarts navigation if it exists.
+   * Unless the waypoint has PathBuffer.FLAG_STOP, the robot drives through it without stopping when the next one is
+   * straight ahead (see drivesThrough()), the wheels keep running while the next target is set.
    *
    * @return new state.
    */
   private Nav_State process_reached() {
     updateTargetInfo();
-    if (dist_to_target_pos < FinalProject.DISTANCE_THRESHOLD) {
+    if (dist_to_target_pos < FinalProject.DISTANCE_THRESHOLD || cruising) {
       min_dist = Double.MAX_VALUE; // reset
-      driver.rotate(0, true);
+      boolean stop = path.isStop(waypoint_progress);
       target_pos = getNextWaypoint();
       if (target_pos != null) {
         // rotating, if not: move.
         updateTargetInfo();
         done = false;
+        if (!stop && Math.abs(angle_to_target_pos) <= FinalProject.ANGLE_THRESHOLD
+            && dist_to_target_pos > FinalProject.DISTANCE_THRESHOLD) {
+          return Nav_State.MOVING; // keep going, MOVING carries on with the current motion.
+        }
+        cruising = false;
+        driver.rotate(0, true);
         if (Math.abs(angle_to_target_pos) > 0) {
           return Nav_State.ROTATING;
         } else if (dist_to_target_pos > 0) {
@@ -203,6 +313,8 @@ public class Navigator {
         // Fallthrough, shouldn't happen.
         return Nav_State.IDLE;
       } else {
+        cruising = false;
+        driver.rotate(0, true);
         return Nav_State.DONE;
       }
     } else {
@@ -218,9 +330,28 @@ public class Navigator {
    */
   private Nav_State process_done() {
     done = true;
+    releaseUltrasonic();
+    setPredicting(false);
     return Nav_State.IDLE;
   }
 
+  /**
+   * Tells whether or not the robot drives through the target without stopping: it doesn't have
+   * PathBuffer.FLAG_STOP and the next waypoint is straight ahead, within FinalProject.ANGLE_THRESHOLD
+   * of our heading, like process_reached() checks once there.
+   *
+   * @return true if the wheels can keep running at the target.
+   */
+  private boolean drivesThrough() {
+    int next = waypoint_progress + 1;
+    if (next >= path.size() || path.isStop(waypoint_progress)) {
+      return false;
+    }
+    odometer.getPose(pose);
+    double bearing = Math.atan2(path.getY(next) - target_pos.y, path.getX(next) - target_pos.x);
+    return Math.abs(Angles.normalizeSigned(bearing - pose.theta)) <= FinalProject.ANGLE_THRESHOLD;
+  }
+
   /*
    * Math
    */
@@ -232,19 +363,8 @@ public class Navigator {
    * @param vect_to_pos, a vector from the robot's position to the target position.
    * @return the angle between the two vectors, in radians.
    */
-  private double angleToPos(double vect_to_pos[]) {
-    return Math.atan2(vect_to_pos[1] * orientation_vect[0] - vect_to_pos[0] * orientation_vect[1],
-            orientation_vect[0] * vect_to_pos[0] + orientation_vect[1] * vect_to_pos[1]);
-  }
-
-  /**
-   * Computes the magnitude of a vector
-   *
-   * @param v: vector
-   * @return the magnitude of the vector.
-   */
-  private double magnitude(double v[]) {
-    return Math.sqrt(Math.pow(v[0], 2) + Math.pow(v[1], 2));
+  double angleToPos(Vector2 vect_to_pos) {
+    return vect_to_pos.angleFrom(orientation_vect);
   }
 
   /**
@@ -253,41 +373,151 @@ public class Navigator {
    * - The magnitude of that vector, the distance to our target.
    * - The angle to the traget position, using our orientation unit vector and the vector we just computed.
    */
-  private void updateTargetInfo() {
-    double x = odometer.getX();
-    double y = odometer.getY();
+  void updateTargetInfo() {
+    if (fixed_point) {
+      updateTargetInfoFixed();
+      return;
+    }
 
-    double dist_x = target_pos.x * FinalProject.BOARD_TILE_LENGTH - x;
-    double dist_y = target_pos.y * FinalProject.BOARD_TILE_LENGTH - y;
+    odometer.getPose(pose);
 
-    double vect_to_target[] = {dist_x, dist_y};
-    dist_to_target_pos = magnitude(vect_to_target);
+    vect_to_target.set(target_pos.x * FinalProject.BOARD_TILE_LENGTH - pose.x,
+            target_pos.y * FinalProject.BOARD_TILE_LENGTH - pose.y);
+    dist_to_target_pos = vect_to_target.length();
     angle_to_target_pos = angleToPos(vect_to_target);
 
     if (FinalProject.DEBUG) {
-      System.out.println("[NAVIGATION] Current Position: " + x + ", " + y);
+      System.out.println("[NAVIGATION] Current Position: " + pose.x + ", " + pose.y);
       System.out
               .println("[NAVIGATION] Target Position: (" + target_pos.x + "; " + target_pos.y + ")");
       System.out.println("[NAVIGATION] Distance to target: " + dist_to_target_pos);
       System.out.println(
-              "[NAVIGATION] Vector to target: [" + vect_to_target[0] + ", " + vect_to_target[1] + "]");
+              "[NAVIGATION] Vector to target: " + vect_to_target);
       System.out.println("[NAVIGATION] Angle to target: " + Math.toDegrees(angle_to_target_pos));
     }
   }
 
+  /**
+   * Same as updateTargetInfo(), in Q16.16 (see FixedPoint): the angle to the target is the
+   * difference between its bearing and our heading, so the orientation vector isn't needed.
+   */
+  private void updateTargetInfoFixed() {
+    odometer.getPositionFixed(position_q);
+
+    int dist_x = FixedPoint.fromDouble(target_pos.x * FinalProject.BOARD_TILE_LENGTH) - position_q[0];
+    int dist_y = FixedPoint.fromDouble(target_pos.y * FinalProject.BOARD_TILE_LENGTH) - position_q[1];
+
+    dist_to_target_pos = FixedPoint.toDouble(FixedPoint.hypot(dist_x, dist_y));
+    angle_to_target_pos = FixedPoint.toDouble(
+        FixedPoint.wrapAngleSigned(FixedPoint.atan2(dist_y, dist_x) - position_q[2]));
+  }
+
+  /**
+   * Chooses between computing the distance and angle to the target with doubles and in Q16.16.
+   * The default is FinalProject.FIXED_POINT_NAVIGATION, this is for the benchmarks and tests.
+   *
+   * @param fixed_point true to compute in Q16.16.
+   */
+  void setFixedPoint(boolean fixed_point) {
+    this.fixed_point = fixed_point;
+  }
+
   /**
    * Computes a unit vector that points in the robot's orientation, used for determining angles
    * between the robot and the target position at any given time.
    */
   private void updateOrientation() {
     double orientation_angle = odometer.getTheta();
-    orientation_vect[0] = Math.cos(orientation_angle);
-    orientation_vect[1] = Math.sin(orientation_angle);
+    orientation_vect.setHeading(orientation_angle);
 
     if (FinalProject.DEBUG) {
       System.out.println("[NAVIGATION] Orientation angle: " + Math.toDegrees(orientation_angle));
-      System.out.println("[NAVIGATION] Orientation vector: [" + orientation_vect[0] + ", "
-              + orientation_vect[1] + "]");
+      System.out.println("[NAVIGATION] Orientation vector: " + orientation_vect);
+    }
+  }
+
+  /*
+   * Obstacle avoidance
+   */
+
+  /**
+   * Checks the ultrasonic readings for an obstacle between the robot and its target. Only obstacles
+   * that are closer than the target are considered, so that walls or blocks behind the waypoint
+   * don't interrupt the navigation.
+   *
+   * @return true if we need to avoid an obstacle.
+   */
+  private boolean checkForObstacle() {
+    if (!avoidance_enabled || !us_ref_held || !driver.hasFrontMotor()) {
+      return false;
+    }
+    float dist = sd.getUSDataLatest();
+    if (dist < FinalProject.OBSTACLE_DISTANCE_THRESHOLD && dist < dist_to_target_pos) {
+      setObstacleDetected(true);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Turns the robot away from the obstacle (to the right) and pans the sensor towards it (to the
+   * left), the wall follower then goes around the obstacle until we get back on our path.
+   */
+  private void startAvoiding() {
+    obstacle_avoided = false;
+    cruising = false;
+    avoid_start_x = odometer.getX();
+    avoid_start_y = odometer.getY();
+    avoid_start_dist = dist_to_target_pos;
+    avoid_start_t = Clock.millis();
+
+    // Both return right away, AVOID_TURNING waits for them.
+    driver.rotate(-90, true);
+    driver.rotateFrontMotor(FinalProject.AVOID_SENSOR_ANGLE);
+  }
+
+  /**
+   * Tells whether or not we are back on the line between the point where we met the obstacle and
+   * the target (bug algorithm). We turned right so we start on the right of that line, crossing it
+   * means we went around the obstacle, as long as we got closer to the target.
+   *
+   * @return true if the robot can resume navigating towards the target.
+   */
+  private boolean hasRejoinedPath() {
+    double line_x = target_pos.x * FinalProject.BOARD_TILE_LENGTH - avoid_start_x;
+    double line_y = target_pos.y * FinalProject.BOARD_TILE_LENGTH - avoid_start_y;
+    double side = line_x * (odometer.getY() - avoid_start_y) - line_y * (odometer.getX() - avoid_start_x);
+
+    return side >= 0 && dist_to_target_pos < avoid_start_dist - FinalProject.AVOID_MIN_PROGRESS;
+  }
+
+  /**
+   * Starts gathering ultrasonic data for the duration of the path, if we are allowed to avoid
+   * obstacles.
+   */
+  private void acquireUltrasonic() {
+    if (avoidance_enabled && !us_ref_held && sd != null) {
+      sd.incrementUSRefs();
+      us_ref_held = true;
+    }
+  }
+
+  /**
+   * Starts or stops predicting the grid lines, if there is a line predictor.
+   */
+  private void setPredicting(boolean predicting) {
+    if (line_predictor != null && line_predictor.isEnabled() != predicting) {
+      line_predictor.setEnabled(predicting);
+    }
+  }
+
+  /**
+   * Stops gathering ultrasonic data if we were the ones who asked for it.
+   */
+  private void releaseUltrasonic() {
+    if (us_ref_held) {
+      sd.decrementUSRefs();
+      us_ref_held = false;
     }
   }
 
@@ -301,21 +531,52 @@ public class Navigator {
    * @return the next waypoint in the path array.
    */
   private Waypoint getNextWaypoint() {
-    if (path != null) {
-      if (waypoint_progress + 1 >= path.length) {
-        // That's a problem
-        if (FinalProject.DEBUG) {
-          System.out.println("Error: getting out of bounds of the path array");
-        }
-        // wait for new path.
-        return null;
-      } else {
-        last_target_pos = target_pos; // set the current pos as previous target.
+    if (path.isEmpty()) {
+      if (FinalProject.DEBUG) {
+        System.out.println("[NAVIGATION] Path is empty");
       }
+      return null;
+    }
+    if (waypoint_progress + 1 >= path.size()) {
+      // That's a problem
+      if (FinalProject.DEBUG) {
+        System.out.println("Error: getting out of bounds of the path array");
+      }
+      // wait for new path.
+      return null;
+    }
+
+    // set the current pos as previous target.
+    if (target_pos != null) {
+      last_target.x = target_pos.x;
+      last_target.y = target_pos.y;
+      last_target_pos = last_target;
     } else {
-      System.out.println("Path is NULL");
+      last_target_pos = null;
     }
-    return path != null ? path[++waypoint_progress] : null;
+
+    ++waypoint_progress;
+    target.x = path.getX(waypoint_progress);
+    target.y = path.getY(waypoint_progress);
+    return target;
+  }
+
+  /**
+   * Gets the current state of the navigator.
+   *
+   * @return the current state.
+   */
+  Nav_State getState() {
+    return cur_state;
+  }
+
+  /**
+   * Gets the timer of the states of the navigator.
+   *
+   * @return the state timer.
+   */
+  StateTimer<Nav_State> getTimer() {
+    return timer;
   }
 
   /**
@@ -327,6 +588,24 @@ public class Navigator {
     return target_pos;
   }
   
+  /**
+   * Gets the distance to the target position, as of the last update.
+   *
+   * @return the distance, in cm.
+   */
+  double getDistToTarget() {
+    return dist_to_target_pos;
+  }
+
+  /**
+   * Gets the angle between the robot's heading and the target position, as of the last update.
+   *
+   * @return the angle, in radians, from -PI to PI.
+   */
+  double getAngleToTarget() {
+    return angle_to_target_pos;
+  }
+
   public synchronized Waypoint getLastTargetPos() {
     return last_target_pos;
   }
@@ -354,17 +633,91 @@ public class Navigator {
     obstacle_detected = arg;
   }
 
+  /**
+   * Enables or disables obstacle avoidance. Classes that point the ultrasonic sensor somewhere else
+   * (or expect to drive up to an object) should disable it.
+   *
+   * @param enabled true to avoid obstacles while moving.
+   */
+  public void setAvoidanceEnabled(boolean enabled) {
+    avoidance_enabled = enabled;
+    if (!enabled) {
+      releaseUltrasonic();
+    }
+  }
+
+  /**
+   * Sets the predictor that checks the grid lines crossed while following a path, it is enabled
+   * from the start of a path to its end.
+   *
+   * @param predictor the line predictor, or null for none.
+   */
+  public void setLinePredictor(LinePredictor predictor) {
+    line_predictor = predictor;
+  }
+
+  /**
+   * set a new path to navigate, the path is copied so the caller can reuse it.
+   *
+   * @param waypoints the waypoints, in tiles.
+   */
+  public void setPath(PathBuffer waypoints) {
+    resetAvoidance();
+    path.copyFrom(waypoints);
+    done = false;
+    waypoint_progress = -1;
+  }
+
   /**
    * set a new path to navigate
    *
    * @param waypoints an array of waypoints.
    */
   public void setPath(Waypoint[] waypoints) {
-    path = waypoints;
+    resetAvoidance();
+    path.clear();
+    if (waypoints != null) {
+      for (Waypoint waypoint : waypoints) {
+        path.append(waypoint);
+      }
+    }
     done = false;
     waypoint_progress = -1;
   }
 
+  /**
+   * Stops following the current path, when whoever gave it ran out of time. The navigator is done
+   * and idle afterwards, the wheels must be stopped by the caller.
+   */
+  void abort() {
+    resetAvoidance();
+    releaseUltrasonic();
+    setPredicting(false);
+    cruising = false;
+    cur_state = Nav_State.IDLE;
+    done = true;
+  }
+
+  /**
+   * Stops avoiding an obstacle, when the path is replaced or aborted: looks forward again and
+   * releases the ultrasonic data, the new path starts over from IDLE.
+   */
+  private void resetAvoidance() {
+    if (cur_state != Nav_State.AVOIDING && cur_state != Nav_State.AVOID_TURNING
+        && cur_state != Nav_State.REJOINING) {
+      return;
+    }
+    if (cur_state != Nav_State.REJOINING) {
+      // REJOINING already looks forward again.
+      driver.rotateFrontMotor(-FinalProject.AVOID_SENSOR_ANGLE);
+    }
+    setObstacleDetected(false);
+    obstacle_avoided = true;
+    cruising = false;
+    releaseUltrasonic();
+    cur_state = Nav_State.IDLE;
+  }
+
   /**
    * Tells wheter or not the navigator is done navigating.
    *
@@ -14,25 +14,45 @@ public class Odometer extends Thread {
   private EV3LargeRegulatedMotor rightMotor;
 
   private static final long ODOMETER_PERIOD = 25; /* odometer update period, in ms */
-  private final double WHEEL_RAD;
-  private final double WHEELBASE;
+  private double wheel_rad; /* the geometry, may be refined by an OdometryCalibration */
+  private double wheel_base;
+  private double right_mult;
+  private volatile double[] pending_geometry = null; /* set by setGeometry(), applied in update() */
   private Object lock; /* lock object for mutual exclusion */
+  private volatile int version = 0; /* odd while the position is being written */
+  private boolean fixed_point; /* integrate in Q16.16 (see FixedPoint) instead of doubles */
+  private int x_q, y_q, theta_q; /* the position in Q16.16 (cm, cm, rad), when fixed_point is set */
+  private int theta_base_q; /* heading (Q16.16 rad) when heading_acc was last reset */
+  private long heading_acc; /* sum of d_r - d_l since then (Q8.24 cm), exact so no error builds up */
+  private int cm_per_deg_l_q24; /* distance travelled per degree of each wheel, in Q8.24 */
+  private int cm_per_deg_r_q24;
+  private long wheel_base_q24;
+  private BinaryLog capture = null; /* raw tacho counts are logged here in capture mode */
+  private OdometryCalibration calibration = null; /* given the heading fixes, may be null */
+  private boolean has_fix = false; /* whether a heading was fixed yet, and the tacho counts then */
+  private int fix_tacho_l, fix_tacho_r;
+  private double fix_theta;
 
   // default constructor
   public Odometer(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, double wheel_rad, double wheel_base) {
+    this(wheel_rad, wheel_base);
     this.leftMotor = leftMotor;
     this.rightMotor = rightMotor;
-    this.WHEEL_RAD = wheel_rad;
-    this.WHEELBASE = wheel_base;
+
+    leftMotor.resetTachoCount();
+    rightMotor.resetTachoCount();
+  }
+
+  // constructor without motors (replay, benchmarks), the position is only updated through update()
+  Odometer(double wheel_rad, double wheel_base) {
     this.x = 0.0;
     this.y = 0.0;
     this.theta = Math.toRadians(0.0);
     this.leftMotorTachoCount = 0;
     this.rightMotorTachoCount = 0;
     lock = new Object();
-
-    leftMotor.resetTachoCount();
-    rightMotor.resetTachoCount();
+    applyGeometry(wheel_rad, wheel_base, FinalProject.RIGHT_WHEEL_MULT);
+    setFixedPoint(FinalProject.FIXED_POINT_ODOMETRY);
   }
 
   // run method (required for Thread)
@@ -42,43 +62,11 @@ public class Odometer extends Thread {
     while (true) {
       updateStart = System.currentTimeMillis();
 
-      int phi_l = leftMotor.getTachoCount() - getLeftMotorTachoCount(); // Variation of rotation of
-                                                                        // right wheel, in degrees
-      int phi_r = rightMotor.getTachoCount() - getRightMotorTachoCount(); // Variation of rotation
-                                                                          // of right wheel, in
-                                                                          // degrees
-
-      // Set them for future use
-      setLeftMotorTachoCount(leftMotor.getTachoCount());
-      setRightMotorTachoCount(rightMotor.getTachoCount());
-
-      double d_l = computeDisplacement(WHEEL_RAD, phi_l);
-      double d_r = computeDisplacement(WHEEL_RAD, ((double)phi_r / FinalProject.RIGHT_WHEEL_MULT));
+      int tacho_l = leftMotor.getTachoCount();
+      int tacho_r = rightMotor.getTachoCount();
+      Replayer.captureTacho(capture, tacho_l, tacho_r);
 
-      // new theta
-      double delta_theta = ((d_r - d_l) / WHEELBASE);
-
-      double delta_dist = 0.5 * (d_l + d_r);
-      // Compute the position variation
-      
-      double new_theta = computeAngle(this.theta + delta_theta);
-  
-      double delta_x = delta_dist * Math.cos(new_theta);
-      double delta_y = delta_dist * Math.sin(new_theta);
-      
-      synchronized (lock) {
-        /**
-         * Don't use the variables x, y, or theta anywhere but here! Only update the values of x, y,
-         * and theta in this block. Do not perform complex math
-         */
-
-        // Update theta
-        setTheta(new_theta);       
-
-        // Update the position
-        setX(getX() + delta_x);
-        setY(getY() + delta_y);
-      }
+      update(tacho_l, tacho_r);
 
       // this ensures that the odometer only runs once every period
       updateEnd = System.currentTimeMillis();
@@ -93,16 +81,213 @@ public class Odometer extends Thread {
       }
     }
   }
+
+  /**
+   * Integrates the wheel rotations since the last update into the position.
+   * Each tacho count is read once, so that no rotation is lost between the difference and the
+   * stored value.
+   *
+   * @param tacho_l current tacho count of the left motor, in degrees
+   * @param tacho_r current tacho count of the right motor, in degrees
+   */
+  void update(int tacho_l, int tacho_r) {
+    double[] geometry = pending_geometry;
+    if (geometry != null) {
+      pending_geometry = null;
+      applyGeometry(geometry[0], geometry[1], geometry[2]);
+    }
+
+    int phi_l = tacho_l - getLeftMotorTachoCount(); // Variation of rotation of left wheel, in degrees
+    int phi_r = tacho_r - getRightMotorTachoCount(); // Variation of rotation of right wheel, in degrees
+
+    // Set them for future use
+    setLeftMotorTachoCount(tacho_l);
+    setRightMotorTachoCount(tacho_r);
+
+    if (fixed_point) {
+      updateFixed(phi_l, phi_r);
+      return;
+    }
+
+    double d_l = computeDisplacement(wheel_rad, phi_l);
+    double d_r = computeDisplacement(wheel_rad, ((double)phi_r / right_mult));
+
+    // new theta
+    double delta_theta = ((d_r - d_l) / wheel_base);
+
+    double delta_dist = 0.5 * (d_l + d_r);
+    // Compute the position variation
+    
+    double new_theta = computeAngle(this.theta + delta_theta);
+
+    double delta_x = delta_dist * Math.cos(new_theta);
+    double delta_y = delta_dist * Math.sin(new_theta);
+    
+    synchronized (lock) {
+      /**
+       * Don't use the variables x, y, or theta anywhere but here! Only update the values of x, y,
+       * and theta in this block. Do not perform complex math
+       */
+
+      version++;
+
+      // Update theta
+      this.theta = new_theta;
+
+      // Update the position
+      this.x += delta_x;
+      this.y += delta_y;
+
+      version++;
+    }
+  }
   
-  public double computeAngle(double t_rad) {
-    double t_deg = Math.toDegrees(t_rad);
-    if (t_deg > 359.99999999 && t_deg >= 0) {
-      t_deg = t_deg - 360;
-    } else if (t_deg < 0) {
-      t_deg = 360 + t_deg;
+  /**
+   * Same as update(), in Q16.16: no floating point operation but the conversions of the result,
+   * as the brick has no floating point unit.
+   *
+   * @param phi_l rotation of the left wheel since the last update, in degrees
+   * @param phi_r rotation of the right wheel since the last update, in degrees
+   */
+  private void updateFixed(int phi_l, int phi_r) {
+    // The accumulator and the base heading are reset under the lock when the position is set from
+    // outside (syncFixed()), so they are only read and updated with it held: a correction cannot
+    // be lost, or have an old accumulator added to it.
+    synchronized (lock) {
+      long d_l = (long) phi_l * cm_per_deg_l_q24;
+      long d_r = (long) phi_r * cm_per_deg_r_q24;
+
+      // The heading only depends on the total rotation of the wheels since it was last set, so it
+      // is computed from their sum, which has no rounding error, rather than integrated.
+      heading_acc += d_r - d_l;
+      long heading = theta_base_q + ((heading_acc << FixedPoint.FRACTION_BITS) / wheel_base_q24);
+
+      int new_theta = FixedPoint.wrapAngle((int) (heading % FixedPoint.TWO_PI));
+
+      // Average of both wheels, back to Q16.16, rounded.
+      int delta_dist = (int) ((d_l + d_r + (1 << 8)) >> 9);
+
+      int delta_x = FixedPoint.mul(delta_dist, FixedPoint.cos(new_theta));
+      int delta_y = FixedPoint.mul(delta_dist, FixedPoint.sin(new_theta));
+
+      version++;
+
+      theta_q = new_theta;
+      x_q += delta_x;
+      y_q += delta_y;
+
+      this.theta = FixedPoint.toDouble(theta_q);
+      this.x = FixedPoint.toDouble(x_q);
+      this.y = FixedPoint.toDouble(y_q);
+
+      version++;
+    }
+  }
+
+  /**
+   * Copies the position set from outside into the fixed-point position. Must be called with the
+   * lock held.
+   */
+  private void syncFixed() {
+    x_q = FixedPoint.fromDouble(x);
+    y_q = FixedPoint.fromDouble(y);
+    theta_q = FixedPoint.fromDouble(theta);
+    theta_base_q = theta_q;
+    heading_acc = 0;
+  }
+
+  /**
+   * Sets the wheel radius, the wheel base and the right wheel multiplier. They are applied by the
+   * odometer thread at its next update, as the heading integrated so far must be kept with the
+   * previous ones.
+   *
+   * @param wheel_rad the wheel radius, in cm
+   * @param wheel_base the wheel base, in cm
+   * @param right_mult the right wheel multiplier (see FinalProject.RIGHT_WHEEL_MULT)
+   */
+  public void setGeometry(double wheel_rad, double wheel_base, double right_mult) {
+    pending_geometry = new double[] {wheel_rad, wheel_base, right_mult};
+  }
+
+  /**
+   * Sets the calibration to which the heading fixes are given, see fixHeading().
+   *
+   * @param calibration the calibration, or null
+   */
+  public void setCalibration(OdometryCalibration calibration) {
+    this.calibration = calibration;
+  }
+
+  /**
+   * Sets the heading to one measured on the board (e.g. by squaring up on a line). Unlike
+   * setTheta(), the heading is known to be right, so the change of heading since the previous fix
+   * and the wheel rotations over it are given to the calibration, if any.
+   *
+   * @param theta the heading, in radians
+   */
+  public void fixHeading(double theta) {
+    int tacho_l, tacho_r;
+
+    synchronized (lock) {
+      tacho_l = leftMotorTachoCount;
+      tacho_r = rightMotorTachoCount;
+    }
+
+    if (calibration != null && has_fix) {
+      calibration.observeHeading(tacho_l - fix_tacho_l, tacho_r - fix_tacho_r, theta - fix_theta);
+    }
+
+    has_fix = true;
+    fix_tacho_l = tacho_l;
+    fix_tacho_r = tacho_r;
+    fix_theta = theta;
+
+    setTheta(theta);
+  }
+
+  /**
+   * Chooses between integrating the position with doubles and in Q16.16 (see FixedPoint). The
+   * default is FinalProject.FIXED_POINT_ODOMETRY, this is for the benchmarks and tests.
+   *
+   * @param fixed_point true to integrate in Q16.16
+   */
+  void setFixedPoint(boolean fixed_point) {
+    synchronized (lock) {
+      this.fixed_point = fixed_point;
+      syncFixed();
+    }
+  }
+
+  /**
+   * Gets the position in Q16.16, for the fixed-point navigation.
+   *
+   * @param position array of (at least) three values in which x, y (cm) and theta (rad) are copied
+   */
+  void getPositionFixed(int[] position) {
+    synchronized (lock) {
+      if (fixed_point) {
+        position[0] = x_q;
+        position[1] = y_q;
+        position[2] = theta_q;
+      } else {
+        position[0] = FixedPoint.fromDouble(x);
+        position[1] = FixedPoint.fromDouble(y);
+        position[2] = FixedPoint.fromDouble(theta);
+      }
     }
+  }
 
-    return Math.toRadians(t_deg);
+  /**
+   * Log the raw tacho counts to `capture` from now on (capture mode), see Replayer.
+   *
+   * @param capture the tacho capture log, or null to stop capturing
+   */
+  void setCapture(BinaryLog capture) {
+    this.capture = capture;
+  }
+
+  public double computeAngle(double t_rad) {
+    return Angles.normalize(t_rad);
   }
 
   public void getPosition(double[] position, boolean[] update) {
@@ -117,6 +302,44 @@ public class Odometer extends Thread {
     }
   }
 
+  /**
+   * Gets a consistent copy of the position without taking the lock, for the display and the
+   * telemetry. If the position changes while it is being copied, it is copied again.
+   *
+   * @param position array of (at least) three values in which x, y (cm) and theta (degrees) are
+   *        copied
+   */
+  public void getPositionSnapshot(double[] position) {
+    int before;
+    do {
+      before = version;
+      position[0] = x;
+      position[1] = y;
+      position[2] = theta;
+    } while ((before & 1) != 0 || version != before);
+
+    position[2] = Math.toDegrees(position[2]);
+  }
+
+  /**
+   * Gets a consistent copy of the position, like getPositionSnapshot(), into a reusable pose so
+   * that the control loop doesn't allocate anything.
+   *
+   * @param pose the pose in which x, y (cm) and theta (rad) are copied
+   * @return the pose
+   */
+  public Pose getPose(Pose pose) {
+    int before;
+    do {
+      before = version;
+      pose.x = x;
+      pose.y = y;
+      pose.theta = theta;
+    } while ((before & 1) != 0 || version != before);
+
+    return pose;
+  }
+
   public double getX() {
     double result;
 
@@ -151,30 +374,42 @@ public class Odometer extends Thread {
   public void setPosition(double[] position, boolean[] update) {
     // ensure that the values don't change while the odometer is running
     synchronized (lock) {
+      version++;
       if (update[0])
         x = position[0];
       if (update[1])
         y = position[1];
       if (update[2])
         theta = position[2];
+      syncFixed();
+      version++;
     }
   }
 
   public void setX(double x) {
     synchronized (lock) {
+      version++;
       this.x = x;
+      syncFixed();
+      version++;
     }
   }
 
   public void setY(double y) {
     synchronized (lock) {
+      version++;
       this.y = y;
+      syncFixed();
+      version++;
     }
   }
 
   public void setTheta(double theta) {
     synchronized (lock) {
+      version++;
       this.theta = theta;
+      syncFixed();
+      version++;
     }
   }
 
@@ -210,6 +445,22 @@ public class Odometer extends Thread {
     }
   }
 
+  /**
+   * Replaces the geometry, keeping the heading integrated so far with the previous one.
+   */
+  private void applyGeometry(double wheel_rad, double wheel_base, double right_mult) {
+    synchronized (lock) {
+      this.wheel_rad = wheel_rad;
+      this.wheel_base = wheel_base;
+      this.right_mult = right_mult;
+      cm_per_deg_l_q24 = (int) Math.round(computeDisplacement(wheel_rad, 1) * (1 << 24));
+      cm_per_deg_r_q24 = (int) Math.round(computeDisplacement(wheel_rad, 1 / right_mult) * (1 << 24));
+      wheel_base_q24 = Math.round(wheel_base * (1 << 24));
+      theta_base_q = theta_q;
+      heading_acc = 0;
+    }
+  }
+
   private double computeDisplacement(double radius, double phi) {
     return (radius * Math.PI * phi) / 180;
   }
@@ -0,0 +1,392 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Refines the wheel radius, the wheel base and the right wheel multiplier of the robot while it
+ * plays, from what the board tells about its motion, and keeps them from one run to the next.
+ *
+ * With k the distance travelled per degree of the left wheel (k = WHEEL_RADIUS * pi / 180), the
+ * odometry model is: the left wheel travels k * phi_l, the right one k * phi_r / RIGHT_WHEEL_MULT,
+ * and the heading changes by the difference over WHEEL_BASE. It is linear in these parameters:
+ * - a heading change is b * phi_r - a * phi_l, with a = k / WHEEL_BASE and b = a / RIGHT_WHEEL_MULT,
+ *   it is observed between two headings fixed by the light localization (`observeHeading()`),
+ * - a distance is k * (phi_l + phi_r / RIGHT_WHEEL_MULT) / 2, it is observed between two lines seen
+ *   by the same sensor in a straight run (`observeDistance()`).
+ * Each is estimated by recursive least squares, starting from the hand-tuned constants. Then
+ * WHEEL_RADIUS = k * 180 / pi, RIGHT_WHEEL_MULT = a / b and WHEEL_BASE = k / a, each kept within
+ * MAX_DEVIATION of its constant, so that a bad run cannot take the robot far from what it was
+ * tuned for.
+ *
+ * @author Joshua Inscoe
+ */
+public class OdometryCalibration {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // Magic number at the start of a saved calibration ("DPMC")
+  private static final int MAGIC = 0x44504D43;
+
+  // Standard deviation of the hand-tuned constants, relative to them
+  static final double PRIOR_SPREAD = 0.03;
+
+  // Standard deviation added to the parameters at each run (relative), as the robot wears and is
+  // rebuilt between runs
+  static final double RUN_DRIFT = 0.005;
+
+  // Largest deviation of the values from the hand-tuned constants (relative)
+  static final double MAX_DEVIATION = 0.1;
+
+  // Noise of the observations: of a heading fixed by the light localization (in rad), and of a
+  // distance between two lines (in cm)
+  private static final double HEADING_NOISE = Math.toRadians(1.0);
+  private static final double DISTANCE_NOISE = 0.5;
+
+  // Observations off by more than this are not used: a heading error (in rad), and a distance
+  // error relative to the distance
+  private static final double HEADING_OUTLIER = Math.toRadians(20.0);
+  private static final double DISTANCE_OUTLIER = 0.1;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The hand-tuned constants
+  private final double nominalRadius;
+  private final double nominalBase;
+  private final double nominalMult;
+
+  // Estimates of (a, b) from the headings, and of k from the distances
+  private final RecursiveLeastSquares heading;
+  private final RecursiveLeastSquares distance;
+
+  // The regressors of an observation, allocated once
+  private final double[] headingX;
+  private final double[] distanceX;
+
+  // The values, updated after each observation
+  private volatile double wheelRadius;
+  private volatile double wheelBase;
+  private volatile double rightMult;
+
+  // Where the values go (may be null)
+  private Odometer odometer;
+  private Driver driver;
+
+  // Observations of this run: used, rejected, and the sums of their squared errors
+  private int headingCount;
+  private int distanceCount;
+  private int rejected;
+  private double headingErrorSum;
+  private double distanceErrorSum;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param radius the hand-tuned wheel radius (in cm)
+   * @param base the hand-tuned wheel base (in cm)
+   * @param mult the hand-tuned right wheel multiplier
+   */
+  public OdometryCalibration(double radius, double base, double mult) {
+
+    this.nominalRadius = radius;
+    this.nominalBase = base;
+    this.nominalMult = mult;
+
+    double k = Math.toRadians(radius);
+    double a = k / base;
+    double b = a / mult;
+
+    double spread = OdometryCalibration.PRIOR_SPREAD;
+
+    this.heading = new RecursiveLeastSquares(new double[] { a, b },
+        new double[] { (spread * a) * (spread * a), (spread * b) * (spread * b) }, 1.0);
+    this.distance = new RecursiveLeastSquares(new double[] { k },
+        new double[] { (spread * k) * (spread * k) }, 1.0);
+
+    this.headingX = new double[2];
+    this.distanceX = new double[1];
+
+    this.recompute();
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Give the values to the odometer and the driver, now and after each observation.
+   *
+   * @param odometer the odometer of the robot (may be null)
+   * @param driver the driver of the robot (may be null)
+   */
+  public synchronized void attach(Odometer odometer, Driver driver) {
+
+    this.odometer = odometer;
+    this.driver = driver;
+
+    this.apply();
+
+    return;
+  }
+
+  /**
+   * Observe a change of heading.
+   *
+   * @param phiLeft the rotation of the left wheel during the change (in degrees)
+   * @param phiRight the rotation of the right wheel during the change (in degrees)
+   * @param change the change of heading (in rad), only known modulo 2 pi
+   * @return true if the observation was used, false if it is too far off the prediction
+   */
+  public synchronized boolean observeHeading(int phiLeft, int phiRight, double change) {
+
+    if (phiLeft == 0 && phiRight == 0) {
+      return false;
+    }
+
+    double noise = OdometryCalibration.HEADING_NOISE;
+
+    this.headingX[0] = -phiLeft / noise;
+    this.headingX[1] = phiRight / noise;
+
+    // The turn the wheels made, plus the error of the odometry over it.
+    double predicted = this.heading.predict(this.headingX) * noise;
+    double error = Angles.normalizeSigned(change - predicted);
+
+    if (Math.abs(error) > OdometryCalibration.HEADING_OUTLIER) {
+      this.rejected++;
+      return false;
+    }
+
+    this.heading.update(this.headingX, (predicted + error) / noise);
+
+    this.headingCount++;
+    this.headingErrorSum += error * error;
+    this.recompute();
+    this.apply();
+
+    return true;
+  }
+
+  /**
+   * Observe a distance travelled in a straight line.
+   *
+   * @param phiLeft the rotation of the left wheel over the distance (in degrees)
+   * @param phiRight the rotation of the right wheel over the distance (in degrees)
+   * @param travelled the distance (in cm), negative when going backward
+   * @return true if the observation was used, false if it is too far off the prediction
+   */
+  public synchronized boolean observeDistance(int phiLeft, int phiRight, double travelled) {
+
+    double noise = OdometryCalibration.DISTANCE_NOISE;
+
+    this.distanceX[0] = 0.5 * (phiLeft + phiRight / this.rightMult) / noise;
+
+    double error = travelled - this.distance.predict(this.distanceX) * noise;
+
+    if (travelled == 0.0
+        || Math.abs(error) > OdometryCalibration.DISTANCE_OUTLIER * Math.abs(travelled)) {
+      this.rejected++;
+      return false;
+    }
+
+    this.distance.update(this.distanceX, travelled / noise);
+
+    this.distanceCount++;
+    this.distanceErrorSum += error * error;
+    this.recompute();
+    this.apply();
+
+    return true;
+  }
+
+  public double getWheelRadius() {
+
+    return this.wheelRadius;
+  }
+
+  public double getWheelBase() {
+
+    return this.wheelBase;
+  }
+
+  public double getRightMult() {
+
+    return this.rightMult;
+  }
+
+  /**
+   * Get the number of observations used, over all runs.
+   *
+   * @return the number of headings and distances used
+   */
+  public int getUpdates() {
+
+    return this.heading.getUpdates() + this.distance.getUpdates();
+  }
+
+  /**
+   * Save the calibration to a file.
+   *
+   * @param path the path of the file
+   * @throws IOException if the file cannot be written
+   */
+  public synchronized void save(String path) throws IOException {
+
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(path));
+
+    try {
+      out.writeInt(OdometryCalibration.MAGIC);
+      out.writeDouble(this.nominalRadius);
+      out.writeDouble(this.nominalBase);
+      out.writeDouble(this.nominalMult);
+
+      this.heading.write(out);
+      this.distance.write(out);
+    } finally {
+      out.close();
+    }
+
+    return;
+  }
+
+  /**
+   * Load a calibration from a file, if it exists and was made from the same hand-tuned constants
+   * (they are changed when the robot is rebuilt, which makes the calibration useless). The
+   * parameters are let to move a bit more than at the end of the saved run, see RUN_DRIFT.
+   *
+   * @param path the path of the file
+   * @param radius the hand-tuned wheel radius (in cm)
+   * @param base the hand-tuned wheel base (in cm)
+   * @param mult the hand-tuned right wheel multiplier
+   * @return the calibration, or null if there is no such file or it is for other constants
+   * @throws IOException if the file cannot be read or is not a calibration
+   */
+  public static OdometryCalibration load(String path, double radius, double base, double mult)
+      throws IOException {
+
+    if (!new File(path).exists()) {
+      return null;
+    }
+
+    DataInputStream in = new DataInputStream(new FileInputStream(path));
+
+    try {
+      if (in.readInt() != OdometryCalibration.MAGIC) {
+        throw new IOException("not an odometry calibration: " + path);
+      }
+
+      if (in.readDouble() != radius || in.readDouble() != base || in.readDouble() != mult) {
+        return null;
+      }
+
+      OdometryCalibration calibration = new OdometryCalibration(radius, base, mult);
+
+      calibration.heading.read(in);
+      calibration.distance.read(in);
+      calibration.drift();
+      calibration.recompute();
+
+      return calibration;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Print the values, and how far off the observations of this run were.
+   *
+   * @param out where to print
+   */
+  public synchronized void dump(PrintStream out) {
+
+    double headingRms =
+        (this.headingCount > 0) ? Math.sqrt(this.headingErrorSum / this.headingCount) : 0.0;
+    double distanceRms =
+        (this.distanceCount > 0) ? Math.sqrt(this.distanceErrorSum / this.distanceCount) : 0.0;
+
+    out.println("Calibration: radius " + this.wheelRadius + " cm (" + this.nominalRadius
+        + "), base " + this.wheelBase + " cm (" + this.nominalBase + "), right mult "
+        + this.rightMult + " (" + this.nominalMult + "), " + this.getUpdates() + " updates");
+    out.println("  this run: " + this.headingCount + " headings (rms error "
+        + Math.toDegrees(headingRms) + " deg), " + this.distanceCount + " distances (rms error "
+        + distanceRms + " cm), " + this.rejected + " rejected");
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Compute the values from the parameters, within MAX_DEVIATION of the constants.
+   */
+  private void recompute() {
+
+    double a = this.heading.getParameter(0);
+    double b = this.heading.getParameter(1);
+    double k = this.distance.getParameter(0);
+
+    this.wheelRadius = OdometryCalibration.clamp(Math.toDegrees(k), this.nominalRadius);
+    this.wheelBase = OdometryCalibration.clamp(k / a, this.nominalBase);
+    this.rightMult = OdometryCalibration.clamp(a / b, this.nominalMult);
+
+    return;
+  }
+
+  private void apply() {
+
+    if (this.odometer != null) {
+      this.odometer.setGeometry(this.wheelRadius, this.wheelBase, this.rightMult);
+    }
+    if (this.driver != null) {
+      this.driver.setGeometry(this.wheelRadius, this.wheelBase, this.rightMult);
+    }
+
+    return;
+  }
+
+  /**
+   * Let the parameters move by RUN_DRIFT more, in the units of the regressors of each estimate.
+   */
+  private void drift() {
+
+    double k = Math.toRadians(this.nominalRadius);
+    double a = k / this.nominalBase;
+    double b = a / this.nominalMult;
+    double drift = OdometryCalibration.RUN_DRIFT;
+
+    this.heading.inflate(new double[] { (drift * a) * (drift * a), (drift * b) * (drift * b) });
+    this.distance.inflate(new double[] { (drift * k) * (drift * k) });
+
+    return;
+  }
+
+  private static double clamp(double value, double nominal) {
+
+    double limit = OdometryCalibration.MAX_DEVIATION * Math.abs(nominal);
+
+    if (Double.isNaN(value)) {
+      return nominal;
+    }
+
+    return Math.max(nominal - limit, Math.min(nominal + limit, value));
+  }
+}
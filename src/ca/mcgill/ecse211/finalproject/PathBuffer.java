@@ -0,0 +1,447 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * A path, i.e. a list of waypoints (in tiles), stored as two arrays of coordinates instead of an
+ * array of Waypoint objects.
+ *
+ * A path of n waypoints takes two arrays, instead of one array and n objects, and it can be filled
+ * again without allocating anything as long as it is not longer than it ever was. Every operation
+ * is done in place.
+ *
+ * Each waypoint also has flags, which tell the navigator what to do there (see FLAG_STOP).
+ *
+ * @author Joshua Inscoe
+ */
+public class PathBuffer {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The robot must stop at the waypoint (e.g. to look around), instead of driving through it when
+  // the next one is straight ahead
+  public static final int FLAG_STOP = 1;
+
+  // The capacity of a path when none is given
+  private static final int DEFAULT_CAPACITY = 8;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The coordinates (in tiles) of the waypoints, only the first `size` are part of the path
+  private double[] xs;
+  private double[] ys;
+
+  // The flags of the waypoints
+  private int[] flags;
+
+  // The number of waypoints in the path
+  private int size;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, for an empty path.
+   */
+  public PathBuffer() {
+
+    this(PathBuffer.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor, for an empty path.
+   *
+   * @param capacity the number of waypoints the path can hold before it must grow
+   */
+  public PathBuffer(int capacity) {
+
+    this.xs = new double[Math.max(capacity, 1)];
+    this.ys = new double[Math.max(capacity, 1)];
+    this.flags = new int[Math.max(capacity, 1)];
+
+    this.size = 0;
+  }
+
+  /**
+   * Constructor, for a path through the given waypoints.
+   *
+   * @param waypoints the waypoints (in tiles)
+   */
+  public PathBuffer(Waypoint... waypoints) {
+
+    this(waypoints.length);
+
+    for (Waypoint waypoint : waypoints) {
+      this.append(waypoint.x, waypoint.y);
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Get the number of waypoints in the path.
+   *
+   * @return the length of the path
+   */
+  public int size() {
+
+    return this.size;
+  }
+
+  /**
+   * Check whether the path has no waypoint.
+   *
+   * @return true if the path is empty
+   */
+  public boolean isEmpty() {
+
+    return this.size == 0;
+  }
+
+  /**
+   * Get the x-coordinate of a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @return the x-coordinate (in tiles)
+   */
+  public double getX(int i) {
+
+    this.check(i);
+
+    return this.xs[i];
+  }
+
+  /**
+   * Get the y-coordinate of a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @return the y-coordinate (in tiles)
+   */
+  public double getY(int i) {
+
+    this.check(i);
+
+    return this.ys[i];
+  }
+
+  /**
+   * Get the flags of a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @return the flags (see FLAG_STOP)
+   */
+  public int getFlags(int i) {
+
+    this.check(i);
+
+    return this.flags[i];
+  }
+
+  /**
+   * Check whether the robot must stop at a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @return true if the waypoint has FLAG_STOP
+   */
+  public boolean isStop(int i) {
+
+    return (this.getFlags(i) & PathBuffer.FLAG_STOP) != 0;
+  }
+
+  /**
+   * Set the flags of a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @param flags the new flags (see FLAG_STOP)
+   */
+  public void setFlags(int i, int flags) {
+
+    this.check(i);
+
+    this.flags[i] = flags;
+
+    return;
+  }
+
+  /**
+   * Get a copy of a waypoint, e.g. for the code that still deals with Waypoint objects.
+   *
+   * @param i the index of the waypoint in the path
+   * @return a new Waypoint
+   */
+  public Waypoint get(int i) {
+
+    return new Waypoint(this.getX(i), this.getY(i));
+  }
+
+  /**
+   * Move a waypoint.
+   *
+   * @param i the index of the waypoint in the path
+   * @param x the new x-coordinate (in tiles)
+   * @param y the new y-coordinate (in tiles)
+   */
+  public void set(int i, double x, double y) {
+
+    this.check(i);
+
+    this.xs[i] = x;
+    this.ys[i] = y;
+
+    return;
+  }
+
+  /**
+   * Remove every waypoint, keeping the arrays.
+   *
+   * @return this path
+   */
+  public PathBuffer clear() {
+
+    this.size = 0;
+
+    return this;
+  }
+
+  /**
+   * Add a waypoint, without flags, at the end of the path.
+   *
+   * @param x the x-coordinate (in tiles)
+   * @param y the y-coordinate (in tiles)
+   * @return this path
+   */
+  public PathBuffer append(double x, double y) {
+
+    return this.append(x, y, 0);
+  }
+
+  /**
+   * Add a waypoint at the end of the path.
+   *
+   * @param x the x-coordinate (in tiles)
+   * @param y the y-coordinate (in tiles)
+   * @param flags the flags of the waypoint (see FLAG_STOP)
+   * @return this path
+   */
+  public PathBuffer append(double x, double y, int flags) {
+
+    if (this.size == this.xs.length) {
+      this.grow(2 * this.size);
+    }
+
+    this.xs[this.size] = x;
+    this.ys[this.size] = y;
+    this.flags[this.size] = flags;
+    ++this.size;
+
+    return this;
+  }
+
+  /**
+   * Add a waypoint, without flags, at the end of the path.
+   *
+   * @param waypoint the waypoint (in tiles)
+   * @return this path
+   */
+  public PathBuffer append(Waypoint waypoint) {
+
+    return this.append(waypoint.x, waypoint.y);
+  }
+
+  /**
+   * Add every waypoint of another path at the end of this one.
+   *
+   * @param other the other path
+   * @return this path
+   */
+  public PathBuffer append(PathBuffer other) {
+
+    int n = other.size;
+
+    if (this.size + n > this.xs.length) {
+      this.grow(this.size + n);
+    }
+
+    System.arraycopy(other.xs, 0, this.xs, this.size, n);
+    System.arraycopy(other.ys, 0, this.ys, this.size, n);
+    System.arraycopy(other.flags, 0, this.flags, this.size, n);
+    this.size += n;
+
+    return this;
+  }
+
+  /**
+   * Replace this path with a copy of another one.
+   *
+   * @param other the other path
+   * @return this path
+   */
+  public PathBuffer copyFrom(PathBuffer other) {
+
+    return this.clear().append(other);
+  }
+
+  /**
+   * Only keep the waypoints from index `from` (inclusive) to `to` (exclusive).
+   *
+   * @return this path
+   */
+  public PathBuffer slice(int from, int to) {
+
+    if (from < 0 || to > this.size || from > to) {
+      throw new IndexOutOfBoundsException("slice(" + from + ", " + to + ") of " + this.size);
+    }
+
+    System.arraycopy(this.xs, from, this.xs, 0, to - from);
+    System.arraycopy(this.ys, from, this.ys, 0, to - from);
+    System.arraycopy(this.flags, from, this.flags, 0, to - from);
+    this.size = to - from;
+
+    return this;
+  }
+
+  /**
+   * Reverse the order of the waypoints.
+   *
+   * @return this path
+   */
+  public PathBuffer reverse() {
+
+    this.reverse(0, this.size);
+
+    return this;
+  }
+
+  /**
+   * Shift the waypoints circularly, so that the waypoint at index `k` comes first.
+   *
+   * @param k the index of the new first waypoint (any integer, taken modulo the size)
+   * @return this path
+   */
+  public PathBuffer rotate(int k) {
+
+    if (this.size == 0) {
+      return this;
+    }
+
+    k = ((k % this.size) + this.size) % this.size;
+
+    // Three reversals, so that no temporary array is needed.
+    this.reverse(0, k);
+    this.reverse(k, this.size);
+    this.reverse(0, this.size);
+
+    return this;
+  }
+
+  /**
+   * Get the index of the waypoint closest to a point.
+   *
+   * @param x the x-coordinate of the point (in tiles)
+   * @param y the y-coordinate of the point (in tiles)
+   * @return the index of the closest waypoint, -1 if the path is empty
+   */
+  public int closestTo(double x, double y) {
+
+    int closest = -1;
+    double minimum = Double.MAX_VALUE;
+
+    for (int i = 0; i < this.size; ++i) {
+      double dx = this.xs[i] - x;
+      double dy = this.ys[i] - y;
+      double distance = dx * dx + dy * dy;
+
+      if (distance < minimum) {
+        minimum = distance;
+        closest = i;
+      }
+    }
+
+    return closest;
+  }
+
+  /**
+   * Get a copy of the path as Waypoint objects, e.g. for the tests.
+   *
+   * @return a new array of new waypoints
+   */
+  public Waypoint[] toWaypoints() {
+
+    Waypoint[] waypoints = new Waypoint[this.size];
+
+    for (int i = 0; i < this.size; ++i) {
+      waypoints[i] = new Waypoint(this.xs[i], this.ys[i]);
+    }
+
+    return waypoints;
+  }
+
+  public String toString() {
+
+    StringBuilder builder = new StringBuilder("[");
+
+    for (int i = 0; i < this.size; ++i) {
+      builder.append((i == 0) ? "(" : ", (").append(this.xs[i]).append(", ").append(this.ys[i]);
+      builder.append(this.isStop(i) ? ", stop)" : ")");
+    }
+
+    return builder.append("]").toString();
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private void check(int i) {
+
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException("waypoint " + i + " of " + this.size);
+    }
+
+    return;
+  }
+
+  private void grow(int capacity) {
+
+    double[] xs = new double[capacity];
+    double[] ys = new double[capacity];
+    int[] flags = new int[capacity];
+
+    System.arraycopy(this.xs, 0, xs, 0, this.size);
+    System.arraycopy(this.ys, 0, ys, 0, this.size);
+    System.arraycopy(this.flags, 0, flags, 0, this.size);
+
+    this.xs = xs;
+    this.ys = ys;
+    this.flags = flags;
+
+    return;
+  }
+
+  private void reverse(int from, int to) {
+
+    for (int i = from, j = to - 1; i < j; ++i, --j) {
+      double x = this.xs[i];
+      double y = this.ys[i];
+      int flags = this.flags[i];
+
+      this.xs[i] = this.xs[j];
+      this.ys[i] = this.ys[j];
+      this.flags[i] = this.flags[j];
+      this.xs[j] = x;
+      this.ys[j] = y;
+      this.flags[j] = flags;
+    }
+
+    return;
+  }
+}
@@ -0,0 +1,112 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * Simplifies a path before the navigator drives it, so that it drives long straight runs in one
+ * motion instead of stopping at every tile.
+ *
+ * A waypoint is dropped when the path, without it, never strays further than a clearance from the
+ * original one: with (almost) no clearance, only the waypoints in the middle of a straight run are
+ * dropped, with more, corners are cut too. The first and last waypoints, and the waypoints with
+ * FLAG_STOP (see PathBuffer), are always kept.
+ *
+ * @author Joshua Inscoe
+ */
+public class PathSmoother {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The clearance (in tiles) with which only collinear waypoints are dropped, it only absorbs the
+  // rounding of the coordinates
+  public static final double COLLINEAR = 1e-6;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  private PathSmoother() {
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Drop, in place, the waypoints the path can do without.
+   *
+   * @param path the path to simplify
+   * @param clearance the largest distance (in tiles) between the simplified path and any dropped
+   *        waypoint, e.g. COLLINEAR to only merge straight runs
+   * @return the path
+   */
+  public static PathBuffer smooth(PathBuffer path, double clearance) {
+
+    int n = path.size();
+
+    if (n < 3) {
+      return path;
+    }
+
+    // The last waypoint kept, and where the next one kept is written. Waypoints are only ever
+    // written at or before the index they are read from, so nothing is overwritten before it is
+    // read.
+    int anchor = 0;
+    int kept = 1;
+
+    for (int i = 1; i < n - 1; ++i) {
+      if (!path.isStop(i) && PathSmoother.isClear(path, anchor, i + 1, clearance)) {
+        // Going straight from the anchor to the next waypoint is close enough.
+        continue;
+      }
+
+      path.set(kept, path.getX(i), path.getY(i));
+      path.setFlags(kept, path.getFlags(i));
+      anchor = i;
+      ++kept;
+    }
+
+    path.set(kept, path.getX(n - 1), path.getY(n - 1));
+    path.setFlags(kept, path.getFlags(n - 1));
+
+    return path.slice(0, kept + 1);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Check whether every waypoint strictly between `from` and `to` is within the clearance of the
+   * segment from `from` to `to`.
+   */
+  private static boolean isClear(PathBuffer path, int from, int to, double clearance) {
+
+    double ax = path.getX(from);
+    double ay = path.getY(from);
+    double dx = path.getX(to) - ax;
+    double dy = path.getY(to) - ay;
+    double length = dx * dx + dy * dy;
+
+    for (int i = from + 1; i < to; ++i) {
+      double px = path.getX(i) - ax;
+      double py = path.getY(i) - ay;
+
+      // The closest point of the segment, the waypoint may be past either end of it.
+      double t = (length > 0.0) ? (px * dx + py * dy) / length : 0.0;
+      t = Math.max(0.0, Math.min(1.0, t));
+
+      double ex = px - t * dx;
+      double ey = py - t * dy;
+
+      if (ex * ex + ey * ey > clearance * clearance) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,74 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * A mutable position and heading of the robot on the board.
+ *
+ * Like Vector2, a pose is meant to be allocated once and filled again at every tick (see
+ * `Odometer.getPose()`).
+ *
+ * @author Joshua Inscoe
+ */
+public class Pose {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The position (in centimeters)
+  public double x;
+  public double y;
+
+  // The heading (in radians, counter-clockwise from the x-axis), in [0, 2 pi)
+  public double theta;
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Set the position and heading.
+   *
+   * @return this pose
+   */
+  public Pose set(double x, double y, double theta) {
+
+    this.x = x;
+    this.y = y;
+    this.theta = theta;
+
+    return this;
+  }
+
+  /**
+   * Get the distance to a point.
+   *
+   * @param x the x-coordinate of the point (in centimeters)
+   * @param y the y-coordinate of the point (in centimeters)
+   * @return the distance (in centimeters)
+   */
+  public double distanceTo(double x, double y) {
+
+    double dx = x - this.x;
+    double dy = y - this.y;
+
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Get the angle by which to turn to face a point.
+   *
+   * @param x the x-coordinate of the point (in centimeters)
+   * @param y the y-coordinate of the point (in centimeters)
+   * @return the angle (in radians), in (-pi, pi], positive counter-clockwise
+   */
+  public double angleTo(double x, double y) {
+
+    return Angles.normalizeSigned(Math.atan2(y - this.y, x - this.x) - this.theta);
+  }
+
+  public String toString() {
+
+    return "(" + this.x + ", " + this.y + ", " + Math.toDegrees(this.theta) + ")";
+  }
+}
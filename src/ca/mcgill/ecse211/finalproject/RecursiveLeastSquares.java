@@ -0,0 +1,219 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Recursive least-squares estimate of the parameters of a linear model y = x . theta, in constant
+ * memory: each observation updates the parameters and their covariance, and is then forgotten.
+ *
+ * The estimate starts from a prior (the parameters and their variances). The prior acts as a
+ * regularization: a combination of the parameters that the observations do not tell apart stays
+ * where the prior puts it. With a forgetting factor below 1, the older observations weigh less.
+ *
+ * @author Joshua Inscoe
+ */
+public class RecursiveLeastSquares {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The number of parameters
+  private final int n;
+
+  // The parameters, and their covariance (n x n, row after row)
+  private final double[] theta;
+  private final double[] covariance;
+
+  // The weight of the previous observations at each update, in (0, 1]
+  private final double forgetting;
+
+  // The number of observations so far
+  private int updates;
+
+  // Scratch arrays: P x, and the gain
+  private final double[] px;
+  private final double[] gain;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param prior the initial parameters
+   * @param variance the variance of each initial parameter
+   * @param forgetting the weight of the previous observations at each update, in (0, 1]
+   */
+  public RecursiveLeastSquares(double[] prior, double[] variance, double forgetting) {
+
+    if (prior.length != variance.length) {
+      throw new IllegalArgumentException("One variance per parameter");
+    }
+    if (!(forgetting > 0.0 && forgetting <= 1.0)) {
+      throw new IllegalArgumentException("Forgetting factor out of (0, 1]: " + forgetting);
+    }
+
+    this.n = prior.length;
+    this.theta = prior.clone();
+    this.covariance = new double[this.n * this.n];
+    this.forgetting = forgetting;
+    this.updates = 0;
+
+    for (int i = 0; i < this.n; ++i) {
+      this.covariance[i * this.n + i] = variance[i];
+    }
+
+    this.px = new double[this.n];
+    this.gain = new double[this.n];
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Update the estimate with an observation.
+   *
+   * @param x the regressors of the observation (one per parameter)
+   * @param y the observed value
+   * @return the error of the prediction of `y` before the update
+   */
+  public double update(double[] x, double y) {
+
+    int n = this.n;
+
+    // P x, and x' P x
+    double xpx = 0.0;
+
+    for (int i = 0; i < n; ++i) {
+      double sum = 0.0;
+      for (int j = 0; j < n; ++j) {
+        sum += this.covariance[i * n + j] * x[j];
+      }
+      this.px[i] = sum;
+      xpx += x[i] * sum;
+    }
+
+    double error = y - this.predict(x);
+    double denominator = this.forgetting + xpx;
+
+    for (int i = 0; i < n; ++i) {
+      this.gain[i] = this.px[i] / denominator;
+      this.theta[i] += this.gain[i] * error;
+    }
+
+    // P = (P - k (P x)') / lambda, P is symmetric so x' P = (P x)'.
+    for (int i = 0; i < n; ++i) {
+      for (int j = 0; j < n; ++j) {
+        this.covariance[i * n + j] =
+            (this.covariance[i * n + j] - this.gain[i] * this.px[j]) / this.forgetting;
+      }
+    }
+
+    ++this.updates;
+
+    return error;
+  }
+
+  /**
+   * Predict the value of an observation with the current parameters.
+   *
+   * @param x the regressors of the observation
+   * @return x . theta
+   */
+  public double predict(double[] x) {
+
+    double y = 0.0;
+
+    for (int i = 0; i < this.n; ++i) {
+      y += x[i] * this.theta[i];
+    }
+
+    return y;
+  }
+
+  /**
+   * Add to the variance of each parameter, e.g. to let them move again after a reboot.
+   *
+   * @param variance the variance added to each parameter
+   */
+  public void inflate(double[] variance) {
+
+    for (int i = 0; i < this.n; ++i) {
+      this.covariance[i * this.n + i] += variance[i];
+    }
+
+    return;
+  }
+
+  public double getParameter(int i) {
+
+    return this.theta[i];
+  }
+
+  public double getVariance(int i) {
+
+    return this.covariance[i * this.n + i];
+  }
+
+  public int getSize() {
+
+    return this.n;
+  }
+
+  public int getUpdates() {
+
+    return this.updates;
+  }
+
+  /**
+   * Write the parameters, their covariance and the number of observations.
+   *
+   * @param out where to write
+   * @throws IOException if it cannot be written
+   */
+  public void write(DataOutputStream out) throws IOException {
+
+    out.writeInt(this.n);
+    out.writeInt(this.updates);
+
+    for (int i = 0; i < this.n; ++i) {
+      out.writeDouble(this.theta[i]);
+    }
+    for (int i = 0; i < this.n * this.n; ++i) {
+      out.writeDouble(this.covariance[i]);
+    }
+
+    return;
+  }
+
+  /**
+   * Read back what `write()` wrote, into an estimate of the same size.
+   *
+   * @param in where to read
+   * @throws IOException if it cannot be read, or is not the same size
+   */
+  public void read(DataInputStream in) throws IOException {
+
+    if (in.readInt() != this.n) {
+      throw new IOException("unexpected number of parameters");
+    }
+
+    this.updates = in.readInt();
+
+    for (int i = 0; i < this.n; ++i) {
+      this.theta[i] = in.readDouble();
+    }
+    for (int i = 0; i < this.n * this.n; ++i) {
+      this.covariance[i] = in.readDouble();
+    }
+
+    return;
+  }
+}
@@ -0,0 +1,422 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Captures the raw sensor and tacho streams on the robot, and replays them anywhere.
+ *
+ * In capture mode, the SensorPoller logs every `fetchSample()` and the Odometer logs every pair
+ * of `getTachoCount()` to their own BinaryLog, with the time at which they were read. A replay
+ * merges the two files in time order and feeds the samples back through the same SensorData
+ * handlers and the same Odometer integration step as on the robot, without sleeping, so the
+ * state machines can be run on a desktop JVM much faster than real time (see `replay()`).
+ *
+ * Sensor records (SENSOR_RECORD_SIZE bytes): time (ns), channel (byte), number of values (byte),
+ * reserved (short), up to three values (floats).
+ *
+ * Tacho records (TACHO_RECORD_SIZE bytes): time (ns), left and right tacho counts (ints).
+ *
+ * @author Joshua Inscoe
+ */
+public class Replayer {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The names of the logs
+  public static final String SENSOR_LOG = "sensors";
+  public static final String TACHO_LOG = "tacho";
+
+  // The size (in bytes) of the records
+  public static final int SENSOR_RECORD_SIZE = 24;
+  public static final int TACHO_RECORD_SIZE = 16;
+
+  // The channels of the sensor records, in the order in which the SensorPoller reads them
+  public static final int CHANNEL_LIGHT_LEFT = 0;
+  public static final int CHANNEL_LIGHT_RIGHT = 1;
+  public static final int CHANNEL_LIGHT_MID = 2;
+  public static final int CHANNEL_ULTRASONIC = 3;
+  public static final int CHANNEL_COUNT = 4;
+
+  // The number of records held in memory by the capture logs (a few seconds of samples)
+  public static final int CAPTURE_CAPACITY = 2048;
+
+  // The maximum number of values in a sensor record
+  private static final int MAX_VALUES = 3;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The capture files
+  private DataInputStream sensorIn;
+  private DataInputStream tachoIn;
+
+  // Where the samples are fed
+  private SensorData sd;
+  private Odometer odometer;
+
+  // The filters run on the samples of each channel, the same as on the robot
+  private FilterChain[] filters;
+
+  // The next record of each file (valid if the corresponding `has` flag is set)
+  private boolean hasSensor;
+  private long sensorTime;
+  private int sensorChannel;
+  private int sensorCount;
+  private float[] sensorValues;
+
+  private boolean hasTacho;
+  private long tachoTime;
+  private int tachoLeft;
+  private int tachoRight;
+
+  // The time of the first record (in nanoseconds), and of the last one fed (in milliseconds)
+  private long origin;
+  private long time;
+
+  // The number of records fed so far
+  private long sensorRecords;
+  private long tachoRecords;
+
+  // True once the first tacho counts were fed, which the odometer starts from
+  private boolean tachoStarted;
+
+
+  // --------------------------------------------------------------------------------
+  // Interfaces
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Called at every tick of a replay, after the samples up to that time have been fed.
+   */
+  public interface Listener {
+
+    /**
+     * @param time the replayed time (in milliseconds since the start of the capture)
+     * @return false to stop the replay
+     */
+    boolean onTick(long time);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, opens the capture files.
+   *
+   * @param sensorPath the path of the sensor capture (or null if there is none)
+   * @param tachoPath the path of the tacho capture (or null if there is none)
+   * @param sd SensorData object to which the sensor samples are fed
+   * @param odometer Odometer object to which the tacho counts are fed (created without motors)
+   * @throws IOException if a file cannot be read
+   */
+  public Replayer(String sensorPath, String tachoPath, SensorData sd, Odometer odometer)
+      throws IOException {
+
+    this.sd = sd;
+    this.odometer = odometer;
+
+    this.sensorValues = new float[Replayer.MAX_VALUES];
+
+    this.filters = new FilterChain[Replayer.CHANNEL_COUNT];
+    for (int channel = 0; channel < Replayer.CHANNEL_COUNT; ++channel) {
+      this.filters[channel] = SensorPoller.configuredFilter(channel);
+    }
+
+    if (sensorPath != null) {
+      this.sensorIn = Replayer.open(sensorPath, Replayer.SENSOR_LOG, Replayer.SENSOR_RECORD_SIZE);
+    }
+    if (tachoPath != null) {
+      this.tachoIn = Replayer.open(tachoPath, Replayer.TACHO_LOG, Replayer.TACHO_RECORD_SIZE);
+    }
+
+    this.readSensor();
+    this.readTacho();
+
+    if (this.hasSensor && this.hasTacho) {
+      this.origin = Math.min(this.sensorTime, this.tachoTime);
+    } else {
+      this.origin = this.hasSensor ? this.sensorTime : this.tachoTime;
+    }
+
+    this.time = 0;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods (capture)
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Log a sensor sample, does nothing if `log` is null.
+   *
+   * @param log the sensor capture log
+   * @param channel the channel of the sensor (CHANNEL_*)
+   * @param values the values of the sample
+   */
+  static void captureSample(BinaryLog log, int channel, float[] values) {
+
+    if (log == null || !log.begin()) {
+      return;
+    }
+
+    int count = Math.min(values.length, Replayer.MAX_VALUES);
+
+    log.putLong(System.nanoTime());
+    log.putByte(channel);
+    log.putByte(count);
+    log.putShort(0);
+
+    for (int i = 0; i < count; ++i) {
+      log.putFloat(values[i]);
+    }
+
+    log.commit();
+
+    return;
+  }
+
+  /**
+   * Log a pair of tacho counts, does nothing if `log` is null.
+   *
+   * @param log the tacho capture log
+   * @param left the tacho count of the left motor
+   * @param right the tacho count of the right motor
+   */
+  static void captureTacho(BinaryLog log, int left, int right) {
+
+    if (log == null || !log.begin()) {
+      return;
+    }
+
+    log.putLong(System.nanoTime());
+    log.putInt(left);
+    log.putInt(right);
+
+    log.commit();
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods (replay)
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Feed the next record (the earliest of the two files).
+   *
+   * @return false if there are no more records
+   */
+  public boolean step() {
+
+    boolean sensorFirst = this.hasSensor && (!this.hasTacho || this.sensorTime <= this.tachoTime);
+
+    if (sensorFirst) {
+      this.time = (this.sensorTime - this.origin) / 1000000L;
+      Clock.setReplayTime(this.time);
+
+      if (this.sensorChannel < Replayer.CHANNEL_COUNT) {
+        this.filters[this.sensorChannel].filter(this.sensorValues, this.sensorCount);
+      }
+      SensorPoller.deliver(this.sd, this.sensorChannel, this.sensorValues, this.sensorCount);
+      ++this.sensorRecords;
+
+      this.readSensor();
+      return true;
+    }
+
+    if (this.hasTacho) {
+      this.time = (this.tachoTime - this.origin) / 1000000L;
+      Clock.setReplayTime(this.time);
+
+      if (!this.tachoStarted) {
+        // The odometer starts from the first counts of the capture, as if they had been reset.
+        this.odometer.setLeftMotorTachoCount(this.tachoLeft);
+        this.odometer.setRightMotorTachoCount(this.tachoRight);
+        this.tachoStarted = true;
+      }
+
+      this.odometer.update(this.tachoLeft, this.tachoRight);
+      ++this.tachoRecords;
+
+      this.readTacho();
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Replay the whole capture as fast as possible, calling `listener` every `period` milliseconds
+   * of replayed time (e.g. the period of the MainController) with the samples up to that time.
+   *
+   * @param period the period of the ticks (in milliseconds)
+   * @param listener the listener called at every tick
+   */
+  public void replay(long period, Listener listener) {
+
+    long tick = 0;
+    boolean more = true;
+
+    while (more) {
+      // Feed everything up to the tick.
+      while (this.hasNext() && this.nextTime() <= tick) {
+        this.step();
+      }
+
+      more = this.hasNext();
+
+      Clock.setReplayTime(tick);
+      if (!listener.onTick(tick)) {
+        break;
+      }
+
+      tick += period;
+    }
+
+    Clock.clearReplayTime();
+
+    return;
+  }
+
+  /**
+   * Get the time of the last record fed.
+   *
+   * @return the time (in milliseconds since the start of the capture)
+   */
+  public long getTime() {
+
+    return this.time;
+  }
+
+  public long getSensorRecords() {
+
+    return this.sensorRecords;
+  }
+
+  public long getTachoRecords() {
+
+    return this.tachoRecords;
+  }
+
+  /**
+   * Close the capture files.
+   */
+  public void close() {
+
+    try {
+      if (this.sensorIn != null) {
+        this.sensorIn.close();
+      }
+      if (this.tachoIn != null) {
+        this.tachoIn.close();
+      }
+    } catch (IOException e) {
+      // ...
+    }
+
+    Clock.clearReplayTime();
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private boolean hasNext() {
+
+    return this.hasSensor || this.hasTacho;
+  }
+
+  /**
+   * Get the time of the next record (in milliseconds since the start of the capture).
+   */
+  private long nextTime() {
+
+    long next;
+
+    if (this.hasSensor && this.hasTacho) {
+      next = Math.min(this.sensorTime, this.tachoTime);
+    } else {
+      next = this.hasSensor ? this.sensorTime : this.tachoTime;
+    }
+
+    return (next - this.origin) / 1000000L;
+  }
+
+  private static DataInputStream open(String path, String name, int recordSize)
+      throws IOException {
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+
+    if (BinaryLog.readHeader(in, name) != recordSize) {
+      in.close();
+      throw new IOException("unexpected record size in " + path);
+    }
+
+    return in;
+  }
+
+  private void readSensor() {
+
+    this.hasSensor = false;
+
+    if (this.sensorIn == null) {
+      return;
+    }
+
+    try {
+      this.sensorTime = this.sensorIn.readLong();
+      this.sensorChannel = this.sensorIn.readUnsignedByte();
+      this.sensorCount = this.sensorIn.readUnsignedByte();
+      this.sensorIn.readShort();
+
+      for (int i = 0; i < Replayer.MAX_VALUES; ++i) {
+        this.sensorValues[i] = this.sensorIn.readFloat();
+      }
+
+      this.hasSensor = true;
+    } catch (EOFException e) {
+      // End of the capture.
+    } catch (IOException e) {
+      System.out.println("[REPLAY] Error reading sensor capture: " + e.getMessage());
+    }
+
+    return;
+  }
+
+  private void readTacho() {
+
+    this.hasTacho = false;
+
+    if (this.tachoIn == null) {
+      return;
+    }
+
+    try {
+      this.tachoTime = this.tachoIn.readLong();
+      this.tachoLeft = this.tachoIn.readInt();
+      this.tachoRight = this.tachoIn.readInt();
+
+      this.hasTacho = true;
+    } catch (EOFException e) {
+      // End of the capture.
+    } catch (IOException e) {
+      System.out.println("[REPLAY] Error reading tacho capture: " + e.getMessage());
+    }
+
+    return;
+  }
+}
@@ -0,0 +1,340 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * One stage of a FilterChain: a filter run on every sample of a sensor, in the poller thread,
+ * before the sample is handed over to the SensorData object.
+ *
+ * A filter processes the values of a sample in place, each component (e.g. the red, green and blue
+ * values of an RGB sample) on its own. Its state is allocated once, when it is created, so that
+ * filtering allocates nothing.
+ *
+ * @author Joshua Inscoe
+ */
+public abstract class SampleFilter {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The name of the filter, with its parameters, as given to `FilterChain.parse()`
+  private final String name;
+
+  // The largest number of values in a sample
+  protected final int components;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  protected SampleFilter(String name, int components) {
+
+    this.name = name;
+    this.components = components;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Filter a sample in place.
+   *
+   * @param sample the values of the sample, replaced by the filtered values
+   * @param count the number of values in the sample (at most the number of components)
+   */
+  public abstract void filter(float[] sample, int count);
+
+  /**
+   * Forget every sample filtered so far.
+   */
+  public abstract void reset();
+
+  public String toString() {
+
+    return this.name;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Classes
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Median of the last `window` samples: removes isolated spikes without blurring the edges, at the
+   * cost of (window - 1) / 2 samples of delay.
+   */
+  public static class Median extends SampleFilter {
+
+    // The last samples of each component, and the index of the oldest one
+    private final float[] history;
+    private final int window;
+    private int index;
+    private int filled;
+
+    // Scratch space to sort the samples of one component
+    private final float[] sorted;
+
+    public Median(int components, int window) {
+
+      super("median(" + window + ")", components);
+
+      this.window = window;
+      this.history = new float[components * window];
+      this.sorted = new float[window];
+
+      this.reset();
+    }
+
+    public void filter(float[] sample, int count) {
+
+      if (this.filled < this.window) {
+        ++this.filled;
+      }
+
+      for (int c = 0; c < count; ++c) {
+        int base = c * this.window;
+        this.history[base + this.index] = sample[c];
+
+        // Insertion sort, the window is only a few samples.
+        for (int i = 0; i < this.filled; ++i) {
+          float value = this.history[base + i];
+          int j = i - 1;
+
+          while (j >= 0 && this.sorted[j] > value) {
+            this.sorted[j + 1] = this.sorted[j];
+            --j;
+          }
+
+          this.sorted[j + 1] = value;
+        }
+
+        sample[c] = this.sorted[this.filled / 2];
+      }
+
+      this.index = (this.index + 1) % this.window;
+
+      return;
+    }
+
+    public void reset() {
+
+      this.index = 0;
+      this.filled = 0;
+
+      return;
+    }
+  }
+
+  /**
+   * Mean of the last `window` samples: smooths white noise, blurs the edges over the window.
+   */
+  public static class Mean extends SampleFilter {
+
+    // The last samples of each component, their sums, and the index of the oldest one
+    private final float[] history;
+    private final double[] sums;
+    private final int window;
+    private int index;
+    private int filled;
+
+    public Mean(int components, int window) {
+
+      super("mean(" + window + ")", components);
+
+      this.window = window;
+      this.history = new float[components * window];
+      this.sums = new double[components];
+
+      this.reset();
+    }
+
+    public void filter(float[] sample, int count) {
+
+      boolean full = this.filled == this.window;
+
+      if (!full) {
+        ++this.filled;
+      }
+
+      for (int c = 0; c < count; ++c) {
+        int i = c * this.window + this.index;
+
+        if (full) {
+          this.sums[c] -= this.history[i];
+        }
+
+        this.history[i] = sample[c];
+        this.sums[c] += sample[c];
+
+        sample[c] = (float) (this.sums[c] / this.filled);
+      }
+
+      this.index = (this.index + 1) % this.window;
+
+      return;
+    }
+
+    public void reset() {
+
+      this.index = 0;
+      this.filled = 0;
+
+      for (int c = 0; c < this.components; ++c) {
+        this.sums[c] = 0.0;
+      }
+
+      return;
+    }
+  }
+
+  /**
+   * Exponential moving average: each sample moves the output by `alpha` of the way towards it.
+   * Only one value of state per component, whatever the smoothing.
+   */
+  public static class Exponential extends SampleFilter {
+
+    // The weight of the new sample, in (0, 1]
+    private final float alpha;
+
+    // The output of each component, and whether there was a sample yet
+    private final float[] output;
+    private boolean primed;
+
+    public Exponential(int components, float alpha) {
+
+      super("ema(" + alpha + ")", components);
+
+      this.alpha = alpha;
+      this.output = new float[components];
+
+      this.reset();
+    }
+
+    public void filter(float[] sample, int count) {
+
+      for (int c = 0; c < count; ++c) {
+        if (this.primed) {
+          this.output[c] += this.alpha * (sample[c] - this.output[c]);
+        } else {
+          this.output[c] = sample[c];
+        }
+
+        sample[c] = this.output[c];
+      }
+
+      this.primed = true;
+
+      return;
+    }
+
+    public void reset() {
+
+      this.primed = false;
+
+      return;
+    }
+  }
+
+  /**
+   * Outlier rejection: a sample further than `threshold` from the last accepted one is replaced by
+   * it, unless `limit` samples in a row were rejected, in which case the signal really moved.
+   */
+  public static class Outlier extends SampleFilter {
+
+    private final float threshold;
+    private final int limit;
+
+    // The last accepted value of each component, and the number of samples rejected in a row
+    private final float[] accepted;
+    private final int[] rejected;
+    private boolean primed;
+
+    public Outlier(int components, float threshold, int limit) {
+
+      super("outlier(" + threshold + "," + limit + ")", components);
+
+      this.threshold = threshold;
+      this.limit = limit;
+      this.accepted = new float[components];
+      this.rejected = new int[components];
+
+      this.reset();
+    }
+
+    public void filter(float[] sample, int count) {
+
+      for (int c = 0; c < count; ++c) {
+        if (this.primed && Math.abs(sample[c] - this.accepted[c]) > this.threshold
+            && this.rejected[c] < this.limit) {
+          ++this.rejected[c];
+          sample[c] = this.accepted[c];
+        } else {
+          this.rejected[c] = 0;
+          this.accepted[c] = sample[c];
+        }
+      }
+
+      this.primed = true;
+
+      return;
+    }
+
+    public void reset() {
+
+      this.primed = false;
+
+      for (int c = 0; c < this.components; ++c) {
+        this.rejected[c] = 0;
+      }
+
+      return;
+    }
+  }
+
+  /**
+   * Hysteresis: the output only follows the samples once they are more than `band` away from it,
+   * so that a signal hovering around a threshold does not make whoever reads it chatter.
+   */
+  public static class Hysteresis extends SampleFilter {
+
+    private final float band;
+
+    // The output of each component, and whether there was a sample yet
+    private final float[] output;
+    private boolean primed;
+
+    public Hysteresis(int components, float band) {
+
+      super("hysteresis(" + band + ")", components);
+
+      this.band = band;
+      this.output = new float[components];
+
+      this.reset();
+    }
+
+    public void filter(float[] sample, int count) {
+
+      for (int c = 0; c < count; ++c) {
+        if (!this.primed || Math.abs(sample[c] - this.output[c]) > this.band) {
+          this.output[c] = sample[c];
+        }
+
+        sample[c] = this.output[c];
+      }
+
+      this.primed = true;
+
+      return;
+    }
+
+    public void reset() {
+
+      this.primed = false;
+
+      return;
+    }
+  }
+}
@@ -0,0 +1,503 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * The tiles surrounding a search zone, as seen from a given enemy zone.
+ *
+ * A plan never stores any waypoint: the coordinates of each tile are computed from its index when
+ * they are needed. The tiles are indexed clockwise, starting from the lower-left corner of the
+ * search zone. A plan only depends on the search and enemy zones, so plans are cached and can be
+ * re-rooted at any location in constant time (see `root()`).
+ *
+ * @author Joshua Inscoe
+ */
+public class SearchPlan {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The distance (in tiles) that the robot should stay away from the search zone
+  static final double DISTANCE_TO_SEARCH_ZONE = 0.5;
+
+  // The maximum number of plans kept in the cache
+  private static final int CACHE_SIZE = 8;
+
+
+  // --------------------------------------------------------------------------------
+  // Cache
+  // --------------------------------------------------------------------------------
+
+  // Most recently used plans, the oldest one is replaced when the cache is full
+  private static final SearchPlan[] cache = new SearchPlan[CACHE_SIZE];
+
+  // The index at which the next plan will be inserted in the cache
+  private static int cacheNext = 0;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The lower-left and upper-right corners of the search zone (in tiles)
+  private final double searchLLX;
+  private final double searchLLY;
+  private final double searchURX;
+  private final double searchURY;
+
+  // The lower-left and upper-right corners of the enemy zone (in tiles)
+  private final double enemyLLX;
+  private final double enemyLLY;
+  private final double enemyURX;
+  private final double enemyURY;
+
+  // The length and height of the search zone
+  private final int length;
+  private final int height;
+
+  // The total number of tiles surrounding the search zone
+  private final int count;
+
+  // Indicators signaling whether each side of the search zone is reachable
+  private final boolean reachL;
+  private final boolean reachT;
+  private final boolean reachR;
+  private final boolean reachB;
+
+  // Index of each of the corners
+  private final int cornerLL;
+  private final int cornerUL;
+  private final int cornerUR;
+  private final int cornerLR;
+
+  // Indices of the two reachable tiles that touch a wall (-1 if the zone is not against a wall)
+  private final int edge0;
+  private final int edge1;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * Use `get()` instead, so that plans are shared between searches.
+   */
+  private SearchPlan(double searchLLX, double searchLLY, double searchURX, double searchURY,
+      double enemyLLX, double enemyLLY, double enemyURX, double enemyURY) {
+
+    this.searchLLX = searchLLX;
+    this.searchLLY = searchLLY;
+    this.searchURX = searchURX;
+    this.searchURY = searchURY;
+
+    this.enemyLLX = enemyLLX;
+    this.enemyLLY = enemyLLY;
+    this.enemyURX = enemyURX;
+    this.enemyURY = enemyURY;
+
+    this.length = Math.abs((int)searchURX - (int)searchLLX);
+    this.height = Math.abs((int)searchURY - (int)searchLLY);
+
+    this.count = (2 * this.length) + (2 * this.height) + 4;
+
+    // Waypoint values (in tiles) must lie within these limits [inclusive].
+    this.reachL = (searchLLX >= enemyLLX + 0.5);
+    this.reachT = (searchURY <= enemyURY - 0.5);
+    this.reachR = (searchURX <= enemyURX - 0.5);
+    this.reachB = (searchLLY >= enemyLLY + 0.5);
+
+    this.cornerLL = 0;
+    this.cornerUL = this.height + 1;
+    this.cornerUR = this.height + this.length + 2;
+    this.cornerLR = (2 * this.height) + this.length + 3;
+
+    // Find the edges of the search path (the first two changes in reachability).
+    int[] edges = new int[] { -1, -1 };
+
+    if (!(this.reachL && this.reachT && this.reachR && this.reachB)) {
+      for (int i = 0, found = 0; i < this.count && found < 2; ++i) {
+        int j = (i + 1) % this.count;
+
+        if (this.isValid(i) != this.isValid(j)) {
+          edges[found] = this.isValid(j) ? j : i;
+          ++found;
+        }
+      }
+    }
+
+    this.edge0 = edges[0];
+    this.edge1 = edges[1];
+  }
+
+  /**
+   * Get the plan for the given search and enemy zones, computing it only if it is not already
+   * cached.
+   *
+   * @param searchLL the lower-left corner of the search zone
+   * @param searchUR the upper-right corner of the search zone
+   * @param enemyLL the lower-left corner of the enemy zone
+   * @param enemyUR the upper-right corner of the enemy zone
+   *
+   * @return the search plan
+   */
+  public static synchronized SearchPlan get(Waypoint searchLL, Waypoint searchUR,
+      Waypoint enemyLL, Waypoint enemyUR) {
+
+    for (int i = 0; i < SearchPlan.CACHE_SIZE; ++i) {
+      SearchPlan plan = SearchPlan.cache[i];
+
+      if (plan != null && plan.matches(searchLL, searchUR, enemyLL, enemyUR)) {
+        return plan;
+      }
+    }
+
+    SearchPlan plan = new SearchPlan(searchLL.x, searchLL.y, searchUR.x, searchUR.y,
+        enemyLL.x, enemyLL.y, enemyUR.x, enemyUR.y);
+
+    SearchPlan.cache[SearchPlan.cacheNext] = plan;
+    SearchPlan.cacheNext = (SearchPlan.cacheNext + 1) % SearchPlan.CACHE_SIZE;
+
+    return plan;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Root the plan at the given location: choose the tile at which the search starts and the
+   * direction in which the robot travels, and store the result in `route`.
+   *
+   * This runs in constant time and does not allocate anything.
+   *
+   * @param location the current location of the robot (in tiles)
+   * @param route the route to fill
+   */
+  public void root(Waypoint location, Route route) {
+
+    route.plan = this;
+
+    if (this.reachL && this.reachT && this.reachR && this.reachB) {
+      //
+      // The search zone is _not_ against any wall, go all the way around it clockwise, starting
+      // from the corner to which we are closest.
+      //
+      // We measure the distance to the first tile after each corner.
+      //
+      int closest = this.cornerLL;
+      double minimum = this.distanceTo(location, this.cornerLL + 1);
+      double distance;
+
+      route.initialOrientation = 90.0;
+
+      distance = this.distanceTo(location, this.cornerUL + 1);
+      if (distance < minimum) {
+        minimum = distance;
+        closest = this.cornerUL;
+        route.initialOrientation = 0.0;
+      }
+
+      distance = this.distanceTo(location, this.cornerUR + 1);
+      if (distance < minimum) {
+        minimum = distance;
+        closest = this.cornerUR;
+        route.initialOrientation = 270.0;
+      }
+
+      distance = this.distanceTo(location, this.cornerLR + 1);
+      if (distance < minimum) {
+        minimum = distance;
+        closest = this.cornerLR;
+        route.initialOrientation = 180.0;
+      }
+
+      route.start = closest;
+      route.shift = +1;
+      route.size = this.count;
+      route.direction = Searcher.Direction.CLOCKWISE;
+
+    } else if (this.edge1 < 0) {
+      //
+      // The search zone cannot be reached at all.
+      //
+      route.start = 0;
+      route.shift = +1;
+      route.size = 0;
+      route.initialOrientation = 0.0;
+      route.direction = Searcher.Direction.UNKNOWN;
+
+      return;
+
+    } else {
+      //
+      // The search zone is located against (at least) one wall, go from the edge to which we
+      // are closest to the other one.
+      //
+      int limit;
+
+      // The direction depends on whether the tiles between the two edges are reachable.
+      boolean between = this.isValid((this.edge0 + this.edge1) / 2);
+
+      if (this.distanceTo(location, this.edge1) < this.distanceTo(location, this.edge0)) {
+        route.start = this.edge1;
+        route.shift = between ? -1 : +1;
+        limit = this.edge0;
+      } else {
+        route.start = this.edge0;
+        route.shift = between ? +1 : -1;
+        limit = this.edge1;
+      }
+
+      // The route ends on the other edge, the limit is one tile past it.
+      limit = (limit + route.shift + this.count) % this.count;
+
+      if (route.shift > 0) {
+        route.size = (route.start < limit) ? limit - route.start : limit - route.start + this.count;
+      } else {
+        route.size = (route.start > limit) ? route.start - limit : route.start - limit + this.count;
+      }
+
+      if (!this.reachL) {
+        route.initialOrientation =   0.0;
+      }
+      if (!this.reachT) {
+        route.initialOrientation = 270.0;
+      }
+      if (!this.reachR) {
+        route.initialOrientation = 180.0;
+      }
+      if (!this.reachB) {
+        route.initialOrientation =  90.0;
+      }
+
+      route.direction = (route.shift > 0) ? Searcher.Direction.CLOCKWISE
+          : Searcher.Direction.COUNTER_CLOCKWISE;
+    }
+
+    route.cornerLL = route.indexOf(this.cornerLL);
+    route.cornerUL = route.indexOf(this.cornerUL);
+    route.cornerUR = route.indexOf(this.cornerUR);
+    route.cornerLR = route.indexOf(this.cornerLR);
+
+    return;
+  }
+
+  /**
+   * Get the total number of tiles surrounding the search zone (even tiles which do not exist or
+   * are unreachable by the robot).
+   *
+   * @return the number of tiles
+   */
+  public int getCount() {
+
+    return this.count;
+  }
+
+  /**
+   * Compute the x-coordinate (in tiles) of the tile at the given index.
+   *
+   * @param index the index of the tile, clockwise from the lower-left corner
+   *
+   * @return the x-coordinate of the tile
+   */
+  public double getX(int index) {
+
+    if (index < this.cornerUL) {
+      // Lower-left corner and left side.
+      return this.searchLLX - SearchPlan.DISTANCE_TO_SEARCH_ZONE;
+    }
+    if (index < this.cornerUR) {
+      if (index == this.cornerUL) {
+        return this.searchLLX - SearchPlan.DISTANCE_TO_SEARCH_ZONE;
+      }
+      // Top side, we add 0.5 in order to get the midpoint between two points.
+      return this.searchLLX + (index - this.cornerUL - 1) + 0.5;
+    }
+    if (index <= this.cornerLR) {
+      // Upper-right corner, right side and lower-right corner.
+      return this.searchURX + SearchPlan.DISTANCE_TO_SEARCH_ZONE;
+    }
+    // Bottom side, we subtract 0.5 in order to get the midpoint between two points.
+    return this.searchURX - (index - this.cornerLR - 1) - 0.5;
+  }
+
+  /**
+   * Compute the y-coordinate (in tiles) of the tile at the given index.
+   *
+   * @param index the index of the tile, clockwise from the lower-left corner
+   *
+   * @return the y-coordinate of the tile
+   */
+  public double getY(int index) {
+
+    if (index == this.cornerLL || index >= this.cornerLR) {
+      // Lower-left corner, lower-right corner and bottom side.
+      return this.searchLLY - SearchPlan.DISTANCE_TO_SEARCH_ZONE;
+    }
+    if (index < this.cornerUL) {
+      // Left side, we add 0.5 in order to get the midpoint between two points.
+      return this.searchLLY + (index - 1) + 0.5;
+    }
+    if (index <= this.cornerUR) {
+      // Upper-left corner, top side and upper-right corner.
+      return this.searchURY + SearchPlan.DISTANCE_TO_SEARCH_ZONE;
+    }
+    // Right side, we subtract 0.5 in order to get the midpoint between two points.
+    return this.searchURY - (index - this.cornerUR - 1) - 0.5;
+  }
+
+  /**
+   * Check whether or not the tile at the given index is reachable by the robot.
+   *
+   * @param index the index of the tile, clockwise from the lower-left corner
+   *
+   * @return true if the tile is reachable, false otherwise
+   */
+  public boolean isValid(int index) {
+
+    if (index == this.cornerLL) {
+      return this.reachB && this.reachL;
+    }
+    if (index < this.cornerUL) {
+      return this.reachL;
+    }
+    if (index == this.cornerUL) {
+      return this.reachL && this.reachT;
+    }
+    if (index < this.cornerUR) {
+      return this.reachT;
+    }
+    if (index == this.cornerUR) {
+      return this.reachT && this.reachR;
+    }
+    if (index < this.cornerLR) {
+      return this.reachR;
+    }
+    if (index == this.cornerLR) {
+      return this.reachR && this.reachB;
+    }
+    return this.reachB;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Check whether or not this plan was computed for the given search and enemy zones.
+   */
+  private boolean matches(Waypoint searchLL, Waypoint searchUR, Waypoint enemyLL, Waypoint enemyUR) {
+
+    return this.searchLLX == searchLL.x && this.searchLLY == searchLL.y
+        && this.searchURX == searchUR.x && this.searchURY == searchUR.y
+        && this.enemyLLX == enemyLL.x && this.enemyLLY == enemyLL.y
+        && this.enemyURX == enemyUR.x && this.enemyURY == enemyUR.y;
+  }
+
+  /**
+   * Compute the distance between `location` and the tile at the given index.
+   */
+  private double distanceTo(Waypoint location, int index) {
+
+    double dx = this.getX(index % this.count) - location.x;
+    double dy = this.getY(index % this.count) - location.y;
+
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Route
+  // --------------------------------------------------------------------------------
+
+  /**
+   * A search plan rooted at a given location: the sequence of tiles that the robot will visit.
+   *
+   * Routes are owned by whoever searches, so that a cached plan can be shared.
+   */
+  public static class Route {
+
+    // The plan from which this route was computed
+    private SearchPlan plan = null;
+
+    // The index in the plan of the first tile of the route
+    private int start = 0;
+
+    // The direction (-1 = counter-clockwise, 1 = clockwise) in which the plan is traversed
+    private int shift = 1;
+
+    // The number of tiles in the route
+    private int size = 0;
+
+    // Index in the route of each of the corners (-1 if not reachable)
+    int cornerLL = -1;
+    int cornerUL = -1;
+    int cornerUR = -1;
+    int cornerLR = -1;
+
+    // The angle to which we must initially orientate ourselves upon reaching the first tile
+    double initialOrientation = 0.0;
+
+    // The direction in which the robot will be traveling
+    Searcher.Direction direction = Searcher.Direction.UNKNOWN;
+
+    /**
+     * Get the number of tiles in the route.
+     *
+     * @return the length of the route
+     */
+    public int size() {
+      return this.size;
+    }
+
+    /**
+     * Get the x-coordinate (in tiles) of the i-th tile of the route.
+     *
+     * @param i the index of the tile in the route
+     * @return the x-coordinate of the tile
+     */
+    public double getX(int i) {
+      return this.plan.getX(this.planIndex(i));
+    }
+
+    /**
+     * Get the y-coordinate (in tiles) of the i-th tile of the route.
+     *
+     * @param i the index of the tile in the route
+     * @return the y-coordinate of the tile
+     */
+    public double getY(int i) {
+      return this.plan.getY(this.planIndex(i));
+    }
+
+    /**
+     * Check whether or not the i-th tile of the route is one of the corners of the search zone.
+     *
+     * @param i the index of the tile in the route
+     * @return true if the tile is a corner
+     */
+    public boolean isCorner(int i) {
+      return i == this.cornerLL || i == this.cornerUL || i == this.cornerUR || i == this.cornerLR;
+    }
+
+    /**
+     * Convert an index in the route into an index in the plan.
+     */
+    private int planIndex(int i) {
+      int n = this.plan.count;
+      return (this.start + (i * this.shift) + n) % n;
+    }
+
+    /**
+     * Convert an index in the plan into an index in the route (-1 if not part of the route).
+     */
+    private int indexOf(int index) {
+      int n = this.plan.count;
+      int i = (this.shift > 0) ? (index - this.start + n) % n : (this.start - index + n) % n;
+      return (i < this.size) ? i : -1;
+    }
+  }
+}
@@ -8,6 +8,9 @@ import lejos.hardware.Sound;
  * A class to search enemy territory for the flag, which is a block of the specified color.
  * The robot will beep three times upon locating the flag, indicating a successful capture.
  *
+ * Like the navigator, the searcher is a state machine processed at every tick of the main
+ * controller, which drives the navigator itself while searching.
+ *
  * @author Joshua Inscoe
  */
 public class Searcher {
@@ -16,27 +19,56 @@ public class Searcher {
   // Constants
   // --------------------------------------------------------------------------------
 
-  // Maximum amount of time (in milliseconds) that the `search()` method is allowed to run
-  private static final long TIMEOUT = 120000;
+  // Maximum amount of time (in milliseconds) that a search is allowed to run
+  static final long TIMEOUT = 120000;
 
-  // Sleep interval between checking if next waypoint has been reached
+  // Sleep interval between two ticks of the `search()` method
   private static final long WAIT_INTERVAL = 40;
 
-  // Sleep interval to allow sensor data to stabalize
-  private static final long STABALIZE_INTERVAL = 500;
+  // Number of fresh ultrasonic samples whose median is the distance to a block candidate
+  static final int SETTLE_SAMPLES = 5;
+
+  // Maximum amount of time (in milliseconds) spent waiting for them, in case the poller is paused
+  private static final long SETTLE_TIMEOUT = 500;
 
   // Sleep interval between beeps
   private static final long BEEP_INTERVAL = 200;
 
-  // The distance (in tiles) that the robot should stay away from the search zone
-  private static final double DISTANCE_TO_SEARCH_ZONE = 0.5;
-
   // The maximum distance (in centimeters) that the robot will move into the search zone
-  private static final double CAPTURE_DISTANCE_THRESHOLD = 25.0;
+  static final double CAPTURE_DISTANCE_THRESHOLD = 25.0;
+
+  // The distance (in centimeters) at which the front light sensor reads the color of a block
+  static final double COLOR_CHECK_DISTANCE = 5.0;
+
+  // The maximum number of color samples taken to classify a block
+  private static final int COLOR_MAX_SAMPLES = 10;
+
+  // The minimum number of color samples taken to classify a block
+  private static final int COLOR_MIN_SAMPLES = 3;
+
+  // The confidence at which the classification of a block stops early
+  private static final double COLOR_CONFIDENCE = 0.9;
 
-  // The amount of acceptable error that is allowed in the flag color readings
+  // The amount of acceptable error that is allowed in the flag color readings, without a classifier
   private static final double COLOR_ERROR = 0.001;
 
+  // Time (in milliseconds) the light sensor data is given to stabilize, without a classifier
+  private static final long STABALIZE_INTERVAL = 500;
+
+  // The angle (in degrees) by which the ultrasonic sensor is panned towards the search zone while
+  // sweeping, positive is counter-clockwise
+  static final int SWEEP_PAN_ANGLE = 90;
+
+  // The distance (in centimeters) between the center of the robot and the ultrasonic sensor
+  static final double SENSOR_OFFSET = 5.0;
+
+  // Ultrasonic returns at or beyond this distance (in centimeters) are considered to have no echo
+  static final double SWEEP_MAX_RANGE = 100.0;
+
+  // The distance (in centimeters) within which a block is surely seen by the panned sensor, the
+  // sweep ends once every tile of the search zone was within it
+  static final double SWEEP_SURE_RANGE = 60.0;
+
   // The direction in which the robot will be moving while following the search path
   public enum Direction {
     UNKNOWN,
@@ -44,12 +76,19 @@ public class Searcher {
     COUNTER_CLOCKWISE
   };
 
+  // The states of the search
+  public enum Search_State {
+    IDLE, TRAVELING, PANNING, TURNING, APPROACHING, SETTLING, CLOSING_IN, CLASSIFYING, BACKING_OUT,
+    CAPTURING, DONE
+  };
+
   // The possible colors of the enemy flag
   public enum FlagColor {
     NONE, RED, BLUE, YELLOW, WHITE
   };
 
-  // The mapping between the FlagColor enum values and actual color values
+  // The mapping between the FlagColor enum values and actual color values, as read by the front
+  // light sensor in "Red" mode right up against the block (used without a classifier)
   public static final float[] COLORS = { -1.0f, 0.00f, 0.07f, 0.03f, 0.06f };
 
 
@@ -73,36 +112,17 @@ public class Searcher {
   private Waypoint enemyLL;
   private Waypoint enemyUR;
 
-  // Lower and upper limits on waypoint values (in tiles) [inclusive]
-  private double lowerLimitX;
-  private double lowerLimitY;
-  private double upperLimitX;
-  private double upperLimitY;
-
   // The lower-left and upper-right corners of the search zone (in tiles)
   private Waypoint searchLL;
   private Waypoint searchUR;
 
-  // The length and height of the search zone
-  private int length;
-  private int height;
-
-  // The total number of waypoints (i.e. tiles surrounding the search zone)
-  private int wpCount;
-
-  // All waypoints sequenced clockwise starting from the lower-left corner of the search zone
-  private Waypoint[] waypoints;
+  // The (cached) plan of the tiles surrounding the search zone
+  private SearchPlan plan;
 
-  // True or false indicators signaling whether each side of the search zone is reachable
-  private boolean reachSideL;
-  private boolean reachSideT;
-  private boolean reachSideR;
-  private boolean reachSideB;
+  // The plan rooted at our location, reused every time the search path is computed
+  private SearchPlan.Route route;
 
-  // True or false indicators signaling whether the waypoint at the same index is valid
-  private boolean[] valid;
-
-  // Index of each of the corners in `waypoints`
+  // Index of each of the corners in the search path
   private int cornerLL;
   private int cornerUL;
   private int cornerUR;
@@ -114,8 +134,21 @@ public class Searcher {
   // SensorData object for receiving sensor data
   private SensorData sd;
 
-  // The sequence of waypoints to follow when searching for the flag
-  private Waypoint[] path;
+  // Classifier for the color of the blocks (null to use `COLORS`), and scratch space for its samples
+  private ColorClassifier classifier;
+  private float[] rgb;
+
+  // The sequence of waypoints to follow when searching for the flag, when it is given explicitly
+  // through `setSearchPath()` instead of being computed from `route` (null otherwise)
+  private PathBuffer path;
+
+  // True if the search path has been computed or set
+  private boolean hasPath;
+
+  // Reusable waypoint, and paths given to the navigator (which copies them)
+  private Waypoint target;
+  private PathBuffer targetPath;
+  private PathBuffer sweepPath;
 
   // The angle to which we must initally orientate ourselves to begin the search
   // upon reaching the first waypoint in the search path
@@ -124,6 +157,67 @@ public class Searcher {
   // The direction in which the robot will be traveling (clockwise or counter-clockwise)
   private Direction direction;
 
+  // True to drive around the search zone without stopping, with the sensor panned inwards
+  private boolean sweepMode;
+
+  // Evidence of the blocks in the search zone, accumulated while sweeping
+  private EvidenceGrid grid;
+
+  // The current state of the search, and the timer of every state
+  private Search_State state;
+  private StateTimer<Search_State> timer;
+
+  // True once the search ended, and true if the flag was found
+  private boolean done;
+  private boolean found;
+
+  // True if we hold references on the sensors
+  private boolean refsHeld;
+
+  // True if the current search sweeps around the search zone
+  private boolean sweeping;
+
+  // While sweeping: true while the sensor is panned inwards, true once we went around the zone
+  private boolean panned;
+  private boolean scanned;
+
+  // True if the robot turns to look at an object, false if it turns to follow the search path
+  private boolean looking;
+
+  // The angle (in degrees) by which the robot turns at corners, and by which the sensor is panned
+  private double rotateAngle;
+  private int panAngle;
+
+  // Index of the current waypoint in the search path
+  private int index;
+
+  // Index of the block candidate being visited, and the number of candidates
+  private int candidate;
+  private int candidates;
+
+  // The distances (in centimeters) we moved towards the candidate and towards the object
+  private double visitApproach;
+  private double closeIn;
+
+  // Times (in milliseconds, see Clock) at which the search started and must end
+  private long start;
+  private long deadline;
+
+  // The latest time at which the search must end, as set by `setDeadline()`
+  private long limit;
+
+  // Time at which the robot stopped in front of an object (or, without a classifier, against it to
+  // read its color), and number of ultrasonic samples received by then
+  private long settleStart;
+  private int settleCount;
+
+  // Number of color samples received when classifying started, or when the last one was used
+  private int lastSample;
+
+  // Number of beeps so far, and time of the last one
+  private int beeps;
+  private long lastBeep;
+
 
   // --------------------------------------------------------------------------------
   // Constructors
@@ -145,30 +239,13 @@ public class Searcher {
     this.enemyLL = new Waypoint(-1.0, -1.0);
     this.enemyUR = new Waypoint(-1.0, -1.0);
 
-    // The default values will be the entire 12x12 grid.
-    this.lowerLimitX = 0.5;
-    this.lowerLimitY = 0.5;
-    this.upperLimitX = 11.5;
-    this.upperLimitY = 11.5;
-
     this.searchLL = new Waypoint(-1.0, -1.0);
     this.searchUR = new Waypoint(-1.0, -1.0);
 
     this.location = new Waypoint(-1.0, -1.0);
 
-    this.length = -1;
-    this.height = -1;
-
-    this.wpCount = -1;
-
-    this.waypoints = null;
-
-    this.reachSideL = false;
-    this.reachSideT = false;
-    this.reachSideR = false;
-    this.reachSideB = false;
-
-    this.valid = null;
+    this.plan = null;
+    this.route = new SearchPlan.Route();
 
     this.cornerLL = -1;
     this.cornerUL = -1;
@@ -179,11 +256,32 @@ public class Searcher {
 
     this.sd = sd;
 
+    this.classifier = null;
+    this.rgb = new float[3];
+
     this.path = null;
+    this.hasPath = false;
+
+    this.target = new Waypoint(-1.0, -1.0);
+    this.targetPath = new PathBuffer(1);
+    this.sweepPath = new PathBuffer();
 
     this.initialOrientation = 0.0;
 
     this.direction = Direction.UNKNOWN;
+
+    this.sweepMode = true;
+
+    this.grid = new EvidenceGrid();
+
+    this.state = Search_State.IDLE;
+    this.timer = new StateTimer<Search_State>("searcher", Search_State.class);
+
+    this.done = false;
+    this.found = false;
+    this.refsHeld = false;
+
+    this.limit = Long.MAX_VALUE;
   }
 
 
@@ -248,648 +346,977 @@ public class Searcher {
    * Compute the sequence of coordinates to which the robot should travel
    * in search of the enemy flag.
    *
+   * The tiles surrounding the search zone are only computed the first time a given search zone
+   * and enemy zone are used, calling this again (e.g. when re-entering the search after an
+   * interruption) only re-roots the cached plan at the current location, in constant time.
+   *
    * This should be called after calling the `setLocation()` method.
    * This should be called after calling the `setSearchZone()` method.
-   * This should be called before calling the `search()` method.
+   * This should be called before calling the `search()` or `process()` methods.
    */
   public void computeSearchPath() {
 
-    // Compute the lower/upper limits on the x/y-positions based on the enemy zone.
-    this.lowerLimitX = this.enemyLL.x + 0.5;
-    this.lowerLimitY = this.enemyLL.y + 0.5;
-    this.upperLimitX = this.enemyUR.x - 0.5;
-    this.upperLimitY = this.enemyUR.y - 0.5;
-
-    // Compute the length and height of the search zone.
-    this.length = Math.abs((int)this.searchUR.x - (int)this.searchLL.x);
-    this.height = Math.abs((int)this.searchUR.y - (int)this.searchLL.y);
+    this.plan = SearchPlan.get(this.searchLL, this.searchUR, this.enemyLL, this.enemyUR);
 
-    // Compute the total number of tiles surrounding the search zone.
-    this.wpCount = (2 * this.length) + (2 * this.height) + 4;
-
-    //
-    // NOTE:
-    //
-    // This must be called after setting the `[xy]LL/UR` and `length` and `height` variables.
-    // Calling it before will result in undefined behaviour.
-    //
-    this.computeWaypoints();
+    this.plan.root(this.location, this.route);
 
-    // Are all sides reachable ?
-    if (this.reachSideL && this.reachSideT && this.reachSideR && this.reachSideB) {
-      //
-      // The search zone is _not_ against any wall.
-      //
-
-      // There will be exactly four reachable corners.
-      Waypoint[] corners = new Waypoint[] {
-        this.waypoints[this.cornerLL], this.waypoints[this.cornerUL],
-        this.waypoints[this.cornerUR], this.waypoints[this.cornerLR]
-      };
-
-      // Find out to which corner of the search zone we are closest.
-      int closestCorner = Searcher.findClosestWaypoint(this.location, corners);
-
-      int pivot = -1;
-
-      switch (closestCorner) {
-        case 0:
-          // Start from the lower-left corner.
-          pivot = (this.cornerLL - 1 + this.wpCount) % this.wpCount;
-          this.initialOrientation =  90.0;
+    this.path = null;
+    this.hasPath = true;
+    this.done = false;
 
-          break;
+    this.cornerLL = this.route.cornerLL;
+    this.cornerUL = this.route.cornerUL;
+    this.cornerUR = this.route.cornerUR;
+    this.cornerLR = this.route.cornerLR;
 
-        case 1:
-          // Start from the upper-left corner.
-          pivot = (this.cornerUL - 1 + this.wpCount) % this.wpCount;
-          this.initialOrientation =   0.0;
+    this.initialOrientation = this.route.initialOrientation;
 
-          break;
+    this.direction = this.route.direction;
 
-        case 2:
-          // Start from the upper-right corner.
-          pivot = (this.cornerUR - 1 + this.wpCount) % this.wpCount;
-          this.initialOrientation = 270.0;
+    return;
+  }
 
-          break;
+  /**
+   * Set the classifier for the color of the blocks, trained by ColorCalibration. Without one, the
+   * front light sensor must be in "Red" mode and its readings are checked against `COLORS`.
+   *
+   * @param classifier the classifier, or null
+   */
+  public void setColorClassifier(ColorClassifier classifier) {
 
-        case 3:
-          // Start from the lower-right corner.
-          pivot = (this.cornerLR - 1 + this.wpCount) % this.wpCount;
-          this.initialOrientation = 180.0;
+    this.classifier = classifier;
 
-          break;
+    return;
+  }
 
-        default:
-          // This should be unreachable, but log an error and exit if we do somehow get here.
-          String msg = "error: computeSearchPath(): Unknown closest corner";
-          System.out.println(msg + ": " + closestCorner);
+  /**
+   * Set the color of the enemy flag.
+   *
+   * This should be called before calling the `search()` method.
+   *
+   * @param color the color of the enemy flag
+   */
+  public void setFlagColor(FlagColor color) {
 
-          System.exit(1);
-      }
+    this.color = color;
 
-      // Perform a circular shift on the waypoints such that the waypoint at index zero
-      // is the initial waypoint to which we need to navigate in our search path.
-      this.transformWaypoints(pivot, pivot, 1);
+    return;
+  }
 
-      this.path = this.waypoints;
+  /**
+   * Choose between sweeping around the search zone without stopping (the default) and stopping
+   * at every tile to look inwards.
+   *
+   * Sweeping requires a motor to pan the ultrasonic sensor, the searcher stops at every tile if
+   * the driver does not have one.
+   *
+   * @param sweepMode true to sweep, false to stop at every tile
+   */
+  public void setSweepMode(boolean sweepMode) {
 
-      this.direction = Direction.CLOCKWISE;
+    this.sweepMode = sweepMode;
 
-    } else {
-      //
-      // The search zone is located against (at least) one wall.
-      //
+    return;
+  }
 
-      int[] edgeIndex = new int[] { 0, 0 };
+  /**
+   * Set the time at which the search must end, at the latest, e.g. to leave enough time to get
+   * back home before the end of the match. The search also ends TIMEOUT after it started.
+   *
+   * @param deadline the time (in milliseconds, see Clock) at which the search must end
+   */
+  public void setDeadline(long deadline) {
 
-      int index = 0;
+    this.limit = deadline;
 
-      int i = 0;
-      int j = 1;
+    return;
+  }
 
-      // Find the edges of our search path.
-      while (index < 2) {
-        if (this.valid[i] != this.valid[j]) {
-          edgeIndex[index] = this.valid[j] ? j : i;
+  /**
+   * Search enemy territory for the flag, waiting until the search ends.
+   *
+   * This is the same as calling `process()` every WAIT_INTERVAL until `isDone()` returns true.
+   *
+   * This should be called after calling the `computeSearchPath()` method.
+   * This should be called after calling the `setFlagColor()` method.
+   *
+   * @return true if the flag was successfully "captured", false otherwise
+   */
+  public boolean search() {
 
-          ++index;
-        }
+    while (!this.isDone()) {
+      this.process();
 
-        i = (i + 1 + this.wpCount) % this.wpCount;
-        j = (j + 1 + this.wpCount) % this.wpCount;
+      try {
+        // Sleep a little bit to yield processor to other threads between two ticks.
+        Thread.sleep(Searcher.WAIT_INTERVAL);
+      } catch (Exception e) {
+        // ...
       }
+    }
 
-      // There will be exactly two reachable waypoints that touch a wall.
-      Waypoint[] edges = new Waypoint[] {
-        this.waypoints[edgeIndex[0]], this.waypoints[edgeIndex[1]]
-      };
-
-      // Find out to which edge (i.e. a waypoint that touches a wall) we are closest.
-      int closestEdge = Searcher.findClosestWaypoint(this.location, edges);
-
-      int start = -1;
-      int limit = -1;
-      int shift =  0;
+    return this.found;
+  }
 
-      switch (closestEdge) {
-        case 0:
-          start = edgeIndex[0];
-          limit = (edgeIndex[1] - 1 + this.wpCount) % this.wpCount;
+  /**
+   * Process the current state of the search, update it and return the new state as a string.
+   * This method is package-private, only classes in the same package can access it.
+   *
+   * The robot follows the search path with the navigator. In sweep mode (see `setSweepMode()`),
+   * it drives from corner to corner around the search zone with the ultrasonic sensor panned
+   * inwards, accumulating the returns into an evidence grid over the search zone, then visits
+   * only the blocks extracted from it, in the order that makes the visits the shortest.
+   * Otherwise, it stops at every tile of the search path to look inwards.
+   *
+   * No state waits for anything, each of them is left as soon as the motors stopped or the
+   * sensor data is ready, so the search can be pre-empted at any tick (see `setDeadline()`).
+   *
+   * @return the new state, as a string
+   */
+  String process() {
 
-          if (this.valid[(edgeIndex[0] + edgeIndex[1]) / 2]) {
-            // Our search path will run clockwise.
-            shift = +1;
-          } else {
-            // Our search path will run counter-clockwise.
-            shift = -1;
-          }
+    long tickStart = System.nanoTime();
+    Search_State previous = this.state;
 
+    if (this.isRunning() && Clock.millis() > this.deadline) {
+      // Out of time, give up wherever we are.
+      this.state = this.abort();
+    } else {
+      switch (this.state) {
+        case IDLE:
+          this.state = this.processIdle();
           break;
-
-        case 1:
-          start = edgeIndex[1];
-          limit = (edgeIndex[0] - 1 + this.wpCount) % this.wpCount;
-
-          if (this.valid[(edgeIndex[0] + edgeIndex[1]) / 2]) {
-            // Our search path will run counter-clockwise.
-            shift = -1;
-          } else {
-            // Our search path will run clockwise.
-            shift = +1;
-          }
-
+        case TRAVELING:
+          this.state = this.processTraveling();
+          break;
+        case PANNING:
+          this.state = this.processPanning();
+          break;
+        case TURNING:
+          this.state = this.processTurning();
+          break;
+        case APPROACHING:
+          this.state = this.processApproaching();
+          break;
+        case SETTLING:
+          this.state = this.processSettling();
+          break;
+        case CLOSING_IN:
+          this.state = this.processClosingIn();
+          break;
+        case CLASSIFYING:
+          this.state = this.processClassifying();
+          break;
+        case BACKING_OUT:
+          this.state = this.processBackingOut();
+          break;
+        case CAPTURING:
+          this.state = this.processCapturing();
+          break;
+        case DONE:
+          this.state = this.processDone();
           break;
-
-        default:
-          // This should be unreachable, but log an error and exit if we do somehow get here.
-          String msg = "error: computeSearchPath(): Unknown closest edge";
-          System.out.println(msg + ": " + closestEdge);
-
-          System.exit(1);
       }
+    }
 
-      // Perform a circular shift on the waypoints such that the waypoint at index zero
-      // is the initial waypoint to which we need to navigate in our search path, and remove
-      // all waypoints that are not reachable by the robot.
-      this.transformWaypoints(start, limit, shift);
-
-      this.path = this.waypoints;
+    this.timer.tick(previous, this.state, tickStart, System.nanoTime());
 
-      if (!this.reachSideL) {
-        this.initialOrientation =   0.0;
-      }
-      if (!this.reachSideT) {
-        this.initialOrientation = 270.0;
-      }
-      if (!this.reachSideR) {
-        this.initialOrientation = 180.0;
-      }
-      if (!this.reachSideB) {
-        this.initialOrientation =  90.0;
-      }
+    return this.state.toString();
+  }
 
-      if (shift > 0) {
-        this.direction = Direction.CLOCKWISE;
-      } else {
-        this.direction = Direction.COUNTER_CLOCKWISE;
-      }
-    }
+  /**
+   * Tell whether or not the search ended, whether the flag was found or not.
+   *
+   * @return true if the search ended
+   */
+  public boolean isDone() {
 
-    // Remove references to all unreachable waypoints, thus allowing the
-    // garbage collector to free up any unused memory.
-    this.waypoints = null;
+    return this.done;
+  }
 
-    // This is, also, no longer necessary.
-    this.valid = null;
+  /**
+   * Tell whether or not the flag was found by the last search.
+   *
+   * @return true if the flag was successfully "captured", false otherwise
+   */
+  public boolean isFound() {
 
-    return;
+    return this.found;
   }
 
   /**
-   * Set the color of the enemy flag.
+   * Get the current state of the search.
    *
-   * This should be called before calling the `search()` method.
-   *
-   * @param color the color of the enemy flag
+   * @return the current state
    */
-  public void setFlagColor(FlagColor color) {
+  Search_State getState() {
 
-    this.color = color;
-
-    return;
+    return this.state;
   }
 
   /**
-   * Search enemy territory for the flag.
+   * Get the timer of the states of the search.
    *
-   * This should be called after calling the `computeSearchPath()` method.
-   * This should be called after calling the `setFlagColor()` method.
-   *
-   * @return true if the flag was successfully "captured", false otherwise
+   * @return the state timer
    */
-  public boolean search() {
+  StateTimer<Search_State> getTimer() {
+
+    return this.timer;
+  }
+
 
-    boolean found = false;
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Start the search, unless it is already done.
+   *
+   * @return the new state
+   */
+  private Search_State processIdle() {
 
-    double rotateAngle = 0.0;
+    if (this.done) {
+      return Search_State.IDLE;
+    }
 
-    // Start and elapsed times for implementing a search timeout.
-    long start = 0;
-    long elapsed = 0;
+    this.found = false;
 
     // First assert that we have already computed the search path.
-    if (this.path == null) {
+    if (!this.hasPath) {
       String msg = "error: search(): Missing search path";
       System.out.println(msg);
-      return false;
+      return Search_State.DONE;
+    }
+
+    int n = this.getPathLength();
+
+    if (n == 0) {
+      return Search_State.DONE;
     }
 
+    this.sweeping = this.sweepMode && this.driver.hasFrontMotor();
+
     // Set the angle we will need to rotate in order to make turns around corners
-    // and to look inwards toward the search zone.
+    // and to look inwards toward the search zone, or to pan the sensor inwards.
     switch (this.direction) {
       case CLOCKWISE:
-        rotateAngle = -90.0;
+        this.rotateAngle = -90.0;
         break;
 
       case COUNTER_CLOCKWISE:
-        rotateAngle = +90.0;
+        this.rotateAngle = +90.0;
         break;
 
       default:
         // UNKNOWN
-        String msg = "error: search(): Unknown direction";
-        System.out.println(msg);
-
-        return false;
+        if (!this.sweeping) {
+          String msg = "error: search(): Unknown direction";
+          System.out.println(msg);
+          return Search_State.DONE;
+        }
+        this.rotateAngle = +90.0;
+        break;
     }
 
-    // Get the start time.
-    start = System.currentTimeMillis();
+    // The zone is on our right when going clockwise.
+    this.panAngle = (this.direction == Direction.CLOCKWISE) ? -Searcher.SWEEP_PAN_ANGLE
+        : +Searcher.SWEEP_PAN_ANGLE;
+
+    this.start = Clock.millis();
+    this.deadline = Math.min(this.start + Searcher.TIMEOUT, this.limit);
+
+    this.index = 0;
+    this.candidate = 0;
+    this.candidates = 0;
+    this.panned = false;
+    this.scanned = false;
+    this.visitApproach = 0.0;
+    this.closeIn = 0.0;
 
     // Increment reference counts on sensors.
     this.sd.incrementLLRefs();
     this.sd.incrementUSRefs();
+    this.refsHeld = true;
 
-    // Navigate to each waypoint in the search path.
-    for (int i = 0, n = this.path.length; i < n; ++i) {
+    if (this.sweeping) {
+      this.grid.reset(this.searchLL, this.searchUR);
 
-      // Break out of the loop now if our elapsed time has exceeded our timeout.
-      elapsed = System.currentTimeMillis() - start;
-      if (elapsed > Searcher.TIMEOUT) {
-        break;
-      }
+      // The sensor will not be looking forward, so the navigator must not try to avoid obstacles.
+      this.navigator.setAvoidanceEnabled(false);
+    }
 
-      this.navigator.setPath(new Waypoint[] { this.path[i] });
-
-      // Wait until we have reached the next waypoint.
-      while (!this.navigator.isDone()) {
-        this.navigator.process();
-        try {
-          // Sleep a little bit to yield processor to other threads while waiting
-          // for the Navigator to finish navigating to the next waypoint.
-          Thread.sleep(Searcher.WAIT_INTERVAL);
-        } catch (Exception e) {
-          // ...
-        }
-      }
+    return this.travelTo(this.getPathX(0), this.getPathY(0));
+  }
 
-      // Break out of the loop now if our elapsed time has exceeded our timeout.
-      elapsed = System.currentTimeMillis() - start;
-      if (elapsed > Searcher.TIMEOUT) {
-        break;
-      }
+  /**
+   * Let the navigator drive to the current target. While the sensor is panned inwards, the
+   * ultrasonic returns are recorded as block candidates.
+   *
+   * @return the new state
+   */
+  private Search_State processTraveling() {
 
-      // Check if this is the first waypoint in our search path.
-      if (i == 0) {
-        // Get the current orientation of the robot.
-        double angle = Math.toDegrees(this.odometer.getTheta());
+    this.navigator.process();
 
-        double r1 = angle - this.initialOrientation;
-        double r2 = this.initialOrientation - angle;
+    // Only use the returns while driving straight, they are meaningless while turning.
+    if (this.panned && this.navigator.getState() == Navigator.Nav_State.MOVING) {
+      this.recordReturn(this.sd.getUSDataLatest(), this.panAngle);
+    }
 
-        // We must rotate to the correct orientation to correctly navigate around the search zone.
-        if (Math.abs(r1) < Math.abs(r2)) {
-          this.driver.rotate(r1, false /* = inst_ret */);
-        } else {
-          this.driver.rotate(r2, false /* = inst_ret */);
-        }
+    if (!this.navigator.isDone()) {
+      return Search_State.TRAVELING;
+    }
 
-        continue;
-      }
+    return this.arrived();
+  }
 
-      // Have we reached a corner ?
-      if (i == this.cornerLL || i == this.cornerUL || i == this.cornerUR || i == this.cornerLR) {
+  /**
+   * Wait for the sensor to be panned, then start or end going around the search zone.
+   *
+   * @return the new state
+   */
+  private Search_State processPanning() {
 
-        this.driver.rotate(+rotateAngle, false /* = inst_ret */);
+    if (this.driver.isMoving()) {
+      return Search_State.PANNING;
+    }
 
-      } else {
+    if (!this.scanned) {
+      return this.nextCorner();
+    }
 
-        // Look inwards toward the search zone.
-        this.driver.rotate(+rotateAngle, false /* = inst_ret */);
+    // Find the blocks, and the order in which to visit them.
+    this.candidates = this.grid.extractCandidates();
 
-        // Check if we are looking at the flag.
-        found = this.checkForFlag();
+    this.grid.orderByDistance(this.odometer.getX() / FinalProject.BOARD_TILE_LENGTH,
+        this.odometer.getY() / FinalProject.BOARD_TILE_LENGTH);
 
-        if (found) {
-          // Capture the flag and end the loop.
-          this.captureFlag();
+    this.candidate = 0;
 
-          break;
-        }
+    return this.visitNext();
+  }
 
-        // Rotate back to original orientation.
-        this.driver.rotate(-rotateAngle, false /* = inst_ret */);
-      }
+  /**
+   * Wait for the robot to stop turning, then look for the flag if it is now facing the search
+   * zone, or carry on along the search path.
+   *
+   * @return the new state
+   */
+  private Search_State processTurning() {
+
+    if (this.driver.isMoving()) {
+      return Search_State.TURNING;
     }
 
-    // Decrement reference counts on sensors.
-    this.sd.decrementLLRefs();
-    this.sd.decrementUSRefs();
+    if (!this.looking) {
+      return this.advance();
+    }
 
-    return found;
-  }
+    if (this.visitApproach > 0) {
+      // Get close enough for the ultrasonic sensor to see the block.
+      this.driver.moveForward(this.visitApproach, true /* = inst_ret */);
+      return Search_State.APPROACHING;
+    }
 
+    this.settleStart = Clock.millis();
+    this.settleCount = this.sd.getUSCount();
 
-  // --------------------------------------------------------------------------------
-  // Helper Routines
-  // --------------------------------------------------------------------------------
+    return Search_State.SETTLING;
+  }
 
   /**
-   * Compute the coordinates of all tiles surrounding the search zone (even tiles which do not
-   * exist or are unreachable by the robot), and place these waypoints into `waypoints` in
-   * clockwise order, starting from the lower-left corner.
+   * Wait for the robot to get close to a block candidate.
    *
-   * This method also initializes the corner indices, as well as the `valid` boolean array,
-   * holding the value of true if a waypoint located at the same index in `waypoints` is
-   * reachable, and false otherwise.
+   * @return the new state
    */
-  private void computeWaypoints() {
+  private Search_State processApproaching() {
 
-    Waypoint[] waypoints = new Waypoint[this.wpCount];
-    boolean[] valid = new boolean[this.wpCount];
+    if (this.driver.isMoving()) {
+      return Search_State.APPROACHING;
+    }
 
-    // Indicators signaling whether or not each side of the search zone is reachable
-    boolean reachL = (this.searchLL.x >= this.lowerLimitX);
-    boolean reachT = (this.searchUR.y <= this.upperLimitY);
-    boolean reachR = (this.searchUR.x <= this.upperLimitX);
-    boolean reachB = (this.searchLL.y >= this.lowerLimitY);
+    this.settleStart = Clock.millis();
+    this.settleCount = this.sd.getUSCount();
 
-    int index = 0;
+    return Search_State.SETTLING;
+  }
 
-    double x;
-    double y;
+  /**
+   * Wait for a few ultrasonic samples taken while stopped, then check whether there is an object
+   * close enough in front of us to be the flag.
+   *
+   * @return the new state
+   */
+  private Search_State processSettling() {
 
-    // Compute the lower-left corner waypoint.
-    x = this.searchLL.x - Searcher.DISTANCE_TO_SEARCH_ZONE;
-    y = this.searchLL.y - Searcher.DISTANCE_TO_SEARCH_ZONE;
-    waypoints[index] = new Waypoint(x, y);
-    valid[index] = reachB && reachL;
-    ++index;
+    if (this.sd.getUSCount() - this.settleCount < Searcher.SETTLE_SAMPLES
+        && Clock.millis() - this.settleStart < Searcher.SETTLE_TIMEOUT) {
+      return Search_State.SETTLING;
+    }
 
-    this.cornerLL = index;
+    // The median of the samples taken since we stopped ignores the ones without an echo and a
+    // stray reflection, it does not need to average the noise over a long wait.
+    int window = Math.max(this.sd.getUSCount() - this.settleCount, 1);
+    float distance = this.sd.getUSMedian(window);
 
-    // Compute the left-side waypoints.
-    x = this.searchLL.x - Searcher.DISTANCE_TO_SEARCH_ZONE;
+    if (Float.isNaN(distance) || distance > Searcher.CAPTURE_DISTANCE_THRESHOLD) {
+      // The object (if there even is one) is too far away to be checked.
+      this.closeIn = 0.0;
+      return this.backOut();
+    }
 
-    for (int i = 0; i < this.height; ++i) {
-      // We add 0.5 in order to get a coordinate that is the midpoint between two points.
-      y = this.searchLL.y + i + 0.5;
+    //
+    // NOTE:
+    //
+    // This is necessary because our front-mounted light sensor only returns valid data
+    // when it is close to the object whose color it is trying to detect. It does not need
+    // to touch it with a classifier though, which only looks at the ratios between the color
+    // channels.
+    //
+
+    // Move forward, close to the object (right up to it without a classifier).
+    this.closeIn = (this.classifier != null)
+        ? Math.max(distance - Searcher.COLOR_CHECK_DISTANCE, 0.0) : distance;
+    this.driver.moveForward(this.closeIn, true /* = inst_ret */);
+
+    return Search_State.CLOSING_IN;
+  }
 
-      waypoints[index] = new Waypoint(x, y);
-      valid[index] = reachL;
-      ++index;
+  /**
+   * Wait for the robot to get close to the object, then start classifying its color.
+   *
+   * @return the new state
+   */
+  private Search_State processClosingIn() {
+
+    if (this.driver.isMoving()) {
+      return Search_State.CLOSING_IN;
     }
 
-    // Compute the upper-left corner waypoint.
-    x = this.searchLL.x - Searcher.DISTANCE_TO_SEARCH_ZONE;
-    y = this.searchUR.y + Searcher.DISTANCE_TO_SEARCH_ZONE;
-    waypoints[index] = new Waypoint(x, y);
-    valid[index] = reachL && reachT;
-    ++index;
+    if (this.classifier == null) {
+      // Give the light sensor data time to stabilize, see `processClassifying()`.
+      this.settleStart = Clock.millis();
+      return Search_State.CLASSIFYING;
+    }
 
-    this.cornerUL = index;
+    this.classifier.reset();
+    this.lastSample = this.sd.getColorDataLatest(this.rgb);
 
-    // Compute the top-side waypoints.
-    y = this.searchUR.y + Searcher.DISTANCE_TO_SEARCH_ZONE;
+    return Search_State.CLASSIFYING;
+  }
 
-    for (int i = 0; i < this.length; ++i) {
-      // We add 0.5 in order to get a coordinate that is the midpoint between two points.
-      x = this.searchLL.x + i + 0.5;
+  /**
+   * Classify a fresh color sample, if there is one, until we are confident or we run out of
+   * samples.
+   *
+   * @return the new state
+   */
+  private Search_State processClassifying() {
 
-      waypoints[index] = new Waypoint(x, y);
-      valid[index] = reachT;
-      ++index;
+    if (this.classifier == null) {
+      return this.processReadingColor();
     }
 
-    // Compute the upper-right corner waypoint.
-    x = this.searchUR.x + Searcher.DISTANCE_TO_SEARCH_ZONE;
-    y = this.searchUR.y + Searcher.DISTANCE_TO_SEARCH_ZONE;
-    waypoints[index] = new Waypoint(x, y);
-    valid[index] = reachT && reachR;
-    ++index;
+    int count = this.sd.getColorDataLatest(this.rgb);
 
-    this.cornerUR = index;
+    if (count != this.lastSample) {
+      this.lastSample = count;
+      this.classifier.addSample(this.rgb[0], this.rgb[1], this.rgb[2]);
+    }
 
-    // Compute the right-side waypoints.
-    x = this.searchUR.x + Searcher.DISTANCE_TO_SEARCH_ZONE;
+    boolean confident = this.classifier.getSampleCount() >= Searcher.COLOR_MIN_SAMPLES
+        && this.classifier.getConfidence() >= Searcher.COLOR_CONFIDENCE;
 
-    for (int i = 0; i < this.height; ++i) {
-      // We subtract 0.5 in order to get a coordinate that is the midpoint between two points.
-      y = this.searchUR.y - i - 0.5;
+    if (!confident && this.classifier.getSampleCount() < Searcher.COLOR_MAX_SAMPLES) {
+      return Search_State.CLASSIFYING;
+    }
 
-      waypoints[index] = new Waypoint(x, y);
-      valid[index] = reachR;
-      ++index;
+    if (this.classifier.getColor() != this.color
+        || this.classifier.getConfidence() < Searcher.COLOR_CONFIDENCE) {
+      return this.backOut();
     }
 
-    // Compute the lower-right corner waypoint.
-    x = this.searchUR.x + Searcher.DISTANCE_TO_SEARCH_ZONE;
-    y = this.searchLL.y - Searcher.DISTANCE_TO_SEARCH_ZONE;
-    waypoints[index] = new Waypoint(x, y);
-    valid[index] = reachR && reachB;
-    ++index;
+    return this.capture();
+  }
 
-    this.cornerLR = index;
+  /**
+   * Check the reading of the front light sensor against the color of the flag, once it had time to
+   * stabilize (when there is no classifier).
+   *
+   * @return the new state
+   */
+  private Search_State processReadingColor() {
 
-    // Compute the bottom-side waypoints.
-    y = this.searchLL.y - Searcher.DISTANCE_TO_SEARCH_ZONE;
+    if (Clock.millis() - this.settleStart < Searcher.STABALIZE_INTERVAL) {
+      return Search_State.CLASSIFYING;
+    }
 
-    for (int i = 0; i < this.length; ++i) {
-      // We subtract 0.5 in order to get a coordinate that is the midpoint between two points.
-      x = this.searchUR.x - i - 0.5;
+    float color = this.sd.lightMid.getLatest();
 
-      waypoints[index] = new Waypoint(x, y);
-      valid[index] = reachB;
-      ++index;
+    if (Math.abs(color - Searcher.COLORS[this.color.ordinal()]) > Searcher.COLOR_ERROR) {
+      return this.backOut();
     }
 
-    this.waypoints = waypoints;
+    return this.capture();
+  }
 
-    this.reachSideL = reachL;
-    this.reachSideT = reachT;
-    this.reachSideR = reachR;
-    this.reachSideB = reachB;
+  /**
+   * Beep 1, signaling that the flag has been "captured".
+   *
+   * @return the new state
+   */
+  private Search_State capture() {
 
-    this.valid = valid;
+    this.found = true;
+    this.beeps = 1;
+    this.lastBeep = Clock.millis();
+    Sound.beep();
 
-    return;
+    return Search_State.CAPTURING;
   }
 
   /**
-   * Query the SensorData object for data from the front light and ultrasonic sensors to
-   * determine whether or not we are currently looking at the enemy flag.
+   * Wait for the robot to back away from the object, then carry on with the search.
    *
-   * @return true if we are looking at the flag, false otherwise
+   * @return the new state
    */
-  private boolean checkForFlag() {
+  private Search_State processBackingOut() {
 
-    float[] usData = null;
-
-    while (usData == null) {
-      try {
-        // Sleep a little bit so that the ultrasonic sensor data has time to stabalize.
-        Thread.sleep(Searcher.STABALIZE_INTERVAL);
-      } catch (Exception e) {
-        // ...
-      }
+    if (this.driver.isMoving()) {
+      return Search_State.BACKING_OUT;
+    }
 
-      // It is unlikely that this will return 'null', but still check.
-      usData = this.sd.getUSData();
+    if (this.sweeping) {
+      ++this.candidate;
+      return this.visitNext();
     }
 
-    float distance = 0.0f;
+    // Rotate back to original orientation.
+    this.driver.rotate(-this.rotateAngle, true /* = inst_ret */);
+    this.looking = false;
+
+    return Search_State.TURNING;
+  }
 
-    // Compute the average of the stabalized data value received from the ultrasonic sensor
-    // to detect (1) whether or not there is an obstacle in front of us, and (2) the color of
-    // the obstacle (if any).
-    for (int i = 0, n = usData.length; i < n; ++i) {
-      distance += usData[i];
+  /**
+   * Beep three times, with BEEP_INTERVAL between the beeps.
+   *
+   * @return the new state
+   */
+  private Search_State processCapturing() {
+
+    if (this.beeps >= 3) {
+      return Search_State.DONE;
     }
 
-    distance /= usData.length;
+    if (Clock.millis() - this.lastBeep < Searcher.BEEP_INTERVAL) {
+      return Search_State.CAPTURING;
+    }
 
-    if (distance > Searcher.CAPTURE_DISTANCE_THRESHOLD) {
-      // The object (if there even is one) is too far away to be checked.
-      return false;
+    Sound.beep();
+    ++this.beeps;
+    this.lastBeep = Clock.millis();
+
+    return Search_State.CAPTURING;
+  }
+
+  /**
+   * End the search, and notify whoever is waiting for it.
+   *
+   * @return the new state
+   */
+  private Search_State processDone() {
+
+    // Decrement reference counts on sensors.
+    if (this.refsHeld) {
+      this.sd.decrementLLRefs();
+      this.sd.decrementUSRefs();
+      this.refsHeld = false;
     }
 
-    //
-    // NOTE:
-    //
-    // This is necessary because our front-mounted light sensor only returns valid data
-    // when it is very close to the object whose color it is trying to detect.
-    //
+    if (this.sweeping) {
+      this.navigator.setAvoidanceEnabled(true);
+    }
 
-    // Move forward, right up to object.
-    this.driver.moveForward(distance, false /* = inst_ret */);
+    this.done = true;
 
-    //
-    // ---
-    //
+    return Search_State.IDLE;
+  }
+
+  /**
+   * Tell whether or not the search is under way, and can be pre-empted.
+   *
+   * @return true if the search started and is not capturing the flag nor ending
+   */
+  private boolean isRunning() {
 
-    try {
-      // Sleep a little bit so that the light sensor data has time to stabalize.
-      Thread.sleep(Searcher.STABALIZE_INTERVAL);
-    } catch (Exception e) {
-      // ...
+    return this.state != Search_State.IDLE && this.state != Search_State.CAPTURING
+        && this.state != Search_State.DONE;
+  }
+
+  /**
+   * Stop the robot wherever it is, when the search ran out of time.
+   *
+   * @return the new state
+   */
+  private Search_State abort() {
+
+    this.driver.stopBoth();
+    this.navigator.abort();
+
+    // Look forward again, the navigator will need the sensor.
+    if (this.panned) {
+      this.driver.rotateFrontMotor(-this.panAngle, true /* = inst_ret */);
+      this.panned = false;
     }
 
-    float color = this.sd.getLLDataLatest(3);
+    return Search_State.DONE;
+  }
+
+  /**
+   * Give the navigator the coordinates to drive to.
+   *
+   * @param x the x-coordinate (in tiles) to navigate to
+   * @param y the y-coordinate (in tiles) to navigate to
+   *
+   * @return the new state
+   */
+  private Search_State travelTo(double x, double y) {
+
+    this.target.x = x;
+    this.target.y = y;
+    this.navigator.setPath(this.targetPath.clear().append(x, y));
+
+    return Search_State.TRAVELING;
+  }
 
-    // Check if color value is too low.
-    if (color < Searcher.COLORS[this.color.ordinal()] - Searcher.COLOR_ERROR) {
-      // Move backward, away from the object.
-      this.driver.moveBackward(distance, false /* = inst_ret */);
+  /**
+   * Decide what to do once the navigator reached the current target.
+   *
+   * @return the new state
+   */
+  private Search_State arrived() {
+
+    if (!this.sweeping) {
+      // Check if this is the first waypoint in our search path.
+      if (this.index == 0) {
+        // Get the current orientation of the robot.
+        double angle = Math.toDegrees(this.odometer.getTheta());
 
-      return false;
+        // We must rotate to the correct orientation to correctly navigate around the search zone,
+        // by the smallest angle. Unless the first tile is a corner, we look inwards toward the
+        // search zone in the same turn, and turn back to that orientation once done.
+        this.looking = !this.isCorner(0);
+
+        double turn = this.initialOrientation - angle + (this.looking ? this.rotateAngle : 0.0);
+        this.driver.rotate(Angles.normalizeSignedDegrees(turn), true /* = inst_ret */);
+
+        return Search_State.TURNING;
+      }
+
+      // Turn around the corner, or look inwards toward the search zone.
+      this.driver.rotate(+this.rotateAngle, true /* = inst_ret */);
+      this.looking = !this.isCorner(this.index);
+
+      return Search_State.TURNING;
     }
-    // Check if color value is too high.
-    if (color > Searcher.COLORS[this.color.ordinal()] + Searcher.COLOR_ERROR) {
-      // Move backward, away from the object.
-      this.driver.moveBackward(distance, false /* = inst_ret */);
 
-      return false;
+    if (this.scanned) {
+      return this.faceCandidate();
     }
 
-    return true;
+    if (!this.panned) {
+      // We got to the start of the search path, look inwards.
+      this.driver.rotateFrontMotor(this.panAngle, true /* = inst_ret */);
+      this.panned = true;
+
+      return Search_State.PANNING;
+    }
+
+    return this.nextCorner();
   }
 
   /**
-   * Beep three times, signaling that the flag has been "captured".
+   * Go to the next waypoint of the search path, when stopping at every tile.
+   *
+   * @return the new state
    */
-  private void captureFlag() {
+  private Search_State advance() {
 
-    // Beep 1
-    Sound.beep();
+    ++this.index;
 
-    try {
-      // Wait a little bit to give times between the beeps.
-      Thread.sleep(Searcher.BEEP_INTERVAL);
-    } catch (Exception e) {
-      // ...
+    if (this.index >= this.getPathLength()) {
+      return Search_State.DONE;
     }
 
-    // Beep 2
-    Sound.beep();
+    return this.travelTo(this.getPathX(this.index), this.getPathY(this.index));
+  }
 
-    try {
-      // Wait a little bit to give times between the beeps.
-      Thread.sleep(Searcher.BEEP_INTERVAL);
-    } catch (Exception e) {
-      // ...
+  /**
+   * Drive the rest of the way around the search zone, or look forward again once we went around
+   * it.
+   *
+   * The tiles along each side are merged, so the navigator drives each side in one motion and only
+   * stops to turn at the corners. Nothing needs to be done there, the returns are recorded on the
+   * way. The sweep stops as soon as the sensor looked at the whole search zone (see
+   * `getSweepEnd()`), there is no need to go all the way around it.
+   *
+   * @return the new state
+   */
+  private Search_State nextCorner() {
+
+    int n = this.getSweepEnd() + 1;
+
+    if (this.index < n - 1) {
+      this.sweepPath.clear();
+
+      for (int i = this.index + 1; i < n; ++i) {
+        this.sweepPath.append(this.getPathX(i), this.getPathY(i));
+      }
+
+      // The corners must be driven around exactly, the blocks can be right next to them.
+      PathSmoother.smooth(this.sweepPath, PathSmoother.COLLINEAR);
+
+      this.index = n - 1;
+      this.navigator.setPath(this.sweepPath);
+
+      return Search_State.TRAVELING;
     }
 
-    // Beep 3
-    Sound.beep();
+    // Look forward again before approaching the blocks.
+    this.driver.rotateFrontMotor(-this.panAngle, true /* = inst_ret */);
+    this.panned = false;
+    this.scanned = true;
 
-    return;
+    return Search_State.PANNING;
   }
 
   /**
-   * Transform `this.waypoints` such that it now holds all waypoints starting from index `start`
-   * and ending one before `limit` (`start` may be greater than `limit`).
+   * Find the waypoint of the search path at which the sweep can stop: the first one at which every
+   * tile of the search zone was within SWEEP_SURE_RANGE of the panned sensor on the way, or the
+   * last one.
    *
-   * @param start the start (left) index of the waypoints to be kept
-   * @param limit the limit (right) index of the waypoints to be kept
-   * @param shift the direction (-1 = reverse, 1 = forward) in which to order the waypoints
+   * This should be called after calling the `computeSearchPath()` method.
+   *
+   * @return the index of the waypoint in the search path
    */
-  private void transformWaypoints(int start, int limit, int shift) {
+  int getSweepEnd() {
+
+    int n = this.getPathLength();
 
-    int n = this.waypoints.length;
+    for (int k = 1; k < n - 1; ++k) {
+      if (this.isZoneSeen(k)) {
+        return k;
+      }
+    }
 
-    int size = 0;
+    return n - 1;
+  }
 
-    // Calculate the new size of the array after the transformation.
-    if (shift > 0) {
-      size = (start < limit) ? limit - start : limit - start + n;
-    } else {
-      size = (start > limit) ? start - limit : start - limit + n;
+  /**
+   * Check whether or not every tile of the search zone is seen when sweeping up to the k-th
+   * waypoint of the search path.
+   *
+   * @param k the index of the waypoint in the search path
+   *
+   * @return true if all of the search zone is seen
+   */
+  private boolean isZoneSeen(int k) {
+
+    for (int x = (int) this.searchLL.x; x < (int) this.searchUR.x; ++x) {
+      for (int y = (int) this.searchLL.y; y < (int) this.searchUR.y; ++y) {
+        if (!this.isTileSeen(x + 0.5, y + 0.5, k)) {
+          return false;
+        }
+      }
     }
 
-    Waypoint[] waypoints = new Waypoint[size];
+    return true;
+  }
 
-    int cornerLL = this.cornerLL;
-    int cornerUL = this.cornerUL;
-    int cornerUR = this.cornerUR;
-    int cornerLR = this.cornerLR;
+  /**
+   * Check whether or not the panned sensor looks at the point (x, y) from one of the sides of the
+   * search path driven up to the k-th waypoint.
+   *
+   * @param x the x-coordinate (in tiles) of the point
+   * @param y the y-coordinate (in tiles) of the point
+   * @param k the index of the waypoint in the search path
+   *
+   * @return true if the point is within SWEEP_SURE_RANGE of the sensor, in front of it
+   */
+  private boolean isTileSeen(double x, double y, int k) {
 
-    this.cornerLL = -1;
-    this.cornerUL = -1;
-    this.cornerUR = -1;
-    this.cornerLR = -1;
+    double offset = Searcher.SENSOR_OFFSET / FinalProject.BOARD_TILE_LENGTH;
+    double range = Searcher.SWEEP_SURE_RANGE / FinalProject.BOARD_TILE_LENGTH;
 
-    // Perform a deep copy of the elements in `this.waypoints`.
-    for (int i = 0; i < size; ++i) {
-      int index = (start + (i * shift) + n) % n;
+    // The zone is on our right when going clockwise, see `process()`.
+    double sign = (this.direction == Direction.CLOCKWISE) ? -1.0 : +1.0;
 
-      waypoints[i] = this.waypoints[index];
+    for (int i = 0; i < k; ++i) {
+      double x0 = this.getPathX(i);
+      double y0 = this.getPathY(i);
+      double dx = this.getPathX(i + 1) - x0;
+      double dy = this.getPathY(i + 1) - y0;
+      double length = Math.hypot(dx, dy);
 
-      // Update the indices of the search zone corners.
-      if (index == cornerLL) {
-        this.cornerLL = i;
-        continue;
-      }
-      if (index == cornerUL) {
-        this.cornerUL = i;
+      if (length == 0.0) {
         continue;
       }
-      if (index == cornerUR) {
-        this.cornerUR = i;
-        continue;
+
+      // Along the side, and in the direction in which the sensor looks.
+      double along = ((x - x0) * dx + (y - y0) * dy) / length;
+      double ahead = sign * ((y - y0) * dx - (x - x0) * dy) / length - offset;
+
+      if (along >= 0.0 && along <= length && ahead > 0.0 && ahead < range) {
+        return true;
       }
-      if (index == cornerLR) {
-        this.cornerLR = i;
-        continue;
+    }
+
+    return false;
+  }
+
+  /**
+   * Go to the tile of the search path that is closest to the next block candidate.
+   *
+   * @return the new state
+   */
+  private Search_State visitNext() {
+
+    if (this.candidate >= this.candidates) {
+      return Search_State.DONE;
+    }
+
+    double x = this.grid.getCandidateX(this.candidate);
+    double y = this.grid.getCandidateY(this.candidate);
+
+    int closest = 0;
+    double distanceMinimum = Double.MAX_VALUE;
+
+    // Find the tile from which to look at the candidate.
+    for (int i = 0, n = this.getPathLength(); i < n; ++i) {
+      double dx = x - this.getPathX(i);
+      double dy = y - this.getPathY(i);
+      double distance = dx * dx + dy * dy;
+
+      if (distance < distanceMinimum) {
+        distanceMinimum = distance;
+        closest = i;
       }
     }
 
-    this.waypoints = waypoints;
+    return this.travelTo(this.getPathX(closest), this.getPathY(closest));
+  }
+
+  /**
+   * Face the current block candidate, and compute how far to move towards it for the ultrasonic
+   * sensor to see it.
+   *
+   * @return the new state
+   */
+  private Search_State faceCandidate() {
+
+    double x = this.grid.getCandidateX(this.candidate);
+    double y = this.grid.getCandidateY(this.candidate);
+
+    this.target.x = x;
+    this.target.y = y;
+    this.driver.rotate(Math.toDegrees(ZipLine.angleToPos(this.odometer, this.target)),
+        true /* = inst_ret */);
+
+    double dx = x * FinalProject.BOARD_TILE_LENGTH - this.odometer.getX();
+    double dy = y * FinalProject.BOARD_TILE_LENGTH - this.odometer.getY();
+
+    this.visitApproach = Math.max(Math.sqrt(dx * dx + dy * dy)
+        - Searcher.CAPTURE_DISTANCE_THRESHOLD + Searcher.SENSOR_OFFSET, 0.0);
+    this.closeIn = 0.0;
+    this.looking = true;
+
+    return Search_State.TURNING;
+  }
+
+  /**
+   * Back away from the object we looked at, out of the search zone.
+   *
+   * @return the new state
+   */
+  private Search_State backOut() {
+
+    double distance = this.closeIn + this.visitApproach;
+
+    if (distance > 0) {
+      this.driver.moveBackward(distance, true /* = inst_ret */);
+    }
+
+    return Search_State.BACKING_OUT;
+  }
+
+  /**
+   * Add an ultrasonic return to the evidence grid.
+   *
+   * @param distance the distance (in centimeters) read by the ultrasonic sensor
+   * @param panAngle the angle (in degrees) at which the sensor is panned
+   */
+  private void recordReturn(float distance, int panAngle) {
+
+    double heading = this.odometer.getTheta() + Math.toRadians(panAngle);
+
+    // The sensor is not at the center of the robot.
+    double x = this.odometer.getX() + Searcher.SENSOR_OFFSET * Math.cos(heading);
+    double y = this.odometer.getY() + Searcher.SENSOR_OFFSET * Math.sin(heading);
+
+    this.grid.addRay(x, y, heading, distance, Searcher.SWEEP_MAX_RANGE);
 
     return;
   }
 
+  /**
+   * Check whether or not the i-th waypoint of the search path is one of the corners of the
+   * search zone.
+   *
+   * @param i the index of the waypoint in the search path
+   *
+   * @return true if the waypoint is a corner, false otherwise
+   */
+  private boolean isCorner(int i) {
+
+    return i == this.cornerLL || i == this.cornerUL || i == this.cornerUR || i == this.cornerLR;
+  }
+
+  /**
+   * Get the number of waypoints in the search path.
+   *
+   * @return the length of the search path
+   */
+  private int getPathLength() {
+
+    return (this.path != null) ? this.path.size() : this.route.size();
+  }
+
+  /**
+   * Get the x-coordinate (in tiles) of a waypoint in the search path.
+   *
+   * @param i the index of the waypoint in the search path
+   *
+   * @return the x-coordinate of the waypoint
+   */
+  private double getPathX(int i) {
+
+    return (this.path != null) ? this.path.getX(i) : this.route.getX(i);
+  }
+
+  /**
+   * Get the y-coordinate (in tiles) of a waypoint in the search path.
+   *
+   * @param i the index of the waypoint in the search path
+   *
+   * @return the y-coordinate of the waypoint
+   */
+  private double getPathY(int i) {
+
+    return (this.path != null) ? this.path.getY(i) : this.route.getY(i);
+  }
+
   /**
    * Find the waypoint in `to` that is the shortest distance from the waypoint, `from`.
    *
@@ -898,7 +1325,7 @@ public class Searcher {
    *
    * @return the index in `to` of the closest waypoint
    */
-  private static int findClosestWaypoint(Waypoint from, Waypoint[] to) {
+  static int findClosestWaypoint(Waypoint from, Waypoint[] to) {
 
     double distanceMinimum;
     double distance;
@@ -931,7 +1358,10 @@ public class Searcher {
    */
   private static double computeDistance(Waypoint a, Waypoint b) {
 
-    return Math.sqrt(Math.pow((b.x - a.x), 2.0) + Math.pow((b.y - a.y), 2.0));
+    double dx = b.x - a.x;
+    double dy = b.y - a.y;
+
+    return Math.sqrt(dx * dx + dy * dy);
   }
 
 
@@ -950,18 +1380,51 @@ public class Searcher {
 
     Waypoint[] path = null;
 
-    if (this.path != null) {
-      path = new Waypoint[this.path.length];
+    if (this.hasPath) {
+      path = new Waypoint[this.getPathLength()];
 
-      // Perform a deep copy of each Waypoint object in our search path.
-      for (int i = 0, n = this.path.length; i < n; ++i) {
-        path[i] = new Waypoint(this.path[i].x, this.path[i].y);
+      // Perform a deep copy of each waypoint in our search path.
+      for (int i = 0, n = path.length; i < n; ++i) {
+        path[i] = new Waypoint(this.getPathX(i), this.getPathY(i));
       }
     }
 
     return path;
   }
 
+  /**
+   * Get the indices of the LL, UL, UR, and LR corners in the search path (-1 if not reachable).
+   *
+   * This should be called after calling the `computeSearchPath()` method.
+   *
+   * @return the indices of the corners
+   */
+  public int[] getCorners() {
+
+    return new int[] { this.cornerLL, this.cornerUL, this.cornerUR, this.cornerLR };
+  }
+
+  /**
+   * Get the direction in which the robot will travel along the search path.
+   *
+   * @return the direction
+   */
+  public Direction getDirection() {
+
+    return this.direction;
+  }
+
+  /**
+   * Get the angle (in degrees) to which the robot orientates itself upon reaching the first
+   * waypoint in the search path.
+   *
+   * @return the initial orientation
+   */
+  public double getInitialOrientation() {
+
+    return this.initialOrientation;
+  }
+
   /**
    * Set the computed search path that the robot will follow in search of the enemy flag.
    *
@@ -971,12 +1434,11 @@ public class Searcher {
    */
   public void setSearchPath(Waypoint[] path, int[] corners, Direction direction) {
 
-    this.path = new Waypoint[path.length];
+    // Copy the coordinates of each waypoint in our search path.
+    this.path = new PathBuffer(path);
 
-    // Perform a deep copy of each Waypoint object in our search path.
-    for (int i = 0, n = path.length; i < n; ++i) {
-      this.path[i] = new Waypoint(path[i].x, path[i].y);
-    }
+    this.hasPath = true;
+    this.done = false;
 
     this.cornerLL = corners[0];
     this.cornerUL = corners[1];
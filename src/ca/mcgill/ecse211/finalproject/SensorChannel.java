@@ -0,0 +1,98 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * A handle on one sensor channel of a SensorData object, returned by `SensorData.register()`.
+ *
+ * The samples of every channel live in the flat arrays of the SensorData object, each channel
+ * owns the range [offset, offset + size) as a circular array. The handle holds where that range
+ * is and where the next sample goes, so that storing a sample does not depend on which sensor it
+ * comes from. The latest sample can be read from the handle without taking a lock.
+ *
+ * @author Joshua Inscoe
+ */
+public class SensorChannel {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The position of the channel in the registry, and its name (for debugging)
+  final int id;
+  final String name;
+
+  // The range of the flat arrays holding the samples of the channel
+  final int offset;
+  final int size;
+
+  // The next index (in [0, size)) at which a sample is placed, and whether the range is filled,
+  // only used with the channel locked
+  int index;
+  boolean filled;
+
+  // The number of samples received so far, and the latest one
+  volatile int count;
+  volatile float latest;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  SensorChannel(int id, String name, int offset, int size) {
+
+    this.id = id;
+    this.name = name;
+    this.offset = offset;
+    this.size = size;
+
+    this.index = 0;
+    this.filled = false;
+    this.count = 0;
+    this.latest = 0.0f;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Get the latest sample of the channel.
+   *
+   * @return the latest sample, 0 if none was received yet
+   */
+  public float getLatest() {
+
+    return this.latest;
+  }
+
+  /**
+   * Get the number of samples received so far, tells whether or not a sample is a new one.
+   *
+   * @return the number of samples received so far
+   */
+  public int getCount() {
+
+    return this.count;
+  }
+
+  /**
+   * Get the number of samples the channel keeps.
+   *
+   * @return the size of the circular array of the channel
+   */
+  public int getSize() {
+
+    return this.size;
+  }
+
+  public String getName() {
+
+    return this.name;
+  }
+
+  public String toString() {
+
+    return this.name + " [" + this.offset + ", " + (this.offset + this.size) + ")";
+  }
+}
@@ -3,13 +3,30 @@ package ca.mcgill.ecse211.finalproject;
 /**
  * Handles processing the sensor data and facilitates access to it.
  *
+ * The samples of every sensor channel are kept in one flat array (and their derivatives in a
+ * second one), each channel owning a range of it as a circular array. A channel is registered once
+ * with `register()`, which returns the SensorChannel handle used to store and read its samples:
+ * the code storing a sample is the same for every channel, and adding a sensor (e.g. a gyro, or a
+ * second ultrasonic sensor) only takes one more call to `register()`.
+ *
+ * The light sensors and the ultrasonic sensor of the robot are registered by the constructor. The
+ * ultrasonic channel also keeps track of which samples got an echo back (see
+ * `ultrasonicHandler()`).
+ *
  * @author Josh Inscoe
  */
 public class SensorData {
 
   // Constants
-  private final int LL_DATA_SIZE = 20;
-  private final int US_DATA_SIZE = 20;
+  private static final int LL_DATA_SIZE = 20;
+  private static final int US_DATA_SIZE = 20;
+
+  // Readings (in centimeters) from which the ultrasonic sensor did not get an echo back, it
+  // returns infinity (or 255) in that case
+  public static final float US_MAX_RANGE = 250.0f;
+
+  // Value stored in place of a reading without an echo, so that it still reads as far away
+  public static final float US_NO_ECHO = 255.0f;
 
   // Reference counts of other objects accessing sensor data
   private int llRefs;
@@ -18,36 +35,24 @@ public class SensorData {
   // Locks
   private final Object llRefsLock;
   private final Object usRefsLock;
-  private final Object llDataLock;
-  private final Object usDataLock;
-  private final Object llDataDerivLock;
-  private final Object usDataDerivLock;
-  private final Object llStatsLock;
-  private final Object usStatsLock;
-
-  // Circular arrays holding the original sensor data
-  private float llData1[];
-  private float llData2[];
-  private float llData3[];
-  private float usData[];
-
-  // Circular arrays holding the derivative of the sensor data
-  private float llDataDeriv1[];
-  private float llDataDeriv2[];
-  private float llDataDeriv3[];
-  private float usDataDeriv[];
-  // The next index at which data should be placed in the circular arrays
-  private int llIndex1; // sensor left
-  private int llIndex2; // sensor right
-  private int llIndex3; // sensor mid
-  private int usIndex;
-
-  // Boolean values signalling whether circular arrays are filled
-  private boolean llFilled;
-  private boolean usFilled;
+
+  // The registered channels
+  private SensorChannel[] channels;
+  private int channelCount;
+
+  // Flat arrays holding the samples of every channel and their derivatives, each channel owns the
+  // range [offset, offset + size) of both (written with the channel locked)
+  private float[] data;
+  private float[] deriv;
+
+  // The channels of the robot's sensors
+  public final SensorChannel lightLeft;
+  public final SensorChannel lightRight;
+  public final SensorChannel lightMid;
+  public final SensorChannel ultrasonic;
 
   //
-  // The moving statistics of the values in each circular array
+  // The moving statistics of the valid ultrasonic samples
   //
   // Index:
   //
@@ -55,11 +60,26 @@ public class SensorData {
   // 1 - moving variance
   // 2 - moving standard deviation
   //
-  private float[] llStats1;
-  private float[] llStats2;
-  private float[] llStats3;
   private float[] usStats;
 
+  // Whether each ultrasonic sample in the circular array got an echo back, the statistics and the
+  // median only use the valid ones
+  private boolean usValid[];
+  private volatile boolean usLatestValid;
+
+  // Sums of the valid ultrasonic samples and of their squares, and the number of valid samples
+  private double usSum;
+  private double usSumSquares;
+  private int usValidCount;
+
+  // Scratch array used to sort the samples for the median
+  private final float[] usSorted;
+
+  // Latest RGB sample of the front color sensor, and the number of samples received so far
+  private final float[] colorData;
+  private int colorCount;
+  private final Object colorDataLock;
+
   /**
    * Constructor
    */
@@ -67,133 +87,155 @@ public class SensorData {
     this.llRefs = 0;
     this.usRefs = 0;
 
-    this.llData1 = new float[LL_DATA_SIZE];
-    this.llData2 = new float[LL_DATA_SIZE];
-    this.llData3 = new float[LL_DATA_SIZE];
-    this.usData = new float[US_DATA_SIZE];
-    this.llDataDeriv1 = new float[LL_DATA_SIZE];
-    this.llDataDeriv2 = new float[LL_DATA_SIZE];
-    this.llDataDeriv3 = new float[LL_DATA_SIZE];
-    this.usDataDeriv = new float[US_DATA_SIZE];
+    llRefsLock = new Object();
+    usRefsLock = new Object();
 
-    this.llIndex1 = 0;
-    this.llIndex2 = 0;
-    this.llIndex3 = 0;
-    this.usIndex = 0;
+    this.channels = new SensorChannel[4];
+    this.channelCount = 0;
+    this.data = new float[0];
+    this.deriv = new float[0];
+
+    this.lightLeft = this.register("light_left", LL_DATA_SIZE);
+    this.lightRight = this.register("light_right", LL_DATA_SIZE);
+    this.lightMid = this.register("light_mid", LL_DATA_SIZE);
+    this.ultrasonic = this.register("ultrasonic", US_DATA_SIZE);
+
+    this.usStats = new float[] {Float.NaN, 0.0f, 0.0f};
+    this.usValid = new boolean[US_DATA_SIZE];
+    this.usLatestValid = false;
+    this.usSum = 0.0;
+    this.usSumSquares = 0.0;
+    this.usValidCount = 0;
+    this.usSorted = new float[US_DATA_SIZE];
+
+    this.colorData = new float[] {0.0f, 0.0f, 0.0f};
+    this.colorCount = 0;
+    colorDataLock = new Object();
+  }
 
-    this.llFilled = false;
-    this.usFilled = false;
+  /**
+   * Register a new channel. All the channels must be registered before the sensors are polled.
+   *
+   * @param name the name of the channel (for debugging)
+   * @param size the number of latest samples kept
+   * @return the handle used to store and read the samples of the channel
+   */
+  public synchronized SensorChannel register(String name, int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Channel " + name + " must keep at least one sample");
+    }
 
-    this.llStats1 = new float[] {0.0f, 0.0f, 0.0f};
-    this.llStats2 = new float[] {0.0f, 0.0f, 0.0f};
-    this.llStats3 = new float[] {0.0f, 0.0f, 0.0f};
-    this.usStats = new float[] {0.0f, 0.0f, 0.0f};
+    int offset = this.data.length;
 
-    llRefsLock = new Object();
-    usRefsLock = new Object();
-    llDataLock = new Object();
-    usDataLock = new Object();
-    llDataDerivLock = new Object();
-    usDataDerivLock = new Object();
-    llStatsLock = new Object();
-    usStatsLock = new Object();
+    float[] grownData = new float[offset + size];
+    float[] grownDeriv = new float[offset + size];
+    System.arraycopy(this.data, 0, grownData, 0, offset);
+    System.arraycopy(this.deriv, 0, grownDeriv, 0, offset);
+    this.data = grownData;
+    this.deriv = grownDeriv;
+
+    if (this.channelCount == this.channels.length) {
+      SensorChannel[] grownChannels = new SensorChannel[2 * this.channels.length];
+      System.arraycopy(this.channels, 0, grownChannels, 0, this.channelCount);
+      this.channels = grownChannels;
+    }
+
+    SensorChannel channel = new SensorChannel(this.channelCount, name, offset, size);
+    this.channels[this.channelCount++] = channel;
+
+    return channel;
   }
 
   /**
-   * Handler method to be called by a LightPoller object.
+   * Get the number of registered channels.
    *
-   * @param value the latest data value returned by the light sensor
+   * @return the number of channels
    */
-  public void lightLevelHandler(float value, int selection) {
-    synchronized (this.llDataLock) {
-      // Update moving statistics.
-//      synchronized (this.llStatsLock) {
-//        if (selection == 1) {
-//          this.updateMovingStatistics(this.llStats1, this.llData1, this.llIndex1, value);
-//        }
-//      }
-
-      // Insert latest sample.
-      switch (selection) {
-        case 1:
-          this.llData1[this.llIndex1] = value;
-          break;
-        case 2:
-          this.llData2[this.llIndex2] = value;
-          break;
-        case 3:
-          this.llData3[this.llIndex3] = value;
-          break;
-      }
-
-      // Insert latest sample derivative.
-      synchronized (this.llDataDerivLock) {
-        float lastValue = 0.f; 
-        switch (selection) {
-          case 1:
-            lastValue = this.llData1[(this.llIndex1 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-            this.llDataDeriv1[this.llIndex1] = value - lastValue;
-            break;
-          case 2:
-            lastValue = this.llData2[(this.llIndex2 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-            this.llDataDeriv2[this.llIndex2] = value - lastValue;
-            break;
-          case 3:
-            lastValue = this.llData3[(this.llIndex3 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-            this.llDataDeriv3[this.llIndex3] = value - lastValue;
-            break;
-        }
-      }
+  public synchronized int getChannelCount() {
+    return this.channelCount;
+  }
 
-      switch (selection) {
-        case 1:
-          this.llIndex1++;
-          this.llIndex1 %= this.LL_DATA_SIZE;
-          break;
-        case 2:
-          this.llIndex2++;
-          this.llIndex2 %= this.LL_DATA_SIZE;
-          break;
-        case 3:
-          this.llIndex3++;
-          this.llIndex3 %= this.LL_DATA_SIZE;
-          break;
-      }
+  /**
+   * Get a registered channel by its position in the registry.
+   *
+   * @param id the position of the channel, in registration order
+   * @return the channel
+   */
+  public synchronized SensorChannel getChannel(int id) {
+    if (id < 0 || id >= this.channelCount) {
+      throw new IndexOutOfBoundsException("No channel " + id);
+    }
+    return this.channels[id];
+  }
 
-      if (!(this.llFilled) && this.llIndex1 == 0) {
-        // Our circular array is now filled.
-        this.llFilled = true;
-      }
+  /**
+   * Handler method to be called by a poller with the latest sample of a channel.
+   *
+   * @param channel the channel the sample belongs to
+   * @param value the latest data value returned by the sensor
+   */
+  public void put(SensorChannel channel, float value) {
+    synchronized (channel) {
+      this.store(channel, value);
     }
   }
 
   /**
    * Handler method to be called by an UltrasonicPoller object.
    *
-   * @param value the latest data value returned by the ultrasonic sensor
+   * A sample without an echo (infinity, 255, or anything at or above US_MAX_RANGE) and a NaN are
+   * stored as US_NO_ECHO and tagged as invalid: they still read as far away, but they are left out
+   * of the statistics and of the median.
+   *
+   * @param value the latest data value returned by the ultrasonic sensor (in centimeters)
    */
   public void ultrasonicHandler(float value) {
-    synchronized (this.usDataLock) {
-      // Update moving statistics.
-      synchronized (this.usStatsLock) {
-        this.updateMovingStatistics(this.usStats, this.usData, this.usIndex, value);
-      }
+    // NaN fails both comparisons.
+    boolean valid = value >= 0.0f && value < US_MAX_RANGE;
 
-      // Insert latest sample.
-      this.usData[this.usIndex] = value;
+    if (!valid) {
+      value = US_NO_ECHO;
+    }
 
-      // Insert latest sample derivative.
-      synchronized (this.usDataDerivLock) {
-        float lastValue = this.usData[(this.usIndex - 1 + US_DATA_SIZE) % US_DATA_SIZE];
-        this.usDataDeriv[this.usIndex] = value - lastValue;
-      }
+    synchronized (this.ultrasonic) {
+      // Update moving statistics, before the oldest sample is replaced.
+      this.updateValidStatistics(value, valid);
 
-      this.usIndex += 1;
-      this.usIndex %= this.US_DATA_SIZE;
-      if (!(this.usFilled) && this.usIndex == 0) {
-        // Our circular array is now filled.
-        this.usFilled = true;
-      }
+      this.usValid[this.ultrasonic.index] = valid;
+      this.usLatestValid = valid;
+
+      this.store(this.ultrasonic, value);
+    }
+  }
+
+  /**
+   * Handler method to be called by a poller with the RGB sample of the front color sensor.
+   *
+   * @param r the red component of the sample
+   * @param g the green component of the sample
+   * @param b the blue component of the sample
+   */
+  public void colorHandler(float r, float g, float b) {
+    synchronized (this.colorDataLock) {
+      this.colorData[0] = r;
+      this.colorData[1] = g;
+      this.colorData[2] = b;
+      this.colorCount++;
+    }
+  }
+
+  /**
+   * Get the latest RGB sample of the front color sensor.
+   *
+   * @param rgb array of (at least) three values in which the sample is copied
+   * @return the number of samples received so far, tells whether or not the sample is a new one
+   */
+  public int getColorDataLatest(float[] rgb) {
+    synchronized (this.colorDataLock) {
+      rgb[0] = this.colorData[0];
+      rgb[1] = this.colorData[1];
+      rgb[2] = this.colorData[2];
+      return this.colorCount;
     }
   }
 
@@ -217,60 +259,45 @@ public class SensorData {
   }
 
   /**
-   * Get a copy of the original light sensor data.
+   * Get a copy of the samples of a channel, oldest first.
    *
-   * @return a double array holding a copy of the original light sensor data
+   * @param channel the channel
+   * @return a float array holding a copy of the samples, null until the channel is filled
    */
-  public float[] getLLData(int selection) {
-    float[] data = null;
-    if (this.llFilled) {
-      synchronized (this.llDataLock) {
-        if (selection == 1) {
-          data = this.llData1.clone();
-        } else if (selection == 2) {
-          data = this.llData2.clone();
-        } else {
-          data = this.llData3.clone();
-        }
-      }
-    }
-    return data;
+  public float[] getData(SensorChannel channel) {
+    return this.copy(channel, this.data);
   }
 
   /**
-   * Get the latest data value polled from the light sensor.
+   * Get a copy of the derivative of the samples of a channel, oldest first.
    *
-   * @param selection the light sensor you want to get data from (1 = left, 2 = right, 3 = middle)
-   * @return the latest light sensor data value
+   * @param channel the channel
+   * @return a float array holding a copy of the derivative, null until the channel is filled
    */
-  public float getLLDataLatest(int selection) {
-    float value;
-    // We can safely assume that at least one value has been recorded.
-    synchronized (this.llDataLock) {
-      if (selection == 1) {
-        value = this.llData1[(this.llIndex1 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      } else if (selection == 2) {
-        value = this.llData2[(this.llIndex2 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      } else {
-        value = this.llData3[(this.llIndex3 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      }
+  public float[] getDataDeriv(SensorChannel channel) {
+    return this.copy(channel, this.deriv);
+  }
+
+  /**
+   * Get the latest derivative of the samples of a channel.
+   *
+   * @param channel the channel
+   * @return the difference between the latest two samples
+   */
+  public float getDataDerivLatest(SensorChannel channel) {
+    synchronized (channel) {
+      return this.deriv[channel.offset + (channel.index - 1 + channel.size) % channel.size];
     }
-    return value;
   }
 
   /**
-   * Get a copy of the original ultrasonic sensor data.
+   * Get a copy of the original ultrasonic sensor data, oldest first. The samples without an echo
+   * hold US_NO_ECHO.
    *
-   * @return a double array holding a copy of the original ultrasonic sensor data
+   * @return a float array holding a copy of the original ultrasonic sensor data
    */
   public float[] getUSData() {
-    float[] data = null;
-    if (this.usFilled) {
-      synchronized (this.usDataLock) {
-        data = this.usData.clone();
-      }
-    }
-    return data;
+    return this.getData(this.ultrasonic);
   }
 
   /**
@@ -279,104 +306,81 @@ public class SensorData {
    * @return the latest ultrasonic sensor data value
    */
   public float getUSDataLatest() {
-    float value;
-    // We can safely assume that at least one value has been recorded.
-    synchronized (this.usDataLock) {
-      value = this.usData[(this.usIndex - 1 + US_DATA_SIZE) % US_DATA_SIZE];
-    }
-    return value;
+    // The latest value is volatile, no lock is needed to read it.
+    return this.ultrasonic.latest;
   }
 
   /**
-   * Get a copy of the derivate of the light sensor data.
+   * Tell whether the latest ultrasonic sample got an echo back.
    *
-   * @return a double array holding a copy of the derive of the original light sensor data
+   * @return true if the latest sample is a valid distance, false if it is US_NO_ECHO
    */
-  public float[] getLLDataDeriv() {
-    float[] data = null;
-    if (this.llFilled) {
-      synchronized (this.llDataDerivLock) {
-        data = this.llDataDeriv1.clone();
-      }
-    }
-    return data;
+  public boolean isUSDataLatestValid() {
+    return this.usLatestValid;
   }
 
   /**
-   * Get the latest derivate of the data polled from the light sensor.
+   * Get the number of ultrasonic samples received so far, e.g. to wait for fresh ones.
    *
-   * @return the latest derivative of the light sensor data
+   * @return the number of samples received so far
    */
-  public float getLLDataDerivLatest(int selection) {
-    float value = 0.f;
-    // We can safely assume that at least one value has been recorded.
-    synchronized (this.llDataDerivLock) {
-      if (selection == 1) {
-        value = this.llDataDeriv1[(this.llIndex1 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      } else if (selection == 2) {
-        value = this.llDataDeriv2[(this.llIndex2 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      } else {
-        value = this.llDataDeriv3[(this.llIndex3 - 1 + LL_DATA_SIZE) % LL_DATA_SIZE];
-      }
-    }
-    return value;
+  public int getUSCount() {
+    return this.ultrasonic.count;
   }
 
   /**
-   * Get a copy of the derivate of the ultrasonic sensor data.
+   * Get the median of the valid ultrasonic samples among the latest ones. A single bad echo does
+   * not move it, unlike the average.
    *
-   * @return a double array holding a copy of the derive of the original ultrasonic sensor data
+   * @param window the number of latest samples to look at (at most the size of the circular array)
+   * @return the median of the valid samples among them, NaN if none of them got an echo back
    */
-  public float[] getUSDataDeriv() {
-    float[] data = null;
-    if (this.usFilled) {
-      synchronized (this.usDataDerivLock) {
-        data = this.usDataDeriv.clone();
+  public float getUSMedian(int window) {
+    SensorChannel channel = this.ultrasonic;
+
+    synchronized (channel) {
+      int available = channel.filled ? channel.size : channel.index;
+      int n = Math.min(window, available);
+      int count = 0;
+
+      // Insertion sort of the valid samples, newest first.
+      for (int i = 1; i <= n; ++i) {
+        int k = (channel.index - i + channel.size) % channel.size;
+        if (!this.usValid[k]) {
+          continue;
+        }
+
+        float value = this.data[channel.offset + k];
+        int j = count++;
+        while (j > 0 && this.usSorted[j - 1] > value) {
+          this.usSorted[j] = this.usSorted[j - 1];
+          --j;
+        }
+        this.usSorted[j] = value;
       }
-    }
-    return data;
-  }
 
-  /**
-   * Get the latest derivate of the data polled from the ultrasonic sensor.
-   *
-   * @return the latest derivative of the ultrasonic sensor data
-   */
-  public double getUSDataDerivLatest() {
-    double value;
-    // We can safely assume that at least one value has been recorded.
-    synchronized (this.usDataDerivLock) {
-      value = this.usDataDeriv[(this.usIndex - 1 + US_DATA_SIZE) % US_DATA_SIZE];
-    }
-    return value;
-  }
+      if (count == 0) {
+        return Float.NaN;
+      }
 
-  /**
-   * Get the moving statistics of the light sensor data.
-   *
-   * @return a double array holding the average, variance, and standard deviation of the light
-   *         sensor data
-   */
-  public float[] getLLStats() {
-    float[] stats = null;
-    if (this.llFilled) {
-      synchronized (this.llStatsLock) {
-        stats = this.llStats1.clone();
+      if ((count & 1) != 0) {
+        return this.usSorted[count / 2];
       }
+      return 0.5f * (this.usSorted[count / 2 - 1] + this.usSorted[count / 2]);
     }
-    return stats;
   }
 
   /**
-   * Get the moving statistics of the ultrasonic sensor data.
+   * Get the moving statistics of the valid ultrasonic sensor data. The average is NaN when none of
+   * the samples got an echo back.
    *
-   * @return a double array holding the average, variance, and standard deviation of the ultrasonic
+   * @return a float array holding the average, variance, and standard deviation of the ultrasonic
    *         sensor data
    */
   public float[] getUSStats() {
     float[] stats = null;
-    if (this.usFilled) {
-      synchronized (this.usStatsLock) {
+    synchronized (this.ultrasonic) {
+      if (this.ultrasonic.filled) {
         stats = this.usStats.clone();
       }
     }
@@ -432,33 +436,90 @@ public class SensorData {
   }
 
   /**
-   * Update the moving statistics, `stats`, of the data samples, `data`.
+   * Store a sample and its derivative in the range of a channel, which must be locked.
+   *
+   * @param channel the channel
+   * @param value the new sample
+   */
+  private void store(SensorChannel channel, float value) {
+    int base = channel.offset;
+    int index = channel.index;
+    int last = (index == 0) ? channel.size - 1 : index - 1;
+
+    this.deriv[base + index] = value - this.data[base + last];
+    this.data[base + index] = value;
+
+    index += 1;
+    if (index == channel.size) {
+      // Our circular array is now filled.
+      index = 0;
+      channel.filled = true;
+    }
+    channel.index = index;
+
+    channel.latest = value;
+    channel.count++;
+  }
+
+  /**
+   * Copy the range of a channel in one of the flat arrays, oldest sample first.
+   */
+  private float[] copy(SensorChannel channel, float[] source) {
+    synchronized (channel) {
+      if (!channel.filled) {
+        return null;
+      }
+
+      float[] copy = new float[channel.size];
+      int older = channel.size - channel.index;
+      System.arraycopy(source, channel.offset + channel.index, copy, 0, older);
+      System.arraycopy(source, channel.offset, copy, older, channel.index);
+      return copy;
+    }
+  }
+
+  /**
+   * Update the moving statistics of the ultrasonic sensor data over its valid samples only, the
+   * sample at the current index of the channel is the one being replaced. The channel must be
+   * locked.
    *
-   * @param stats the moving statistics (average, variance, standard deviation) of our data
-   * @param data the sample data on which to compute the moving statistics
-   * @param index the index of the data value to remove from the moving statistics
-   * @param val the new value to add to the moving statistics
+   * @param val the new value
+   * @param valid whether the new value got an echo back
    */
-  private void updateMovingStatistics(float[] stats, float[] data, int index, float val) {
-    float old = data[index];
-
-    float n = data.length;
-
-    float oldAvg = stats[0];
-    float oldVar = stats[1];
-    float oldDev = stats[2];
-
-    //
-    // Reference:
-    //
-    // [See http://jonisalonen.com/2014/efficient-and-accurate-rolling-standard-deviation]
-    //
-    float newAvg = oldAvg + (val - old) / n;
-    float newVar = oldVar + (val - old) * (val - newAvg + old - oldAvg) / (n - 1);
-    float newDev = (float) Math.sqrt(newVar);
-
-    stats[0] = newAvg;
-    stats[1] = newVar;
-    stats[2] = newDev;
+  private void updateValidStatistics(float val, boolean valid) {
+    int index = this.ultrasonic.index;
+
+    if (this.usValid[index]) {
+      float old = this.data[this.ultrasonic.offset + index];
+      this.usSum -= old;
+      this.usSumSquares -= (double) old * old;
+      this.usValidCount--;
+    }
+
+    if (valid) {
+      this.usSum += val;
+      this.usSumSquares += (double) val * val;
+      this.usValidCount++;
+    }
+
+    int n = this.usValidCount;
+
+    if (n == 0) {
+      // Start over from exact sums, so that rounding errors do not pile up.
+      this.usSum = 0.0;
+      this.usSumSquares = 0.0;
+
+      this.usStats[0] = Float.NaN;
+      this.usStats[1] = 0.0f;
+      this.usStats[2] = 0.0f;
+      return;
+    }
+
+    double avg = this.usSum / n;
+    double var = (n > 1) ? Math.max((this.usSumSquares - this.usSum * avg) / (n - 1), 0.0) : 0.0;
+
+    this.usStats[0] = (float) avg;
+    this.usStats[1] = (float) var;
+    this.usStats[2] = (float) Math.sqrt(var);
   }
 }
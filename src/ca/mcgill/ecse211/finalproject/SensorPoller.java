@@ -1,5 +1,6 @@
 package ca.mcgill.ecse211.finalproject;
 
+import java.io.PrintStream;
 import lejos.robotics.SampleProvider;
 
 /**
@@ -10,13 +11,6 @@ import lejos.robotics.SampleProvider;
  */
 public class SensorPoller extends Thread {
 
-  // --------------------------------------------------------------------------------
-  // Constants
-  // --------------------------------------------------------------------------------
-
-  private static final long SLEEP_TIME = 20;
-
-
   // --------------------------------------------------------------------------------
   // Variables
   // --------------------------------------------------------------------------------
@@ -32,6 +26,32 @@ public class SensorPoller extends Thread {
 
   private SensorData sd;
 
+  private BinaryLog capture = null; // raw samples are logged here in capture mode
+
+  // Filters run on the samples of each channel (Replayer.CHANNEL_*) before they are delivered
+  private final FilterChain[] filters = new FilterChain[Replayer.CHANNEL_COUNT];
+
+  // Whether each group of sensors was polled at the last iteration
+  private boolean lPolling = false;
+  private boolean usPolling = false;
+
+  // Gives the speed commanded to the wheels, the light sensors are polled faster when it is higher
+  private Driver driver = null;
+
+  // Opens windows around the lines the left and right light sensors are expected to cross, during
+  // which they are polled even if no one else needs them
+  private LinePredictor predictor = null;
+
+  // Times (System.nanoTime()) of the latest poll of each group of sensors
+  private long lPollTime = 0;
+  private long usPollTime = 0;
+
+  // Distance (in cm) driven between two polls of the light sensors while moving: the largest one,
+  // their sum and their number
+  private volatile double spacingMax = 0.0;
+  private double spacingSum = 0.0;
+  private int spacingCount = 0;
+
 
   /**
    * Constructor
@@ -62,29 +82,69 @@ public class SensorPoller extends Thread {
   public void run() {
 
     while (true) {
-      if (this.sd.getLLRefs() > 0) {
+      long start = System.nanoTime();
+
+      boolean lPoll = this.sd.getLLRefs() > 0;
+      boolean usPoll = this.sd.getUSRefs() > 0;
+
+      // The predictor is updated at every iteration, so that no window is skipped.
+      boolean lWindow = this.predictor != null && this.predictor.update();
+      lPoll = lPoll || lWindow;
+
+      // The ultrasonic sensor does not measure any faster, only poll it every SLEEP_TIME.
+      boolean usDue = usPoll && (!this.usPolling
+          || start - this.usPollTime >= FinalProject.SLEEP_TIME * 1000000L);
+
+      double speed = this.getWheelSpeed();
+      long period = lPoll ? pollPeriod(speed) : FinalProject.SLEEP_TIME;
+
+      // The samples from before a pause have nothing to do with the new ones.
+      if (lPoll && !this.lPolling) {
+        this.resetFilter(Replayer.CHANNEL_LIGHT_LEFT);
+        this.resetFilter(Replayer.CHANNEL_LIGHT_RIGHT);
+        this.resetFilter(Replayer.CHANNEL_LIGHT_MID);
+      }
+      if (usPoll && !this.usPolling) {
+        this.resetFilter(Replayer.CHANNEL_ULTRASONIC);
+      }
+      if (lPoll && this.lPolling && speed != 0.0) {
+        this.recordSpacing(linearSpeed(speed) * (start - this.lPollTime) / 1000000.0);
+      }
+      this.lPolling = lPoll;
+      this.usPolling = usPoll;
+
+      if (lPoll) {
+        this.lPollTime = start;
+
         // Left light sensor
         this.lSensorLeft.fetchSample(this.lDataLeft, 0);
-        this.sd.lightLevelHandler(this.lDataLeft[0], 1);
+        this.poll(Replayer.CHANNEL_LIGHT_LEFT, this.lDataLeft);
 
         // Right light sensor
         this.lSensorRight.fetchSample(this.lDataRight, 0);
-        this.sd.lightLevelHandler(this.lDataRight[0], 2);
+        this.poll(Replayer.CHANNEL_LIGHT_RIGHT, this.lDataRight);
 
         // Middle light sensor
         this.lSensorMid.fetchSample(this.lDataMid, 0);
-        this.sd.lightLevelHandler(this.lDataMid[0], 3);
+        this.poll(Replayer.CHANNEL_LIGHT_MID, this.lDataMid);
+
+        if (this.predictor != null && this.predictor.isEnabled()) {
+          this.predictor.check(0, this.lDataLeft[0]);
+          this.predictor.check(1, this.lDataRight[0]);
+        }
       }
 
-      if (this.sd.getUSRefs() > 0) {
+      if (usDue) {
         // Ultrasonic sensor
+        this.usPollTime = start;
         this.usSensor.fetchSample(this.usData, 0);
-        this.sd.ultrasonicHandler(this.usData[0] * 100.0f);
+        this.poll(Replayer.CHANNEL_ULTRASONIC, this.usData);
       }
 
-      // Sleep for a bit.
+      // Sleep until the next period, but always a bit so that the other threads get to run.
+      long elapsed = (System.nanoTime() - start) / 1000000L;
       try {
-        Thread.sleep(FinalProject.SLEEP_TIME);
+        Thread.sleep(Math.max(period - elapsed, 1));
       } catch (Exception e) {
         // ...
       }
@@ -93,4 +153,192 @@ public class SensorPoller extends Thread {
     // Unreachable
   }
 
+  /**
+   * Log the raw samples to `capture` from now on (capture mode), see Replayer.
+   *
+   * @param capture the sensor capture log, or null to stop capturing
+   */
+  void setCapture(BinaryLog capture) {
+    this.capture = capture;
+  }
+
+  /**
+   * Poll the light sensors according to the speed commanded to the wheels from now on, see
+   * `pollPeriod()`.
+   *
+   * @param driver the driver of the robot, or null to always poll every SLEEP_TIME
+   */
+  void setDriver(Driver driver) {
+    this.driver = driver;
+  }
+
+  /**
+   * Poll the left and right light sensors around the lines the predictor expects them to cross,
+   * and check their samples against it.
+   *
+   * @param predictor the line predictor (left sensor first, then right), or null for none
+   */
+  void setLinePredictor(LinePredictor predictor) {
+    this.predictor = predictor;
+  }
+
+  /**
+   * Compute the period at which the light sensors are polled, so that the robot does not drive
+   * more than LINE_SAMPLE_SPACING between two samples and cannot drive over a grid line without
+   * seeing it. The period is never longer than SLEEP_TIME, nor shorter than MIN_SLEEP_TIME.
+   *
+   * @param wheelSpeed the speed of the fastest wheel (in deg/s)
+   * @return the poll period (in milliseconds)
+   */
+  static long pollPeriod(double wheelSpeed) {
+    double speed = linearSpeed(wheelSpeed);
+    if (speed * FinalProject.SLEEP_TIME <= FinalProject.LINE_SAMPLE_SPACING) {
+      return FinalProject.SLEEP_TIME;
+    }
+    return Math.max((long) (FinalProject.LINE_SAMPLE_SPACING / speed),
+        FinalProject.MIN_SLEEP_TIME);
+  }
+
+  /**
+   * Get the largest distance driven between two polls of the light sensors so far.
+   *
+   * @return the distance (in cm)
+   */
+  double getSampleSpacing() {
+    return this.spacingMax;
+  }
+
+  /**
+   * Print the distance driven between two polls of the light sensors.
+   *
+   * @param out where to print
+   */
+  void dumpSampling(PrintStream out) {
+    double mean = (this.spacingCount > 0) ? this.spacingSum / this.spacingCount : 0.0;
+    out.println("Light sample spacing: " + mean + " cm on average, " + this.spacingMax
+        + " cm at most over " + this.spacingCount + " samples (target "
+        + FinalProject.LINE_SAMPLE_SPACING + " cm)");
+  }
+
+  /**
+   * Set the filters run on the samples of a channel, before they are delivered. The raw samples
+   * are still the ones captured, a replay runs the same filters (see Replayer).
+   *
+   * @param channel the sensor (Replayer.CHANNEL_*)
+   * @param chain the filters, or null for none
+   */
+  void setFilter(int channel, FilterChain chain) {
+    this.filters[channel] = chain;
+  }
+
+  /**
+   * Build the filters configured for a channel (FinalProject.FILTER_*).
+   *
+   * @param channel the sensor (Replayer.CHANNEL_*)
+   * @return the filters, an empty chain if none are configured
+   */
+  static FilterChain configuredFilter(int channel) {
+    switch (channel) {
+      case Replayer.CHANNEL_LIGHT_LEFT:
+        return FilterChain.parse("light left", FinalProject.FILTER_LIGHT, 1);
+      case Replayer.CHANNEL_LIGHT_RIGHT:
+        return FilterChain.parse("light right", FinalProject.FILTER_LIGHT, 1);
+      case Replayer.CHANNEL_LIGHT_MID:
+        return FilterChain.parse("color", FinalProject.FILTER_COLOR, 3);
+      default:
+        return FilterChain.parse("ultrasonic", FinalProject.FILTER_ULTRASONIC, 1);
+    }
+  }
+
+  /**
+   * Print the cost of the filters of each channel.
+   *
+   * @param out where to print
+   */
+  void dumpFilters(PrintStream out) {
+    for (FilterChain chain : this.filters) {
+      if (chain != null) {
+        chain.dump(out);
+      }
+    }
+  }
+
+  /**
+   * Hand a sample over to the SensorData object, this is the only place the raw samples are
+   * converted, so that a replay goes through exactly the same steps.
+   *
+   * @param sd SensorData object receiving the sample
+   * @param channel the sensor the sample comes from (Replayer.CHANNEL_*)
+   * @param data the raw sample, as returned by fetchSample()
+   * @param count the number of values in the sample
+   */
+  static void deliver(SensorData sd, int channel, float[] data, int count) {
+    switch (channel) {
+      case Replayer.CHANNEL_LIGHT_LEFT:
+        sd.put(sd.lightLeft, data[0]);
+        break;
+      case Replayer.CHANNEL_LIGHT_RIGHT:
+        sd.put(sd.lightRight, data[0]);
+        break;
+      case Replayer.CHANNEL_LIGHT_MID:
+        sd.put(sd.lightMid, data[0]);
+        // The middle light sensor is in RGB mode if it gives more than one value.
+        if (count >= 3) {
+          sd.colorHandler(data[0], data[1], data[2]);
+        }
+        break;
+      case Replayer.CHANNEL_ULTRASONIC:
+        sd.ultrasonicHandler(data[0] * 100.0f);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Convert a wheel speed into the speed of the robot.
+   *
+   * @param wheelSpeed the speed of the wheel (in deg/s)
+   * @return the speed of the robot (in cm/ms)
+   */
+  static double linearSpeed(double wheelSpeed) {
+    return Math.toRadians(Math.abs(wheelSpeed)) * FinalProject.WHEEL_RADIUS / 1000.0;
+  }
+
+  /**
+   * Get the speed commanded to the fastest wheel, the light sensors move at most that fast.
+   */
+  private double getWheelSpeed() {
+    if (this.driver == null) {
+      return 0.0;
+    }
+    return Math.max(Math.abs(this.driver.getLeftCommand()),
+        Math.abs(this.driver.getRightCommand()));
+  }
+
+  private void recordSpacing(double spacing) {
+    this.spacingSum += spacing;
+    this.spacingCount++;
+    if (spacing > this.spacingMax) {
+      this.spacingMax = spacing;
+    }
+  }
+
+  /**
+   * Capture a sample (in capture mode), filter it and deliver it.
+   */
+  private void poll(int channel, float[] data) {
+    Replayer.captureSample(this.capture, channel, data);
+    if (this.filters[channel] != null) {
+      this.filters[channel].filter(data, data.length);
+    }
+    deliver(this.sd, channel, data, data.length);
+  }
+
+  private void resetFilter(int channel) {
+    if (this.filters[channel] != null) {
+      this.filters[channel].reset();
+    }
+  }
+
 }
@@ -0,0 +1,218 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.PrintStream;
+
+/**
+ * Times the states of a state machine: how long each tick of `process()` takes in each state
+ * (latency), and how long the state machine stays in each state once it enters it (dwell time).
+ *
+ * The state machine calls `tick()` once per `process()`, with the state it processed, the state it
+ * moved to and the time before and after processing. Transitions are timestamped into a ring of
+ * the last TRANSITIONS transitions. Everything is preallocated, a tick does not allocate.
+ *
+ * @author Joshua Inscoe
+ */
+public class StateTimer<E extends Enum<E>> {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The number of transitions remembered
+  public static final int TRANSITIONS = 64;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The name of the state machine
+  private final String name;
+
+  // The states of the state machine
+  private final E[] states;
+
+  // Histograms of each state (in microseconds), indexed by ordinal
+  private final LatencyHistogram[] latency;
+  private final LatencyHistogram[] dwell;
+
+  // The state in which the state machine currently is, and the time (ns) at which it entered it
+  private E current;
+  private long enteredAt;
+
+  // Ring of the last transitions: time (ms, see Clock), and ordinals of the states
+  private final long[] transitionTime;
+  private final int[] transitionFrom;
+  private final int[] transitionTo;
+  private long transitions;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor
+   *
+   * @param name the name of the state machine
+   * @param type the enum of the states
+   */
+  public StateTimer(String name, Class<E> type) {
+
+    this.name = name;
+    this.states = type.getEnumConstants();
+
+    this.latency = new LatencyHistogram[this.states.length];
+    this.dwell = new LatencyHistogram[this.states.length];
+
+    for (int i = 0; i < this.states.length; ++i) {
+      this.latency[i] = new LatencyHistogram();
+      this.dwell[i] = new LatencyHistogram();
+    }
+
+    this.current = null;
+    this.enteredAt = 0;
+
+    this.transitionTime = new long[StateTimer.TRANSITIONS];
+    this.transitionFrom = new int[StateTimer.TRANSITIONS];
+    this.transitionTo = new int[StateTimer.TRANSITIONS];
+    this.transitions = 0;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Record a tick of the state machine.
+   *
+   * @param from the state that was processed
+   * @param to the state returned by the processing
+   * @param start the time (System.nanoTime()) before processing
+   * @param end the time (System.nanoTime()) after processing
+   */
+  public void tick(E from, E to, long start, long end) {
+
+    if (this.current == null) {
+      this.current = from;
+      this.enteredAt = start;
+    }
+
+    this.latency[from.ordinal()].record((end - start) / 1000);
+
+    if (to != this.current) {
+      this.dwell[this.current.ordinal()].record((end - this.enteredAt) / 1000);
+
+      int slot = (int) (this.transitions % StateTimer.TRANSITIONS);
+      this.transitionTime[slot] = Clock.millis();
+      this.transitionFrom[slot] = this.current.ordinal();
+      this.transitionTo[slot] = to.ordinal();
+      ++this.transitions;
+
+      this.current = to;
+      this.enteredAt = end;
+    }
+
+    return;
+  }
+
+  public String getName() {
+
+    return this.name;
+  }
+
+  /**
+   * Get the histogram of the processing time of the ticks in a state.
+   *
+   * @param state the state
+   * @return the histogram (in microseconds)
+   */
+  public LatencyHistogram getLatency(E state) {
+
+    return this.latency[state.ordinal()];
+  }
+
+  /**
+   * Get the histogram of the time spent in a state, per visit (the current visit is not counted).
+   *
+   * @param state the state
+   * @return the histogram (in microseconds)
+   */
+  public LatencyHistogram getDwell(E state) {
+
+    return this.dwell[state.ordinal()];
+  }
+
+  /**
+   * Get the total number of transitions so far.
+   *
+   * @return the number of transitions
+   */
+  public long getTransitionCount() {
+
+    return this.transitions;
+  }
+
+  /**
+   * Get the time of a transition, among the last TRANSITIONS ones.
+   *
+   * @param i the index of the transition, 0 for the most recent
+   * @return the time of the transition (in milliseconds, see Clock)
+   */
+  public long getTransitionTime(int i) {
+
+    return this.transitionTime[this.slotOf(i)];
+  }
+
+  public E getTransitionFrom(int i) {
+
+    return this.states[this.transitionFrom[this.slotOf(i)]];
+  }
+
+  public E getTransitionTo(int i) {
+
+    return this.states[this.transitionTo[this.slotOf(i)]];
+  }
+
+  /**
+   * Print the histograms of every state that was visited, and the last transitions.
+   *
+   * @param out where to print
+   */
+  public void dump(PrintStream out) {
+
+    out.println("[" + this.name + "] " + this.transitions + " transitions");
+
+    for (int i = 0; i < this.states.length; ++i) {
+      if (this.latency[i].getCount() == 0) {
+        continue;
+      }
+
+      this.latency[i].print(out, "  " + this.states[i] + " tick", "us");
+      this.dwell[i].print(out, "  " + this.states[i] + " dwell", "us");
+    }
+
+    int n = (int) Math.min(this.transitions, StateTimer.TRANSITIONS);
+    for (int i = n - 1; i >= 0; --i) {
+      out.println("  " + this.getTransitionTime(i) + " ms: " + this.getTransitionFrom(i) + " -> "
+          + this.getTransitionTo(i));
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private int slotOf(int i) {
+
+    if (i < 0 || i >= Math.min(this.transitions, StateTimer.TRANSITIONS)) {
+      throw new IndexOutOfBoundsException("no transition " + i);
+    }
+
+    return (int) ((this.transitions - 1 - i) % StateTimer.TRANSITIONS);
+  }
+}
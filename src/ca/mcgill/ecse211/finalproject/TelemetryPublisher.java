@@ -0,0 +1,309 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+/**
+ * Streams the state of the robot live to a desktop dashboard (see TelemetryDashboard), as UDP
+ * datagrams of one FRAME_SIZE-byte frame each.
+ *
+ * The publisher runs in its own low-priority thread, which samples the latest state of the robot
+ * every PUBLISH_PERIOD and sends it. The control threads never wait on it: nothing is queued on
+ * their side, a frame is always built from the latest values, and UDP never waits for the client.
+ * A slow or absent client only loses frames, which shows up as gaps in the sequence numbers.
+ *
+ * Frame layout (big-endian, as read by DataInputStream):
+ *
+ *   offset  size  field
+ *        0     4  magic (BinaryLog.MAGIC)
+ *        4     4  sequence number
+ *        8     8  time (ms, System.currentTimeMillis())
+ *       16    12  x (cm), y (cm), theta (deg), as floats
+ *       28    12  left, right and middle light sensor values, as floats
+ *       40    12  red, green and blue values of the front color sensor, as floats
+ *       52     4  ultrasonic distance (cm), as a float
+ *       56     1  MainController.State ordinal
+ *       57     1  state ordinal of the active subsystem (Localizer, Navigator, ZipLine, Searcher)
+ *       58     2  reserved
+ *       60     4  left and right wheel commands (deg/s, signed), as shorts
+ *       64     4  duration of the last tick of the main controller (us), as an int
+ *       68     4  number of ticks of the main controller longer than its period, as an int
+ *       72     6  records pending in the telemetry, sensor capture and tacho capture logs, as shorts
+ *       78     2  reserved
+ *       80     4  number of frames which could not be sent on time, as an int
+ *
+ * @author Joshua Inscoe
+ */
+public class TelemetryPublisher extends Thread {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The size (in bytes) of a frame
+  public static final int FRAME_SIZE = 84;
+
+  // The interval (in milliseconds) between two frames
+  public static final long PUBLISH_PERIOD = 50;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The socket, and the (preallocated) frame sent through it
+  private final DatagramSocket socket;
+  private final DatagramPacket packet;
+  private final byte[] frame;
+  private int cursor;
+
+  // Sources of the published data (the controller and the logs are optional)
+  private Odometer odometer;
+  private SensorData sd;
+  private Driver driver;
+  private volatile MainController controller;
+  private volatile TelemetryRecorder recorder;
+  private volatile BinaryLog sensorCapture;
+  private volatile BinaryLog tachoCapture;
+
+  // Buffers for the pose and the color sample
+  private final double[] pose;
+  private final float[] rgb;
+
+  // The number of frames sent, and of frames which were late
+  private int sequence;
+  private volatile int late;
+
+  private volatile boolean closed;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, opens the socket.
+   *
+   * Call `start()` to start publishing.
+   *
+   * @param host the address of the dashboard
+   * @param port the port on which the dashboard listens
+   * @param odometer Odometer object for the pose
+   * @param sd SensorData object for the sensor samples
+   * @param driver Driver object for the motor commands
+   * @throws IOException if the address cannot be resolved or the socket cannot be opened
+   */
+  public TelemetryPublisher(String host, int port, Odometer odometer, SensorData sd,
+      Driver driver) throws IOException {
+
+    this.socket = new DatagramSocket();
+    this.frame = new byte[TelemetryPublisher.FRAME_SIZE];
+    this.packet = new DatagramPacket(this.frame, this.frame.length, InetAddress.getByName(host),
+        port);
+
+    this.odometer = odometer;
+    this.sd = sd;
+    this.driver = driver;
+
+    this.pose = new double[3];
+    this.rgb = new float[3];
+
+    this.setDaemon(true);
+    this.setPriority(Thread.MIN_PRIORITY);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Set the main controller whose states are published.
+   *
+   * @param controller MainController object, or null
+   */
+  public void setController(MainController controller) {
+
+    this.controller = controller;
+
+    return;
+  }
+
+  /**
+   * Set the logs whose pending records are published.
+   *
+   * @param recorder TelemetryRecorder object, or null
+   * @param sensorCapture sensor capture log (see Replayer), or null
+   * @param tachoCapture tacho capture log (see Replayer), or null
+   */
+  public void setLogs(TelemetryRecorder recorder, BinaryLog sensorCapture, BinaryLog tachoCapture) {
+
+    this.recorder = recorder;
+    this.sensorCapture = sensorCapture;
+    this.tachoCapture = tachoCapture;
+
+    return;
+  }
+
+  /**
+   * Get the number of frames which could not be sent on time.
+   *
+   * @return the number of late frames
+   */
+  public int getLate() {
+
+    return this.late;
+  }
+
+  /**
+   * run() method, publishes a frame every PUBLISH_PERIOD.
+   */
+  public void run() {
+
+    long next = System.currentTimeMillis();
+
+    while (!this.closed) {
+      this.publish();
+
+      next += TelemetryPublisher.PUBLISH_PERIOD;
+      long now = System.currentTimeMillis();
+
+      if (now >= next) {
+        // Skip the frames we missed rather than sending a burst of them.
+        this.late += (int) ((now - next) / TelemetryPublisher.PUBLISH_PERIOD) + 1;
+        next = now;
+        continue;
+      }
+
+      try {
+        Thread.sleep(next - now);
+      } catch (Exception e) {
+        // ...
+      }
+    }
+
+    return;
+  }
+
+  /**
+   * Stop publishing and close the socket.
+   */
+  public void close() {
+
+    this.closed = true;
+    this.socket.close();
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Build a frame from the latest state of the robot and send it.
+   */
+  private void publish() {
+
+    MainController controller = this.controller;
+
+    this.cursor = 0;
+
+    this.putInt(BinaryLog.MAGIC);
+    this.putInt(this.sequence++);
+    this.putLong(System.currentTimeMillis());
+
+    this.odometer.getPositionSnapshot(this.pose);
+    this.putFloat((float) this.pose[0]);
+    this.putFloat((float) this.pose[1]);
+    this.putFloat((float) this.pose[2]);
+
+    this.putFloat(this.sd.lightLeft.getLatest());
+    this.putFloat(this.sd.lightRight.getLatest());
+    this.putFloat(this.sd.lightMid.getLatest());
+
+    this.sd.getColorDataLatest(this.rgb);
+    this.putFloat(this.rgb[0]);
+    this.putFloat(this.rgb[1]);
+    this.putFloat(this.rgb[2]);
+
+    this.putFloat(this.sd.getUSDataLatest());
+
+    if (controller != null) {
+      this.putByte(controller.getControllerState().ordinal());
+      this.putByte(controller.getSubStateOrdinal());
+    } else {
+      this.putByte(0);
+      this.putByte(0);
+    }
+    this.putShort(0);
+
+    this.putShort((int) this.driver.getLeftCommand());
+    this.putShort((int) this.driver.getRightCommand());
+
+    this.putInt((controller != null) ? controller.getLastTickMicros() : 0);
+    this.putInt((controller != null) ? controller.getOverruns() : 0);
+
+    TelemetryRecorder recorder = this.recorder;
+    BinaryLog sensorCapture = this.sensorCapture;
+    BinaryLog tachoCapture = this.tachoCapture;
+
+    this.putShort((recorder != null) ? recorder.getPending() : 0);
+    this.putShort((sensorCapture != null) ? sensorCapture.getPending() : 0);
+    this.putShort((tachoCapture != null) ? tachoCapture.getPending() : 0);
+    this.putShort(0);
+
+    this.putInt(this.late);
+
+    try {
+      this.socket.send(this.packet);
+    } catch (IOException e) {
+      // The frame is lost, but the dashboard must never take down the robot.
+    }
+
+    return;
+  }
+
+  private void putByte(int v) {
+
+    this.frame[this.cursor++] = (byte) v;
+
+    return;
+  }
+
+  private void putShort(int v) {
+
+    this.frame[this.cursor++] = (byte) (v >>> 8);
+    this.frame[this.cursor++] = (byte) v;
+
+    return;
+  }
+
+  private void putInt(int v) {
+
+    this.frame[this.cursor++] = (byte) (v >>> 24);
+    this.frame[this.cursor++] = (byte) (v >>> 16);
+    this.frame[this.cursor++] = (byte) (v >>> 8);
+    this.frame[this.cursor++] = (byte) v;
+
+    return;
+  }
+
+  private void putLong(long v) {
+
+    this.putInt((int) (v >>> 32));
+    this.putInt((int) v);
+
+    return;
+  }
+
+  private void putFloat(float v) {
+
+    this.putInt(Float.floatToIntBits(v));
+
+    return;
+  }
+}
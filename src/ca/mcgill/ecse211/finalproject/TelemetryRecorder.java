@@ -0,0 +1,160 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.IOException;
+
+/**
+ * Records the state of the robot at every tick of the main controller into a binary log.
+ *
+ * Each record is RECORD_SIZE bytes:
+ *
+ *   offset  size  field
+ *        0     8  time (ms, System.currentTimeMillis())
+ *        8    12  x (cm), y (cm), theta (deg), as floats
+ *       20    16  left, right and middle light sensor values, ultrasonic distance (cm), as floats
+ *       36     1  MainController.State ordinal
+ *       37     1  state ordinal of the active subsystem (Localizer, Navigator, ZipLine, Searcher)
+ *       38     2  reserved
+ *       40     4  left and right wheel commands (deg/s, signed), as shorts
+ *       44     4  duration of the tick (us), as an int
+ *
+ * Recording a tick costs a few field reads and byte stores, nothing is formatted or allocated on
+ * the control thread. The records are decoded on a desktop by TelemetryDecoder.
+ *
+ * @author Joshua Inscoe
+ */
+public class TelemetryRecorder {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The name of the log, stored in the file header
+  public static final String NAME = "telemetry";
+
+  // The size (in bytes) of a record
+  public static final int RECORD_SIZE = 48;
+
+  // The number of records held in memory, 40 ms ticks make this about 40 seconds
+  private static final int CAPACITY = 1024;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Log to which the records are written
+  private BinaryLog log;
+
+  // Sources of the recorded data
+  private Odometer odometer;
+  private SensorData sd;
+  private Driver driver;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, creates the log file.
+   *
+   * @param path the path of the log file
+   * @param odometer Odometer object for the pose
+   * @param sd SensorData object for the sensor samples
+   * @param driver Driver object for the motor commands
+   * @throws IOException if the file cannot be created
+   */
+  public TelemetryRecorder(String path, Odometer odometer, SensorData sd, Driver driver)
+      throws IOException {
+
+    this.log = new BinaryLog(path, TelemetryRecorder.NAME, TelemetryRecorder.RECORD_SIZE,
+        TelemetryRecorder.CAPACITY);
+
+    this.odometer = odometer;
+    this.sd = sd;
+    this.driver = driver;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Start writing the records to the file.
+   */
+  public void start() {
+
+    this.log.start();
+
+    return;
+  }
+
+  /**
+   * Record one tick of the main controller.
+   *
+   * @param state the state of the main controller
+   * @param subState the ordinal of the state of the active subsystem
+   * @param tickMicros the time (in microseconds) it took to process the tick
+   */
+  public void record(MainController.State state, int subState, int tickMicros) {
+
+    if (!this.log.begin()) {
+      return;
+    }
+
+    this.log.putLong(System.currentTimeMillis());
+
+    this.log.putFloat((float) this.odometer.getX());
+    this.log.putFloat((float) this.odometer.getY());
+    this.log.putFloat((float) Math.toDegrees(this.odometer.getTheta()));
+
+    this.log.putFloat(this.sd.lightLeft.getLatest());
+    this.log.putFloat(this.sd.lightRight.getLatest());
+    this.log.putFloat(this.sd.lightMid.getLatest());
+    this.log.putFloat(this.sd.getUSDataLatest());
+
+    this.log.putByte(state.ordinal());
+    this.log.putByte(subState);
+    this.log.putShort(0);
+
+    this.log.putShort((int) this.driver.getLeftCommand());
+    this.log.putShort((int) this.driver.getRightCommand());
+
+    this.log.putInt(tickMicros);
+
+    this.log.commit();
+
+    return;
+  }
+
+  /**
+   * Get the number of records which were dropped because the writer could not keep up.
+   *
+   * @return the number of dropped records
+   */
+  public long getDropped() {
+
+    return this.log.getDropped();
+  }
+
+  /**
+   * Get the number of records waiting to be written to the file.
+   *
+   * @return the number of pending records
+   */
+  public int getPending() {
+
+    return this.log.getPending();
+  }
+
+  /**
+   * Write the pending records and close the file.
+   */
+  public void close() {
+
+    this.log.close();
+
+    return;
+  }
+}
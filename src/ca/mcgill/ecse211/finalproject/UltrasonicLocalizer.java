@@ -17,6 +17,15 @@ public class UltrasonicLocalizer {
   // Constants
   // --------------------------------------------------------------------------------
 
+  // Number of fresh samples to wait for before choosing the mode
+  private static final int SETTLE_SAMPLES = 5;
+
+  // Number of latest samples whose median is compared to the edge thresholds, one bad echo does
+  // not trigger an edge
+  private static final int EDGE_WINDOW = 3;
+
+  // Margin (in cm) past the threshold that tells that the robot has turned away from an edge
+  private static final float EDGE_MARGIN = 5.f;
 
   // --------------------------------------------------------------------------------
   // Variables
@@ -32,6 +41,8 @@ public class UltrasonicLocalizer {
 
   private double theta1 = 0;
   private double theta2 = 0;
+  private boolean measured = false; // True between measure() and apply().
+
   /**
    * Constructor
    *
@@ -48,13 +59,23 @@ public class UltrasonicLocalizer {
 
   /**
    * Performs rising of falling edge localization depending on the distance read by the ultrasonic sensor.
+   * If the edges were already measured (see measure()), only the correction is applied.
    */
   public void localize() {
+    if (!measured) {
+      measure();
+    }
+    apply();
+  }
+
+  /**
+   * Measures the headings of the two edges. This does not depend on the game data, so it can run
+   * while the game data is loading.
+   */
+  public void measure() {
     sd.incrementUSRefs();
-    ref_pos = Localizer.getRefPos();
-    sleepThread(1);
+    waitForSamples(SETTLE_SAMPLES); // Only look at samples taken since polling started.
     determineMode();
-    determineRefAngle();
 
     driver.rotate(360, true);
     wait(cur_mode);
@@ -66,7 +87,7 @@ public class UltrasonicLocalizer {
 
     driver.rotate(-360, true);
 
-    sleepThread(3); // Wait for a bit.
+    leave(cur_mode); // Turn back past the edge we just found.
 
     wait(cur_mode);
     driver.rotate(0, true);
@@ -76,16 +97,37 @@ public class UltrasonicLocalizer {
       System.out.println("theta2: " + theta2);
     }
 
-    computeOrientation();
     sd.decrementUSRefs();
+    measured = true;
+  }
+
+  /**
+   * Corrects the heading of the odometer with the measured edges, using the starting corner from
+   * the game data.
+   */
+  public void apply() {
+    ref_pos = Localizer.getRefPos();
+    determineRefAngle();
+    computeOrientation();
+    measured = false;
+  }
+
+  /**
+   * Returns true if the edges were measured but the correction was not applied yet.
+   *
+   * @return boolean measured.
+   */
+  public boolean isMeasured() {
+    return measured;
   }
 
   /**
    * Computes the orientation of the robot using the recorded angles.
    */
   private void computeOrientation() {
-    // compute the error with the reference angle (taken from the reference position).
-    double theta_err = ref_angle - ((theta1 + theta2) / 2);
+    // compute the error with the reference angle (taken from the reference position). The second
+    // edge is found turning clockwise, the wall is halfway along that turn, even across 0.
+    double theta_err = Angles.normalizeSigned(ref_angle - Angles.bisectClockwise(theta1, theta2));
 
     if (FinalProject.DEBUG) {
       System.out.println("current heading: " + Math.toDegrees(odo.getTheta()) + " error: "
@@ -93,7 +135,7 @@ public class UltrasonicLocalizer {
     }
 
     // Set the odo's new orientation.
-    odo.setTheta(odo.getTheta() + theta_err);
+    odo.setTheta(Angles.normalize(odo.getTheta() + theta_err));
     Sound.beepSequenceUp();
   }
 
@@ -108,30 +150,59 @@ public class UltrasonicLocalizer {
   private void wait(Mode m) {
     Sound.setVolume(70);
     if (m == Mode.FALLING_EDGE) {
-      while (sd.getUSDataLatest() > FinalProject.FALLING_EDGE_THRESHOLD) ; // Wait until we capture a falling
-      // edge.
+      while (distance(EDGE_WINDOW) > FinalProject.FALLING_EDGE_THRESHOLD) {
+        waitForSamples(1); // Wait until we capture a falling edge.
+      }
       Sound.beep();
     } else {
-      while (sd.getUSDataLatest() < FinalProject.RISING_EDGE_THRESHOLD) ; // Wait until we capture a rising edge.
+      while (distance(EDGE_WINDOW) < FinalProject.RISING_EDGE_THRESHOLD) {
+        waitForSamples(1); // Wait until we capture a rising edge.
+      }
       Sound.beep();
     }
   }
 
   /*
-   * Not really necessary, this is just to make the risingEdge and fallingEdge methods more
-   * readable.
+   * Wait until the robot has turned away from the edge it just captured, i.e. until the opposite
+   * edge, with a margin so that noise around the threshold does not count.
+   */
+  private void leave(Mode m) {
+    if (m == Mode.FALLING_EDGE) {
+      while (distance(EDGE_WINDOW) < FinalProject.FALLING_EDGE_THRESHOLD + EDGE_MARGIN) {
+        waitForSamples(1);
+      }
+    } else {
+      while (distance(EDGE_WINDOW) > FinalProject.RISING_EDGE_THRESHOLD - EDGE_MARGIN) {
+        waitForSamples(1);
+      }
+    }
+  }
+
+  /*
+   * Median of the latest valid samples, the samples without an echo read as far away.
+   */
+  private float distance(int window) {
+    float d = sd.getUSMedian(window);
+    return Float.isNaN(d) ? SensorData.US_NO_ECHO : d;
+  }
+
+  /*
+   * Wait until the poller has delivered `n` new samples.
    */
-  private void sleepThread(float seconds) {
-    try {
-      Thread.sleep((long) (seconds * 1000));
-    } catch (Exception e) {
-      System.out.println("[ULTRASONIC] Can't sleep thread");
-      // TODO: handle exception
+  private void waitForSamples(int n) {
+    int start = sd.getUSCount();
+    while (sd.getUSCount() - start < n) {
+      try {
+        Thread.sleep(FinalProject.SLEEP_TIME / 2);
+      } catch (InterruptedException e) {
+        System.out.println("[ULTRASONIC] Can't sleep thread");
+        return;
+      }
     }
   }
 
   private void determineMode() {
-    if (sd.getUSDataLatest() > 50) {
+    if (distance(SETTLE_SAMPLES) > 50) {
       cur_mode = Mode.FALLING_EDGE;
     } else {
       cur_mode = Mode.RISING_EDGE;
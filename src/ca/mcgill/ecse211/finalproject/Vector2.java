@@ -0,0 +1,125 @@
+package ca.mcgill.ecse211.finalproject;
+
+/**
+ * A mutable two-dimensional vector.
+ *
+ * Vectors are meant to be allocated once, as fields, and set again at every tick, so that the
+ * control loop does not produce garbage for the collector of the brick to stop the robot for.
+ *
+ * @author Joshua Inscoe
+ */
+public class Vector2 {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The coordinates of the vector
+  public double x;
+  public double y;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, for the null vector.
+   */
+  public Vector2() {
+
+    this(0.0, 0.0);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   */
+  public Vector2(double x, double y) {
+
+    this.x = x;
+    this.y = y;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Set the coordinates of the vector.
+   *
+   * @return this vector
+   */
+  public Vector2 set(double x, double y) {
+
+    this.x = x;
+    this.y = y;
+
+    return this;
+  }
+
+  /**
+   * Set this vector to the unit vector pointing at a heading.
+   *
+   * @param theta the heading (in radians, counter-clockwise from the x-axis)
+   * @return this vector
+   */
+  public Vector2 setHeading(double theta) {
+
+    this.x = Math.cos(theta);
+    this.y = Math.sin(theta);
+
+    return this;
+  }
+
+  /**
+   * Get the length of the vector.
+   *
+   * @return the length
+   */
+  public double length() {
+
+    return Math.sqrt(this.x * this.x + this.y * this.y);
+  }
+
+  /**
+   * Get the dot product of this vector with another.
+   *
+   * @param v the other vector
+   * @return this . v
+   */
+  public double dot(Vector2 v) {
+
+    return this.x * v.x + this.y * v.y;
+  }
+
+  /**
+   * Get the z-coordinate of the cross product of this vector with another.
+   *
+   * @param v the other vector
+   * @return this x v, positive if v is counter-clockwise from this vector
+   */
+  public double cross(Vector2 v) {
+
+    return this.x * v.y - this.y * v.x;
+  }
+
+  /**
+   * Get the angle from another vector to this one.
+   *
+   * @param from the other vector, e.g. the orientation of the robot
+   * @return the angle (in radians), in [-pi, pi], positive counter-clockwise
+   */
+  public double angleFrom(Vector2 from) {
+
+    return Math.atan2(from.cross(this), from.dot(this));
+  }
+
+  public String toString() {
+
+    return "[" + this.x + ", " + this.y + "]";
+  }
+}
@@ -36,6 +36,8 @@ public class ZipLine {
   // Variables
   // --------------------------------------------------------------------------------
   private Zip_State cur_state = Zip_State.IDLE;
+  // Times every state (dwell time and processing time of each tick).
+  private StateTimer<Zip_State> timer = new StateTimer<Zip_State>("zipline", Zip_State.class);
   private boolean done = false;
   private int floor_filter = 0;
 
@@ -60,6 +62,8 @@ public class ZipLine {
    * @return The new state, as a string.
    */
   String process() {
+    long tick_start = System.nanoTime();
+    Zip_State prev_state = cur_state;
     switch (cur_state) {
       case IDLE:
         cur_state = process_idle();
@@ -77,6 +81,7 @@ public class ZipLine {
         cur_state = process_done();
         break;
     }
+    timer.tick(prev_state, cur_state, tick_start, System.nanoTime());
     return cur_state.toString();
   }
 
@@ -127,7 +132,7 @@ public class ZipLine {
     driver.moveForward(2 * FinalProject.BOARD_TILE_LENGTH, false); // wait while moving
     driver.endlessMoveForward();
     // if we're still on the ground, we missed the zip line - navigate back to start of zip line
-    if (sd.getLLDataLatest(1) > FinalProject.FLOOR_LIGHT_READING) {
+    if (sd.lightLeft.getLatest() > FinalProject.FLOOR_LIGHT_READING) {
       // TODO leave this class, go back to navigating, navigate to start of zip line
       return Zip_State.MOVING;
     } else {
@@ -145,7 +150,7 @@ public class ZipLine {
    */
   private Zip_State process_ziplining() {
     // if we're getting light readings, we're approaching the floor
-    if (sd.getLLDataLatest(1) > FinalProject.FLOOR_LIGHT_READING) {
+    if (sd.lightLeft.getLatest() > FinalProject.FLOOR_LIGHT_READING) {
       if (floor_filter < FinalProject.FLOOR_READING_FILTER) {
         // make sure that we're not getting erroneous readings
         // we really don't want to be stranded on the zip line!
@@ -203,16 +208,28 @@ public class ZipLine {
    * @return the angle between our current heading and the waypoint
    */
   public static double angleToPos(Odometer odo, Waypoint _pos) {
-    // TODO verify the logic in this function - it was just copy-pasted from Lab 5
-    double orientation_angle = odo.getTheta();
-    double orientation_vect[] =
-        new double[] {Math.cos(orientation_angle), Math.sin(orientation_angle)};
-    double vect_to_pos[] = new double[] {_pos.x * FinalProject.BOARD_TILE_LENGTH - odo.getX(),
-        _pos.y * FinalProject.BOARD_TILE_LENGTH - odo.getY()};
-    double angle =
-        Math.atan2(vect_to_pos[1] * orientation_vect[0] - vect_to_pos[0] * orientation_vect[1],
-            orientation_vect[0] * vect_to_pos[0] + orientation_vect[1] * vect_to_pos[1]);
-
-    return angle;
+    // the difference between the bearing of the waypoint and our heading, without allocating
+    double bearing = Math.atan2(_pos.y * FinalProject.BOARD_TILE_LENGTH - odo.getY(),
+        _pos.x * FinalProject.BOARD_TILE_LENGTH - odo.getX());
+
+    return Angles.normalizeSigned(bearing - odo.getTheta());
+  }
+
+  /**
+   * Gets the current state of the zip line controller.
+   *
+   * @return the current state.
+   */
+  Zip_State getState() {
+    return cur_state;
+  }
+
+  /**
+   * Gets the timer of the states of the zip line controller.
+   *
+   * @return the state timer.
+   */
+  StateTimer<Zip_State> getTimer() {
+    return timer;
   }
 }
@@ -0,0 +1,146 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.lang.management.ManagementFactory;
+
+
+
+/**
+ * This class tests the angle normalisation and checks that a tick of the odometer and of the
+ * navigator allocates nothing. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class AnglesTest {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The largest error allowed (in radians)
+  private static final double TOLERANCE = 1e-9;
+
+  // The number of ticks to measure the allocations over
+  private static final int TICKS = 100000;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    AnglesTest.run("testNormalize", AnglesTest.testNormalize());
+    AnglesTest.run("testBisectClockwise", AnglesTest.testBisectClockwise());
+    AnglesTest.run("testNoGarbage", AnglesTest.testNoGarbage());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testNormalize() {
+
+    for (double angle = -20.0; angle <= 20.0; angle += 0.001) {
+      double unsigned = Angles.normalize(angle);
+      double signed = Angles.normalizeSigned(angle);
+
+      if (unsigned < 0.0 || unsigned >= Angles.TWO_PI || signed <= -Math.PI || signed > Math.PI
+          || Math.abs(Math.sin(unsigned) - Math.sin(angle)) > AnglesTest.TOLERANCE
+          || Math.abs(Math.cos(signed) - Math.cos(angle)) > AnglesTest.TOLERANCE) {
+        System.out.println(angle + " -> " + unsigned + ", " + signed);
+        return false;
+      }
+    }
+
+    return Angles.normalize(-1e-18) == 0.0
+        && Angles.normalizeSigned(-Math.PI) == Math.PI
+        && Angles.normalizeDegrees(-90.0) == 270.0
+        && Angles.normalizeSignedDegrees(350.0) == -10.0;
+  }
+
+  private static boolean testBisectClockwise() {
+
+    // Without crossing 0, it is the mean.
+    double a = Angles.bisectClockwise(Math.toRadians(200), Math.toRadians(100));
+
+    // Across 0, the mean is on the other side of the circle.
+    double b = Angles.bisectClockwise(Math.toRadians(30), Math.toRadians(310));
+
+    System.out.println("Bisectors: " + Math.toDegrees(a) + ", " + Math.toDegrees(b));
+
+    return Math.abs(a - Math.toRadians(150)) < AnglesTest.TOLERANCE
+        && Math.abs(b - Math.toRadians(350)) < AnglesTest.TOLERANCE;
+  }
+
+  private static boolean testNoGarbage() {
+
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long id = Thread.currentThread().getId();
+
+    Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    Navigator navigator = new Navigator(null, odometer, null);
+
+    navigator.setPath(new Waypoint[] { new Waypoint(3.0, 4.0) });
+    navigator.process();
+
+    boolean result = true;
+
+    for (int mode = 0; mode < 2; ++mode) {
+      odometer.setFixedPoint(mode == 1);
+      navigator.setFixedPoint(mode == 1);
+
+      // Warm up first, so that the compiler does not count.
+      AnglesTest.tick(odometer, navigator, 0, AnglesTest.TICKS);
+
+      long before = bean.getThreadAllocatedBytes(id);
+      AnglesTest.tick(odometer, navigator, AnglesTest.TICKS, 2 * AnglesTest.TICKS);
+      long allocated = bean.getThreadAllocatedBytes(id) - before;
+
+      System.out.println((mode == 1 ? "Fixed: " : "Double: ") + allocated + " bytes over "
+          + AnglesTest.TICKS + " ticks");
+
+      // A few bytes may be counted by the measurement itself.
+      result &= allocated < 1024;
+    }
+
+    return result;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static void tick(Odometer odometer, Navigator navigator, int from, int to) {
+
+    for (int i = from; i < to; ++i) {
+      odometer.update(2 * i, 3 * i);
+      navigator.updateTargetInfo();
+    }
+
+    return;
+  }
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
@@ -0,0 +1,104 @@
+package ca.mcgill.ecse211.finalproject;
+
+import lejos.hardware.Button;
+import lejos.hardware.ev3.LocalEV3;
+import lejos.hardware.lcd.TextLCD;
+import lejos.hardware.sensor.EV3ColorSensor;
+import lejos.hardware.sensor.SensorModes;
+import lejos.robotics.SampleProvider;
+
+
+
+/**
+ * Captures calibration samples of each flag color with the front light sensor, and saves the
+ * trained model to the file read by the Searcher.
+ *
+ * For each color, hold a block of that color in front of the sensor and press any button. Move
+ * the block around a little (distance, angle) while the samples are being captured.
+ *
+ * @author Joshua Inscoe
+ */
+public class ColorCalibration {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  private static final int SAMPLES_PER_COLOR = 100;
+
+  private static final long SAMPLE_INTERVAL = 20;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    TextLCD lcd = LocalEV3.get().getTextLCD();
+
+    SensorModes sensor = new EV3ColorSensor(FinalProject.lsPortm);
+    SampleProvider provider = sensor.getMode("RGB");
+    float[] sample = new float[provider.sampleSize()];
+
+    ColorClassifier classifier = new ColorClassifier();
+
+    Searcher.FlagColor[] colors = Searcher.FlagColor.values();
+
+    for (int c = 1; c < colors.length; ++c) {
+      lcd.clear();
+      lcd.drawString("Show " + colors[c], 0, 0);
+      lcd.drawString("Press any button", 0, 1);
+
+      if (Button.waitForAnyPress() == Button.ID_ESCAPE) {
+        System.exit(0);
+      }
+
+      lcd.drawString("Capturing...    ", 0, 1);
+
+      for (int i = 0; i < ColorCalibration.SAMPLES_PER_COLOR; ++i) {
+        provider.fetchSample(sample, 0);
+        classifier.train(colors[c], sample[0], sample[1], sample[2]);
+
+        try {
+          Thread.sleep(ColorCalibration.SAMPLE_INTERVAL);
+        } catch (Exception e) {
+          // ...
+        }
+      }
+    }
+
+    // Check the model against a few samples of each color.
+    for (int c = 1; c < colors.length; ++c) {
+      lcd.clear();
+      lcd.drawString("Check " + colors[c], 0, 0);
+      lcd.drawString("Press any button", 0, 1);
+
+      if (Button.waitForAnyPress() == Button.ID_ESCAPE) {
+        break;
+      }
+
+      classifier.reset();
+
+      for (int i = 0; i < 5; ++i) {
+        provider.fetchSample(sample, 0);
+        classifier.addSample(sample[0], sample[1], sample[2]);
+      }
+
+      Searcher.FlagColor result = classifier.getColor();
+
+      System.out.println(((result == colors[c]) ? "PASS: " : "FAIL: ") + colors[c]
+          + " classified as " + result + " (" + classifier.getConfidence() + ")");
+    }
+
+    try {
+      classifier.save(FinalProject.COLOR_CALIBRATION_FILE);
+      lcd.drawString("Saved           ", 0, 2);
+    } catch (Exception e) {
+      lcd.drawString("Save failed     ", 0, 2);
+    }
+
+    Button.waitForAnyPress();
+    System.exit(0);
+  }
+}
@@ -0,0 +1,396 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+
+/**
+ * Micro-benchmarks of the methods which run on every tick of the control loop. This runs on a
+ * desktop JVM (or on the brick, to get the real per-tick cost).
+ *
+ * Each benchmark is warmed up, then measured over several iterations of a fixed number of calls.
+ * The results of the calls are consumed by a sink so that the JIT cannot remove them. The average
+ * time per call and its error (99.9% confidence, over the iterations) are printed, and written as
+ * JSON in the same layout as JMH results, so that runs can be compared with the usual tools.
+ *
+ * Usage: ControlLoopBenchmark [output file] (default: benchmark.json)
+ *
+ * @author Joshua Inscoe
+ */
+public class ControlLoopBenchmark {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  private static final int WARMUP_ITERATIONS = 5;
+
+  private static final int MEASUREMENT_ITERATIONS = 10;
+
+  private static final long ITERATION_TIME = 200000000L; // nanoseconds
+
+  // Student's t quantile for 99.9% confidence with 9 degrees of freedom
+  private static final double T_999 = 4.781;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Consumes the results of the benchmarks, so that the calls cannot be eliminated
+  private static volatile double sink;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException {
+
+    String output = (args.length > 0) ? args[0] : "benchmark.json";
+
+    List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+    // SensorData handlers, as called by the SensorPoller.
+    final SensorData sd = new SensorData();
+    final SensorChannel[] lights = new SensorChannel[] { sd.lightLeft, sd.lightRight, sd.lightMid };
+
+    benchmarks.add(new Benchmark("SensorData.put") {
+      double run(int i) {
+        sd.put(lights[i % 3], (i & 0xff) / 256.0f);
+        return 0.0;
+      }
+    });
+
+    benchmarks.add(new Benchmark("SensorData.ultrasonicHandler") {
+      double run(int i) {
+        sd.ultrasonicHandler(i & 0xff);
+        return 0.0;
+      }
+    });
+
+    // One sample in four without an echo, so that the statistics over the valid samples both add
+    // and drop samples, as they do while driving past the end of the board.
+    benchmarks.add(new Benchmark("SensorData.ultrasonicHandler[no echo]") {
+      double run(int i) {
+        sd.ultrasonicHandler(((i & 3) == 0) ? Float.POSITIVE_INFINITY : (i & 0xff));
+        return 0.0;
+      }
+    });
+
+    // Filter stages, on one sample of a noisy signal with spikes, as run by the SensorPoller on
+    // every poll. The RGB benchmark filters the three values of a color sample.
+    String[] specs = new String[] { "median(3)", "median(5)", "mean(5)", "ema(0.3)",
+        "outlier(40,3)", "hysteresis(2)", FinalProject.FILTER_ULTRASONIC };
+
+    for (final String spec : specs) {
+      final FilterChain chain = FilterChain.parse(spec, spec, 1);
+      final float[] sample = new float[1];
+
+      benchmarks.add(new Benchmark("FilterChain[" + spec + "]", true) {
+        double run(int i) {
+          sample[0] = 30.0f + (i & 7) + (((i & 63) == 0) ? 200.0f : 0.0f);
+          chain.filter(sample, 1);
+          return sample[0];
+        }
+      });
+    }
+
+    final FilterChain colorChain = FilterChain.parse("color", FinalProject.FILTER_COLOR, 3);
+    final float[] rgb = new float[3];
+
+    benchmarks.add(new Benchmark("FilterChain[" + FinalProject.FILTER_COLOR + "].rgb", true) {
+      double run(int i) {
+        rgb[0] = (i & 15) / 64.0f;
+        rgb[1] = (i & 7) / 64.0f;
+        rgb[2] = (i & 3) / 64.0f;
+        colorChain.filter(rgb, 3);
+        return rgb[0];
+      }
+    });
+
+    // Odometer integration step, with both wheels turning, with doubles and in Q16.16.
+    final Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    odometer.setFixedPoint(false);
+
+    benchmarks.add(new Benchmark("Odometer.update") {
+      double run(int i) {
+        odometer.update(i * 3, i * 2);
+        return odometer.getTheta();
+      }
+    });
+
+    final Odometer fixedOdometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    fixedOdometer.setFixedPoint(true);
+
+    benchmarks.add(new Benchmark("Odometer.update.fixed") {
+      double run(int i) {
+        fixedOdometer.update(i * 3, i * 2);
+        return fixedOdometer.getTheta();
+      }
+    });
+
+    // Navigator target computations, from the odometer above.
+    final Navigator navigator = new Navigator(null, odometer, null);
+    navigator.setFixedPoint(false);
+    navigator.setPath(new Waypoint[] { new Waypoint(3.0, 4.0) });
+    navigator.process();
+
+    benchmarks.add(new Benchmark("Navigator.updateTargetInfo") {
+      double run(int i) {
+        navigator.updateTargetInfo();
+        return 0.0;
+      }
+    });
+
+    final Navigator fixedNavigator = new Navigator(null, fixedOdometer, null);
+    fixedNavigator.setFixedPoint(true);
+    fixedNavigator.setPath(new Waypoint[] { new Waypoint(3.0, 4.0) });
+    fixedNavigator.process();
+
+    benchmarks.add(new Benchmark("Navigator.updateTargetInfo.fixed") {
+      double run(int i) {
+        fixedNavigator.updateTargetInfo();
+        return 0.0;
+      }
+    });
+
+    // The geometry primitives, with doubles and in Q16.16 (see FixedPointTest for their accuracy).
+    benchmarks.add(new Benchmark("Math.sin") {
+      double run(int i) {
+        return Math.sin((i & 0xfff) * 0.0015);
+      }
+    });
+
+    benchmarks.add(new Benchmark("FixedPoint.sin") {
+      double run(int i) {
+        return FixedPoint.sin((i & 0xfff) * 98);
+      }
+    });
+
+    benchmarks.add(new Benchmark("Math.atan2") {
+      double run(int i) {
+        return Math.atan2((i & 0xff) - 128.0, 64.0);
+      }
+    });
+
+    benchmarks.add(new Benchmark("FixedPoint.atan2") {
+      double run(int i) {
+        return FixedPoint.atan2(((i & 0xff) - 128) << 16, 64 << 16);
+      }
+    });
+
+    benchmarks.add(new Benchmark("Math.sqrt") {
+      double run(int i) {
+        double dx = (i & 0xff) - 128.0;
+        return Math.sqrt(dx * dx + 64.0 * 64.0);
+      }
+    });
+
+    benchmarks.add(new Benchmark("FixedPoint.hypot") {
+      double run(int i) {
+        return FixedPoint.hypot(((i & 0xff) - 128) << 16, 64 << 16);
+      }
+    });
+
+    final Vector2 vector = new Vector2();
+
+    benchmarks.add(new Benchmark("Navigator.angleToPos") {
+      double run(int i) {
+        vector.set((i & 0xff) - 128.0, 64.0);
+        return navigator.angleToPos(vector);
+      }
+    });
+
+    // Searcher path computations, re-rooting a cached plan and building new plans.
+    final Searcher searcher = new Searcher(null, null, null, null);
+    final Waypoint[] locations = new Waypoint[16];
+    for (int i = 0; i < locations.length; ++i) {
+      locations[i] = new Waypoint(2.0 + (i % 8), 2.0 + (i / 8) * 8.0);
+    }
+
+    searcher.setEnemyZone(new Waypoint(2.0, 2.0), new Waypoint(10.0, 10.0));
+    searcher.setSearchZone(new Waypoint(4.0, 5.0), new Waypoint(7.0, 8.0));
+
+    benchmarks.add(new Benchmark("Searcher.computeSearchPath") {
+      double run(int i) {
+        searcher.setLocation(locations[i & 15]);
+        searcher.computeSearchPath();
+        return searcher.getInitialOrientation();
+      }
+    });
+
+    final Searcher uncached = new Searcher(null, null, null, null);
+    final Waypoint[] zones = new Waypoint[32];
+    for (int i = 0; i < zones.length; ++i) {
+      zones[i] = new Waypoint(3.0 + (i % 4), 3.0 + (i / 4) % 4);
+    }
+
+    uncached.setEnemyZone(new Waypoint(2.0, 2.0), new Waypoint(10.0, 10.0));
+    uncached.setLocation(new Waypoint(2.0, 2.0));
+
+    benchmarks.add(new Benchmark("Searcher.computeSearchPath.uncached") {
+      Waypoint ur = new Waypoint(0.0, 0.0);
+
+      double run(int i) {
+        // More distinct zones than the cache holds, so that every plan is built again.
+        Waypoint ll = zones[i & 31];
+        ur.x = ll.x + 1.0 + (i & 1);
+        ur.y = ll.y + 2.0;
+        uncached.setSearchZone(ll, ur);
+        uncached.computeSearchPath();
+        return uncached.getInitialOrientation();
+      }
+    });
+
+    final Waypoint from = new Waypoint(0.0, 0.0);
+    final Waypoint[] to = new Waypoint[20];
+    for (int i = 0; i < to.length; ++i) {
+      to[i] = new Waypoint(i % 6, i / 6);
+    }
+
+    benchmarks.add(new Benchmark("Searcher.findClosestWaypoint") {
+      double run(int i) {
+        from.x = (i & 7) * 0.5;
+        from.y = (i & 3) * 0.5;
+        return Searcher.findClosestWaypoint(from, to);
+      }
+    });
+
+    PrintWriter json = new PrintWriter(new FileWriter(output));
+    json.println("[");
+
+    for (int b = 0; b < benchmarks.size(); ++b) {
+      Benchmark benchmark = benchmarks.get(b);
+
+      double[] scores = ControlLoopBenchmark.measure(benchmark);
+
+      double mean = 0.0;
+      for (double score : scores) {
+        mean += score;
+      }
+      mean /= scores.length;
+
+      double variance = 0.0;
+      for (double score : scores) {
+        variance += (score - mean) * (score - mean);
+      }
+      variance /= scores.length - 1;
+
+      double error = ControlLoopBenchmark.T_999 * Math.sqrt(variance / scores.length);
+
+      System.out.println(String.format("%-40s %10.2f +- %8.2f ns/op", benchmark.name, mean, error)
+          + (benchmark.perPoll ? String.format("  (%.4f%% of a poll period)",
+              100.0 * mean / (FinalProject.SLEEP_TIME * 1000000.0)) : ""));
+
+      json.println("  {");
+      json.println("    \"benchmark\" : \"" + benchmark.name + "\",");
+      json.println("    \"mode\" : \"avgt\",");
+      json.println("    \"warmupIterations\" : " + ControlLoopBenchmark.WARMUP_ITERATIONS + ",");
+      json.println("    \"measurementIterations\" : " + ControlLoopBenchmark.MEASUREMENT_ITERATIONS
+          + ",");
+      json.println("    \"primaryMetric\" : {");
+      json.println("      \"score\" : " + mean + ",");
+      json.println("      \"scoreError\" : " + error + ",");
+      json.println("      \"scoreUnit\" : \"ns/op\",");
+      json.println("      \"rawData\" : [ " + Arrays.toString(scores) + " ]");
+      json.println("    }");
+      json.println((b + 1 < benchmarks.size()) ? "  }," : "  }");
+    }
+
+    json.println("]");
+    json.close();
+
+    System.out.println("");
+    System.out.println("Results written to " + output);
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Run the warmup and measurement iterations of a benchmark.
+   *
+   * @return the average time per call (in nanoseconds) of each measurement iteration
+   */
+  private static double[] measure(Benchmark benchmark) {
+
+    // Find how many calls fit in one iteration.
+    int calls = 1;
+    while (true) {
+      long start = System.nanoTime();
+      ControlLoopBenchmark.iterate(benchmark, calls);
+      long elapsed = System.nanoTime() - start;
+
+      if (elapsed > ControlLoopBenchmark.ITERATION_TIME / 10 || calls >= (1 << 28)) {
+        long scaled = (long) calls * ControlLoopBenchmark.ITERATION_TIME / Math.max(elapsed, 1);
+        calls = (int) Math.min(scaled, Integer.MAX_VALUE);
+        break;
+      }
+
+      calls *= 2;
+    }
+
+    for (int i = 0; i < ControlLoopBenchmark.WARMUP_ITERATIONS; ++i) {
+      ControlLoopBenchmark.iterate(benchmark, calls);
+    }
+
+    double[] scores = new double[ControlLoopBenchmark.MEASUREMENT_ITERATIONS];
+
+    for (int i = 0; i < scores.length; ++i) {
+      long start = System.nanoTime();
+      ControlLoopBenchmark.iterate(benchmark, calls);
+      scores[i] = (double) (System.nanoTime() - start) / calls;
+    }
+
+    return scores;
+  }
+
+  /**
+   * Call a benchmark a number of times, consuming its results.
+   */
+  private static void iterate(Benchmark benchmark, int calls) {
+
+    double sum = 0.0;
+
+    for (int i = 0; i < calls; ++i) {
+      sum += benchmark.run(i);
+    }
+
+    ControlLoopBenchmark.sink = sum;
+  }
+
+  /**
+   * A method under test, called with the index of the call.
+   */
+  private static abstract class Benchmark {
+
+    final String name;
+
+    // True if the method runs once per sensor poll, its cost is also given as a share of the poll
+    // period (FinalProject.SLEEP_TIME)
+    final boolean perPoll;
+
+    Benchmark(String name) {
+
+      this(name, false);
+    }
+
+    Benchmark(String name, boolean perPoll) {
+
+      this.name = name;
+      this.perPoll = perPoll;
+    }
+
+    abstract double run(int i);
+  }
+}
@@ -0,0 +1,135 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the filter stages run by the SensorPoller, and the parsing of their
+ * configuration. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class FilterChainTest {
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    FilterChainTest.run("testMedian", FilterChainTest.testMedian());
+    FilterChainTest.run("testMeanAndExponential", FilterChainTest.testMeanAndExponential());
+    FilterChainTest.run("testOutlierAndHysteresis", FilterChainTest.testOutlierAndHysteresis());
+    FilterChainTest.run("testParse", FilterChainTest.testParse());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testMedian() {
+
+    FilterChain chain = FilterChain.parse("test", "median(3)", 2);
+
+    // A spike on the first component is removed, the step on the second one goes through.
+    float[][] input = { { 10, 0 }, { 10, 0 }, { 255, 5 }, { 10, 5 }, { 10, 5 } };
+    float[][] expected = { { 10, 0 }, { 10, 0 }, { 10, 0 }, { 10, 5 }, { 10, 5 } };
+
+    return FilterChainTest.matches(chain, input, expected);
+  }
+
+  private static boolean testMeanAndExponential() {
+
+    FilterChain mean = FilterChain.parse("test", "mean(2)", 1);
+    FilterChain ema = FilterChain.parse("test", "ema(0.5)", 1);
+
+    float[][] input = { { 4 }, { 8 }, { 0 }, { 0 } };
+
+    return FilterChainTest.matches(mean, input, new float[][] { { 4 }, { 6 }, { 4 }, { 0 } })
+        && FilterChainTest.matches(ema, input, new float[][] { { 4 }, { 6 }, { 3 }, { 1.5f } });
+  }
+
+  private static boolean testOutlierAndHysteresis() {
+
+    FilterChain outlier = FilterChain.parse("test", "outlier(10,2)", 1);
+    FilterChain hysteresis = FilterChain.parse("test", "hysteresis(1)", 1);
+
+    // Two samples out of line are rejected, the third one is a real jump.
+    boolean result = FilterChainTest.matches(outlier,
+        new float[][] { { 20 }, { 100 }, { 21 }, { 100 }, { 100 }, { 100 }, { 101 } },
+        new float[][] { { 20 }, { 20 }, { 21 }, { 21 }, { 21 }, { 100 }, { 101 } });
+
+    result &= FilterChainTest.matches(hysteresis,
+        new float[][] { { 5 }, { 5.5f }, { 4.5f }, { 6.5f }, { 6 } },
+        new float[][] { { 5 }, { 5 }, { 5 }, { 6.5f }, { 6.5f } });
+
+    return result;
+  }
+
+  private static boolean testParse() {
+
+    FilterChain chain = FilterChain.parse("test", "  outlier(40,3)  median(5) ema(0.25) ", 1);
+    boolean result = chain.size() == 3 && FilterChain.parse("test", "", 1).size() == 0;
+
+    System.out.println("Parsed: " + chain);
+
+    String[] bad = { "median", "median(0)", "ema(2)", "mean(3,4)", "kalman(1)", "median(x)" };
+
+    for (String spec : bad) {
+      try {
+        FilterChain.parse("test", spec, 1);
+        System.out.println("Accepted: " + spec);
+        result = false;
+      } catch (IllegalArgumentException e) {
+        // Expected.
+      }
+    }
+
+    return result;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static boolean matches(FilterChain chain, float[][] input, float[][] expected) {
+
+    float[] sample = new float[input[0].length];
+
+    for (int i = 0; i < input.length; ++i) {
+      System.arraycopy(input[i], 0, sample, 0, sample.length);
+      chain.filter(sample, sample.length);
+
+      for (int c = 0; c < sample.length; ++c) {
+        if (Math.abs(sample[c] - expected[i][c]) > 1e-6f) {
+          System.out.println(chain + ", sample " + i + ": " + sample[c] + " != " + expected[i][c]);
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
@@ -0,0 +1,230 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the accuracy of the fixed-point geometry against the double implementation,
+ * and prints the largest errors (see ControlLoopBenchmark for the speed). It runs on a desktop
+ * JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class FixedPointTest {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The largest errors allowed for the trigonometric functions (in radians, or unitless)
+  private static final double SIN_TOLERANCE = 5e-5;
+  private static final double ATAN2_TOLERANCE = 1e-4;
+
+  // The largest difference allowed between the two odometers (in centimeters, and in radians)
+  private static final double POSITION_TOLERANCE = 0.1;
+  private static final double HEADING_TOLERANCE = 1e-3;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    FixedPointTest.run("testSinCos", FixedPointTest.testSinCos());
+    FixedPointTest.run("testAtan2", FixedPointTest.testAtan2());
+    FixedPointTest.run("testSqrt", FixedPointTest.testSqrt());
+    FixedPointTest.run("testOdometry", FixedPointTest.testOdometry());
+    FixedPointTest.run("testTargetInfo", FixedPointTest.testTargetInfo());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testSinCos() {
+
+    double error = 0.0;
+
+    // A few turns both ways, so that the wrapping is tested too.
+    for (double angle = -4.0 * Math.PI; angle <= 4.0 * Math.PI; angle += 0.0007) {
+      int fixed = FixedPoint.fromDouble(angle);
+
+      double sin = FixedPoint.toDouble(FixedPoint.sin(fixed));
+      double cos = FixedPoint.toDouble(FixedPoint.cos(fixed));
+
+      error = Math.max(error, Math.abs(sin - Math.sin(angle)));
+      error = Math.max(error, Math.abs(cos - Math.cos(angle)));
+    }
+
+    System.out.println("Largest error: " + error);
+
+    return error < FixedPointTest.SIN_TOLERANCE;
+  }
+
+  private static boolean testAtan2() {
+
+    double error = 0.0;
+
+    for (int i = 0; i < 3600; ++i) {
+      double angle = Math.toRadians(i * 0.1);
+
+      // Vectors from a few millimeters to the size of the board.
+      for (double length = 0.3; length < 400.0; length *= 3.0) {
+        double x = length * Math.cos(angle);
+        double y = length * Math.sin(angle);
+
+        double expected = Math.atan2(y, x);
+        double actual = FixedPoint.toDouble(FixedPoint.atan2(FixedPoint.fromDouble(y),
+            FixedPoint.fromDouble(x)));
+
+        double difference = Math.abs(actual - expected);
+        error = Math.max(error, Math.min(difference, 2.0 * Math.PI - difference));
+      }
+    }
+
+    System.out.println("Largest error: " + error);
+
+    return error < FixedPointTest.ATAN2_TOLERANCE && FixedPoint.atan2(0, 0) == 0;
+  }
+
+  private static boolean testSqrt() {
+
+    for (long value = 0; value < 1000000; ++value) {
+      long root = FixedPoint.isqrt(value);
+
+      if (root * root > value || (root + 1) * (root + 1) <= value) {
+        System.out.println("isqrt(" + value + ") = " + root);
+        return false;
+      }
+    }
+
+    double error = 0.0;
+
+    for (double dx = -400.0; dx <= 400.0; dx += 3.7) {
+      for (double dy = -400.0; dy <= 400.0; dy += 5.3) {
+        double expected = Math.sqrt(dx * dx + dy * dy);
+        double actual = FixedPoint.toDouble(FixedPoint.hypot(FixedPoint.fromDouble(dx),
+            FixedPoint.fromDouble(dy)));
+
+        error = Math.max(error, Math.abs(actual - expected));
+      }
+    }
+
+    System.out.println("Largest error: " + error);
+
+    return error < 2.0 / FixedPoint.ONE
+        && FixedPoint.sqrt(2 * FixedPoint.ONE) == (int) (Math.sqrt(2.0) * FixedPoint.ONE);
+  }
+
+  private static boolean testOdometry() {
+
+    Odometer reference = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    Odometer fixed = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+
+    reference.setFixedPoint(false);
+    fixed.setFixedPoint(true);
+
+    int left = 0;
+    int right = 0;
+
+    // Drive a few laps of a square with rounded corners, 25 ms at a time.
+    for (int lap = 0; lap < 5; ++lap) {
+      for (int side = 0; side < 4; ++side) {
+        for (int i = 0; i < 400; ++i) {
+          left += 4;
+          right += 4;
+          reference.update(left, right);
+          fixed.update(left, right);
+        }
+
+        for (int i = 0; i < 100; ++i) {
+          left += 1;
+          right += 4;
+          reference.update(left, right);
+          fixed.update(left, right);
+        }
+      }
+    }
+
+    double dx = fixed.getX() - reference.getX();
+    double dy = fixed.getY() - reference.getY();
+    double dtheta = Math.abs(fixed.getTheta() - reference.getTheta());
+
+    dtheta = Math.min(dtheta, 2.0 * Math.PI - dtheta);
+
+    System.out.println("Reference: (" + reference.getX() + ", " + reference.getY() + ", "
+        + reference.getTheta() + ")");
+    System.out.println("Fixed:     (" + fixed.getX() + ", " + fixed.getY() + ", " + fixed.getTheta()
+        + ")");
+
+    return Math.sqrt(dx * dx + dy * dy) < FixedPointTest.POSITION_TOLERANCE
+        && dtheta < FixedPointTest.HEADING_TOLERANCE;
+  }
+
+  private static boolean testTargetInfo() {
+
+    Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    Navigator navigator = new Navigator(null, odometer, null);
+
+    navigator.setFixedPoint(true);
+    navigator.setPath(new Waypoint[] { new Waypoint(3.0, 4.0) });
+    navigator.process();
+
+    double[] position = new double[3];
+    boolean[] update = new boolean[] { true, true, true };
+
+    for (int i = 0; i < 100; ++i) {
+      position[0] = i * 3.1;
+      position[1] = 200.0 - i * 1.7;
+      position[2] = i * 0.37;
+      odometer.setPosition(position, update);
+
+      navigator.updateTargetInfo();
+
+      double dx = 3.0 * FinalProject.BOARD_TILE_LENGTH - position[0];
+      double dy = 4.0 * FinalProject.BOARD_TILE_LENGTH - position[1];
+      double distance = Math.sqrt(dx * dx + dy * dy);
+      double angle = Math.atan2(dy, dx) - position[2];
+
+      double difference = Math.abs(navigator.getAngleToTarget() - angle) % (2.0 * Math.PI);
+
+      if (Math.abs(navigator.getDistToTarget() - distance) > 1e-3
+          || Math.min(difference, 2.0 * Math.PI - difference) > 1e-3
+          || Math.abs(navigator.getAngleToTarget()) > Math.PI) {
+        System.out.println("At (" + position[0] + ", " + position[1] + ", " + position[2] + "): "
+            + distance + ", " + angle + " != " + navigator.getDistToTarget() + ", "
+            + navigator.getAngleToTarget());
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
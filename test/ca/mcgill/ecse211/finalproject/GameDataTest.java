@@ -0,0 +1,168 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.File;
+import java.util.Map;
+
+
+
+/**
+ * This class tests the parsing, loading and saving of the game data, against a stand-in server.
+ * It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class GameDataTest {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The file in which the tests save the configuration
+  private static final String PATH = "game-test.dat";
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    GameDataTest.run("testFromMap", GameDataTest.testFromMap());
+    GameDataTest.run("testFromMapMissingKey", GameDataTest.testFromMapMissingKey());
+    GameDataTest.run("testRetry", GameDataTest.testRetry());
+    GameDataTest.run("testTimeout", GameDataTest.testTimeout());
+    GameDataTest.run("testSaveAndLoad", GameDataTest.testSaveAndLoad());
+    GameDataTest.run("testCurrentMatch", GameDataTest.testCurrentMatch());
+
+    new File(GameDataTest.PATH).delete();
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testFromMap() {
+
+    GameConfig config = GameConfig.fromMap(StandInGameServer.sampleData());
+
+    return config.redTeam == 6 && config.greenTeam == 7 && config.isRed(6)
+        && config.getCorner(6) == 0 && config.getCorner(7) == 2 && config.og == 1
+        && config.or == 3 && config.redUR.x == 4 && config.redUR.y == 4 && config.zoG.x == 10
+        && config.zoG.y == 6 && config.srUR.x == 3 && config.srUR.y == 3;
+  }
+
+  private static boolean testFromMapMissingKey() {
+
+    Map<String, Object> data = StandInGameServer.sampleData();
+    data.remove("ZO_G_y");
+
+    try {
+      GameConfig.fromMap(data);
+    } catch (IllegalArgumentException e) {
+      return true;
+    }
+
+    return false;
+  }
+
+  private static boolean testRetry() {
+
+    StandInGameServer server = new StandInGameServer();
+    server.setFailures(2);
+
+    GameDataLoader loader = new GameDataLoader(server, null);
+    loader.start();
+
+    GameConfig config = loader.await(10000);
+
+    return config != null && loader.getFailures() == 2 && server.getRequests() == 3;
+  }
+
+  private static boolean testTimeout() {
+
+    StandInGameServer server = new StandInGameServer();
+    server.setDelay(1000);
+
+    GameDataLoader loader = new GameDataLoader(server, null);
+    loader.start();
+
+    // The server answers only after the delay, as it does when the match starts.
+    if (loader.await(100) != null) {
+      return false;
+    }
+
+    return loader.await(5000) != null && loader.getFailures() == 0;
+  }
+
+  private static boolean testSaveAndLoad() {
+
+    new File(GameDataTest.PATH).delete();
+
+    GameDataLoader loader = new GameDataLoader(new StandInGameServer(), GameDataTest.PATH);
+
+    if (loader.loadSaved() != null) {
+      return false;
+    }
+
+    loader.start();
+
+    GameConfig received = loader.await(5000);
+
+    // A new loader, as after a reboot, finds the configuration without the server.
+    GameConfig saved = new GameDataLoader(new StandInGameServer(), GameDataTest.PATH).loadSaved();
+
+    return received != null && saved != null
+        && saved.getReceivedAt() == received.getReceivedAt() && saved.redTeam == received.redTeam
+        && saved.greenCorner == received.greenCorner && saved.sgLL.x == received.sgLL.x
+        && saved.srUR.y == received.srUR.y;
+  }
+
+
+  private static boolean testCurrentMatch() {
+
+    GameConfig config = GameConfig.fromMap(StandInGameServer.sampleData());
+    long received = config.getReceivedAt();
+
+    // Received before the clock was reset by a reboot, or in an earlier match.
+    boolean current = MainController.isCurrentMatch(config, received + 1000);
+    boolean future = MainController.isCurrentMatch(config, received - 1000);
+    boolean stale = MainController.isCurrentMatch(config, received + FinalProject.MATCH_DURATION);
+
+    // Once the match is over, the configuration is not resumed from.
+    GameDataLoader loader = new GameDataLoader(new StandInGameServer(), GameDataTest.PATH);
+    loader.start();
+
+    boolean saved = loader.await(5000) != null && loader.loadSaved() != null;
+
+    loader.clearSaved();
+
+    return current && !future && !stale && saved && loader.loadSaved() == null;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
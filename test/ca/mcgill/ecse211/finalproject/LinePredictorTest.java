@@ -0,0 +1,205 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the line crossings predicted by LinePredictor, on a robot driving along a row
+ * of tiles whose odometer is off by a known distance. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class LinePredictorTest {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // Half of the width of a line (in cm)
+  private static final double LINE_HALF_WIDTH = 0.5;
+
+  // Distance (in cm) driven between two updates
+  private static final double STEP = 0.1;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    LinePredictorTest.run("testHits", LinePredictorTest.testHits());
+    LinePredictorTest.run("testDrift", LinePredictorTest.testDrift());
+    LinePredictorTest.run("testMissed", LinePredictorTest.testMissed());
+    LinePredictorTest.run("testTurning", LinePredictorTest.testTurning());
+    LinePredictorTest.run("testSpread", LinePredictorTest.testSpread());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testHits() {
+
+    LinePredictor predictor = LinePredictorTest.create();
+    int polled = LinePredictorTest.drive(predictor, 0.0, false);
+
+    System.out.println("Hits: " + predictor.getHits() + ", polled " + polled + " times");
+
+    // Three lines for each sensor, and the sensors polled for a small part of the way.
+    return predictor.getHits() == 6 && predictor.getMisses() == 0
+        && predictor.getSpurious() == 0 && polled < 300;
+  }
+
+  private static boolean testDrift() {
+
+    LinePredictor predictor = LinePredictorTest.create();
+    LinePredictorTest.drive(predictor, 1.0, false);
+
+    System.out.println("Last error: " + predictor.getLastError());
+
+    // The robot is 1 cm further than it thinks, the lines come 1 cm early (plus half a line).
+    return predictor.getHits() == 6
+        && Math.abs(predictor.getLastError() - (1.0 + LinePredictorTest.LINE_HALF_WIDTH)) < 0.2;
+  }
+
+  private static boolean testMissed() {
+
+    // Off by more than the windows: the first lines are missed, and spurious when sampled anyway
+    // (the windows grow until the last line is seen again).
+    LinePredictor windowed = LinePredictorTest.create();
+    LinePredictorTest.drive(windowed, 6.0, false);
+
+    LinePredictor always = LinePredictorTest.create();
+    LinePredictorTest.drive(always, 6.0, true);
+
+    System.out.println("Windowed: " + windowed.getMisses() + " missed, " + windowed.getSpurious()
+        + " spurious");
+    System.out.println("Always:   " + always.getMisses() + " missed, " + always.getSpurious()
+        + " spurious");
+
+    return windowed.getMisses() == 4 && windowed.getSpurious() == 0 && always.getSpurious() >= 4;
+  }
+
+  private static boolean testTurning() {
+
+    LinePredictor predictor = LinePredictorTest.create();
+    predictor.setEnabled(true);
+
+    Pose pose = new Pose().set(29.0, 15.0, 0.0);
+
+    // Turning over a line: no window, and nothing is flagged.
+    boolean open = predictor.update(pose, 0);
+    LinePredictor.Event event = predictor.check(0, 0.1f);
+
+    return !open && event == LinePredictor.Event.NONE && predictor.getSpurious() == 0;
+  }
+
+
+  private static boolean testSpread() {
+
+    // The sensors are 6 cm from the middle, the predictor only knows they are within 7.6 cm.
+    LinePredictor predictor = new LinePredictor(null, null, new double[] { 2.23, 2.23 },
+        new double[] { 0.0, 0.0 });
+    predictor.measureSpread(7.6);
+    predictor.setEnabled(true);
+
+    double theta = Math.toRadians(30.0);
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    double[] lateral = new double[] { 6.0, -6.0 };
+    Pose pose = new Pose();
+
+    // Drive diagonally across the lines in both directions.
+    for (double d = 0.0; d < 200.0; d += LinePredictorTest.STEP) {
+      pose.set(40.0 + d * cos, 40.0 + d * sin, theta);
+      predictor.update(pose, 1);
+
+      for (int i = 0; i < 2; ++i) {
+        double x = pose.x + 2.23 * cos - lateral[i] * sin;
+        double y = pose.y + 2.23 * sin + lateral[i] * cos;
+        boolean line = LinePredictorTest.toLine(x) < LinePredictorTest.LINE_HALF_WIDTH
+            || LinePredictorTest.toLine(y) < LinePredictorTest.LINE_HALF_WIDTH;
+
+        predictor.check(i, line ? 0.1f : 0.6f);
+      }
+    }
+
+    System.out.println("Spread: " + predictor.getSpread() + ", " + predictor.getHits() + " hits, "
+        + predictor.getMisses() + " missed, " + predictor.getSpurious() + " spurious");
+
+    return Math.abs(predictor.getSpread() - 12.0) < 0.5 && predictor.getMisses() == 0
+        && predictor.getSpurious() == 0;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static LinePredictor create() {
+
+    return new LinePredictor(null, null, new double[] { 2.23, 2.23 },
+        new double[] { 6.0, -6.0 });
+  }
+
+  /**
+   * Drive along the x-axis, in the middle of the first row of tiles, with the actual position
+   * `offset` ahead of the odometer. Return the number of updates at which the sensors were polled.
+   */
+  private static int drive(LinePredictor predictor, double offset, boolean always) {
+
+    Pose pose = new Pose();
+    int polled = 0;
+
+    predictor.setEnabled(true);
+
+    for (double x = 10.0; x < 100.0; x += LinePredictorTest.STEP) {
+      pose.set(x, 15.0, 0.0);
+
+      boolean open = predictor.update(pose, 1);
+
+      if (open || always) {
+        ++polled;
+
+        // Both sensors are at the same x, 2.23 cm ahead of the center.
+        double actual = x + offset + 2.23;
+        double toLine = Math.abs(actual - FinalProject.BOARD_TILE_LENGTH
+            * Math.round(actual / FinalProject.BOARD_TILE_LENGTH));
+        float level = (toLine < LinePredictorTest.LINE_HALF_WIDTH) ? 0.1f : 0.6f;
+
+        predictor.check(0, level);
+        predictor.check(1, level);
+      }
+    }
+
+    return polled;
+  }
+
+  private static double toLine(double position) {
+
+    return Math.abs(position - FinalProject.BOARD_TILE_LENGTH
+        * Math.round(position / FinalProject.BOARD_TILE_LENGTH));
+  }
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
@@ -0,0 +1,307 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+
+
+/**
+ * This class tests the online calibration of the wheel radius, wheel base and right wheel
+ * multiplier, on observations made with a known geometry. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class OdometryCalibrationTest {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The file in which the tests save the calibration
+  private static final String PATH = "calibration-test.bin";
+
+  // The geometry of the simulated robot, a few percent off the hand-tuned constants
+  private static final double TRUE_RADIUS = 2.16;
+  private static final double TRUE_BASE = 15.8;
+  private static final double TRUE_MULT = 0.995;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    OdometryCalibrationTest.run("testConverges", OdometryCalibrationTest.testConverges());
+    OdometryCalibrationTest.run("testClamped", OdometryCalibrationTest.testClamped());
+    OdometryCalibrationTest.run("testSaveAndLoad", OdometryCalibrationTest.testSaveAndLoad());
+    OdometryCalibrationTest.run("testOdometer", OdometryCalibrationTest.testOdometer());
+    OdometryCalibrationTest.run("testDriver", OdometryCalibrationTest.testDriver());
+    OdometryCalibrationTest.run("testRotate", OdometryCalibrationTest.testRotate());
+
+    new File(OdometryCalibrationTest.PATH).delete();
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testConverges() {
+
+    OdometryCalibration calibration = OdometryCalibrationTest.nominal();
+
+    OdometryCalibrationTest.observe(calibration, new Random(1), 30);
+
+    calibration.dump(System.out);
+
+    // Each value is much closer to the truth than the constant it started from.
+    return OdometryCalibrationTest.closer(calibration.getWheelRadius(), FinalProject.WHEEL_RADIUS,
+        OdometryCalibrationTest.TRUE_RADIUS)
+        && OdometryCalibrationTest.closer(calibration.getWheelBase(), FinalProject.WHEEL_BASE,
+            OdometryCalibrationTest.TRUE_BASE)
+        && OdometryCalibrationTest.closer(calibration.getRightMult(), FinalProject.RIGHT_WHEEL_MULT,
+            OdometryCalibrationTest.TRUE_MULT);
+  }
+
+  private static boolean testClamped() {
+
+    OdometryCalibration calibration = OdometryCalibrationTest.nominal();
+
+    // Wheels 30% larger than the constant, a bit more at each observation so that none of them
+    // is an outlier.
+    double k = Math.toRadians(FinalProject.WHEEL_RADIUS);
+
+    for (int i = 1; i <= 60; ++i) {
+      double scale = Math.min(1.3, 1.0 + 0.01 * i);
+      calibration.observeDistance(1000, 1000, 0.5 * k * scale * (1000 + 1000 / 1.003));
+    }
+
+    boolean clamped = Math.abs(calibration.getWheelRadius()
+        - (1.0 + OdometryCalibration.MAX_DEVIATION) * FinalProject.WHEEL_RADIUS) < 1e-9;
+
+    // A heading off by more than the outlier limit is not used.
+    int updates = calibration.getUpdates();
+    boolean rejected = !calibration.observeHeading(-300, 300, Math.toRadians(150.0))
+        && calibration.getUpdates() == updates;
+
+    return clamped && rejected;
+  }
+
+  private static boolean testSaveAndLoad() {
+
+    OdometryCalibration calibration = OdometryCalibrationTest.nominal();
+
+    OdometryCalibrationTest.observe(calibration, new Random(2), 10);
+
+    try {
+      new File(OdometryCalibrationTest.PATH).delete();
+
+      if (OdometryCalibration.load(OdometryCalibrationTest.PATH, FinalProject.WHEEL_RADIUS,
+          FinalProject.WHEEL_BASE, FinalProject.RIGHT_WHEEL_MULT) != null) {
+        return false;
+      }
+
+      calibration.save(OdometryCalibrationTest.PATH);
+
+      OdometryCalibration loaded = OdometryCalibration.load(OdometryCalibrationTest.PATH,
+          FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE, FinalProject.RIGHT_WHEEL_MULT);
+
+      boolean same = loaded != null && loaded.getUpdates() == calibration.getUpdates()
+          && loaded.getWheelRadius() == calibration.getWheelRadius()
+          && loaded.getWheelBase() == calibration.getWheelBase()
+          && loaded.getRightMult() == calibration.getRightMult();
+
+      // A calibration made for other constants is of no use.
+      boolean rebuilt = OdometryCalibration.load(OdometryCalibrationTest.PATH,
+          FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE + 1.0,
+          FinalProject.RIGHT_WHEEL_MULT) == null;
+
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(OdometryCalibrationTest.PATH));
+      out.writeInt(0);
+      out.close();
+
+      boolean invalid = false;
+
+      try {
+        OdometryCalibration.load(OdometryCalibrationTest.PATH, FinalProject.WHEEL_RADIUS,
+            FinalProject.WHEEL_BASE, FinalProject.RIGHT_WHEEL_MULT);
+      } catch (IOException e) {
+        invalid = true;
+      }
+
+      return same && rebuilt && invalid;
+    } catch (IOException e) {
+      System.out.println("Could not save or load: " + e.getMessage());
+      return false;
+    }
+  }
+
+  private static boolean testOdometer() {
+
+    Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+    OdometryCalibration calibration = OdometryCalibrationTest.nominal();
+
+    calibration.attach(odometer, null);
+    odometer.setCalibration(calibration);
+
+    // Square up, turn 90 degrees with the simulated geometry, and square up again.
+    odometer.update(0, 0);
+    odometer.fixHeading(0.0);
+
+    double travel = OdometryCalibrationTest.TRUE_BASE / 2.0 * Math.PI / 2.0;
+    double k = Math.toRadians(OdometryCalibrationTest.TRUE_RADIUS);
+    int phiLeft = (int) Math.round(-travel / k);
+    int phiRight = (int) Math.round(travel * OdometryCalibrationTest.TRUE_MULT / k);
+
+    odometer.update(phiLeft, phiRight);
+    odometer.fixHeading(Math.PI / 2.0);
+
+    // The new geometry is applied at the next update, and keeps the heading.
+    odometer.update(phiLeft, phiRight);
+
+    double theta = odometer.getTheta();
+
+    System.out.println("Base: " + calibration.getWheelBase() + ", heading: " + theta);
+
+    return calibration.getUpdates() == 1 && calibration.getWheelBase() > FinalProject.WHEEL_BASE
+        && Math.abs(theta - Math.PI / 2.0) < 1e-3;
+  }
+
+
+  private static boolean testDriver() {
+
+    // The driver only computes the commands here, it is never asked to move.
+    Driver driver = new Driver(null, null, null, null);
+    OdometryCalibration calibration = OdometryCalibrationTest.nominal();
+
+    OdometryCalibrationTest.observe(calibration, new Random(3), 30);
+    calibration.attach(null, driver);
+
+    // A straight line of a meter: the right wheel is commanded exactly the estimated ratio more,
+    // in speed and in rotation (up to the rounding to a degree).
+    double mult = calibration.getRightMult();
+    float speed = driver.rightSpeed(FinalProject.SPEED_FWD);
+    int phiLeft = driver.convertDistance(100.0);
+    int phiRight = driver.convertRightDistance(100.0);
+
+    boolean speedRatio = Math.abs(speed / FinalProject.SPEED_FWD - mult) < 1e-6;
+    boolean rotationRatio = Math.abs(phiRight - mult * phiLeft) <= 1.0;
+
+    // The simulated robot then drives straight, which it did not with the constant applied twice.
+    double k = Math.toRadians(OdometryCalibrationTest.TRUE_RADIUS);
+    double turn = k * (phiRight / OdometryCalibrationTest.TRUE_MULT - phiLeft)
+        / OdometryCalibrationTest.TRUE_BASE;
+    double squared = FinalProject.RIGHT_WHEEL_MULT * FinalProject.RIGHT_WHEEL_MULT;
+    double turnSquared = k * (phiLeft * squared / OdometryCalibrationTest.TRUE_MULT - phiLeft)
+        / OdometryCalibrationTest.TRUE_BASE;
+
+    System.out.println("Right/left: speed " + (speed / FinalProject.SPEED_FWD) + ", rotation "
+        + ((double) phiRight / phiLeft) + " (" + mult + "), turn " + Math.toDegrees(turn)
+        + " deg (" + Math.toDegrees(turnSquared) + " deg applied twice)");
+
+    return speedRatio && rotationRatio && Math.abs(turn) < 0.5 * Math.abs(turnSquared);
+  }
+
+
+  private static boolean testRotate() {
+
+    // A right wheel multiplier far enough from 1 that applying it on one side only shows.
+    double mult = 1.05;
+    Driver driver = new Driver(null, null, null, null);
+    Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+
+    driver.setGeometry(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE, mult);
+    odometer.setGeometry(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE, mult);
+    odometer.update(0, 0);
+
+    double start = odometer.getTheta();
+
+    // Turn 90 degrees in place with the targets of Driver.rotate(), the odometer sees a quarter
+    // turn (up to the rounding to a degree of the wheels).
+    int phiLeft = -driver.convertAngle(90.0);
+    int phiRight = driver.convertRightAngle(90.0);
+
+    odometer.update(phiLeft, phiRight);
+
+    double turn = Angles.normalizeSigned(odometer.getTheta() - start);
+
+    System.out.println("Turn: " + Math.toDegrees(turn) + " deg, speed ratio "
+        + (driver.rightSpeed(FinalProject.SPEED_ROT) / FinalProject.SPEED_ROT));
+
+    return Math.abs(Math.toDegrees(Math.abs(turn)) - 90.0) < 0.2
+        && Math.abs(driver.rightSpeed(FinalProject.SPEED_ROT) / FinalProject.SPEED_ROT - mult)
+            < 1e-6;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static OdometryCalibration nominal() {
+
+    return new OdometryCalibration(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE,
+        FinalProject.RIGHT_WHEEL_MULT);
+  }
+
+  /**
+   * Give `count` heading changes and `count` distances, with some noise, as the simulated robot
+   * would observe them.
+   */
+  private static void observe(OdometryCalibration calibration, Random random, int count) {
+
+    double k = Math.toRadians(OdometryCalibrationTest.TRUE_RADIUS);
+    double mult = OdometryCalibrationTest.TRUE_MULT;
+
+    for (int i = 0; i < count; ++i) {
+      // A turn and a straight run between two heading fixes.
+      int turn = (random.nextBoolean() ? 1 : -1) * (200 + random.nextInt(200));
+      int straight = random.nextInt(1500);
+      int phiLeft = straight - turn;
+      int phiRight = straight + turn;
+
+      double change = k * (phiRight / mult - phiLeft) / OdometryCalibrationTest.TRUE_BASE
+          + Math.toRadians(0.5) * random.nextGaussian();
+
+      calibration.observeHeading(phiLeft, phiRight, change);
+
+      // Two lines crossed straight.
+      int phi = 800 + random.nextInt(800);
+      double travelled = 0.5 * k * (phi + phi / mult) + 0.3 * random.nextGaussian();
+
+      calibration.observeDistance(phi, phi, travelled);
+    }
+
+    return;
+  }
+
+  private static boolean closer(double estimate, double nominal, double truth) {
+
+    return Math.abs(estimate - truth) < 0.25 * Math.abs(nominal - truth);
+  }
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
@@ -0,0 +1,156 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the in-place operations of PathBuffer and PathSmoother. It runs on a desktop
+ * JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class PathBufferTest {
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    PathBufferTest.run("testAppend", PathBufferTest.testAppend());
+    PathBufferTest.run("testSliceReverse", PathBufferTest.testSliceReverse());
+    PathBufferTest.run("testRotate", PathBufferTest.testRotate());
+    PathBufferTest.run("testSmooth", PathBufferTest.testSmooth());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testAppend() {
+
+    PathBuffer path = new PathBuffer(1);
+
+    // Grow past the capacity a few times.
+    for (int i = 0; i < 10; ++i) {
+      path.append(i, -i);
+    }
+
+    PathBuffer copy = new PathBuffer(new Waypoint(-1.0, 1.0)).append(path);
+
+    System.out.println(copy);
+
+    return path.size() == 10 && copy.size() == 11 && copy.getX(0) == -1.0
+        && PathBufferTest.matches(copy.slice(1, 11), 0, 1, 2, 3, 4, 5, 6, 7, 8, 9)
+        && path.closestTo(6.2, -5.9) == 6 && new PathBuffer().closestTo(0.0, 0.0) == -1;
+  }
+
+  private static boolean testSliceReverse() {
+
+    PathBuffer path = PathBufferTest.range(6);
+
+    path.slice(1, 5).reverse();
+
+    System.out.println(path);
+
+    return PathBufferTest.matches(path, 4, 3, 2, 1)
+        && PathBufferTest.matches(path.slice(2, 2), new int[0]);
+  }
+
+  private static boolean testRotate() {
+
+    PathBuffer path = PathBufferTest.range(5);
+
+    boolean result = PathBufferTest.matches(path.rotate(2), 2, 3, 4, 0, 1)
+        && PathBufferTest.matches(path.rotate(-2), 0, 1, 2, 3, 4)
+        && PathBufferTest.matches(path.rotate(7), 2, 3, 4, 0, 1);
+
+    System.out.println(path);
+
+    return result && new PathBuffer().rotate(3).isEmpty();
+  }
+
+
+  private static boolean testSmooth() {
+
+    // Around two sides of a zone, one waypoint per tile, with a stop in the middle of the second.
+    PathBuffer path = new PathBuffer();
+
+    for (int i = 0; i <= 4; ++i) {
+      path.append(1.5 + i, 1.5);
+    }
+    for (int i = 1; i <= 4; ++i) {
+      path.append(5.5, 1.5 + i, (i == 2) ? PathBuffer.FLAG_STOP : 0);
+    }
+
+    PathBuffer merged = new PathBuffer().copyFrom(path);
+    PathSmoother.smooth(merged, PathSmoother.COLLINEAR);
+
+    // Cutting the corner towards the next tile leaves it about a tile away from the path.
+    PathBuffer tight = new PathBuffer().copyFrom(path);
+    PathSmoother.smooth(tight, 0.3);
+
+    PathBuffer cut = new PathBuffer().copyFrom(path);
+    PathSmoother.smooth(cut, 1.0);
+
+    System.out.println("Merged: " + merged);
+    System.out.println("Cut:    " + cut);
+
+    return merged.size() == 4 && merged.getX(1) == 5.5 && merged.getY(1) == 1.5
+        && merged.isStop(2) && merged.getY(2) == 3.5 && merged.getY(3) == 5.5
+        && tight.size() == 4
+        && cut.size() == 4 && cut.getX(1) == 5.5 && cut.getY(1) == 2.5 && cut.isStop(2);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static PathBuffer range(int n) {
+
+    PathBuffer path = new PathBuffer(n);
+
+    for (int i = 0; i < n; ++i) {
+      path.append(i, -i);
+    }
+
+    return path;
+  }
+
+  private static boolean matches(PathBuffer path, int... expected) {
+
+    if (path.size() != expected.length) {
+      return false;
+    }
+
+    for (int i = 0; i < expected.length; ++i) {
+      if (path.getX(i) != expected[i] || path.getY(i) != -expected[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
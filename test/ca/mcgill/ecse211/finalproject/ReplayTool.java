@@ -0,0 +1,83 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.IOException;
+
+
+
+/**
+ * Replays a capture of the sensor and tacho streams (see Replayer) on a desktop JVM.
+ *
+ * The samples are fed through SensorData and the Odometer with the period of the MainController,
+ * and the state seen by the state machines at every tick is printed as CSV: the pose and the
+ * latest sensor values, with the same filtering as on the robot. A state machine under
+ * investigation can be run from `onTick()` in the same way, to bisect a failing run.
+ *
+ * Usage: ReplayTool <sensors.bin> <tacho.bin> [from (ms)] [to (ms)]
+ *
+ * @author Joshua Inscoe
+ */
+public class ReplayTool {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The period (in milliseconds) of the MainController
+  private static final long TICK_PERIOD = 40;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException {
+
+    if (args.length < 2) {
+      System.err.println("usage: ReplayTool <sensors.bin> <tacho.bin> [from (ms)] [to (ms)]");
+      System.exit(1);
+    }
+
+    final long from = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+    final long to = (args.length > 3) ? Long.parseLong(args[3]) : Long.MAX_VALUE;
+
+    final SensorData sd = new SensorData();
+    final Odometer odometer = new Odometer(FinalProject.WHEEL_RADIUS, FinalProject.WHEEL_BASE);
+
+    // The robot starts at 90 degrees, as set by the localization.
+    odometer.setTheta(Math.PI / 2);
+
+    Replayer replayer = new Replayer(args[0], args[1], sd, odometer);
+
+    System.out.println("time,x,y,theta,light_left,light_right,light_mid,us,us_avg,us_dev");
+
+    long start = System.nanoTime();
+
+    replayer.replay(ReplayTool.TICK_PERIOD, new Replayer.Listener() {
+      public boolean onTick(long time) {
+        if (time < from) {
+          return true;
+        }
+
+        float[] usStats = sd.getUSStats();
+
+        System.out.println(time + "," + odometer.getX() + "," + odometer.getY() + ","
+            + Math.toDegrees(odometer.getTheta()) + "," + sd.lightLeft.getLatest() + ","
+            + sd.lightRight.getLatest() + "," + sd.lightMid.getLatest() + "," + sd.getUSDataLatest()
+            + "," + ((usStats != null) ? usStats[0] : 0.f) + ","
+            + ((usStats != null) ? usStats[2] : 0.f));
+
+        return time < to;
+      }
+    });
+
+    long elapsed = (System.nanoTime() - start) / 1000000L;
+
+    System.err.println("Replayed " + replayer.getTime() + " ms of capture in " + elapsed + " ms ("
+        + replayer.getSensorRecords() + " sensor samples, " + replayer.getTachoRecords()
+        + " tacho counts)");
+
+    replayer.close();
+
+    return;
+  }
+}
@@ -0,0 +1,829 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+
+/**
+ * Evaluates the search strategy offline, on every layout of the enemy zone, search zone and start
+ * location on the board. This runs on a desktop JVM, not on the brick.
+ *
+ * For each layout, the search path is computed with `Searcher.computeSearchPath()`, and the
+ * `search()` method is simulated step by step, in both of its modes:
+ * - sweeping (the default): the robot drives around the search zone with the ultrasonic sensor
+ *   panned inwards, until it has seen all of it, then visits the block it saw. The flag is
+ *   assumed to be equally likely to be on any tile of the search zone, and is seen if it is within
+ *   `Searcher.SWEEP_SURE_RANGE` of the sensor along one of the sides driven.
+ * - stopping at every tile: the navigator turning towards each waypoint and driving to it, the
+ *   turns at the corners, and the look inwards (turn, settle, turn back) at every other tile. The
+ *   flag is assumed to be equally likely to face any tile along the sides of the search zone.
+ * The distributions of the path length, the rotations, the expected time to the flag and the time
+ * of a full lap are printed for each mode, followed by the worst layouts.
+ *
+ * The run fails (exit status 1) if the flag cannot be found at all in some layout, in either mode,
+ * or if more layouts than the known failures cannot finish a lap within the timeout.
+ *
+ * Usage: SearchEvaluator [max enemy zone size] [max search zone size] (default: 6 4)
+ *
+ * @author Joshua Inscoe
+ */
+public class SearchEvaluator {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The size of the board (in tiles)
+  private static final int BOARD_SIZE = 12;
+
+  // The minimum size of a side of the enemy zone (in tiles)
+  private static final int MIN_ENEMY_SIZE = 2;
+
+  // The number of enemy zones evaluated by each task before it stops splitting
+  private static final int TASK_THRESHOLD = 4;
+
+  // The number of worst layouts reported for each metric
+  private static final int WORST_COUNT = 10;
+
+  // Forward speed of the robot (in cm/s)
+  private static final double LINEAR_SPEED =
+      Math.toRadians(FinalProject.SPEED_FWD) * FinalProject.WHEEL_RADIUS;
+
+  // Rotation speed of the robot (in deg/s)
+  private static final double ANGULAR_SPEED = Math.toDegrees(
+      2.0 * Math.toRadians(FinalProject.SPEED_ROT) * FinalProject.WHEEL_RADIUS
+      / FinalProject.WHEEL_BASE);
+
+  // Time (in seconds) spent checking a tile for the flag, once turned towards it
+  private static final double CHECK_TIME =
+      Searcher.SETTLE_SAMPLES * FinalProject.SLEEP_TIME / 1000.0;
+
+  // Angle (in degrees) below which the navigator does not turn towards a waypoint, the same as
+  // FinalProject.ANGLE_THRESHOLD (which cannot be used off the brick, it is not a constant)
+  private static final double ANGLE_THRESHOLD = 1.0;
+
+  // The search timeout (in seconds)
+  private static final double TIMEOUT = Searcher.TIMEOUT / 1000.0;
+
+  // Time (in seconds) to pan the ultrasonic sensor, Driver.rotateFrontMotor() pans at 75 deg/s
+  private static final double PAN_TIME = Searcher.SWEEP_PAN_ANGLE / 75.0;
+
+  // Known failure: a full stop-and-look lap around a large search zone takes longer than the
+  // timeout, the robot sweeps instead when it has a motor to pan the sensor. With the default
+  // sizes, 530722 of the 3226088 layouts; the run fails if this gets any worse.
+  private static final long KNOWN_STOP_OVER_TIMEOUT = 530722;
+
+  // The modes of the search
+  private enum Mode {
+    SWEEP, STOP
+  };
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    int maxEnemy = (args.length > 0) ? Integer.parseInt(args[0]) : 6;
+    int maxSearch = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+
+    // Enumerate the enemy zones, each task then enumerates the search zones within them.
+    List<int[]> zones = new ArrayList<int[]>();
+
+    for (int w = SearchEvaluator.MIN_ENEMY_SIZE; w <= maxEnemy; ++w) {
+      for (int h = SearchEvaluator.MIN_ENEMY_SIZE; h <= maxEnemy; ++h) {
+        for (int x = 0; x + w <= SearchEvaluator.BOARD_SIZE; ++x) {
+          for (int y = 0; y + h <= SearchEvaluator.BOARD_SIZE; ++y) {
+            zones.add(new int[] { x, y, x + w, y + h });
+          }
+        }
+      }
+    }
+
+    boolean passed = true;
+
+    for (Mode mode : Mode.values()) {
+      long start = System.currentTimeMillis();
+
+      Result result = ForkJoinPool.commonPool().invoke(
+          new EvaluateTask(zones, 0, zones.size(), maxSearch, mode));
+
+      long elapsed = System.currentTimeMillis() - start;
+
+      SearchEvaluator.print(mode, result, zones.size(), maxEnemy, maxSearch, elapsed);
+
+      // The flag must be found in every layout in which the search zone can be reached.
+      if (result.zeroCoverage > 0) {
+        System.out.println("FAIL: the flag cannot be found in " + result.zeroCoverage
+            + " layouts");
+        passed = false;
+      }
+
+      long allowed = (mode == Mode.STOP) ? SearchEvaluator.KNOWN_STOP_OVER_TIMEOUT : 0;
+
+      if (result.overTimeout > allowed) {
+        System.out.println("FAIL: " + result.overTimeout + " layouts over timeout, " + allowed
+            + " known");
+        passed = false;
+      } else if (result.overTimeout > 0) {
+        System.out.println("KNOWN FAILURE: " + result.overTimeout + " layouts over timeout");
+      }
+
+      System.out.println("");
+    }
+
+    System.out.println(passed ? "PASS" : "FAIL");
+
+    if (!passed) {
+      System.exit(1);
+    }
+
+    return;
+  }
+
+  private static void print(Mode mode, Result result, int zones, int maxEnemy, int maxSearch,
+      long elapsed) {
+
+    System.out.println("==================================================");
+    System.out.println("Search strategy evaluation: " + mode);
+    System.out.println("==================================================");
+    System.out.println("");
+    System.out.println("Enemy zones:   " + zones + " (sides " + SearchEvaluator.MIN_ENEMY_SIZE
+        + " to " + maxEnemy + ")");
+    System.out.println("Layouts:       " + result.layouts + " (search zone sides 1 to " + maxSearch
+        + ")");
+    System.out.println("Unreachable:   " + result.unreachable);
+    System.out.println("Elapsed:       " + elapsed + " ms on "
+        + ForkJoinPool.commonPool().getParallelism() + " threads");
+    System.out.println("");
+
+    String covered = (mode == Mode.SWEEP) ? "Zone coverage" : "Side coverage";
+
+    result.pathLength.print("Path length (cm)");
+    result.rotations.print("Rotations");
+    result.rotationAngle.print("Rotation (deg)");
+    result.expectedTime.print("Expected time to flag (s)");
+    result.lapTime.print("Full search time (s)");
+    result.coverage.print(covered);
+
+    System.out.println("Full search over timeout: " + result.overTimeout + " layouts");
+    System.out.println("Incomplete coverage:      " + result.incomplete + " layouts");
+    System.out.println("No coverage:              " + result.zeroCoverage + " layouts");
+    System.out.println("");
+
+    result.worstTime.print("Worst expected time to flag (s)");
+    result.worstCoverage.print("Worst " + covered.toLowerCase());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Simulation
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Simulate `Searcher.search()` stopping at every tile on one layout, and add its metrics to the
+   * result.
+   */
+  private static void evaluateStop(Searcher searcher, Waypoint location, int[] layout,
+      Result result) {
+
+    searcher.setLocation(location);
+    searcher.computeSearchPath();
+
+    if (searcher.getDirection() == Searcher.Direction.UNKNOWN) {
+      ++result.unreachable;
+      return;
+    }
+
+    Waypoint[] path = searcher.getSearchPath();
+    int[] corners = searcher.getCorners();
+
+    double rotateAngle = (searcher.getDirection() == Searcher.Direction.CLOCKWISE) ? -90.0 : +90.0;
+
+    Robot robot = new Robot(location.x * FinalProject.BOARD_TILE_LENGTH,
+        location.y * FinalProject.BOARD_TILE_LENGTH);
+
+    int checks = 0;
+    double checkTimes = 0.0;
+
+    for (int i = 0; i < path.length; ++i) {
+      robot.navigateTo(path[i].x * FinalProject.BOARD_TILE_LENGTH,
+          path[i].y * FinalProject.BOARD_TILE_LENGTH);
+
+      boolean corner = (i == corners[0] || i == corners[1] || i == corners[2] || i == corners[3]);
+
+      if (i == 0) {
+        // Same as the searcher: rotate to the initial orientation by the smallest angle, looking
+        // inwards in the same turn unless the first tile is a corner.
+        double turn = searcher.getInitialOrientation() - robot.heading
+            + (corner ? 0.0 : rotateAngle);
+        robot.rotate(Angles.normalizeSignedDegrees(turn));
+      } else {
+        robot.rotate(+rotateAngle);
+      }
+
+      if (!corner) {
+        robot.time += SearchEvaluator.CHECK_TIME;
+
+        // The flag would be found here, if it is within the time limit.
+        if (robot.time <= SearchEvaluator.TIMEOUT) {
+          ++checks;
+          checkTimes += robot.time;
+        }
+
+        robot.rotate(-rotateAngle);
+      }
+    }
+
+    int sides = path.length - 4;
+    for (int i = 0; i < 4; ++i) {
+      if (corners[i] < 0) {
+        ++sides;
+      }
+    }
+
+    double coverage = (sides > 0) ? (double) checks / sides : 0.0;
+    double expected = (checks > 0) ? checkTimes / checks : SearchEvaluator.TIMEOUT;
+
+    ++result.layouts;
+
+    result.pathLength.add(robot.distance);
+    result.rotations.add(robot.rotations);
+    result.rotationAngle.add(robot.rotationAngle);
+    result.expectedTime.add(expected);
+    result.lapTime.add(robot.time);
+    result.coverage.add(coverage);
+
+    if (robot.time > SearchEvaluator.TIMEOUT) {
+      ++result.overTimeout;
+    }
+    if (checks < sides) {
+      ++result.incomplete;
+    }
+    if (checks == 0) {
+      ++result.zeroCoverage;
+    }
+
+    result.worstTime.add(expected, layout);
+    result.worstCoverage.add(-coverage, layout);
+
+    return;
+  }
+
+  /**
+   * Simulate `Searcher.search()` sweeping around the search zone on one layout, and add its
+   * metrics to the result.
+   */
+  private static void evaluateSweep(Searcher searcher, Waypoint location, Waypoint searchLL,
+      Waypoint searchUR, int[] layout, Result result) {
+
+    searcher.setLocation(location);
+    searcher.computeSearchPath();
+
+    Waypoint[] path = searcher.getSearchPath();
+
+    if (path.length == 0) {
+      ++result.unreachable;
+      return;
+    }
+
+    double tile = FinalProject.BOARD_TILE_LENGTH;
+
+    // The zone is on our right when going clockwise, as in the searcher.
+    double panAngle = (searcher.getDirection() == Searcher.Direction.CLOCKWISE)
+        ? -Searcher.SWEEP_PAN_ANGLE : +Searcher.SWEEP_PAN_ANGLE;
+
+    Robot robot = new Robot(location.x * tile, location.y * tile);
+
+    // Drive to the start of the path, and look inwards.
+    robot.navigateTo(path[0].x * tile, path[0].y * tile);
+    robot.time += SearchEvaluator.PAN_TIME;
+
+    // The sides driven with the sensor panned, as (x0, y0, x1, y1) in cm.
+    double[] legs = new double[4 * path.length];
+    int count = 0;
+
+    for (int i = 1, end = searcher.getSweepEnd(); i <= end; ++i) {
+      legs[4 * count] = robot.x;
+      legs[4 * count + 1] = robot.y;
+
+      robot.navigateTo(path[i].x * tile, path[i].y * tile);
+
+      legs[4 * count + 2] = robot.x;
+      legs[4 * count + 3] = robot.y;
+      ++count;
+    }
+
+    // Look forward again before visiting the block.
+    robot.time += SearchEvaluator.PAN_TIME;
+
+    double lap = robot.time;
+
+    int cells = 0;
+    int found = 0;
+    double foundTimes = 0.0;
+
+    for (int cx = (int) searchLL.x; cx < (int) searchUR.x; ++cx) {
+      for (int cy = (int) searchLL.y; cy < (int) searchUR.y; ++cy) {
+        double x = (cx + 0.5) * tile;
+        double y = (cy + 0.5) * tile;
+
+        ++cells;
+
+        if (!SearchEvaluator.isSeen(legs, count, panAngle, x, y)) {
+          continue;
+        }
+
+        // The flag would be found here, if it is within the time limit.
+        double time = SearchEvaluator.visit(new Robot(robot), path, x, y);
+
+        if (time <= SearchEvaluator.TIMEOUT) {
+          ++found;
+          foundTimes += time;
+        }
+      }
+    }
+
+    double coverage = (double) found / cells;
+    double expected = (found > 0) ? foundTimes / found : SearchEvaluator.TIMEOUT;
+
+    ++result.layouts;
+
+    result.pathLength.add(robot.distance);
+    result.rotations.add(robot.rotations);
+    result.rotationAngle.add(robot.rotationAngle);
+    result.expectedTime.add(expected);
+    result.lapTime.add(lap);
+    result.coverage.add(coverage);
+
+    if (lap > SearchEvaluator.TIMEOUT) {
+      ++result.overTimeout;
+    }
+    if (found < cells) {
+      ++result.incomplete;
+    }
+    if (found == 0) {
+      ++result.zeroCoverage;
+    }
+
+    result.worstTime.add(expected, layout);
+    result.worstCoverage.add(-coverage, layout);
+
+    return;
+  }
+
+  /**
+   * Tell whether the panned sensor sees the block at (x, y) from one of the sides driven.
+   */
+  private static boolean isSeen(double[] legs, int count, double panAngle, double x, double y) {
+
+    for (int i = 0; i < count; ++i) {
+      double dx = legs[4 * i + 2] - legs[4 * i];
+      double dy = legs[4 * i + 3] - legs[4 * i + 1];
+      double length = Math.sqrt(dx * dx + dy * dy);
+
+      if (length == 0.0) {
+        continue;
+      }
+
+      // Along the side, and in the direction in which the sensor looks.
+      double ux = dx / length;
+      double uy = dy / length;
+      double sign = Math.signum(panAngle);
+      double vx = -sign * uy;
+      double vy = sign * ux;
+
+      double along = (x - legs[4 * i]) * ux + (y - legs[4 * i + 1]) * uy;
+      double range = (x - legs[4 * i]) * vx + (y - legs[4 * i + 1]) * vy - Searcher.SENSOR_OFFSET;
+
+      if (along >= 0.0 && along <= length && range > 0.0 && range < Searcher.SWEEP_SURE_RANGE) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Visit the block at (x, y) once around the search zone, as the searcher does: drive to the
+   * closest tile of the path, face the block, approach it, settle, close in and classify it.
+   *
+   * @return the time at which the flag is found (in seconds)
+   */
+  private static double visit(Robot robot, Waypoint[] path, double x, double y) {
+
+    double tile = FinalProject.BOARD_TILE_LENGTH;
+    int closest = 0;
+    double minimum = Double.MAX_VALUE;
+
+    for (int i = 0; i < path.length; ++i) {
+      double dx = x - path[i].x * tile;
+      double dy = y - path[i].y * tile;
+      double distance = dx * dx + dy * dy;
+
+      if (distance < minimum) {
+        minimum = distance;
+        closest = i;
+      }
+    }
+
+    robot.navigateTo(path[closest].x * tile, path[closest].y * tile);
+
+    double dx = x - robot.x;
+    double dy = y - robot.y;
+    double d = Math.sqrt(dx * dx + dy * dy);
+
+    robot.rotate(Angles.normalizeSignedDegrees(Math.toDegrees(Math.atan2(dy, dx)) - robot.heading));
+
+    double approach = Math.max(d - Searcher.CAPTURE_DISTANCE_THRESHOLD + Searcher.SENSOR_OFFSET,
+        0.0);
+    double closeIn = Math.max(d - approach - Searcher.SENSOR_OFFSET
+        - Searcher.COLOR_CHECK_DISTANCE, 0.0);
+
+    robot.forward(approach);
+    robot.time += SearchEvaluator.CHECK_TIME;
+    robot.forward(closeIn);
+    robot.time += SearchEvaluator.CHECK_TIME;
+
+    return robot.time;
+  }
+
+  /**
+   * Kinematic model of the robot, driven the same way as the Navigator and Driver drive it.
+   */
+  private static class Robot {
+
+    // Position (in cm) and heading (in degrees, [0, 360))
+    double x;
+    double y;
+    double heading;
+
+    // Accumulated metrics
+    double time;
+    double distance;
+    double rotationAngle;
+    int rotations;
+
+    Robot(double x, double y) {
+
+      this.x = x;
+      this.y = y;
+      this.heading = 90.0;
+    }
+
+    Robot(Robot other) {
+
+      this.x = other.x;
+      this.y = other.y;
+      this.heading = other.heading;
+
+      this.time = other.time;
+      this.distance = other.distance;
+      this.rotationAngle = other.rotationAngle;
+      this.rotations = other.rotations;
+    }
+
+    /**
+     * Turn towards the target by the smallest angle, then drive straight to it (Navigator).
+     */
+    void navigateTo(double tx, double ty) {
+
+      double dx = tx - this.x;
+      double dy = ty - this.y;
+      double d = Math.sqrt(dx * dx + dy * dy);
+
+      if (d <= FinalProject.DISTANCE_THRESHOLD) {
+        return;
+      }
+
+      double turn = Math.toDegrees(Math.atan2(dy, dx)) - this.heading;
+      turn -= 360.0 * Math.floor((turn + 180.0) / 360.0);
+
+      if (Math.abs(turn) > SearchEvaluator.ANGLE_THRESHOLD) {
+        this.rotate(turn);
+      }
+
+      this.x = tx;
+      this.y = ty;
+      this.distance += d;
+      this.time += d / SearchEvaluator.LINEAR_SPEED;
+    }
+
+    /**
+     * Drive straight ahead by the given distance (Driver).
+     */
+    void forward(double d) {
+
+      double theta = Math.toRadians(this.heading);
+
+      this.x += d * Math.cos(theta);
+      this.y += d * Math.sin(theta);
+      this.distance += d;
+      this.time += d / SearchEvaluator.LINEAR_SPEED;
+    }
+
+    /**
+     * Rotate in place by the given angle, positive is counter-clockwise (Driver).
+     */
+    void rotate(double angle) {
+
+      if (angle == 0.0) {
+        return;
+      }
+
+      this.heading = (this.heading + angle) % 360.0;
+      if (this.heading < 0.0) {
+        this.heading += 360.0;
+      }
+
+      ++this.rotations;
+      this.rotationAngle += Math.abs(angle);
+      this.time += Math.abs(angle) / SearchEvaluator.ANGULAR_SPEED;
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Parallel Evaluation
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Evaluates a range of enemy zones, splitting it in halves until it is small enough.
+   */
+  private static class EvaluateTask extends RecursiveTask<Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<int[]> zones;
+    private final int lo;
+    private final int hi;
+    private final int maxSearch;
+    private final Mode mode;
+
+    EvaluateTask(List<int[]> zones, int lo, int hi, int maxSearch, Mode mode) {
+
+      this.zones = zones;
+      this.lo = lo;
+      this.hi = hi;
+      this.maxSearch = maxSearch;
+      this.mode = mode;
+    }
+
+    @Override
+    protected Result compute() {
+
+      if (this.hi - this.lo > SearchEvaluator.TASK_THRESHOLD) {
+        int mid = (this.lo + this.hi) >>> 1;
+
+        EvaluateTask left = new EvaluateTask(this.zones, this.lo, mid, this.maxSearch, this.mode);
+        EvaluateTask right = new EvaluateTask(this.zones, mid, this.hi, this.maxSearch, this.mode);
+
+        left.fork();
+        Result result = right.compute();
+        result.merge(left.join());
+
+        return result;
+      }
+
+      Result result = new Result();
+
+      // One searcher per task, the searcher is not thread-safe.
+      Searcher searcher = new Searcher(null, null, null, null);
+
+      Waypoint enemyLL = new Waypoint(0.0, 0.0);
+      Waypoint enemyUR = new Waypoint(0.0, 0.0);
+      Waypoint searchLL = new Waypoint(0.0, 0.0);
+      Waypoint searchUR = new Waypoint(0.0, 0.0);
+      Waypoint location = new Waypoint(0.0, 0.0);
+
+      for (int z = this.lo; z < this.hi; ++z) {
+        int[] e = this.zones.get(z);
+
+        enemyLL.x = e[0];
+        enemyLL.y = e[1];
+        enemyUR.x = e[2];
+        enemyUR.y = e[3];
+        searcher.setEnemyZone(enemyLL, enemyUR);
+
+        for (int w = 1; w <= this.maxSearch; ++w) {
+          for (int h = 1; h <= this.maxSearch; ++h) {
+            for (int x = e[0]; x + w <= e[2]; ++x) {
+              for (int y = e[1]; y + h <= e[3]; ++y) {
+                searchLL.x = x;
+                searchLL.y = y;
+                searchUR.x = x + w;
+                searchUR.y = y + h;
+                searcher.setSearchZone(searchLL, searchUR);
+
+                // The robot enters the enemy zone from any point along its boundary.
+                for (int sx = e[0]; sx <= e[2]; ++sx) {
+                  for (int sy = e[1]; sy <= e[3]; ++sy) {
+                    if (sx != e[0] && sx != e[2] && sy != e[1] && sy != e[3]) {
+                      continue;
+                    }
+
+                    location.x = sx;
+                    location.y = sy;
+
+                    int[] layout = { e[0], e[1], e[2], e[3], x, y, x + w, y + h, sx, sy };
+
+                    if (this.mode == Mode.SWEEP) {
+                      SearchEvaluator.evaluateSweep(searcher, location, searchLL, searchUR, layout,
+                          result);
+                    } else {
+                      SearchEvaluator.evaluateStop(searcher, location, layout, result);
+                    }
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+
+      return result;
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Results
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Metrics accumulated over a set of layouts.
+   */
+  private static class Result {
+
+    long layouts;
+    long unreachable;
+    long overTimeout;
+    long incomplete;
+    long zeroCoverage;
+
+    final Histogram pathLength = new Histogram(0.0, 2000.0);
+    final Histogram rotations = new Histogram(0.0, 100.0);
+    final Histogram rotationAngle = new Histogram(0.0, 5000.0);
+    final Histogram expectedTime = new Histogram(0.0, 300.0);
+    final Histogram lapTime = new Histogram(0.0, 600.0);
+    final Histogram coverage = new Histogram(0.0, 1.0);
+
+    final Worst worstTime = new Worst(+1.0);
+    final Worst worstCoverage = new Worst(-1.0);
+
+    void merge(Result other) {
+
+      this.layouts += other.layouts;
+      this.unreachable += other.unreachable;
+      this.overTimeout += other.overTimeout;
+      this.incomplete += other.incomplete;
+      this.zeroCoverage += other.zeroCoverage;
+
+      this.pathLength.merge(other.pathLength);
+      this.rotations.merge(other.rotations);
+      this.rotationAngle.merge(other.rotationAngle);
+      this.expectedTime.merge(other.expectedTime);
+      this.lapTime.merge(other.lapTime);
+      this.coverage.merge(other.coverage);
+
+      this.worstTime.merge(other.worstTime);
+      this.worstCoverage.merge(other.worstCoverage);
+    }
+  }
+
+  /**
+   * Fixed-size histogram, so that millions of layouts can be summarized without storing them.
+   */
+  private static class Histogram {
+
+    private static final int BINS = 1000;
+
+    private final double min;
+    private final double max;
+    private final long[] bins = new long[BINS];
+
+    private long count;
+    private double sum;
+    private double lowest = Double.MAX_VALUE;
+    private double highest = -Double.MAX_VALUE;
+
+    Histogram(double min, double max) {
+
+      this.min = min;
+      this.max = max;
+    }
+
+    void add(double value) {
+
+      int bin = (int) ((value - this.min) / (this.max - this.min) * BINS);
+      this.bins[Math.max(0, Math.min(BINS - 1, bin))]++;
+
+      this.count++;
+      this.sum += value;
+      this.lowest = Math.min(this.lowest, value);
+      this.highest = Math.max(this.highest, value);
+    }
+
+    void merge(Histogram other) {
+
+      for (int i = 0; i < BINS; ++i) {
+        this.bins[i] += other.bins[i];
+      }
+
+      this.count += other.count;
+      this.sum += other.sum;
+      this.lowest = Math.min(this.lowest, other.lowest);
+      this.highest = Math.max(this.highest, other.highest);
+    }
+
+    double percentile(double p) {
+
+      long rank = (long) Math.ceil(p * this.count);
+      long seen = 0;
+
+      for (int i = 0; i < BINS; ++i) {
+        seen += this.bins[i];
+        if (seen >= rank) {
+          return this.min + (i + 0.5) * (this.max - this.min) / BINS;
+        }
+      }
+
+      return this.highest;
+    }
+
+    void print(String name) {
+
+      if (this.count == 0) {
+        System.out.println(name + ": no data");
+        return;
+      }
+
+      System.out.println(String.format("%-26s min %8.2f  p50 %8.2f  p90 %8.2f  p99 %8.2f"
+          + "  max %8.2f  mean %8.2f", name + ":", this.lowest, this.percentile(0.50),
+          this.percentile(0.90), this.percentile(0.99), this.highest, this.sum / this.count));
+    }
+  }
+
+  /**
+   * The layouts with the highest values of a metric (times `sign`).
+   */
+  private static class Worst {
+
+    private final double sign;
+    private final double[] values = new double[WORST_COUNT];
+    private final int[][] layouts = new int[WORST_COUNT][];
+    private int size;
+
+    Worst(double sign) {
+
+      this.sign = sign;
+    }
+
+    void add(double value, int[] layout) {
+
+      if (this.size == WORST_COUNT && value <= this.values[this.size - 1]) {
+        return;
+      }
+
+      int i = (this.size < WORST_COUNT) ? this.size++ : this.size - 1;
+
+      // Insertion sort, highest first.
+      while (i > 0 && this.values[i - 1] < value) {
+        this.values[i] = this.values[i - 1];
+        this.layouts[i] = this.layouts[i - 1];
+        --i;
+      }
+
+      this.values[i] = value;
+      this.layouts[i] = layout;
+    }
+
+    void merge(Worst other) {
+
+      for (int i = 0; i < other.size; ++i) {
+        this.add(other.values[i], other.layouts[i]);
+      }
+    }
+
+    void print(String name) {
+
+      System.out.println(name + ":");
+
+      for (int i = 0; i < this.size; ++i) {
+        int[] l = this.layouts[i];
+
+        System.out.println(String.format("  %8.2f  enemy (%d,%d)-(%d,%d) search (%d,%d)-(%d,%d)"
+            + " start (%d,%d)", this.sign * this.values[i], l[0], l[1], l[2], l[3], l[4], l[5],
+            l[6], l[7], l[8], l[9]));
+      }
+
+      System.out.println("");
+    }
+  }
+}
@@ -138,6 +138,26 @@ public class SearcherTest {
 
     {
 
+    System.out.println("==================================================");
+    System.out.println("testComputeSearchPathLeftWall2x1FromTop");
+    System.out.println("==================================================");
+    System.out.println("");
+
+    boolean result = SearcherTest.testComputeSearchPathLeftWall2x1FromTop();
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    } // local
+
+    {
+
     System.out.println("==================================================");
     System.out.println("testSearchSimple1x2");
     System.out.println("==================================================");
@@ -384,6 +404,74 @@ public class SearcherTest {
     return result;
   }
 
+  /**
+   * Test the Searcher class's `computeSearchPath()` method on a 2x1 search zone,
+   * located along the left wall, starting from the other edge of the search path.
+   *
+   * @return true if the test passed, false otherwise
+   */
+  private static boolean testComputeSearchPathLeftWall2x1FromTop() {
+
+    //
+    // Example:
+    //
+    //                    (6, 6)
+    //                         v
+    // -------------------------
+    // | L |   |   |   |   |   |
+    // -------------------------
+    // | 0 | 1 | 2 |   |   |   |
+    // -------------------------
+    // | X | X | 3 |   |   |   |
+    // -------------------------
+    // | 6 | 5 | 4 |   |   |   |
+    // -------------------------
+    // |   |   |   |   |   |   |
+    // -------------------------
+    // |   |   |   |   |   |   |
+    // -------------------------
+    // ^
+    // (0, 0)
+    //
+    //
+    // L = the starting location of the robot
+    // X = the search zone
+    //
+    // 0-6 = the 0th, 1st, ..., 6th waypoint in the search path
+    //
+
+    boolean result = false;
+
+    // This is the path that we are expecting the searcher to compute.
+    Waypoint[] expected = new Waypoint[] {
+      new Waypoint(0.5, 4.5),
+      new Waypoint(1.5, 4.5),
+      new Waypoint(2.5, 4.5),
+      new Waypoint(2.5, 3.5),
+      new Waypoint(2.5, 2.5),
+      new Waypoint(1.5, 2.5),
+      new Waypoint(0.5, 2.5)
+    };
+
+    // These are the lower-left and upper-right corners of the search zone.
+    Waypoint enemyLL = new Waypoint(0.0, 0.0);
+    Waypoint enemyUR = new Waypoint(6.0, 6.0);
+
+    // These are the lower-left and upper-right corners of the search zone.
+    Waypoint searchLL = new Waypoint(0.0, 3.0);
+    Waypoint searchUR = new Waypoint(2.0, 4.0);
+
+    // This is the location from which we are expecting the searcher to receive control.
+    Waypoint location = new Waypoint(0.5, 5.5);
+
+    // Perform the test.
+    result = SearcherTest.testComputeSearchPathImpl(
+        expected, enemyLL, enemyUR, searchLL, searchUR, location
+        );
+
+    return result;
+  }
+
   /**
    * Test the Searcher class's `computeSearchPath()` method on a 2x1 search zone,
    * located along the right and bottom walls.
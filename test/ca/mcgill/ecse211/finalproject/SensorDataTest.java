@@ -0,0 +1,167 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the channel registry of SensorData, and how it handles the ultrasonic samples
+ * without an echo. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class SensorDataTest {
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    SensorDataTest.run("testChannels", SensorDataTest.testChannels());
+    SensorDataTest.run("testNoEcho", SensorDataTest.testNoEcho());
+    SensorDataTest.run("testStats", SensorDataTest.testStats());
+    SensorDataTest.run("testMedian", SensorDataTest.testMedian());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testChannels() {
+
+    SensorData sd = new SensorData();
+    SensorChannel gyro = sd.register("gyro", 4);
+
+    // The new channel gets its own range, after the ones of the robot's sensors.
+    if (sd.getChannelCount() != 5 || sd.getChannel(4) != gyro || sd.getData(gyro) != null) {
+      return false;
+    }
+
+    for (int i = 1; i <= 6; ++i) {
+      sd.put(gyro, 10.0f * i);
+      sd.put(sd.lightLeft, 0.5f);
+    }
+
+    float[] data = sd.getData(gyro);
+    float[] deriv = sd.getDataDeriv(gyro);
+
+    // The oldest sample first: 30, 40, 50, 60.
+    boolean order = data != null && data.length == 4 && data[0] == 30.0f && data[3] == 60.0f
+        && deriv[0] == 10.0f && deriv[3] == 10.0f && sd.getDataDerivLatest(gyro) == 10.0f;
+
+    boolean latest = gyro.getLatest() == 60.0f && gyro.getCount() == 6
+        && sd.lightLeft.getLatest() == 0.5f && sd.lightRight.getCount() == 0;
+
+    boolean rejected = false;
+
+    try {
+      sd.register("empty", 0);
+    } catch (IllegalArgumentException e) {
+      rejected = true;
+    }
+
+    return order && latest && rejected;
+  }
+
+  private static boolean testNoEcho() {
+
+    SensorData sd = new SensorData();
+
+    sd.ultrasonicHandler(Float.POSITIVE_INFINITY);
+
+    boolean infinity = !sd.isUSDataLatestValid()
+        && sd.getUSDataLatest() == SensorData.US_NO_ECHO
+        && Float.isNaN(sd.getUSMedian(20));
+
+    sd.ultrasonicHandler(Float.NaN);
+    sd.ultrasonicHandler(255.0f);
+
+    boolean others = !sd.isUSDataLatestValid() && sd.getUSDataLatest() == SensorData.US_NO_ECHO;
+
+    sd.ultrasonicHandler(30.0f);
+
+    boolean valid = sd.isUSDataLatestValid() && sd.getUSMedian(20) == 30.0f
+        && sd.getUSCount() == 4;
+
+    return infinity && others && valid;
+  }
+
+  private static boolean testStats() {
+
+    SensorData sd = new SensorData();
+
+    // Fill the circular array twice, one sample out of four without an echo.
+    for (int i = 0; i < 40; ++i) {
+      sd.ultrasonicHandler((i % 4 == 0) ? Float.POSITIVE_INFINITY : 20.0f + (i % 2));
+    }
+
+    float[] stats = sd.getUSStats();
+
+    if (stats == null) {
+      return false;
+    }
+
+    // The valid samples are 21, 20, 21 in each group of four.
+    double avg = (21.0 + 20.0 + 21.0) / 3.0;
+    double var = (2 * (21.0 - avg) * (21.0 - avg) + (20.0 - avg) * (20.0 - avg)) * 5 / 14.0;
+
+    System.out.println("Stats: " + stats[0] + ", " + stats[1] + ", " + stats[2]);
+
+    if (Math.abs(stats[0] - avg) > 1e-4 || Math.abs(stats[1] - var) > 1e-4) {
+      return false;
+    }
+
+    // Only no-echo samples: no average at all.
+    for (int i = 0; i < 20; ++i) {
+      sd.ultrasonicHandler(Float.POSITIVE_INFINITY);
+    }
+
+    return Float.isNaN(sd.getUSStats()[0]);
+  }
+
+  private static boolean testMedian() {
+
+    SensorData sd = new SensorData();
+
+    // A stray reflection and a missing echo in the latest five samples.
+    float[] samples = new float[] { 80.0f, 80.0f, 12.0f, 13.0f, 3.0f, 11.0f, 255.0f };
+
+    for (float sample : samples) {
+      sd.ultrasonicHandler(sample);
+    }
+
+    float five = sd.getUSMedian(5);
+    float two = sd.getUSMedian(2);
+    float all = sd.getUSMedian(50);
+
+    System.out.println("Medians: " + five + ", " + two + ", " + all);
+
+    return five == 11.5f && two == 11.0f && all == 12.5f;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
@@ -0,0 +1,85 @@
+package ca.mcgill.ecse211.finalproject;
+
+
+
+/**
+ * This class tests the speed-adaptive poll period of SensorPoller. It runs on a desktop JVM.
+ *
+ * @author Joshua Inscoe
+ */
+public class SensorPollerTest {
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) {
+
+    SensorPollerTest.run("testPollPeriod", SensorPollerTest.testPollPeriod());
+    SensorPollerTest.run("testSpacing", SensorPollerTest.testSpacing());
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Test Cases
+  // --------------------------------------------------------------------------------
+
+  private static boolean testPollPeriod() {
+
+    // Stopped, or at the current speeds, the light sensors are polled every SLEEP_TIME.
+    boolean slow = SensorPoller.pollPeriod(0.0) == FinalProject.SLEEP_TIME
+        && SensorPoller.pollPeriod(FinalProject.SPEED_FWD) == FinalProject.SLEEP_TIME
+        && SensorPoller.pollPeriod(-FinalProject.SPEED_FWD) == FinalProject.SLEEP_TIME;
+
+    // Faster, the period gets shorter, but not below MIN_SLEEP_TIME.
+    long fast = SensorPoller.pollPeriod(4 * FinalProject.SPEED_FWD);
+    long fastest = SensorPoller.pollPeriod(100000.0);
+
+    System.out.println("Periods: " + fast + " ms, " + fastest + " ms");
+
+    return slow && fast < FinalProject.SLEEP_TIME && fast > FinalProject.MIN_SLEEP_TIME
+        && fastest == FinalProject.MIN_SLEEP_TIME;
+  }
+
+  private static boolean testSpacing() {
+
+    // The distance driven in one period never goes over the target, until MIN_SLEEP_TIME.
+    for (double speed = 0.0; speed < 2000.0; speed += 5.0) {
+      long period = SensorPoller.pollPeriod(speed);
+      double spacing = SensorPoller.linearSpeed(speed) * period;
+
+      if (period > FinalProject.MIN_SLEEP_TIME && spacing > FinalProject.LINE_SAMPLE_SPACING) {
+        System.out.println(speed + " deg/s: " + spacing + " cm every " + period + " ms");
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static void run(String name, boolean result) {
+
+    System.out.println("==================================================");
+    System.out.println(name);
+    System.out.println("==================================================");
+    System.out.println("");
+
+    // Print to the console whether the test passed or failed.
+    if (result) {
+      System.out.println("PASS");
+    } else {
+      System.out.println("FAIL");
+    }
+
+    System.out.println("");
+
+    return;
+  }
+}
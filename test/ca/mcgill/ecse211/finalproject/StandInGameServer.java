@@ -0,0 +1,137 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * Stands in for the game server in the tests: serves a fixed set of game data, after a delay, and
+ * can be made to fail a number of times first, as an unreachable server would.
+ *
+ * The values are Longs, as parsed from the JSON sent by the real server.
+ *
+ * @author Joshua Inscoe
+ */
+public class StandInGameServer implements GameDataSource {
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // The data served
+  private final Map<String, Object> data;
+
+  // The number of requests to fail, and the time (ms) to wait before answering a request
+  private int failures;
+  private long delay;
+
+  // The number of requests so far
+  private int requests;
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, serves `sampleData()`.
+   */
+  public StandInGameServer() {
+
+    this.data = StandInGameServer.sampleData();
+    this.failures = 0;
+    this.delay = 0;
+    this.requests = 0;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Methods
+  // --------------------------------------------------------------------------------
+
+  /**
+   * The game data of a typical match: we (team 6) are red, starting in corner 0.
+   *
+   * @return a new map of the game data
+   */
+  public static Map<String, Object> sampleData() {
+
+    Map<String, Object> data = new HashMap<String, Object>();
+
+    long[] values = {
+        6, 7, 0, 2, 1, 3,
+        0, 0, 4, 4, 8, 8, 12, 12,
+        5, 6, 4, 6, 9, 6, 10, 6,
+        4, 2, 6, 3, 5, 3, 6, 8,
+        9, 9, 11, 11, 1, 1, 3, 3
+    };
+    String[] keys = {
+        "RedTeam", "GreenTeam", "RedCorner", "GreenCorner", "OG", "OR",
+        "Red_LL_x", "Red_LL_y", "Red_UR_x", "Red_UR_y",
+        "Green_LL_x", "Green_LL_y", "Green_UR_x", "Green_UR_y",
+        "ZC_R_x", "ZC_R_y", "ZO_R_x", "ZO_R_y", "ZC_G_x", "ZC_G_y", "ZO_G_x", "ZO_G_y",
+        "SH_LL_x", "SH_LL_y", "SH_UR_x", "SH_UR_y", "SV_LL_x", "SV_LL_y", "SV_UR_x", "SV_UR_y",
+        "SG_LL_x", "SG_LL_y", "SG_UR_x", "SG_UR_y", "SR_LL_x", "SR_LL_y", "SR_UR_x", "SR_UR_y"
+    };
+
+    for (int i = 0; i < keys.length; ++i) {
+      data.put(keys[i], Long.valueOf(values[i]));
+    }
+
+    return data;
+  }
+
+  /**
+   * Fail the next requests.
+   *
+   * @param failures the number of requests to fail
+   */
+  public synchronized void setFailures(int failures) {
+
+    this.failures = failures;
+
+    return;
+  }
+
+  /**
+   * Wait before answering the requests, as the server does until the match starts.
+   *
+   * @param delay the time to wait (in milliseconds)
+   */
+  public synchronized void setDelay(long delay) {
+
+    this.delay = delay;
+
+    return;
+  }
+
+  public synchronized int getRequests() {
+
+    return this.requests;
+  }
+
+  @SuppressWarnings("rawtypes")
+  public Map getData() throws Exception {
+
+    long delay;
+
+    synchronized (this) {
+      ++this.requests;
+
+      if (this.failures > 0) {
+        --this.failures;
+        throw new IOException("connection refused");
+      }
+
+      delay = this.delay;
+    }
+
+    if (delay > 0) {
+      Thread.sleep(delay);
+    }
+
+    return new HashMap<String, Object>(this.data);
+  }
+}
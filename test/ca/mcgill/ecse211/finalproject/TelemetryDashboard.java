@@ -0,0 +1,350 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GridLayout;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+
+
+/**
+ * Receives the frames streamed by TelemetryPublisher and plots them live. This runs on a desktop
+ * JVM.
+ *
+ * The window shows the path of the robot on the board, the light sensor and ultrasonic values over
+ * the last HISTORY frames, and a status line with the states, the loop overruns, the depths of the
+ * logs and the number of frames lost on the way. With `-text`, the frames are printed as CSV
+ * instead, which is enough to check the stream against localhost without a display.
+ *
+ * Usage: TelemetryDashboard [port] [-text]
+ *
+ * @author Joshua Inscoe
+ */
+public class TelemetryDashboard {
+
+  // --------------------------------------------------------------------------------
+  // Constants
+  // --------------------------------------------------------------------------------
+
+  // The port on which the publisher sends by default
+  private static final int DEFAULT_PORT = 5555;
+
+  // The number of frames kept for the plots (about 15 seconds)
+  private static final int HISTORY = 300;
+
+  // The size of the board shown (in tiles)
+  private static final int BOARD_TILES = 12;
+
+
+  // --------------------------------------------------------------------------------
+  // Variables
+  // --------------------------------------------------------------------------------
+
+  // Ring of the last HISTORY frames, guarded by the dashboard
+  private final float[] x = new float[HISTORY];
+  private final float[] y = new float[HISTORY];
+  private final float[] lightLeft = new float[HISTORY];
+  private final float[] lightRight = new float[HISTORY];
+  private final float[] lightMid = new float[HISTORY];
+  private final float[] us = new float[HISTORY];
+  private int frames;
+
+  // The number of frames lost (gaps in the sequence numbers), and the last sequence number
+  private long lost;
+  private int lastSequence = -1;
+
+  private final JLabel status = new JLabel(" ");
+  private final JPanel board;
+  private final JPanel charts;
+
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException {
+
+    int port = TelemetryDashboard.DEFAULT_PORT;
+    boolean text = false;
+
+    for (String arg : args) {
+      if (arg.equals("-text")) {
+        text = true;
+      } else {
+        port = Integer.parseInt(arg);
+      }
+    }
+
+    DatagramSocket socket = new DatagramSocket(port);
+    byte[] buffer = new byte[TelemetryPublisher.FRAME_SIZE];
+    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+    TelemetryDashboard dashboard = text ? null : new TelemetryDashboard();
+
+    if (text) {
+      System.out.println("seq,time,x,y,theta,light_left,light_right,light_mid,r,g,b,us,state,"
+          + "sub_state,cmd_left,cmd_right,tick_us,overruns,telemetry_pending,sensor_pending,"
+          + "tacho_pending,late");
+    }
+
+    while (true) {
+      socket.receive(packet);
+
+      if (packet.getLength() < TelemetryPublisher.FRAME_SIZE) {
+        continue;
+      }
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer));
+      if (in.readInt() != BinaryLog.MAGIC) {
+        continue;
+      }
+
+      if (text) {
+        TelemetryDashboard.print(in);
+      } else {
+        dashboard.update(in);
+      }
+    }
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Constructors
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Constructor, opens the window.
+   */
+  private TelemetryDashboard() {
+
+    this.board = new JPanel() {
+      protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        TelemetryDashboard.this.paintBoard(g, this.getWidth(), this.getHeight());
+      }
+    };
+    this.board.setPreferredSize(new Dimension(480, 480));
+    this.board.setBackground(Color.WHITE);
+
+    this.charts = new JPanel() {
+      protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        TelemetryDashboard.this.paintCharts(g, this.getWidth(), this.getHeight());
+      }
+    };
+    this.charts.setPreferredSize(new Dimension(480, 480));
+    this.charts.setBackground(Color.WHITE);
+
+    JPanel plots = new JPanel(new GridLayout(1, 2));
+    plots.add(this.board);
+    plots.add(this.charts);
+
+    JFrame window = new JFrame("DPM telemetry");
+    window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    window.getContentPane().add(plots, BorderLayout.CENTER);
+    window.getContentPane().add(this.status, BorderLayout.SOUTH);
+    window.pack();
+    window.setVisible(true);
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  /**
+   * Print a frame (after its magic number) as a CSV line.
+   */
+  private static void print(DataInputStream in) throws IOException {
+
+    StringBuilder line = new StringBuilder();
+
+    line.append(in.readInt()).append(',').append(in.readLong());
+
+    // Pose, light sensors, color sensor and ultrasonic sensor.
+    for (int i = 0; i < 10; ++i) {
+      line.append(',').append(in.readFloat());
+    }
+
+    line.append(',').append(TelemetryDashboard.stateName(in.readUnsignedByte()));
+    line.append(',').append(in.readUnsignedByte());
+    in.readShort();
+
+    line.append(',').append(in.readShort()).append(',').append(in.readShort());
+    line.append(',').append(in.readInt()).append(',').append(in.readInt());
+
+    line.append(',').append(in.readUnsignedShort()).append(',').append(in.readUnsignedShort());
+    line.append(',').append(in.readUnsignedShort());
+    in.readShort();
+
+    line.append(',').append(in.readInt());
+
+    System.out.println(line);
+
+    return;
+  }
+
+  /**
+   * Add a frame (after its magic number) to the plots and repaint them.
+   */
+  private void update(DataInputStream in) throws IOException {
+
+    int sequence = in.readInt();
+    in.readLong();
+
+    float fx = in.readFloat();
+    float fy = in.readFloat();
+    float theta = in.readFloat();
+    float fLeft = in.readFloat();
+    float fRight = in.readFloat();
+    float fMid = in.readFloat();
+    float r = in.readFloat();
+    float g = in.readFloat();
+    float b = in.readFloat();
+    float fUs = in.readFloat();
+
+    int state = in.readUnsignedByte();
+    int subState = in.readUnsignedByte();
+    in.readShort();
+
+    short cmdLeft = in.readShort();
+    short cmdRight = in.readShort();
+    int tick = in.readInt();
+    int overruns = in.readInt();
+
+    int telemetryPending = in.readUnsignedShort();
+    int sensorPending = in.readUnsignedShort();
+    int tachoPending = in.readUnsignedShort();
+    in.readShort();
+
+    int late = in.readInt();
+
+    final String text = String.format(
+        "%s/%d  x=%.1f y=%.1f t=%.1f  rgb=(%.3f %.3f %.3f)  cmd=(%d %d)  tick=%dus overruns=%d"
+            + "  pending=%d/%d/%d  late=%d lost=%d",
+        TelemetryDashboard.stateName(state), subState, fx, fy, theta, r, g, b, cmdLeft, cmdRight,
+        tick, overruns, telemetryPending, sensorPending, tachoPending, late, this.lost);
+
+    synchronized (this) {
+      if (this.lastSequence >= 0 && sequence - this.lastSequence > 1) {
+        this.lost += sequence - this.lastSequence - 1;
+      }
+      this.lastSequence = sequence;
+
+      int slot = this.frames % TelemetryDashboard.HISTORY;
+      this.x[slot] = fx;
+      this.y[slot] = fy;
+      this.lightLeft[slot] = fLeft;
+      this.lightRight[slot] = fRight;
+      this.lightMid[slot] = fMid;
+      this.us[slot] = fUs;
+      ++this.frames;
+    }
+
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() {
+        TelemetryDashboard.this.status.setText(text);
+        TelemetryDashboard.this.board.repaint();
+        TelemetryDashboard.this.charts.repaint();
+      }
+    });
+
+    return;
+  }
+
+  /**
+   * Draw the grid of the board and the path of the robot.
+   */
+  private synchronized void paintBoard(Graphics g, int width, int height) {
+
+    double size = Math.min(width, height) - 20;
+    double scale = size / (TelemetryDashboard.BOARD_TILES * FinalProject.BOARD_TILE_LENGTH);
+
+    g.setColor(Color.LIGHT_GRAY);
+    for (int i = 0; i <= TelemetryDashboard.BOARD_TILES; ++i) {
+      int p = 10 + (int) (i * size / TelemetryDashboard.BOARD_TILES);
+      g.drawLine(p, 10, p, 10 + (int) size);
+      g.drawLine(10, p, 10 + (int) size, p);
+    }
+
+    int n = Math.min(this.frames, TelemetryDashboard.HISTORY);
+    int px = 0;
+    int py = 0;
+
+    g.setColor(Color.BLUE);
+    for (int i = 0; i < n; ++i) {
+      int slot = (this.frames - n + i) % TelemetryDashboard.HISTORY;
+      int cx = 10 + (int) (this.x[slot] * scale);
+      int cy = 10 + (int) (size - this.y[slot] * scale);
+
+      if (i > 0) {
+        g.drawLine(px, py, cx, cy);
+      }
+      px = cx;
+      py = cy;
+    }
+
+    if (n > 0) {
+      g.setColor(Color.RED);
+      g.fillOval(px - 4, py - 4, 8, 8);
+    }
+
+    return;
+  }
+
+  /**
+   * Draw the light sensor values (top) and the ultrasonic distance (bottom) over time.
+   */
+  private synchronized void paintCharts(Graphics g, int width, int height) {
+
+    int half = height / 2;
+
+    this.paintSeries(g, this.lightLeft, Color.RED, 0, half, width, 1.f);
+    this.paintSeries(g, this.lightRight, Color.GREEN.darker(), 0, half, width, 1.f);
+    this.paintSeries(g, this.lightMid, Color.BLUE, 0, half, width, 1.f);
+    this.paintSeries(g, this.us, Color.BLACK, half, half, width, 255.f);
+
+    g.setColor(Color.GRAY);
+    g.drawLine(0, half, width, half);
+    g.drawString("light (left, right, mid)", 5, 15);
+    g.drawString("ultrasonic (cm)", 5, half + 15);
+
+    return;
+  }
+
+  private void paintSeries(Graphics g, float[] series, Color color, int top, int height,
+      int width, float max) {
+
+    int n = Math.min(this.frames, TelemetryDashboard.HISTORY);
+
+    g.setColor(color);
+    for (int i = 1; i < n; ++i) {
+      int a = (this.frames - n + i - 1) % TelemetryDashboard.HISTORY;
+      int b = (this.frames - n + i) % TelemetryDashboard.HISTORY;
+
+      g.drawLine((i - 1) * width / TelemetryDashboard.HISTORY,
+          top + height - (int) (Math.min(series[a] / max, 1.f) * height),
+          i * width / TelemetryDashboard.HISTORY,
+          top + height - (int) (Math.min(series[b] / max, 1.f) * height));
+    }
+
+    return;
+  }
+
+  private static String stateName(int ordinal) {
+
+    MainController.State[] states = MainController.State.values();
+
+    return (ordinal < states.length) ? states[ordinal].toString() : Integer.toString(ordinal);
+  }
+}
@@ -0,0 +1,164 @@
+package ca.mcgill.ecse211.finalproject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+
+
+/**
+ * Decodes a telemetry log written by TelemetryRecorder. This runs on a desktop JVM.
+ *
+ * The records are printed as CSV (one line per tick) on the standard output, and a summary (time
+ * spent in each state, tick durations) is printed on the standard error, so that the CSV can be
+ * redirected to a file and loaded in a spreadsheet or a plotting tool.
+ *
+ * Usage: TelemetryDecoder <telemetry.bin>
+ *
+ * @author Joshua Inscoe
+ */
+public class TelemetryDecoder {
+
+  // --------------------------------------------------------------------------------
+  // Main Method
+  // --------------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException {
+
+    if (args.length < 1) {
+      System.err.println("usage: TelemetryDecoder <telemetry.bin>");
+      System.exit(1);
+    }
+
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])));
+
+    int recordSize = BinaryLog.readHeader(in, TelemetryRecorder.NAME);
+
+    if (recordSize < TelemetryRecorder.RECORD_SIZE) {
+      throw new IOException("records are too small: " + recordSize + " bytes");
+    }
+
+    MainController.State[] states = MainController.State.values();
+
+    long[] stateTime = new long[states.length];
+
+    long records = 0;
+    long first = -1;
+    long last = -1;
+    int previous = -1;
+
+    long tickSum = 0;
+    int tickMax = 0;
+
+    System.out.println("time,x,y,theta,light_left,light_right,light_mid,us,state,sub_state,"
+        + "cmd_left,cmd_right,tick_us");
+
+    try {
+      while (true) {
+        long time = in.readLong();
+
+        float x = in.readFloat();
+        float y = in.readFloat();
+        float theta = in.readFloat();
+
+        float lightLeft = in.readFloat();
+        float lightRight = in.readFloat();
+        float lightMid = in.readFloat();
+        float us = in.readFloat();
+
+        int state = in.readUnsignedByte();
+        int subState = in.readUnsignedByte();
+        in.readShort();
+
+        short cmdLeft = in.readShort();
+        short cmdRight = in.readShort();
+
+        int tick = in.readInt();
+
+        // Skip the fields added by newer versions of the recorder.
+        in.skipBytes(recordSize - TelemetryRecorder.RECORD_SIZE);
+
+        System.out.println((first < 0 ? 0 : time - first) + "," + x + "," + y + "," + theta + ","
+            + lightLeft + "," + lightRight + "," + lightMid + "," + us + ","
+            + TelemetryDecoder.stateName(states, state) + ","
+            + TelemetryDecoder.subStateName(states, state, subState) + "," + cmdLeft + ","
+            + cmdRight + "," + tick);
+
+        if (first < 0) {
+          first = time;
+        }
+        if (previous >= 0 && previous < states.length) {
+          stateTime[previous] += time - last;
+        }
+
+        previous = state;
+        last = time;
+
+        ++records;
+        tickSum += tick;
+        tickMax = Math.max(tickMax, tick);
+      }
+    } catch (EOFException e) {
+      // End of the log.
+    }
+
+    in.close();
+
+    System.err.println("Records:  " + records);
+    System.err.println("Duration: " + ((records > 0) ? last - first : 0) + " ms");
+
+    if (records > 0) {
+      System.err.println("Tick:     mean " + (tickSum / records) + " us, max " + tickMax + " us");
+    }
+
+    for (int i = 0; i < states.length; ++i) {
+      System.err.println(String.format("  %-12s %8d ms", states[i], stateTime[i]));
+    }
+
+    return;
+  }
+
+
+  // --------------------------------------------------------------------------------
+  // Helper Routines
+  // --------------------------------------------------------------------------------
+
+  private static String stateName(MainController.State[] states, int state) {
+
+    return (state < states.length) ? states[state].toString() : Integer.toString(state);
+  }
+
+  /**
+   * Get the name of the state of the subsystem that the main controller delegates to in `state`.
+   */
+  private static String subStateName(MainController.State[] states, int state, int subState) {
+
+    Enum<?>[] values = null;
+
+    if (state < states.length) {
+      switch (states[state]) {
+        case LOCALIZING:
+          values = Localizer.Loc_State.values();
+          break;
+        case NAVIGATING:
+        case SEARCHING:
+          values = Navigator.Nav_State.values();
+          break;
+        case ZIPLINING:
+          values = ZipLine.Zip_State.values();
+          break;
+        default:
+          break;
+      }
+    }
+
+    if (values == null || subState >= values.length) {
+      return Integer.toString(subState);
+    }
+
+    return values[subState].toString();
+  }
+}